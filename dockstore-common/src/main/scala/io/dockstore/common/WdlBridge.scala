@@ -1,10 +1,15 @@
 package io.dockstore.common
 
 
+import java.nio.charset.StandardCharsets
 import java.nio.file.{Files, Paths}
 import java.util
+import java.util.concurrent.{Callable, ExecutionException, TimeUnit}
 
 import cats.syntax.validated._
+import com.google.common.cache.{Cache, CacheBuilder}
+import com.google.common.hash.Hashing
+import com.google.common.util.concurrent.{ExecutionError, UncheckedExecutionException}
 import com.typesafe.config.ConfigFactory
 import common.Checked
 import common.validation.Checked._
@@ -17,17 +22,9 @@ import languages.wdl.biscayne.WdlBiscayneLanguageFactory
 import languages.wdl.draft2.WdlDraft2LanguageFactory
 import languages.wdl.draft3.WdlDraft3LanguageFactory
 import org.slf4j.LoggerFactory
-import shapeless.Inl
-import spray.json.DefaultJsonProtocol._
-import spray.json._
 import wdl.draft3.parser.WdlParser
-import wom.callable.{CallableTaskDefinition, ExecutableCallable, WorkflowDefinition}
 import wom.executable.WomBundle
-import wom.expression.WomExpression
-import wom.graph._
-import wom.types.{WomCompositeType, WomOptionalType, WomType}
 
-import scala.collection.JavaConverters
 import scala.collection.JavaConverters._
 import scala.util.Try
 
@@ -58,11 +55,7 @@ class WdlBridge {
     */
   @throws(classOf[WdlParser.SyntaxError])
   def validateWorkflow(filePath: String, sourceFilePath: String) = {
-    val bundle = getBundle(filePath, sourceFilePath)
-
-    if (!bundle.primaryCallable.isDefined) {
-      throw new WdlParser.SyntaxError("This file is missing a workflow declaration.")
-    }
+    getWdlBundle(filePath, sourceFilePath).validateWorkflow()
   }
 
   /**
@@ -71,21 +64,7 @@ class WdlBridge {
     */
   @throws(classOf[WdlParser.SyntaxError])
   def validateTool(filePath: String, sourceFilePath: String) = {
-    validateWorkflow(filePath, sourceFilePath)
-    val executableCallable = convertFilePathToExecutableCallable(filePath, sourceFilePath)
-    val numberOfTaskCalls = executableCallable.taskCallNodes.seq.size
-
-    if (numberOfTaskCalls > 1) {
-      throw new WdlParser.SyntaxError("A WDL tool can only call one task. This file calls more than one task. Did you mean to register a workflow?")
-    }
-
-    executableCallable.taskCallNodes
-      .foreach(call => {
-        val dockerAttribute = call.callable.runtimeAttributes.attributes.get("docker")
-        if (!dockerAttribute.isDefined) {
-          throw new WdlParser.SyntaxError(call.identifier.localName + " requires an associated docker container to make this a valid Dockstore tool.")
-        }
-      })
+    getWdlBundle(filePath, sourceFilePath).validateTool()
   }
 
   /**
@@ -96,25 +75,7 @@ class WdlBridge {
     */
   @throws(classOf[WdlParser.SyntaxError])
   def getMetadata(filePath: String, sourceFilePath: String) = {
-    val bundle = getBundle(filePath, sourceFilePath)
-    val metadataList = new util.ArrayList[util.Map[String, String]]()
-    bundle.allCallables.foreach(callable => {
-      callable._2 match {
-        case w: WorkflowDefinition => {
-          val metadata = JavaConverters.mapAsJavaMap(callable._2.asInstanceOf[WorkflowDefinition].meta)
-          if (!metadata.isEmpty) {
-            metadataList.add(metadata)
-          }
-        }
-        case c: CallableTaskDefinition => {
-          val metadata = JavaConverters.mapAsJavaMap(callable._2.asInstanceOf[CallableTaskDefinition].meta)
-          if (!metadata.isEmpty) {
-            metadataList.add(metadata)
-          }
-        }
-      }
-    })
-    metadataList
+    getWdlBundle(filePath, sourceFilePath).getMetadata
   }
 
   /**
@@ -125,19 +86,7 @@ class WdlBridge {
     */
   @throws(classOf[WdlParser.SyntaxError])
   def getInputFiles(filePath: String, sourceFilePath: String):  util.HashMap[String, String] = {
-    val fileStrings: List[String] = List("File", "File?", "Array[File]", "Array[File]?")
-    val inputList = new util.HashMap[String, String]()
-    val bundle = getBundle(filePath, sourceFilePath)
-    val primaryCallable = bundle.primaryCallable.orNull
-    if (primaryCallable == null) {
-      throw new WdlParser.SyntaxError("Error parsing WDL file.")
-    }
-
-    val workflowName = primaryCallable.name
-    primaryCallable.inputs
-      .filter(input => fileStrings.contains(input.womType.stableName.toString))
-      .foreach(input => inputList.put(workflowName + "." + input.name, input.womType.stableName.toString))
-    inputList
+    getWdlBundle(filePath, sourceFilePath).getInputFiles
   }
 
   // TODO: Remove this method after Dockstore CLI no longer calls it
@@ -154,17 +103,7 @@ class WdlBridge {
     */
   @throws(classOf[WdlParser.SyntaxError])
   def getOutputFiles(filePath: String, sourceFilePath: String): util.List[String] = {
-    val outputList = new util.ArrayList[String]()
-    val bundle = getBundle(filePath, sourceFilePath)
-    val primaryCallable = bundle.primaryCallable.orNull
-    if (primaryCallable == null) {
-      throw new WdlParser.SyntaxError("Error parsing WDL file.")
-    }
-    val workflowName = primaryCallable.name
-    primaryCallable.outputs
-      .filter(output => output.womType.stableName.toString.equals("File") || output.womType.stableName.toString.equals("Array[File]"))
-      .foreach(output => outputList.add(workflowName + "." + output.name))
-    outputList
+    getWdlBundle(filePath, sourceFilePath).getOutputFiles
   }
 
   // TODO: Remove this method after Dockstore CLI no longer calls it
@@ -179,15 +118,7 @@ class WdlBridge {
     * @return map of call names to import path
     */
   def getImportMap(filePath: String, sourceFilePath: String): util.LinkedHashMap[String, String] = {
-    val importMap = new util.LinkedHashMap[String, String]()
-    val executableCallable = convertFilePathToExecutableCallable(filePath, sourceFilePath)
-    executableCallable.taskCallNodes
-      .foreach(call => {
-        val callName = call.identifier.localName.value
-        val path = null
-        importMap.put(callName, path)
-      })
-    importMap
+    getWdlBundle(filePath, sourceFilePath).getImportMap
   }
 
   /**
@@ -196,40 +127,7 @@ class WdlBridge {
     * @return mapping of call to a list of dependencies
     */
   def getCallsToDependencies(filePath: String, sourceFilePath: String): util.LinkedHashMap[String, util.List[String]] = {
-    val dependencyMap = new util.LinkedHashMap[String, util.List[String]]()
-    val executableCallable = convertFilePathToExecutableCallable(filePath, sourceFilePath)
-
-    executableCallable.taskCallNodes
-      .foreach(call => {
-        val callName = call.identifier.localName.value
-        dependencyMap.put("dockstore_" + callName, new util.ArrayList[String]())
-      })
-
-    executableCallable.taskCallNodes
-        .foreach(call => {
-          val dependencies = new util.ArrayList[String]()
-          call.inputDefinitionMappings
-            .foreach(inputMap => {
-              val maybePorts = inputMap._2 match {
-                case Inl(head) => Some(head.graphNode.inputPorts)
-                case a => None
-              }
-              maybePorts.foreach((inputPorts: Set[GraphNodePort.InputPort]) => {
-                inputPorts
-                  .foreach(inputPort => {
-                    val inputName = inputPort.name
-                    val lastPeriodIndex = inputName.lastIndexOf(".")
-                    if (lastPeriodIndex != -1) {
-                      dependencies.add("dockstore_" + inputName.substring(0, lastPeriodIndex))
-                    }
-                  })
-              })
-            })
-          dependencyMap.replace("dockstore_" + call.identifier.localName.value, dependencies)
-
-        })
-
-    dependencyMap
+    getWdlBundle(filePath, sourceFilePath).getCallsToDependencies
   }
 
 
@@ -240,19 +138,7 @@ class WdlBridge {
     */
   @throws(classOf[WdlParser.SyntaxError])
   def getCallsToDockerMap(filePath: String, sourceFilePath: String): util.LinkedHashMap[String, String] = {
-    val callsToDockerMap = new util.LinkedHashMap[String, String]()
-    val executableCallable = convertFilePathToExecutableCallable(filePath, sourceFilePath)
-    executableCallable.taskCallNodes
-      .foreach(call => {
-        val dockerAttribute = call.callable.runtimeAttributes.attributes.get("docker")
-        val callName = "dockstore_" + call.identifier.localName.value
-        var dockerString = ""
-        if (dockerAttribute.isDefined) {
-          dockerString = dockerAttribute.get.sourceString.replaceAll("\"", "")
-        }
-        callsToDockerMap.put(callName, dockerString)
-      })
-    callsToDockerMap
+    getWdlBundle(filePath, sourceFilePath).getCallsToDockerMap
   }
 
   /**
@@ -263,8 +149,7 @@ class WdlBridge {
     */
   @throws(classOf[WdlParser.SyntaxError])
   def getParameterFile(filePath: String, sourceFilePath:String): String = {
-    val executableCallable = convertFilePathToExecutableCallable(filePath, sourceFilePath)
-    executableCallable.graph.externalInputNodes.toJson(inputNodeWriter(true)).prettyPrint
+    getWdlBundle(filePath, sourceFilePath).getParameterFile
   }
 
   // TODO: Remove this method after Dockstore CLI no longer calls it
@@ -273,34 +158,47 @@ class WdlBridge {
     getParameterFile(filePath, "/") // Not ideal, doing this for now because of dependencies with CLI
   }
 
+  /**
+    * Parse a workflow and its imports once, every question about the same content and imports is answered from the
+    * same parse for a few minutes
+    * @param filePath absolute path to file, imports not in the secondary files are also resolved from its directory
+    * @param sourceFilePath the path of the source file
+    * @return the parsed workflow
+    */
   @throws(classOf[WdlParser.SyntaxError])
-  private def convertFilePathToExecutableCallable(filePath: String, sourceFilePath: String): ExecutableCallable = {
-    val bundle = getBundle(filePath, sourceFilePath)
-    val executableCallable = bundle.toExecutableCallable.right.getOrElse(null)
-    if (executableCallable == null) {
-      throw new WdlParser.SyntaxError("Error parsing WDL file")
-    }
-    executableCallable
+  def getWdlBundle(filePath: String, sourceFilePath: String): WdlBundle = {
+    val content = readFile(filePath)
+    val directory = Paths.get(filePath).toAbsolutePath.getParent
+    cachedBundle("file:" + directory + ":" + WdlBridge.bundleKey(content, sourceFilePath, secondaryWdlFiles),
+      getBundleFromContent(content, filePath, sourceFilePath))
   }
 
-  private def inputNodeWriter(showOptionals: Boolean): JsonWriter[Set[ExternalGraphInputNode]] = set => {
-
-    val valueMap: Seq[(String, JsValue)] = set.toList collect {
-      case RequiredGraphInputNode(_, womType, nameInInputSet, _) => nameInInputSet -> womTypeToJson(womType, None)
-      case OptionalGraphInputNode(_, womOptionalType, nameInInputSet, _) if showOptionals => nameInInputSet -> womTypeToJson(womOptionalType, None)
-      case OptionalGraphInputNodeWithDefault(_, womType, default, nameInInputSet, _) if showOptionals => nameInInputSet -> womTypeToJson(womType, Option(default))
-    }
-
-    valueMap.toMap.toJson
+  /**
+    * Parse a workflow given as content, like getWdlBundle but without a file on disk. Imports are resolved from the
+    * secondary files, the workflow itself and http only, nothing is read from or written to the local filesystem
+    * @param content content of the workflow
+    * @param sourceFilePath the path of the source file, relative imports are resolved against it
+    * @return the parsed workflow
+    */
+  @throws(classOf[WdlParser.SyntaxError])
+  def getWdlBundleFromContent(content: String, sourceFilePath: String): WdlBundle = {
+    cachedBundle("memory:" + WdlBridge.bundleKey(content, sourceFilePath, secondaryWdlFiles),
+      getBundleFromContent(content, sourceFilePath))
   }
 
-  private def womTypeToJson(womType: WomType, default: Option[WomExpression]): JsValue = (womType, default) match {
-    case (WomCompositeType(typeMap, _), _) => JsObject(
-      typeMap.map { case (name, wt) => name -> womTypeToJson(wt, None) }
-    )
-    case (_, Some(d)) => JsString(s"${womType.stableName} (optional, default = ${d.sourceString})")
-    case (_: WomOptionalType, _) => JsString(s"${womType.stableName} (optional)")
-    case (_, _) => JsString(s"${womType.stableName}")
+  /**
+    * Only parses that succeed are kept, a failure may come from an http import that works the next time
+    */
+  @throws(classOf[WdlParser.SyntaxError])
+  private def cachedBundle(key: String, parse: => WomBundle): WdlBundle = {
+    try {
+      WdlBridge.bundles.get(key, new Callable[WdlBundle] {
+        override def call(): WdlBundle = new WdlBundle(parse)
+      })
+    } catch {
+      // callers asking for the same bundle while it is parsed share the failure
+      case ex @ (_: ExecutionException | _: UncheckedExecutionException | _: ExecutionError) => throw ex.getCause
+    }
   }
 
   /**
@@ -322,13 +220,32 @@ class WdlBridge {
     * @return WomBundle
     */
   def getBundleFromContent(content: String, filePath: String, sourceFilePath: String): WomBundle = {
-    val factory = getLanguageFactory(content)
     val filePathObj = DefaultPathBuilder.build(filePath).get
     // Resolve from mapping, local filesystem, or http import
     val mapResolver = MapResolver(sourceFilePath)
     mapResolver.setSecondaryFiles(secondaryWdlFiles)
     lazy val importResolvers: List[ImportResolver] =
       DirectoryResolver.localFilesystemResolvers(Some(filePathObj)) :+ HttpResolver(relativeTo = None) :+ mapResolver
+    parse(content, importResolvers)
+  }
+
+  /**
+    * Get the WomBundle for a workflow given the workflow content, without touching the local filesystem
+    * @param content content of file
+    * @param sourceFilePath the path of the source file
+    * @return WomBundle
+    */
+  def getBundleFromContent(content: String, sourceFilePath: String): WomBundle = {
+    // Resolve from http import or mapping, which also holds the workflow itself
+    val files = new util.HashMap[String, String](secondaryWdlFiles)
+    files.putIfAbsent(sourceFilePath, content)
+    val mapResolver = MapResolver(sourceFilePath)
+    mapResolver.setSecondaryFiles(files)
+    parse(content, List(HttpResolver(relativeTo = None), mapResolver))
+  }
+
+  private def parse(content: String, importResolvers: => List[ImportResolver]): WomBundle = {
+    val factory = getLanguageFactory(content)
     try {
       val bundle = factory.getWomBundle(content, "{}", importResolvers, List(factory))
       if (bundle.isRight) {
@@ -371,6 +288,29 @@ class WdlBridge {
 
 object WdlBridge {
   val logger = LoggerFactory.getLogger(WdlBridge.getClass)
+
+  // a refresh asks about the same version several times within seconds, bundles can be large so few are kept
+  private val BundleCacheSize = 64
+  private val BundleCacheMinutes = 5
+
+  private val bundles: Cache[String, WdlBundle] = CacheBuilder.newBuilder()
+    .maximumSize(BundleCacheSize)
+    .expireAfterWrite(BundleCacheMinutes, TimeUnit.MINUTES)
+    .build[String, WdlBundle]()
+
+  /**
+    * @return a key for the content of a workflow, where it is, and the content of everything it may import
+    */
+  private def bundleKey(content: String, sourceFilePath: String, secondaryFiles: util.Map[String, String]): String = {
+    val hasher = Hashing.sha256().newHasher()
+      .putString(String.valueOf(sourceFilePath), StandardCharsets.UTF_8).putChar('\u0000')
+      .putString(content, StandardCharsets.UTF_8).putChar('\u0000')
+    new util.TreeMap[String, String](secondaryFiles).asScala.foreach { case (path, fileContent) =>
+      hasher.putString(path, StandardCharsets.UTF_8).putChar('\u0000')
+        .putString(String.valueOf(fileContent), StandardCharsets.UTF_8).putChar('\u0000')
+    }
+    hasher.hash().toString
+  }
 }
 
 /**
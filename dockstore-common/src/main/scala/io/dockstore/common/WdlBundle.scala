@@ -0,0 +1,224 @@
+package io.dockstore.common
+
+import java.util
+
+import shapeless.Inl
+import spray.json.DefaultJsonProtocol._
+import spray.json._
+import wdl.draft3.parser.WdlParser
+import wom.callable.{CallableTaskDefinition, ExecutableCallable, WorkflowDefinition}
+import wom.executable.WomBundle
+import wom.expression.WomExpression
+import wom.graph._
+import wom.types.{WomCompositeType, WomOptionalType, WomType}
+
+import scala.collection.JavaConverters
+
+/**
+  * A WDL document and its imports, parsed once
+  *
+  * Answers validation, metadata, inputs, outputs, calls, dependencies and imports from the same parse tree, so a refresh
+  * that asks all of them of one version parses it only once. Get it from WdlBridge.getWdlBundle, which caches it.
+  *
+  * @param bundle the parsed document
+  */
+class WdlBundle(val bundle: WomBundle) {
+
+  // the graph of calls, only built when asked for
+  private lazy val executableCallable: Option[ExecutableCallable] = bundle.toExecutableCallable.right.toOption
+
+  /**
+    * Validates that the document is a workflow
+    */
+  @throws(classOf[WdlParser.SyntaxError])
+  def validateWorkflow(): Unit = {
+    if (!bundle.primaryCallable.isDefined) {
+      throw new WdlParser.SyntaxError("This file is missing a workflow declaration.")
+    }
+  }
+
+  /**
+    * Validates that the document is a tool, a workflow calling one task with a docker image
+    */
+  @throws(classOf[WdlParser.SyntaxError])
+  def validateTool(): Unit = {
+    validateWorkflow()
+    val callable = getExecutableCallable
+    val numberOfTaskCalls = callable.taskCallNodes.seq.size
+
+    if (numberOfTaskCalls > 1) {
+      throw new WdlParser.SyntaxError("A WDL tool can only call one task. This file calls more than one task. Did you mean to register a workflow?")
+    }
+
+    callable.taskCallNodes
+      .foreach(call => {
+        val dockerAttribute = call.callable.runtimeAttributes.attributes.get("docker")
+        if (!dockerAttribute.isDefined) {
+          throw new WdlParser.SyntaxError(call.identifier.localName + " requires an associated docker container to make this a valid Dockstore tool.")
+        }
+      })
+  }
+
+  /**
+    * @return list of metadata mappings of the workflows and tasks
+    */
+  def getMetadata: util.List[util.Map[String, String]] = {
+    val metadataList = new util.ArrayList[util.Map[String, String]]()
+    bundle.allCallables.foreach(callable => {
+      callable._2 match {
+        case w: WorkflowDefinition => {
+          val metadata = JavaConverters.mapAsJavaMap(w.meta)
+          if (!metadata.isEmpty) {
+            metadataList.add(metadata)
+          }
+        }
+        case c: CallableTaskDefinition => {
+          val metadata = JavaConverters.mapAsJavaMap(c.meta)
+          if (!metadata.isEmpty) {
+            metadataList.add(metadata)
+          }
+        }
+      }
+    })
+    metadataList
+  }
+
+  /**
+    * @return mapping of file input name to type
+    */
+  @throws(classOf[WdlParser.SyntaxError])
+  def getInputFiles: util.HashMap[String, String] = {
+    val fileStrings: List[String] = List("File", "File?", "Array[File]", "Array[File]?")
+    val inputList = new util.HashMap[String, String]()
+    val primaryCallable = bundle.primaryCallable.getOrElse(throw new WdlParser.SyntaxError("Error parsing WDL file."))
+
+    val workflowName = primaryCallable.name
+    primaryCallable.inputs
+      .filter(input => fileStrings.contains(input.womType.stableName.toString))
+      .foreach(input => inputList.put(workflowName + "." + input.name, input.womType.stableName.toString))
+    inputList
+  }
+
+  /**
+    * @return list of output file names
+    */
+  @throws(classOf[WdlParser.SyntaxError])
+  def getOutputFiles: util.List[String] = {
+    val outputList = new util.ArrayList[String]()
+    val primaryCallable = bundle.primaryCallable.getOrElse(throw new WdlParser.SyntaxError("Error parsing WDL file."))
+    val workflowName = primaryCallable.name
+    primaryCallable.outputs
+      .filter(output => output.womType.stableName.toString.equals("File") || output.womType.stableName.toString.equals("Array[File]"))
+      .foreach(output => outputList.add(workflowName + "." + output.name))
+    outputList
+  }
+
+  /**
+    * Does not work with new parsing code, may be phased out
+    * @return map of call names to import path
+    */
+  @throws(classOf[WdlParser.SyntaxError])
+  def getImportMap: util.LinkedHashMap[String, String] = {
+    val importMap = new util.LinkedHashMap[String, String]()
+    getExecutableCallable.taskCallNodes
+      .foreach(call => {
+        val callName = call.identifier.localName.value
+        val path = null
+        importMap.put(callName, path)
+      })
+    importMap
+  }
+
+  /**
+    * @return mapping of call to a list of dependencies
+    */
+  @throws(classOf[WdlParser.SyntaxError])
+  def getCallsToDependencies: util.LinkedHashMap[String, util.List[String]] = {
+    val dependencyMap = new util.LinkedHashMap[String, util.List[String]]()
+    val callable = getExecutableCallable
+
+    callable.taskCallNodes
+      .foreach(call => {
+        val callName = call.identifier.localName.value
+        dependencyMap.put("dockstore_" + callName, new util.ArrayList[String]())
+      })
+
+    callable.taskCallNodes
+        .foreach(call => {
+          val dependencies = new util.ArrayList[String]()
+          call.inputDefinitionMappings
+            .foreach(inputMap => {
+              val maybePorts = inputMap._2 match {
+                case Inl(head) => Some(head.graphNode.inputPorts)
+                case a => None
+              }
+              maybePorts.foreach((inputPorts: Set[GraphNodePort.InputPort]) => {
+                inputPorts
+                  .foreach(inputPort => {
+                    val inputName = inputPort.name
+                    val lastPeriodIndex = inputName.lastIndexOf(".")
+                    if (lastPeriodIndex != -1) {
+                      dependencies.add("dockstore_" + inputName.substring(0, lastPeriodIndex))
+                    }
+                  })
+              })
+            })
+          dependencyMap.replace("dockstore_" + call.identifier.localName.value, dependencies)
+
+        })
+
+    dependencyMap
+  }
+
+  /**
+    * @return mapping of call names to docker
+    */
+  @throws(classOf[WdlParser.SyntaxError])
+  def getCallsToDockerMap: util.LinkedHashMap[String, String] = {
+    val callsToDockerMap = new util.LinkedHashMap[String, String]()
+    getExecutableCallable.taskCallNodes
+      .foreach(call => {
+        val dockerAttribute = call.callable.runtimeAttributes.attributes.get("docker")
+        val callName = "dockstore_" + call.identifier.localName.value
+        var dockerString = ""
+        if (dockerAttribute.isDefined) {
+          dockerString = dockerAttribute.get.sourceString.replaceAll("\"", "")
+        }
+        callsToDockerMap.put(callName, dockerString)
+      })
+    callsToDockerMap
+  }
+
+  /**
+    * @return stub parameter file for the workflow
+    */
+  @throws(classOf[WdlParser.SyntaxError])
+  def getParameterFile: String = {
+    getExecutableCallable.graph.externalInputNodes.toJson(inputNodeWriter(true)).prettyPrint
+  }
+
+  @throws(classOf[WdlParser.SyntaxError])
+  private def getExecutableCallable: ExecutableCallable = {
+    executableCallable.getOrElse(throw new WdlParser.SyntaxError("Error parsing WDL file"))
+  }
+
+  private def inputNodeWriter(showOptionals: Boolean): JsonWriter[Set[ExternalGraphInputNode]] = set => {
+
+    val valueMap: Seq[(String, JsValue)] = set.toList collect {
+      case RequiredGraphInputNode(_, womType, nameInInputSet, _) => nameInInputSet -> womTypeToJson(womType, None)
+      case OptionalGraphInputNode(_, womOptionalType, nameInInputSet, _) if showOptionals => nameInInputSet -> womTypeToJson(womOptionalType, None)
+      case OptionalGraphInputNodeWithDefault(_, womType, default, nameInInputSet, _) if showOptionals => nameInInputSet -> womTypeToJson(womType, Option(default))
+    }
+
+    valueMap.toMap.toJson
+  }
+
+  private def womTypeToJson(womType: WomType, default: Option[WomExpression]): JsValue = (womType, default) match {
+    case (WomCompositeType(typeMap, _), _) => JsObject(
+      typeMap.map { case (name, wt) => name -> womTypeToJson(wt, None) }
+    )
+    case (_, Some(d)) => JsString(s"${womType.stableName} (optional, default = ${d.sourceString})")
+    case (_: WomOptionalType, _) => JsString(s"${womType.stableName} (optional)")
+    case (_, _) => JsString(s"${womType.stableName}")
+  }
+}
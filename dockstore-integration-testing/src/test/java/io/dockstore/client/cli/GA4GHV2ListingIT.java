@@ -0,0 +1,124 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.client.cli;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Response;
+
+import io.dockstore.common.CommonTestUtilities;
+import io.dockstore.common.TestingPostgres;
+import io.dockstore.openapi.client.model.Tool;
+import io.dockstore.webservice.DockstoreWebserviceApplication;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dropwizard.client.JerseyClientBuilder;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.apache.http.HttpStatus;
+import org.glassfish.jersey.client.ClientProperties;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static io.dockstore.common.CommonTestUtilities.WAIT_TIME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Filtering, ordering and paging of the TRS /tools listing, which the database does
+ *
+ * Published entries, in the order of their git urls: workflow A/l, tool test4 (B/b), tool test5 (a/a), tool test6. The
+ * listing is ordered like the git urls were sorted in Java, by code point, so upper case comes before lower case
+ * whatever the database's collation.
+ */
+public class GA4GHV2ListingIT {
+    private static final DropwizardTestSupport<DockstoreWebserviceConfiguration> SUPPORT = new DropwizardTestSupport<>(
+        DockstoreWebserviceApplication.class, CommonTestUtilities.PUBLIC_CONFIG_PATH);
+    private static final String WORKFLOW = "#workflow/github.com/A/l";
+    private static final String TOOL4 = "quay.io/test_org/test4";
+    private static final String TOOL5 = "quay.io/test_org/test5";
+    private static final String TOOL6 = "quay.io/test_org/test6";
+
+    private static Client client;
+    private static String baseURL;
+
+    @BeforeClass
+    public static void dropAndRecreateDB() throws Exception {
+        CommonTestUtilities.dropAndCreateWithTestData(SUPPORT, true);
+        SUPPORT.before();
+        TestingPostgres testingPostgres = new TestingPostgres(SUPPORT);
+        // before the first request, so no listing is cached yet
+        testingPostgres.runUpdateStatement("update tool set ispublished = true, giturl = 'git@github.com:B/b.git' where id = 4");
+        testingPostgres.runUpdateStatement("update tool set ispublished = true, giturl = 'git@github.com:a/a.git', author = 'potato' where id = 5");
+        testingPostgres.runUpdateStatement("update tool set author = 'someone else' where id = 6");
+        client = new JerseyClientBuilder(SUPPORT.getEnvironment()).build("listing test client").property(ClientProperties.READ_TIMEOUT, WAIT_TIME);
+        baseURL = String.format("http://localhost:%d%sga4gh/trs/v2/", SUPPORT.getLocalPort(), SUPPORT.getConfiguration().getExternalConfig().getBasePath());
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        SUPPORT.after();
+    }
+
+    private static Response get(String query) {
+        Response response = client.target(baseURL + "tools" + query).request().get();
+        assertEquals(HttpStatus.SC_OK, response.getStatus());
+        return response;
+    }
+
+    private static List<String> ids(Response response) {
+        List<Tool> tools = response.readEntity(new GenericType<>() {
+        });
+        return tools.stream().map(Tool::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testOrdering() {
+        assertEquals(List.of(WORKFLOW, TOOL4, TOOL5, TOOL6), ids(get("")));
+    }
+
+    @Test
+    public void testFilters() {
+        assertEquals("only tools are in test_org", List.of(TOOL4, TOOL5, TOOL6), ids(get("?organization=test_org")));
+        assertEquals("filters are case sensitive", List.of(WORKFLOW), ids(get("?organization=A")));
+        assertEquals("filters are substring matches", List.of(TOOL5), ids(get("?name=test5")));
+        assertEquals("an entry without an author is not excluded", List.of(WORKFLOW, TOOL4, TOOL5), ids(get("?author=potato")));
+        assertEquals(List.of(TOOL4, TOOL5), ids(get("?author=potato&organization=test_org")));
+        assertEquals("no checker workflows are published", List.of(), ids(get("?checker=true")));
+        assertEquals("tools are not checker workflows", List.of(WORKFLOW, TOOL4, TOOL5, TOOL6), ids(get("?checker=false")));
+        assertEquals("wildcards are matched literally", List.of(), ids(get("?name=test%25")));
+        assertEquals(List.of(), ids(get("?name=test_")));
+    }
+
+    @Test
+    public void testPaging() {
+        Response first = get("?limit=2");
+        assertEquals(List.of(WORKFLOW, TOOL4), ids(first));
+        assertTrue(first.getHeaderString("next_page").contains("offset=1"));
+        assertTrue(first.getHeaderString("last_page").contains("offset=1"));
+
+        Response last = get("?limit=2&offset=1");
+        assertEquals(List.of(TOOL5, TOOL6), ids(last));
+        assertNull(last.getHeaderString("next_page"));
+
+        assertEquals("past the last page", List.of(), ids(get("?limit=2&offset=2")));
+        assertEquals(List.of(TOOL6), ids(get("?limit=3&offset=1")));
+        assertEquals("paging applies after filtering", List.of(TOOL6), ids(get("?organization=test_org&limit=2&offset=1")));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice;
+
+import java.util.List;
+
+import io.dockstore.common.CommonTestUtilities;
+import io.dockstore.common.DescriptorLanguage;
+import io.dockstore.common.TestingPostgres;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Tag;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.helpers.EntryFetchProfile;
+import io.dockstore.webservice.jdbi.TagDAO;
+import io.dockstore.webservice.jdbi.ToolDAO;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Counts what each EntryFetchProfile fetches for the published tools of a seeded database: the statements run, the rows
+ * loaded as entities and collections, and the bytes of source file content. VERSIONS_WITHOUT_CONTENT is measured the way
+ * the tool listings use it, with the descriptor types read instead of the source files.
+ *
+ * Not a test, run it with main() from the test classpath against the test database. The optional arguments are the
+ * versions per tool, the files per version and the bytes per file.
+ */
+public final class EntryFetchProfileBenchmark {
+    private static final DropwizardTestSupport<DockstoreWebserviceConfiguration> SUPPORT = new DropwizardTestSupport<>(
+        DockstoreWebserviceApplication.class, CommonTestUtilities.PUBLIC_CONFIG_PATH);
+
+    private EntryFetchProfileBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int versions = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final int files = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final int fileSize = args.length > 2 ? Integer.parseInt(args[2]) : 16 * 1024;
+
+        CommonTestUtilities.dropAndCreateWithTestData(SUPPORT, true);
+        SUPPORT.before();
+        try {
+            new TestingPostgres(SUPPORT).runUpdateStatement("update tool set ispublished = true");
+            SessionFactory sessionFactory = SUPPORT.<DockstoreWebserviceApplication>getApplication().getHibernate().getSessionFactory();
+            Session session = sessionFactory.openSession();
+            ManagedSessionContext.bind(session);
+            try {
+                seed(new ToolDAO(sessionFactory), new TagDAO(sessionFactory), session, versions, files, fileSize);
+                System.out.printf("%d published tools with %d versions of %d files of %d bytes%n", new ToolDAO(sessionFactory).findAllPublished().size(),
+                    versions, files, fileSize);
+                System.out.printf("%-25s %10s %10s %12s %12s%n", "profile", "statements", "entities", "collections", "bytes");
+                for (EntryFetchProfile profile : EntryFetchProfile.values()) {
+                    measure(profile, new ToolDAO(sessionFactory), session, sessionFactory.getStatistics());
+                }
+            } finally {
+                ManagedSessionContext.unbind(sessionFactory);
+                session.close();
+            }
+        } finally {
+            SUPPORT.after();
+        }
+    }
+
+    private static void seed(ToolDAO toolDAO, TagDAO tagDAO, Session session, int versions, int files, int fileSize) {
+        String content = "x".repeat(fileSize);
+        Transaction transaction = session.beginTransaction();
+        for (Tool tool : toolDAO.findAllPublished()) {
+            for (int i = 0; i < versions; i++) {
+                Tag tag = new Tag();
+                tag.setName("benchmark-" + i);
+                tag.setReference("benchmark-" + i);
+                tag.setParent(tool);
+                for (int j = 0; j < files; j++) {
+                    SourceFile file = new SourceFile();
+                    file.setPath("/file" + j + ".cwl");
+                    file.setAbsolutePath("/file" + j + ".cwl");
+                    file.setType(DescriptorLanguage.FileType.DOCKSTORE_CWL);
+                    file.setContent(content);
+                    tag.addSourceFile(file);
+                }
+                tool.addWorkflowVersion(tagDAO.findById(tagDAO.create(tag)));
+            }
+        }
+        transaction.commit();
+    }
+
+    private static void measure(EntryFetchProfile profile, ToolDAO toolDAO, Session session, Statistics statistics) {
+        session.clear();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        Transaction transaction = session.beginTransaction();
+        List<Tool> tools = toolDAO.findAllPublished();
+        if (profile == EntryFetchProfile.VERSIONS_WITHOUT_CONTENT) {
+            toolDAO.loadDescriptorTypes(tools, false);
+        }
+        profile.apply(tools);
+        long bytes = tools.stream().flatMap(tool -> tool.getWorkflowVersions().stream())
+            .filter(version -> Hibernate.isInitialized(version.getSourceFiles())).flatMap(version -> version.getSourceFiles().stream())
+            .mapToLong(file -> file.getContent() == null ? 0 : file.getContent().length()).sum();
+        System.out.printf("%-25s %10d %10d %12d %12d%n", profile, statistics.getPrepareStatementCount(), statistics.getEntityLoadCount(),
+            statistics.getCollectionLoadCount(), bytes);
+        transaction.rollback();
+    }
+}
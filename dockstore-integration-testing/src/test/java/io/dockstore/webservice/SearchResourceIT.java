@@ -79,7 +79,13 @@ public class SearchResourceIT extends BaseIT {
      */
     private void waitForIndexRefresh(int hit, ExtendedGa4GhApi extendedGa4GhApi, int counter) {
         try {
-            String s = extendedGa4GhApi.toolsIndexSearch(exampleESQuery);
+            String s;
+            try {
+                s = extendedGa4GhApi.toolsIndexSearch(exampleESQuery);
+            } catch (ApiException e) {
+                // the index is rebuilt in the background, it may not be there yet
+                s = e.getMessage();
+            }
             if (!s.contains("\"total\":" + hit)) {
                 if (counter > 5) {
                     Assert.fail(s + " does not have the correct amount of hits");
@@ -0,0 +1,99 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Response;
+
+import io.dockstore.common.CommonTestUtilities;
+import io.dockstore.common.TestingPostgres;
+import io.dropwizard.client.JerseyClientBuilder;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.apache.http.HttpStatus;
+import org.glassfish.jersey.client.ClientProperties;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static io.dockstore.common.CommonTestUtilities.WAIT_TIME;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The star count that the published listings are sorted by, kept by a trigger on the starred table
+ */
+public class StarCountIT {
+    private static final DropwizardTestSupport<DockstoreWebserviceConfiguration> SUPPORT = new DropwizardTestSupport<>(
+        DockstoreWebserviceApplication.class, CommonTestUtilities.PUBLIC_CONFIG_PATH);
+
+    private static TestingPostgres testingPostgres;
+    private static Client client;
+    private static String baseURL;
+
+    @BeforeClass
+    public static void dropAndRecreateDB() throws Exception {
+        CommonTestUtilities.dropAndCreateWithTestData(SUPPORT, true);
+        SUPPORT.before();
+        testingPostgres = new TestingPostgres(SUPPORT);
+        testingPostgres.runUpdateStatement("update tool set ispublished = true where id in (4, 5)");
+        client = new JerseyClientBuilder(SUPPORT.getEnvironment()).build("star count test client").property(ClientProperties.READ_TIMEOUT, WAIT_TIME);
+        baseURL = String.format("http://localhost:%d%s", SUPPORT.getLocalPort(), SUPPORT.getConfiguration().getExternalConfig().getBasePath());
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        SUPPORT.after();
+    }
+
+    private static long starCount(long toolId) {
+        return testingPostgres.runSelectStatement("select starcount from tool where id = " + toolId, long.class);
+    }
+
+    /**
+     * @return the names of the published tools, most starred first, one page at a time
+     */
+    private static List<String> publishedByStars() {
+        List<String> names = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            Response response = client.target(baseURL + "containers/published").queryParam("sortCol", "stars").queryParam("sortOrder", "desc")
+                .queryParam("limit", 1).queryParam("cursor", cursor).request().get();
+            assertEquals(HttpStatus.SC_OK, response.getStatus());
+            cursor = response.getHeaderString("X-next-cursor");
+            List<Map<String, Object>> tools = response.readEntity(new GenericType<>() {
+            });
+            tools.forEach(tool -> names.add((String)tool.get("name")));
+        }
+        return names;
+    }
+
+    @Test
+    public void testStarCount() {
+        testingPostgres.runUpdateStatement("insert into starred (entryid, userid) values (5, 1), (5, 2), (4, 1)");
+        assertEquals(2, starCount(5));
+        assertEquals(1, starCount(4));
+        assertEquals(0, starCount(6));
+        assertEquals(List.of("test5", "test4", "test6"), publishedByStars());
+
+        testingPostgres.runUpdateStatement("delete from starred where entryid = 5");
+        assertEquals(0, starCount(5));
+        assertEquals("ties are broken by descending id", List.of("test4", "test6", "test5"), publishedByStars());
+    }
+}
@@ -50,6 +50,7 @@ import io.dockstore.webservice.core.LambdaEvent;
 import io.dockstore.webservice.core.Notification;
 import io.dockstore.webservice.core.Organization;
 import io.dockstore.webservice.core.OrganizationUser;
+import io.dockstore.webservice.core.RefreshJob;
 import io.dockstore.webservice.core.Service;
 import io.dockstore.webservice.core.SourceFile;
 import io.dockstore.webservice.core.Tag;
@@ -62,12 +63,19 @@ import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowVersion;
 import io.dockstore.webservice.doi.DOIGeneratorFactory;
 import io.dockstore.webservice.helpers.CacheConfigManager;
+import io.dockstore.webservice.helpers.DAGPipeline;
+import io.dockstore.webservice.helpers.ElasticSearchClient;
 import io.dockstore.webservice.helpers.GoogleHelper;
+import io.dockstore.webservice.helpers.HttpClientMetrics;
 import io.dockstore.webservice.helpers.MetadataResourceHelper;
 import io.dockstore.webservice.helpers.ObsoleteUrlFactory;
 import io.dockstore.webservice.helpers.PersistenceExceptionMapper;
 import io.dockstore.webservice.helpers.PublicStateManager;
+import io.dockstore.webservice.helpers.RefreshExecutor;
+import io.dockstore.webservice.helpers.RefreshJobQueue;
+import io.dockstore.webservice.helpers.SourceSnapshotStore;
 import io.dockstore.webservice.helpers.TransactionExceptionMapper;
+import io.dockstore.webservice.helpers.statelisteners.ElasticIndexQueue;
 import io.dockstore.webservice.helpers.statelisteners.TRSListener;
 import io.dockstore.webservice.jdbi.EventDAO;
 import io.dockstore.webservice.jdbi.TagDAO;
@@ -81,8 +89,10 @@ import io.dockstore.webservice.permissions.PermissionsFactory;
 import io.dockstore.webservice.permissions.PermissionsInterface;
 import io.dockstore.webservice.resources.AliasResource;
 import io.dockstore.webservice.resources.CollectionResource;
+import io.dockstore.webservice.resources.DAGPipelineRunner;
 import io.dockstore.webservice.resources.DockerRepoResource;
 import io.dockstore.webservice.resources.DockerRepoTagResource;
+import io.dockstore.webservice.resources.ElasticReindexRunner;
 import io.dockstore.webservice.resources.ElasticSearchHealthCheck;
 import io.dockstore.webservice.resources.EntryResource;
 import io.dockstore.webservice.resources.EventResource;
@@ -92,6 +102,8 @@ import io.dockstore.webservice.resources.LambdaEventResource;
 import io.dockstore.webservice.resources.MetadataResource;
 import io.dockstore.webservice.resources.NotificationResource;
 import io.dockstore.webservice.resources.OrganizationResource;
+import io.dockstore.webservice.resources.RefreshJobResource;
+import io.dockstore.webservice.resources.RefreshJobRunner;
 import io.dockstore.webservice.resources.ServiceResource;
 import io.dockstore.webservice.resources.TemplateHealthCheck;
 import io.dockstore.webservice.resources.TokenResource;
@@ -137,6 +149,7 @@ import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlets.CrossOriginFilter;
 import org.glassfish.jersey.CommonProperties;
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
+import org.hibernate.SessionFactory;
 import org.pf4j.DefaultPluginManager;
 import org.pf4j.PluginWrapper;
 import org.slf4j.Logger;
@@ -161,11 +174,12 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
     private static final int KILOBYTES_IN_MEGABYTE = 1024;
     private static final int CACHE_IN_MB = 100;
     private static Cache cache = null;
+    private static final HttpClientMetrics HTTP_CLIENT_METRICS = new HttpClientMetrics();
 
     private final HibernateBundle<DockstoreWebserviceConfiguration> hibernate = new HibernateBundle<DockstoreWebserviceConfiguration>(
             Token.class, Tool.class, User.class, Tag.class, Label.class, SourceFile.class, Workflow.class, CollectionOrganization.class,
             WorkflowVersion.class, FileFormat.class, Organization.class, Notification.class, OrganizationUser.class, Event.class, Collection.class,
-            Validation.class, BioWorkflow.class, Service.class, VersionMetadata.class, Image.class, Checksum.class, LambdaEvent.class) {
+            Validation.class, BioWorkflow.class, Service.class, VersionMetadata.class, Image.class, Checksum.class, LambdaEvent.class, RefreshJob.class) {
         @Override
         public DataSourceFactory getDataSourceFactory(DockstoreWebserviceConfiguration configuration) {
             return configuration.getDataSourceFactory();
@@ -180,6 +194,18 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
         return cache;
     }
 
+    /**
+     * @return the client all outbound HTTP goes through, sharing its connection pool and web cache
+     */
+    public static OkHttpClient getOkHttpClient() {
+        // before initialize, e.g. in unit tests
+        return okHttpClient == null ? new OkHttpClient.Builder().cache(cache).build() : okHttpClient;
+    }
+
+    public static HttpClientMetrics getHttpClientMetrics() {
+        return HTTP_CLIENT_METRICS;
+    }
+
     @Override
     public String getName() {
         return "webservice";
@@ -221,8 +247,10 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
             cache = new Cache(cacheDir, cacheSize);
         }
         // match HttpURLConnection which does not have a timeout by default
+        // the cache revalidates stale responses with their ETag, a 304 from GitHub does not count against the rate limit
         okHttpClient = new OkHttpClient().newBuilder().cache(cache).connectTimeout(0, TimeUnit.SECONDS)
-                .readTimeout(0, TimeUnit.SECONDS).writeTimeout(0, TimeUnit.SECONDS).build();
+                .readTimeout(0, TimeUnit.SECONDS).writeTimeout(0, TimeUnit.SECONDS)
+                .addInterceptor(HTTP_CLIENT_METRICS).eventListener(HTTP_CLIENT_METRICS).build();
         try {
             // this can only be called once per JVM, a factory exception is thrown in our tests
             URL.setURLStreamHandlerFactory(new ObsoleteUrlFactory(okHttpClient));
@@ -270,8 +298,12 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
 
         final PublicStateManager publicStateManager = PublicStateManager.getInstance();
         publicStateManager.setConfig(configuration);
-        final TRSListener trsListener = new TRSListener();
+        publicStateManager.setSessionFactory(hibernate.getSessionFactory());
+        final ElasticSearchClient elasticSearchClient = setupElasticSearch(configuration, environment, publicStateManager);
+        final TRSListener trsListener = new TRSListener(configuration.getTrsCacheMaxBytes());
+        trsListener.registerMetrics(environment.metrics());
         publicStateManager.addListener(trsListener);
+        setupRefresh(configuration, environment);
 
         environment.jersey().property(CommonProperties.FEATURE_AUTO_DISCOVERY_DISABLE, true);
         environment.jersey().register(new JsonProcessingExceptionMapper(true));
@@ -317,12 +349,14 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
 
         // Note workflow resource must be passed to the docker repo resource, as the workflow resource refresh must be called for checker workflows
         final DockerRepoResource dockerRepoResource = new DockerRepoResource(httpClient, hibernate.getSessionFactory(), configuration, workflowResource, entryResource);
-
         environment.jersey().register(dockerRepoResource);
         environment.jersey().register(new DockerRepoTagResource(toolDAO, tagDAO, eventDAO, versionDAO));
         environment.jersey().register(new TokenResource(tokenDAO, userDAO, httpClient, cachingAuthenticator, configuration));
 
-        environment.jersey().register(new UserResource(httpClient, getHibernate().getSessionFactory(), workflowResource, serviceResource, dockerRepoResource, cachingAuthenticator, authorizer, configuration));
+        final UserResource userResource = new UserResource(httpClient, getHibernate().getSessionFactory(), workflowResource, serviceResource, dockerRepoResource, cachingAuthenticator, authorizer, configuration);
+        environment.jersey().register(userResource);
+        environment.jersey().register(setupRefreshJobs(configuration, environment, workflowResource, dockerRepoResource, userResource));
+        setupDAGPipeline(configuration, environment, workflowResource, serviceResource);
 
         MetadataResourceHelper.init(configuration);
         environment.jersey().register(new UserResourceDockerRegistries(getHibernate().getSessionFactory()));
@@ -350,10 +384,10 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
         ToolsApiServiceImpl.setConfig(configuration);
         ToolsApiServiceImpl.setTrsListener(trsListener);
 
-        ToolsApiExtendedServiceImpl.setStateManager(publicStateManager);
         ToolsApiExtendedServiceImpl.setToolDAO(toolDAO);
         ToolsApiExtendedServiceImpl.setWorkflowDAO(workflowDAO);
         ToolsApiExtendedServiceImpl.setConfig(configuration);
+        ToolsApiExtendedServiceImpl.setElasticSearchClient(elasticSearchClient);
 
         DOIGeneratorFactory.setConfig(configuration);
 
@@ -400,6 +434,66 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
 
     }
 
+    /**
+     * Sizes the pools refreshes read files from git with and the snapshots they download
+     */
+    private static void setupRefresh(DockstoreWebserviceConfiguration configuration, Environment environment) {
+        SourceSnapshotStore.configure(okHttpClient, configuration.getSourceSnapshotMaxBytes());
+        final int refreshThreads = configuration.getRefreshThreads();
+        if (refreshThreads > 1) {
+            RefreshExecutor.configure(environment.lifecycle().executorService("refresh-%d").minThreads(refreshThreads).maxThreads(refreshThreads).build(),
+                refreshThreads);
+        }
+        RefreshExecutor.configureHostParallelism(configuration.getRefreshThreadsPerHost());
+        RefreshExecutor.registerMetrics(environment.metrics());
+    }
+
+    /**
+     * Creates the queue that runs refresh jobs in the background, each step of a job in its own transaction
+     */
+    private RefreshJobResource setupRefreshJobs(DockstoreWebserviceConfiguration configuration, Environment environment,
+        WorkflowResource workflowResource, DockerRepoResource dockerRepoResource, UserResource userResource) {
+        final RefreshJobQueue refreshJobQueue = new RefreshJobQueue(configuration.getRefreshJobThreads());
+        refreshJobQueue.setRunner(new UnitOfWorkAwareProxyFactory(getHibernate()).create(RefreshJobRunner.class,
+            new Class[] { SessionFactory.class, WorkflowResource.class, DockerRepoResource.class, UserResource.class },
+            new Object[] { getHibernate().getSessionFactory(), workflowResource, dockerRepoResource, userResource }));
+        environment.lifecycle().manage(refreshJobQueue);
+        return new RefreshJobResource(getHibernate().getSessionFactory(), refreshJobQueue);
+    }
+
+    /**
+     * Creates the pipeline that computes the DAG and tool table of refreshed workflow versions in the background, each
+     * version in its own transaction
+     */
+    private void setupDAGPipeline(DockstoreWebserviceConfiguration configuration, Environment environment, WorkflowResource workflowResource,
+        ServiceResource serviceResource) {
+        final DAGPipeline dagPipeline = new DAGPipeline(configuration.getDagPipelineThreads(), configuration.getDagPipelineWaitMillis());
+        dagPipeline.setRunner(new UnitOfWorkAwareProxyFactory(getHibernate()).create(DAGPipelineRunner.class,
+            new Class[] { WorkflowResource.class }, new Object[] { workflowResource }));
+        environment.lifecycle().manage(dagPipeline);
+        workflowResource.setDAGPipeline(dagPipeline);
+        serviceResource.setDAGPipeline(dagPipeline);
+    }
+
+    /**
+     * Creates the shared Elasticsearch client and the queue that sends index updates in the background
+     */
+    private ElasticSearchClient setupElasticSearch(DockstoreWebserviceConfiguration configuration, Environment environment,
+        PublicStateManager publicStateManager) {
+        final ElasticSearchClient elasticSearchClient = new ElasticSearchClient(configuration.getEsConfiguration());
+        environment.lifecycle().manage(elasticSearchClient);
+        // managed after the client so that it is stopped, and flushed, before the client is closed
+        final ElasticIndexQueue elasticIndexQueue = new ElasticIndexQueue(elasticSearchClient, configuration.getEsConfiguration());
+        environment.lifecycle().manage(elasticIndexQueue);
+        publicStateManager.getElasticListener().setIndexing(elasticSearchClient, elasticIndexQueue);
+        // reindexing records the updates the queue sends meanwhile, so it is stopped before the queue
+        ToolsApiExtendedServiceImpl.setReindexing(environment.lifecycle().executorService("reindex-%d").minThreads(1).maxThreads(1).build(),
+            new UnitOfWorkAwareProxyFactory(getHibernate()).create(ElasticReindexRunner.class,
+                new Class[] { SessionFactory.class, ElasticSearchClient.class, ElasticIndexQueue.class, DockstoreWebserviceConfiguration.ElasticSearchConfig.class },
+                new Object[] { getHibernate().getSessionFactory(), elasticSearchClient, elasticIndexQueue, configuration.getEsConfiguration() }));
+        return elasticSearchClient;
+    }
+
     private void describeAvailableLanguagePlugins(DefaultPluginManager languagePluginManager) {
         List<PluginWrapper> plugins = languagePluginManager.getStartedPlugins();
         if (plugins.isEmpty()) {
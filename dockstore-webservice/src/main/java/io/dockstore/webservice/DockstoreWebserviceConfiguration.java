@@ -32,6 +32,14 @@ import io.dropwizard.db.DataSourceFactory;
 
 public class DockstoreWebserviceConfiguration extends Configuration {
 
+    private static final long DEFAULT_TRS_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_SOURCE_SNAPSHOT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final int DEFAULT_REFRESH_THREADS = 8;
+    private static final int DEFAULT_REFRESH_JOB_THREADS = 4;
+    private static final int DEFAULT_REFRESH_THREADS_PER_HOST = 4;
+    private static final int DEFAULT_DAG_PIPELINE_THREADS = 2;
+    private static final long DEFAULT_DAG_PIPELINE_WAIT_MILLIS = 5000;
+
     @Valid
     @NotNull
     private DataSourceFactory database = new DataSourceFactory();
@@ -144,6 +152,20 @@ public class DockstoreWebserviceConfiguration extends Configuration {
 
     private String dashboard = "dashboard.dockstore.org";
 
+    private long trsCacheMaxBytes = DEFAULT_TRS_CACHE_MAX_BYTES;
+
+    private long sourceSnapshotMaxBytes = DEFAULT_SOURCE_SNAPSHOT_MAX_BYTES;
+
+    private int refreshThreads = DEFAULT_REFRESH_THREADS;
+
+    private int refreshJobThreads = DEFAULT_REFRESH_JOB_THREADS;
+
+    private int refreshThreadsPerHost = DEFAULT_REFRESH_THREADS_PER_HOST;
+
+    private int dagPipelineThreads = DEFAULT_DAG_PIPELINE_THREADS;
+
+    private long dagPipelineWaitMillis = DEFAULT_DAG_PIPELINE_WAIT_MILLIS;
+
     @Valid
     @NotNull
     private UIConfig uiConfig;
@@ -514,6 +536,90 @@ public class DockstoreWebserviceConfiguration extends Configuration {
         this.dashboard = dashboard;
     }
 
+    /**
+     * @return approximate budget in bytes for cached GA4GH TRS results
+     */
+    @JsonProperty
+    public long getTrsCacheMaxBytes() {
+        return trsCacheMaxBytes;
+    }
+
+    public void setTrsCacheMaxBytes(long trsCacheMaxBytes) {
+        this.trsCacheMaxBytes = trsCacheMaxBytes;
+    }
+
+    /**
+     * @return approximate budget in bytes for GitHub repositories kept at a commit, 0 reads files through the contents API
+     */
+    @JsonProperty
+    public long getSourceSnapshotMaxBytes() {
+        return sourceSnapshotMaxBytes;
+    }
+
+    public void setSourceSnapshotMaxBytes(long sourceSnapshotMaxBytes) {
+        this.sourceSnapshotMaxBytes = sourceSnapshotMaxBytes;
+    }
+
+    /**
+     * @return how many versions of an entry are refreshed at a time, 1 refreshes them on the request thread
+     */
+    @JsonProperty
+    public int getRefreshThreads() {
+        return refreshThreads;
+    }
+
+    public void setRefreshThreads(int refreshThreads) {
+        this.refreshThreads = refreshThreads;
+    }
+
+    /**
+     * @return how many refresh jobs run in the background at a time
+     */
+    @JsonProperty
+    public int getRefreshJobThreads() {
+        return refreshJobThreads;
+    }
+
+    public void setRefreshJobThreads(int refreshJobThreads) {
+        this.refreshJobThreads = refreshJobThreads;
+    }
+
+    /**
+     * @return how many workflow versions have their DAG and tool table computed in the background at a time
+     */
+    @JsonProperty
+    public int getDagPipelineThreads() {
+        return dagPipelineThreads;
+    }
+
+    public void setDagPipelineThreads(int dagPipelineThreads) {
+        this.dagPipelineThreads = dagPipelineThreads;
+    }
+
+    /**
+     * @return how long a request waits for the DAG pipeline before computing the DAG or tool table itself
+     */
+    @JsonProperty
+    public long getDagPipelineWaitMillis() {
+        return dagPipelineWaitMillis;
+    }
+
+    public void setDagPipelineWaitMillis(long dagPipelineWaitMillis) {
+        this.dagPipelineWaitMillis = dagPipelineWaitMillis;
+    }
+
+    /**
+     * @return how many requests to one registry or git host refreshes may have in flight together
+     */
+    @JsonProperty
+    public int getRefreshThreadsPerHost() {
+        return refreshThreadsPerHost;
+    }
+
+    public void setRefreshThreadsPerHost(int refreshThreadsPerHost) {
+        this.refreshThreadsPerHost = refreshThreadsPerHost;
+    }
+
     @JsonProperty
     public LimitConfig getLimitConfig() {
         return limitConfig;
@@ -596,9 +702,46 @@ public class DockstoreWebserviceConfiguration extends Configuration {
     }
 
     public class ElasticSearchConfig {
+        private static final int DEFAULT_MAX_CONNECTIONS = 20;
+        private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+        private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+        private static final int DEFAULT_MAX_ATTEMPTS = 5;
+        private static final int DEFAULT_REINDEX_CHUNK_SIZE = 200;
+        private static final int DEFAULT_REINDEX_CONCURRENCY = 4;
+
         private String hostname;
         private int port;
 
+        /**
+         * Size of the connection pool shared by all Elasticsearch requests
+         */
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+        /**
+         * Maximum number of distinct entries waiting to be indexed, further updates are dead-lettered
+         */
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+        /**
+         * How long index updates are collected and coalesced before they are sent as one bulk request
+         */
+        private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+
+        /**
+         * How often an index update is attempted before it is dead-lettered
+         */
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+        /**
+         * Number of entries in each _bulk request of a reindex
+         */
+        private int reindexChunkSize = DEFAULT_REINDEX_CHUNK_SIZE;
+
+        /**
+         * Number of _bulk requests of a reindex that may be in flight at once
+         */
+        private int reindexConcurrency = DEFAULT_REINDEX_CONCURRENCY;
+
         public String getHostname() {
             return hostname;
         }
@@ -614,6 +757,54 @@ public class DockstoreWebserviceConfiguration extends Configuration {
         public void setPort(int port) {
             this.port = port;
         }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getFlushIntervalMillis() {
+            return flushIntervalMillis;
+        }
+
+        public void setFlushIntervalMillis(long flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public int getReindexChunkSize() {
+            return reindexChunkSize;
+        }
+
+        public void setReindexChunkSize(int reindexChunkSize) {
+            this.reindexChunkSize = reindexChunkSize;
+        }
+
+        public int getReindexConcurrency() {
+            return reindexConcurrency;
+        }
+
+        public void setReindexConcurrency(int reindexConcurrency) {
+            this.reindexConcurrency = reindexConcurrency;
+        }
     }
 
     public static class SamConfiguration {
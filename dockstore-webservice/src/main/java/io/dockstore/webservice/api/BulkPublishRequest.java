@@ -0,0 +1,54 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * This is an object to encapsulate a publish request for many entries at once. Does not need to be stored in the database. Used for the body of
+ * /containers/publish and /workflows/publish
+ */
+@ApiModel("BulkPublishRequest")
+public class BulkPublishRequest {
+    private List<Long> ids = new ArrayList<>();
+    private boolean publish;
+
+    public BulkPublishRequest() {
+    }
+
+    public BulkPublishRequest(List<Long> ids, boolean publish) {
+        this.ids = ids;
+        this.publish = publish;
+    }
+
+    @JsonProperty
+    @ApiModelProperty(value = "IDs of the entries to publish or unpublish", required = true)
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    @JsonProperty
+    @ApiModelProperty(value = "Whether to publish or unpublish the entries", required = true)
+    public boolean getPublish() {
+        return publish;
+    }
+}
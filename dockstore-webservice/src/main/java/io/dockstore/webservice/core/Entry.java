@@ -185,6 +185,14 @@ public abstract class Entry<S extends Entry, T extends Version> implements Compa
     @ApiModelProperty(value = "The Id of the corresponding topic on Dockstore Discuss")
     private Long topicId;
 
+    /**
+     * How many users starred the entry, kept up to date by a trigger on the starred table so that listings sorted by
+     * stars can seek on an index instead of counting the stars of every published entry
+     */
+    @JsonIgnore
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long starCount;
+
     @JsonIgnore
     @ElementCollection
     @Column(columnDefinition = "text")
@@ -414,6 +422,14 @@ public abstract class Entry<S extends Entry, T extends Version> implements Compa
         return starredUsers.remove(user);
     }
 
+    /**
+     * @return the number of stars as of when the entry was loaded
+     */
+    @JsonIgnore
+    public long getStarCount() {
+        return starCount;
+    }
+
     public Long getTopicId() {
         return topicId;
     }
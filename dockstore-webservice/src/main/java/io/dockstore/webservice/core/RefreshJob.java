@@ -0,0 +1,250 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.core;
+
+import java.sql.Timestamp;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+/**
+ * A refresh that runs in the background, polled by the users who submitted it.
+ *
+ * Unfinished jobs are leased by the webservice that queued them. A job whose lease was not renewed in time is claimed by
+ * another, or by the same after a restart.
+ */
+@ApiModel("RefreshJob")
+@Entity
+@Table(name = "RefreshJob")
+@NamedQueries({
+        @NamedQuery(name = "io.dockstore.webservice.core.RefreshJob.findLeaseExpired", query = "SELECT job FROM RefreshJob job WHERE job.status IN (:statuses)"
+                + " AND (job.leaseExpiry IS NULL OR job.leaseExpiry < :now) ORDER BY job.id"),
+        @NamedQuery(name = "io.dockstore.webservice.core.RefreshJob.claim", query = "UPDATE RefreshJob job SET job.owner = :owner, job.leaseExpiry = :leaseExpiry,"
+                + " job.status = :queued WHERE job.id = :id AND job.status IN (:statuses) AND (job.leaseExpiry IS NULL OR job.leaseExpiry < :now)"),
+        @NamedQuery(name = "io.dockstore.webservice.core.RefreshJob.renew", query = "UPDATE RefreshJob job SET job.leaseExpiry = :leaseExpiry WHERE job.owner = :owner"
+                + " AND job.status IN (:statuses)"),
+        @NamedQuery(name = "io.dockstore.webservice.core.RefreshJob.findByTarget", query = "SELECT job FROM RefreshJob job WHERE job.type = :type AND job.entryId = :entryId"
+                + " AND COALESCE(job.organization, '') = :organization AND COALESCE(job.dockerRegistry, '') = :dockerRegistry AND job.status IN (:statuses) ORDER BY job.id"),
+        @NamedQuery(name = "io.dockstore.webservice.core.RefreshJob.findByUserId", query = "SELECT job FROM RefreshJob job WHERE job.userId = :userId ORDER BY job.id DESC")
+})
+@SuppressWarnings("checkstyle:magicnumber")
+public class RefreshJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @ApiModelProperty(value = "Unique ID of the refresh job.", position = 0)
+    private long id;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    @ApiModelProperty(value = "What is refreshed.", required = true, position = 1)
+    private RefreshJobType type;
+
+    @Column(nullable = false)
+    @ApiModelProperty(value = "ID of the workflow or tool, or of the user whose tools are refreshed.", required = true, position = 2)
+    private long entryId;
+
+    @Column(columnDefinition = "TEXT")
+    @ApiModelProperty(value = "The organization of the entry, or whose tools are refreshed.", position = 3)
+    private String organization;
+
+    @Column(columnDefinition = "TEXT")
+    @ApiModelProperty(value = "The Docker registry whose tools are refreshed, all registries if not set.", position = 4)
+    private String dockerRegistry;
+
+    @Column(nullable = false)
+    @ApiModelProperty(value = "ID of the user who submitted the job.", required = true, position = 5)
+    private long userId;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    @ApiModelProperty(value = "Where the job is at.", required = true, position = 6)
+    private RefreshJobStatus status = RefreshJobStatus.QUEUED;
+
+    @Column(columnDefinition = "TEXT")
+    @ApiModelProperty(value = "Why the job failed.", position = 7)
+    private String message;
+
+    @Column
+    @ApiModelProperty(value = "Versions still at the commit they were stored at, once refreshed.", position = 8)
+    private Long versionsSkipped;
+
+    @Column
+    @ApiModelProperty(value = "Versions fetched again, once refreshed.", position = 9)
+    private Long versionsRefetched;
+
+    @Column
+    @ApiModelProperty(value = "When the job started running.", position = 10)
+    private Timestamp startDate;
+
+    @Column
+    @ApiModelProperty(value = "When the job succeeded or failed.", position = 11)
+    private Timestamp endDate;
+
+    @Column(columnDefinition = "TEXT")
+    @JsonIgnore
+    private String owner;
+
+    @Column
+    @JsonIgnore
+    private Timestamp leaseExpiry;
+
+    @Column(updatable = false)
+    @CreationTimestamp
+    @ApiModelProperty(value = "When the job was submitted.", position = 12)
+    private Timestamp dbCreateDate;
+
+    @Column()
+    @UpdateTimestamp
+    @JsonIgnore
+    private Timestamp dbUpdateDate;
+
+    public RefreshJob() {
+    }
+
+    public RefreshJob(RefreshJobType type, long entryId, String organization, String dockerRegistry, long userId) {
+        this.type = type;
+        this.entryId = entryId;
+        this.organization = organization;
+        this.dockerRegistry = dockerRegistry;
+        this.userId = userId;
+    }
+
+    /**
+     * @return what the job refreshes, jobs with the same target are never run at the same time
+     */
+    @JsonIgnore
+    public String getTarget() {
+        return type + "/" + entryId + "/" + organization + "/" + dockerRegistry;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public RefreshJobType getType() {
+        return type;
+    }
+
+    public long getEntryId() {
+        return entryId;
+    }
+
+    public String getOrganization() {
+        return organization;
+    }
+
+    public String getDockerRegistry() {
+        return dockerRegistry;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public RefreshJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(RefreshJobStatus status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public Long getVersionsSkipped() {
+        return versionsSkipped;
+    }
+
+    public Long getVersionsRefetched() {
+        return versionsRefetched;
+    }
+
+    public void setVersionCounts(long skipped, long refetched) {
+        this.versionsSkipped = skipped;
+        this.versionsRefetched = refetched;
+    }
+
+    public Timestamp getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(Timestamp startDate) {
+        this.startDate = startDate;
+    }
+
+    public Timestamp getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(Timestamp endDate) {
+        this.endDate = endDate;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * @param leaseOwner the webservice that runs the job
+     * @param expiry     when another may claim the job, unless the lease is renewed
+     */
+    public void lease(String leaseOwner, Timestamp expiry) {
+        this.owner = leaseOwner;
+        this.leaseExpiry = expiry;
+    }
+
+    public Timestamp getDbCreateDate() {
+        return dbCreateDate;
+    }
+
+    public enum RefreshJobType {
+        WORKFLOW,
+        TOOL,
+        ORGANIZATION_TOOLS
+    }
+
+    public enum RefreshJobStatus {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+}
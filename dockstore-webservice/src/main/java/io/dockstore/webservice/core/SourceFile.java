@@ -46,9 +46,12 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ComparisonChain;
 import io.dockstore.common.DescriptorLanguage;
+import io.dockstore.webservice.helpers.FileFormatHelper;
 import io.dockstore.webservice.helpers.ZipSourceFileHelper;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.ColumnTransformer;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.slf4j.Logger;
@@ -78,10 +81,17 @@ public class SourceFile implements Comparable<SourceFile> {
     @ApiModelProperty(value = "Enumerates the type of file", required = true, position = 1)
     private DescriptorLanguage.FileType type;
 
+    // file bodies live once per distinct SHA-1 in the filecontent table, a database trigger moves them there on write
     @Column(columnDefinition = "TEXT")
+    @ColumnTransformer(read = "COALESCE(content, (SELECT fc.content FROM filecontent fc WHERE fc.sha1 = contentsha1))")
     @ApiModelProperty(value = "Cache for the contents of the target file", position = 2)
     private String content;
 
+    // always computed from the content here, the trigger stores it as written even when the content stays inline
+    @Column(columnDefinition = "varchar(40)")
+    @JsonIgnore
+    private String contentSha1;
+
     @Column(nullable = false, columnDefinition = "TEXT")
     @ApiModelProperty(value = "Path to sourcefile relative to its parent", required = true, position = 3)
     private String path;
@@ -112,6 +122,7 @@ public class SourceFile implements Comparable<SourceFile> {
     @JoinTable(name = "sourcefile_verified", joinColumns = @JoinColumn(name = "id"), uniqueConstraints = @UniqueConstraint(columnNames = {
         "id", "source" }))
     @MapKeyColumn(name = "source", columnDefinition = "text")
+    @BatchSize(size = 100)
     @ApiModelProperty(value = "maps from platform to whether an entry successfully ran on it using this test json")
     private Map<String, VerificationInformation> verifiedBySource = new HashMap<>();
 
@@ -145,6 +156,15 @@ public class SourceFile implements Comparable<SourceFile> {
 
     public void setContent(String content) {
         this.content = content;
+        this.contentSha1 = content == null ? null : FileFormatHelper.calcSHA1(content).orElse(null);
+    }
+
+    /**
+     * @return the SHA-1 of the content, which is also the key of its row in the filecontent table
+     */
+    @JsonIgnore
+    public String getContentSha1() {
+        return contentSha1;
     }
 
     public String getPath() {
@@ -71,9 +71,12 @@ import org.hibernate.annotations.Check;
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByNameAndNamespaceAndRegistry", query = "SELECT c FROM Tool c WHERE c.name = :name AND c.namespace = :namespace AND c.registry = :registry"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedById", query = "SELECT c FROM Tool c WHERE c.id = :id AND c.isPublished = true"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.countAllPublished", query = "SELECT COUNT(c.id)" + Tool.PUBLISHED_QUERY),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findAllPublished", query = "SELECT c" + Tool.PUBLISHED_QUERY + "ORDER BY size(c.starredUsers) DESC"),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findAllPublishedPaths", query = "SELECT new io.dockstore.webservice.core.database.ToolPath(c.registry, c.namespace, c.name, c.toolname)" + Tool.PUBLISHED_QUERY),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findAllPublishedPathsOrderByDbupdatedate", query = "SELECT new io.dockstore.webservice.core.database.RSSToolPath(c.registry, c.namespace, c.name, c.toolname, c.lastUpdated, c.description)" + Tool.PUBLISHED_QUERY + "and c.dbUpdateDate is not null ORDER BY c.dbUpdateDate desc"),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findAllPublished", query = "SELECT c" + Tool.PUBLISHED_QUERY + "ORDER BY c.starCount DESC"),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findAllPublishedPaths", query = "SELECT new io.dockstore.webservice.core.database.ToolPath(c.id, c.registry, c.namespace, c.name, c.toolname)" + Tool.PUBLISHED_QUERY),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedPathsByRepositories", query = "SELECT new io.dockstore.webservice.core.database.ToolPath(c.registry, c.namespace, c.name, c.toolname)" + Tool.PUBLISHED_QUERY + "AND c.registry IN :registries AND c.namespace IN :namespaces AND c.name IN :names"),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findAllPublishedPathsOrderByDbupdatedate", query = "SELECT new io.dockstore.webservice.core.database.RSSToolPath(c.registry, c.namespace, c.name, c.toolname, c.lastUpdated, c.description, c.dbUpdateDate)" + Tool.PUBLISHED_QUERY + "and c.dbUpdateDate is not null ORDER BY c.dbUpdateDate desc"),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findFileTypes", query = "SELECT DISTINCT t.id, sf.type FROM Tool t JOIN t.workflowVersions v JOIN v.versionMetadata m"
+                + " JOIN v.sourceFiles sf WHERE t.id IN (:ids) AND (m.hidden = false OR :withHidden = true)"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByMode", query = "SELECT c FROM Tool c WHERE c.mode = :mode"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByNamespace", query = "SELECT c FROM Tool c WHERE lower(c.namespace) = lower(:namespace) AND c.isPublished = true ORDER BY gitUrl"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name"),
@@ -155,6 +158,11 @@ public class Tool extends Entry<Tool, Tag> {
     @JsonProperty
     private Set<Tag> tags = null;
 
+    // set for listings, which do not load the source files of the versions
+    @Transient
+    @JsonIgnore
+    private List<String> listedDescriptorTypes;
+
     public Tool() {
         workflowVersions = new TreeSet<>();
     }
@@ -274,8 +282,24 @@ public class Tool extends Entry<Tool, Tag> {
     @JsonProperty
     @ApiModelProperty(position = 28)
     public List<String> getDescriptorType() {
+        if (listedDescriptorTypes != null) {
+            return listedDescriptorTypes;
+        }
         Set<DescriptorLanguage.FileType> set = this.getWorkflowVersions().stream().flatMap(tag -> tag.getSourceFiles().stream()).map(SourceFile::getType).collect(Collectors.toSet());
-        return Arrays.stream(DescriptorLanguage.values()).filter(lang -> set.contains(lang.getFileType()))
+        return getDescriptorTypes(set);
+    }
+
+    /**
+     * For listings, which do not load the source files of the versions
+     * @param fileTypes the types of the files of the listed versions
+     */
+    @JsonIgnore
+    public void setListedFileTypes(Set<DescriptorLanguage.FileType> fileTypes) {
+        this.listedDescriptorTypes = getDescriptorTypes(fileTypes);
+    }
+
+    private static List<String> getDescriptorTypes(Set<DescriptorLanguage.FileType> fileTypes) {
+        return Arrays.stream(DescriptorLanguage.values()).filter(lang -> fileTypes.contains(lang.getFileType()))
             .map(lang -> lang.toString().toUpperCase()).distinct().collect(Collectors.toList());
     }
 
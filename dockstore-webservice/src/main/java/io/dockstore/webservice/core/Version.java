@@ -48,6 +48,7 @@ import javax.persistence.OneToOne;
 import javax.persistence.OrderBy;
 import javax.persistence.PrimaryKeyJoinColumn;
 import javax.persistence.SequenceGenerator;
+import javax.persistence.Transient;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -57,6 +58,7 @@ import io.dockstore.webservice.CustomWebApplicationException;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import org.apache.http.HttpStatus;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cascade;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -123,12 +125,14 @@ public abstract class Version<T extends Version> implements Comparable<T> {
 
     // watch out for https://hibernate.atlassian.net/browse/HHH-3799 if this is set to EAGER
     // TODO: @JsonIgnore this field to catch more places in UI that use it.
-    // TODO: Change to FetchType.LAZY
-    @OneToMany(fetch = FetchType.EAGER, orphanRemoval = true, cascade = CascadeType.ALL)
+    // Lazy, endpoints that return these pick an EntryFetchProfile, anything not loaded is serialized as null.
+    // Loading the files of one version loads those of the other versions in the session too, a batch per query.
+    @OneToMany(fetch = FetchType.LAZY, orphanRemoval = true, cascade = CascadeType.ALL)
     @JoinTable(name = "version_sourcefile", joinColumns = @JoinColumn(name = "versionid", referencedColumnName = "id"), inverseJoinColumns = @JoinColumn(name = "sourcefileid", referencedColumnName = "id"))
     @ApiModelProperty(value = "Cached files for each version. Includes Dockerfile and Descriptor files", position = 6)
     @Cascade(org.hibernate.annotations.CascadeType.DETACH)
     @OrderBy("path")
+    @BatchSize(size = 100)
     private final SortedSet<SourceFile> sourceFiles;
 
     @Column
@@ -184,6 +188,11 @@ public abstract class Version<T extends Version> implements Comparable<T> {
     @ApiModelProperty(value = "The images that belong to this version", position = 15)
     private Set<Image> images = new HashSet<>();
 
+    // set by a refresh when the commit is the one the stored files came from, the stored version is then kept as is
+    @Transient
+    @JsonIgnore
+    private boolean unchanged;
+
     public Version() {
         sourceFiles = new TreeSet<>();
         validations = new TreeSet<>();
@@ -222,6 +231,14 @@ public abstract class Version<T extends Version> implements Comparable<T> {
         return dirtyBit;
     }
 
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+
+    public void setUnchanged(boolean unchanged) {
+        this.unchanged = unchanged;
+    }
+
     public void setDirtyBit(boolean dirtyBit) {
         if (!this.isFrozen()) {
             this.dirtyBit = dirtyBit;
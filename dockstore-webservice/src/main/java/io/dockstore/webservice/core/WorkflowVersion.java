@@ -52,6 +52,8 @@ import org.apache.commons.io.FilenameUtils;
     "name" }))
 @NamedQueries({
         @NamedQuery(name = "io.dockstore.webservice.core.WorkflowVersion.getByAlias", query = "SELECT e from WorkflowVersion e JOIN e.aliases a WHERE KEY(a) IN :alias"),
+        @NamedQuery(name = "io.dockstore.webservice.core.WorkflowVersion.storeDAGs", query = "UPDATE WorkflowVersion v SET v.dagJson = COALESCE(v.dagJson, :dagJson), "
+                + "v.toolTableJson = COALESCE(v.toolTableJson, :toolTableJson) WHERE v.id = :id AND v.dbUpdateDate = :dbUpdateDate"),
 })
 
 @SuppressWarnings("checkstyle:magicnumber")
@@ -26,16 +26,22 @@ import io.dockstore.webservice.core.Tool;
  */
 public class RSSToolPath {
     private final Tool tool = new Tool();
-    public RSSToolPath(String registry, String namespace, String name, String entryName, Date lastUpdated, String description) {
+    private final Date dbUpdateDate;
+    public RSSToolPath(String registry, String namespace, String name, String entryName, Date lastUpdated, String description, Date dbUpdateDate) {
         this.tool.setRegistry(registry);
         this.tool.setNamespace(namespace);
         this.tool.setName(name);
         this.tool.setToolname(entryName);
         this.tool.setLastUpdated(lastUpdated);
         this.tool.setDescription(description);
+        this.dbUpdateDate = dbUpdateDate;
     }
 
     public Tool getTool() {
         return tool;
     }
+
+    public Date getDbUpdateDate() {
+        return dbUpdateDate;
+    }
 }
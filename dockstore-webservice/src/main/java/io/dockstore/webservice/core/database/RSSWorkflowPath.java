@@ -27,17 +27,23 @@ import io.dockstore.webservice.core.BioWorkflow;
  */
 public class RSSWorkflowPath {
     private final BioWorkflow bioWorkflow = new BioWorkflow();
+    private final Date dbUpdateDate;
 
-    public RSSWorkflowPath(SourceControl sourceControl, String organization, String repository, String entryName, Date lastUpdated, String description) {
+    public RSSWorkflowPath(SourceControl sourceControl, String organization, String repository, String entryName, Date lastUpdated, String description, Date dbUpdateDate) {
         this.bioWorkflow.setSourceControl(sourceControl);
         this.bioWorkflow.setOrganization(organization);
         this.bioWorkflow.setRepository(repository);
         this.bioWorkflow.setWorkflowName(entryName);
         this.bioWorkflow.setLastUpdated(lastUpdated);
         this.bioWorkflow.setDescription(description);
+        this.dbUpdateDate = dbUpdateDate;
     }
 
     public BioWorkflow getBioWorkflow() {
         return bioWorkflow;
     }
+
+    public Date getDbUpdateDate() {
+        return dbUpdateDate;
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.core.database;
+
+import java.util.Objects;
+
+import io.dockstore.webservice.core.Entry;
+import org.hibernate.Hibernate;
+
+/**
+ * Identifies one entry of a page of GA4GH TRS results without loading the entry itself.
+ */
+public class TRSEntryKey {
+    private final Class<? extends Entry> entryClass;
+    private final long id;
+
+    public TRSEntryKey(Class<? extends Entry> entryClass, long id) {
+        this.entryClass = entryClass;
+        this.id = id;
+    }
+
+    public static TRSEntryKey of(Entry<?, ?> entry) {
+        return new TRSEntryKey((Class<? extends Entry>)Hibernate.getClass(entry), entry.getId());
+    }
+
+    public Class<? extends Entry> getEntryClass() {
+        return entryClass;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        TRSEntryKey that = (TRSEntryKey)o;
+        return id == that.id && Objects.equals(entryClass, that.entryClass);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(entryClass, id);
+    }
+}
@@ -33,6 +33,11 @@ public class WorkflowPath {
         this.bioWorkflow.setWorkflowName(workflowName);
     }
 
+    public WorkflowPath(long id, SourceControl sourceControl, String organization, String repository, String workflowName) {
+        this(sourceControl, organization, repository, workflowName);
+        this.bioWorkflow.setId(id);
+    }
+
     public BioWorkflow getBioWorkflow() {
         return bioWorkflow;
     }
@@ -26,6 +26,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -34,10 +35,12 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 import javax.validation.constraints.NotNull;
 
+import com.google.common.base.Strings;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import io.dockstore.common.DescriptorLanguage;
@@ -53,6 +56,7 @@ import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.ToolMode;
 import io.dockstore.webservice.core.User;
 import io.dockstore.webservice.core.Validation;
+import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.dockerhub.DockerHubImage;
 import io.dockstore.webservice.core.dockerhub.DockerHubTag;
 import io.dockstore.webservice.core.dockerhub.Results;
@@ -68,6 +72,7 @@ import io.dockstore.webservice.languages.LanguageHandlerFactory;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -83,7 +88,6 @@ public abstract class AbstractImageRegistry {
     private static final String GITLAB_URL = "https://gitlab.com/api/v4/";
     private static final String SHA_TYPE_FOR_SOURCEFILES = "SHA-1";
 
-
     /**
      * Get the list of namespaces and organizations that the user is associated to on Quay.io.
      *
@@ -186,17 +190,8 @@ public abstract class AbstractImageRegistry {
         // Update db tools by copying over from api tools
         List<Tool> newDBTools = updateTools(apiTools, notManualTools, user, toolDAO);
 
-        // Get tags and update for each tool
-        for (Tool tool : newDBTools) {
-            logToolRefresh(dashboardPrefix, tool);
-
-            List<Tag> toolTags = getTags(tool);
-            final SourceCodeRepoInterface sourceCodeRepo = SourceCodeRepoFactory
-                .createSourceCodeRepo(tool.getGitUrl(), client, bitbucketToken == null ? null : bitbucketToken.getContent(),
-                    gitlabToken == null ? null : gitlabToken.getContent(), githubToken == null ? null : githubToken.getContent());
-            updateTags(toolTags, tool, sourceCodeRepo, tagDAO, fileDAO, toolDAO, fileFormatDAO, eventDAO, user);
-        }
-
+        updateTagsOfTools(newDBTools, client, githubToken, bitbucketToken, gitlabToken, tagDAO, fileDAO, toolDAO, fileFormatDAO, eventDAO, user,
+            dashboardPrefix);
         return newDBTools;
     }
 
@@ -233,28 +228,21 @@ public abstract class AbstractImageRegistry {
         // Update db tools by copying over from api tools
         List<Tool> newDBTools = updateTools(apiTools, notManualTools, user, toolDAO);
 
-        // Get tags and update for each tool
-        for (Tool tool : newDBTools) {
-            logToolRefresh(dashboardPrefix, tool);
-
-            List<Tag> toolTags = getTags(tool);
-            final SourceCodeRepoInterface sourceCodeRepo = SourceCodeRepoFactory
-                .createSourceCodeRepo(tool.getGitUrl(), client, bitbucketToken == null ? null : bitbucketToken.getContent(),
-                    gitlabToken == null ? null : gitlabToken.getContent(), githubToken.getContent());
-            updateTags(toolTags, tool, sourceCodeRepo, tagDAO, fileDAO, toolDAO, fileFormatDAO, eventDAO, user);
-        }
-
+        updateTagsOfTools(newDBTools, client, githubToken, bitbucketToken, gitlabToken, tagDAO, fileDAO, toolDAO, fileFormatDAO, eventDAO, user,
+            dashboardPrefix);
         return newDBTools;
     }
 
     /**
      * Updates/Adds/Deletes a tool and the associated tags
      *
+     * @param refreshCounts given how many tags were still at the commit their files were stored at and how many had their files fetched again
      * @return
      */
     @SuppressWarnings("checkstyle:parameternumber")
     public Tool refreshTool(final long toolId, final Long userId, final UserDAO userDAO, final ToolDAO toolDAO, final TagDAO tagDAO,
-            final FileDAO fileDAO, final FileFormatDAO fileFormatDAO, SourceCodeRepoInterface sourceCodeRepoInterface, EventDAO eventDAO, String dashboardPrefix) {
+            final FileDAO fileDAO, final FileFormatDAO fileFormatDAO, SourceCodeRepoInterface sourceCodeRepoInterface, EventDAO eventDAO, String dashboardPrefix,
+            BiConsumer<Long, Long> refreshCounts) {
 
         // Find tool of interest and store in a List (Allows for reuse of code)
         Tool tool = toolDAO.findById(toolId);
@@ -323,7 +311,7 @@ public abstract class AbstractImageRegistry {
             toolTags = getTags(tool);
         }
 
-        updateTags(toolTags, tool, sourceCodeRepoInterface, tagDAO, fileDAO, toolDAO, fileFormatDAO, eventDAO, user);
+        updateTags(toolTags, tool, sourceCodeRepoInterface, tagDAO, fileDAO, toolDAO, fileFormatDAO, eventDAO, user, refreshCounts);
         Tool updatedTool = newDBTools.get(0);
 
         String repositoryId = sourceCodeRepoInterface.getRepositoryId(updatedTool);
@@ -333,6 +321,47 @@ public abstract class AbstractImageRegistry {
         return updatedTool;
     }
 
+    /**
+     * Get and update the tags of each tool in three stages: the tags of every tool are listed from the registry, then the
+     * files of every tag are loaded from git, then everything is written back on this thread. The first two stages run
+     * concurrently, with a limit on how many requests each registry and git host has in flight.
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    private void updateTagsOfTools(List<Tool> tools, final HttpClient client, final Token githubToken, final Token bitbucketToken,
+        final Token gitlabToken, final TagDAO tagDAO, final FileDAO fileDAO, final ToolDAO toolDAO, final FileFormatDAO fileFormatDAO,
+        final EventDAO eventDAO, final User user, final String dashboardPrefix) {
+        tools.forEach(tool -> logToolRefresh(dashboardPrefix, tool));
+        final String registryHost = getRegistry().getDockerPath();
+        List<List<Tag>> toolTags = RefreshExecutor.mapPerHost(tools, tool -> registryHost, tool -> Optional.ofNullable(getTags(tool)))
+            .stream().map(tags -> tags.orElse(null)).collect(Collectors.toList());
+
+        List<Tool> changedTools = new ArrayList<>();
+        List<SourceCodeRepoInterface> sourceCodeRepos = new ArrayList<>();
+        List<TagFiles> tagFiles = new ArrayList<>();
+        // tools built from the same repository share what was read at each commit
+        CommitFileCache commitFiles = new CommitFileCache();
+        for (int i = 0; i < tools.size(); i++) {
+            Tool tool = tools.get(i);
+            Map<String, String> storedCommits = mergeTags(toolTags.get(i), tool, tagDAO, eventDAO, user);
+            if (storedCommits != null) {
+                final SourceCodeRepoInterface sourceCodeRepo = SourceCodeRepoFactory
+                    .createSourceCodeRepo(tool.getGitUrl(), client, bitbucketToken == null ? null : bitbucketToken.getContent(),
+                        gitlabToken == null ? null : gitlabToken.getContent(), githubToken == null ? null : githubToken.getContent());
+                changedTools.add(tool);
+                sourceCodeRepos.add(sourceCodeRepo);
+                tagFiles.addAll(prepareTagFiles(tool, storedCommits, sourceCodeRepo, commitFiles));
+            }
+        }
+
+        Map<Tool, List<TagFiles>> loadedByTool = RefreshExecutor.mapPerHost(tagFiles, TagFiles::getGitHost, TagFiles::load).stream()
+            .collect(Collectors.groupingBy(loaded -> loaded.tool, IdentityHashMap::new, Collectors.toList()));
+        for (int i = 0; i < changedTools.size(); i++) {
+            Tool tool = changedTools.get(i);
+            applyTags(tool, loadedByTool.getOrDefault(tool, Collections.emptyList()), sourceCodeRepos.get(i), tagDAO, fileDAO, toolDAO,
+                fileFormatDAO);
+        }
+    }
+
     /**
      * Logs a refresh statement with the tool's descriptor language(s).
      * These logs will be monitored by CloudWatch and displayed on Grafana.
@@ -429,18 +458,42 @@ public abstract class AbstractImageRegistry {
      * @param tagDAO
      * @param fileDAO
      * @param toolDAO
+     * @param refreshCounts given how many tags were kept as stored and how many were fetched again
      */
     @SuppressWarnings("checkstyle:ParameterNumber")
     private void updateTags(List<Tag> newTags, @NotNull Tool tool, SourceCodeRepoInterface sourceCodeRepoInterface, final TagDAO tagDAO,
-        final FileDAO fileDAO, final ToolDAO toolDAO, final FileFormatDAO fileFormatDAO, final EventDAO eventDAO, final User user) {
+        final FileDAO fileDAO, final ToolDAO toolDAO, final FileFormatDAO fileFormatDAO, final EventDAO eventDAO, final User user,
+        BiConsumer<Long, Long> refreshCounts) {
+        Map<String, String> storedCommits = mergeTags(newTags, tool, tagDAO, eventDAO, user);
+        if (storedCommits == null) {
+            refreshCounts.accept(0L, 0L);
+            return;
+        }
+        List<TagFiles> tagFiles = sourceCodeRepoInterface == null ? Collections.emptyList()
+            : prepareTagFiles(tool, storedCommits, sourceCodeRepoInterface, new CommitFileCache());
+        List<TagFiles> loaded = RefreshExecutor.mapPerHost(tagFiles, TagFiles::getGitHost, TagFiles::load);
+        applyTags(tool, loaded, sourceCodeRepoInterface, tagDAO, fileDAO, toolDAO, fileFormatDAO);
+        long skipped = loaded.stream().filter(TagFiles::isUnchanged).count();
+        refreshCounts.accept(skipped, loaded.size() - skipped);
+    }
+
+    /**
+     * Merges the tags from the registry into the tags of a tool
+     *
+     * @return commits the files of each tag were fetched at by tag name, null if the tags were not found
+     */
+    private Map<String, String> mergeTags(List<Tag> newTags, @NotNull Tool tool, final TagDAO tagDAO, final EventDAO eventDAO, final User user) {
         // Get all existing tags
         List<Tag> existingTags = new ArrayList<>(tool.getWorkflowVersions());
+        // commits the files of each tag were fetched at, updating a tag from the registry clears its commit
+        Map<String, String> storedCommits = new HashMap<>();
+        existingTags.stream().filter(tag -> !tag.isDirtyBit() && tag.getCommitID() != null).forEach(tag -> storedCommits.put(tag.getName(), tag.getCommitID()));
         if (tool.getMode() != ToolMode.MANUAL_IMAGE_PATH || (tool.getRegistry().equals(Registry.QUAY_IO.getDockerPath()) && existingTags.isEmpty())) {
 
             if (newTags == null) {
                 LOG.info(tool.getToolPath() + " : Tags for tool {} did not get updated because new tags were not found",
                         tool.getPath());
-                return;
+                return null;
             }
 
             List<Tag> toDelete = new ArrayList<>(0);
@@ -470,6 +523,11 @@ public abstract class AbstractImageRegistry {
                         oldTag.update(newTag);
                         // Update tag with default paths if dirty bit not set
                         if (!oldTag.isDirtyBit()) {
+                            if (!Objects.equals(oldTag.getCwlPath(), tool.getDefaultCwlPath()) || !Objects.equals(oldTag.getWdlPath(), tool.getDefaultWdlPath())
+                                || !Objects.equals(oldTag.getDockerfilePath(), tool.getDefaultDockerfilePath())) {
+                                // the stored files are from the old paths
+                                storedCommits.remove(oldTag.getName());
+                            }
                             // Has not been modified => set paths
                             oldTag.setCwlPath(tool.getDefaultCwlPath());
                             oldTag.setWdlPath(tool.getDefaultWdlPath());
@@ -538,19 +596,20 @@ public abstract class AbstractImageRegistry {
         if (tool.getRegistry().equals(Registry.DOCKER_HUB.getDockerPath()) || tool.getRegistry().equals(Registry.GITLAB.getDockerPath())) {
             updateNonQuayImageInformation(newTags, tool, existingTags);
         }
+        return storedCommits;
+    }
 
+    /**
+     * Writes the loaded files of each tag back to a tool, then parses its metadata and saves it
+     *
+     * @param tagFiles the loaded files of each tag of the tool
+     */
+    private void applyTags(@NotNull Tool tool, List<TagFiles> tagFiles, SourceCodeRepoInterface sourceCodeRepoInterface, final TagDAO tagDAO,
+        final FileDAO fileDAO, final ToolDAO toolDAO, final FileFormatDAO fileFormatDAO) {
         // Now grab default/main tag to grab general information (defaults to github/bitbucket "main branch")
         if (sourceCodeRepoInterface != null) {
             // Grab files for each version/tag and check if valid
-            Set<Tag> tags = tool.getWorkflowVersions();
-            for (Tag tag : tags) {
-                // check to see whether the commit id has changed
-
-                //TODO: calls validation eventually, may simplify if we take into account metadata parsing below
-                updateFiles(tool, tag, fileDAO, sourceCodeRepoInterface, sourceCodeRepoInterface.gitUsername);
-                // Grab and parse files to get tool information
-                // Add for new descriptor types
-            }
+            tagFiles.forEach(loaded -> updateFilesOfTag(loaded, fileDAO, sourceCodeRepoInterface.gitUsername));
 
             //TODO to parse metadata in WDL, there is a hidden dependency on validation now (validation does checks for things like recursive imports)
             // this means that two paths need to pass data in the same way to avoid oddities like validation passing and metadata parsing crashing on an invalid parse tree
@@ -576,6 +635,54 @@ public abstract class AbstractImageRegistry {
         toolDAO.create(tool);
     }
 
+    /**
+     * Readies the tags of a tool for their files to be loaded concurrently, loading anything lazy on this thread
+     *
+     * @param storedCommits commits the files of each tag were fetched at, by tag name
+     * @param commitFiles   files already read during this refresh
+     */
+    private List<TagFiles> prepareTagFiles(Tool tool, Map<String, String> storedCommits, SourceCodeRepoInterface sourceCodeRepoInterface,
+        CommitFileCache commitFiles) {
+        String repositoryId = sourceCodeRepoInterface.getRepositoryId(tool);
+        String gitHost = getGitHost(tool);
+        List<TagFiles> tagFiles = new ArrayList<>();
+        for (Tag tag : tool.getWorkflowVersions()) {
+            Hibernate.initialize(tag.getSourceFiles());
+            tagFiles.add(new TagFiles(tool, tag, sourceCodeRepoInterface, repositoryId, gitHost, storedCommits.get(tag.getName()), commitFiles));
+        }
+        return tagFiles;
+    }
+
+    private static String getGitHost(Tool tool) {
+        Map<String, String> gitUrl = tool.getGitUrl() == null ? null : SourceCodeRepoFactory.parseGitUrl(tool.getGitUrl());
+        return gitUrl == null ? String.valueOf(tool.getGitUrl()) : gitUrl.get("Source");
+    }
+
+    /**
+     * Keeps the files of a tag still at the commit they were fetched at, otherwise replaces them with the loaded ones and validates them
+     */
+    private void updateFilesOfTag(TagFiles loaded, final FileDAO fileDAO, String username) {
+        Tag tag = loaded.tag;
+        tag.setCommitID(loaded.commitID);
+        tag.setReferenceType(loaded.referenceType);
+        if (loaded.isUnchanged()) {
+            // keep the stored files and validations
+            tag.setValid(isValidVersion(tag));
+            return;
+        }
+        //TODO: calls validation eventually, may simplify if we take into account metadata parsing below
+        updateFiles(loaded.tool, tag, loaded.files, fileDAO, username);
+    }
+
+    /**
+     * A tag is unchanged when it still points at the commit its files were fetched at, with the same paths, and all of its files were found
+     */
+    private static boolean isUnchanged(Tag tag, String commitID, String storedCommit) {
+        return commitID != null && commitID.equals(storedCommit)
+            && tag.getSourceFiles().stream().anyMatch(file -> file.getType() == DescriptorLanguage.FileType.DOCKERFILE)
+            && tag.getSourceFiles().stream().allMatch(file -> file.getContent() != null);
+    }
+
     private void deleteToolWithNoUsers(@NotNull Tool tool, List<Tag> toDelete) {
         for (Tag t : toDelete) {
             LOG.info(tool.getToolPath() + " : DELETING tag: {}", t.getName());
@@ -667,13 +774,10 @@ public abstract class AbstractImageRegistry {
         return Collections.emptyList();
     }
 
-    private void updateFiles(Tool tool, Tag tag, final FileDAO fileDAO, SourceCodeRepoInterface sourceCodeRepo, String username) {
-        // For each tag, will download files to db and determine if the tag is valid
+    private void updateFiles(Tool tool, Tag tag, List<SourceFile> newFiles, final FileDAO fileDAO, String username) {
+        // For each tag, will save the downloaded files to db and determine if the tag is valid
         LOG.info(username + " : Updating files for tag {}", tag.getName());
 
-        // Get all of the required sourcefiles for the given tag
-        List<SourceFile> newFiles = loadFiles(sourceCodeRepo, tool, tag);
-
         Set<SourceFile> oldFilesTempSet = new HashSet<>(tag.getSourceFiles());
 
         // copy content over to existing files
@@ -820,60 +924,60 @@ public abstract class AbstractImageRegistry {
     }
 
     /**
-     * Given a container and tags, load up required files from git repository
+     * Given a tag, load up the files it points at from git repository, without probing for any other type of file
      *
-     * @param c
+     * @param repositoryId repository of the tool
      * @param tag
+     * @param commitID commit the tag points at
+     * @param commitFiles files already read at the same commit by other tags
      * @return list of SourceFiles containing cwl and dockerfile.
      */
-    private List<SourceFile> loadFiles(SourceCodeRepoInterface sourceCodeRepo, Tool c, Tag tag) {
+    private static List<SourceFile> loadFiles(SourceCodeRepoInterface sourceCodeRepo, String repositoryId, Tag tag, String commitID,
+        CommitFileCache commitFiles) {
         List<SourceFile> files = new ArrayList<>();
 
-        String repositoryId = sourceCodeRepo.getRepositoryId(c);
-        String commitID = sourceCodeRepo.getCommitID(repositoryId, tag);
-        // determine type of git reference for tag
-        sourceCodeRepo.updateReferenceType(repositoryId, tag);
-        tag.setCommitID(commitID);
-
         // Add for new descriptor types
-        for (DescriptorLanguage.FileType f : DescriptorLanguage.FileType.values()) {
-            if (f != DescriptorLanguage.FileType.CWL_TEST_JSON && f != DescriptorLanguage.FileType.WDL_TEST_JSON && f != DescriptorLanguage.FileType.NEXTFLOW_TEST_PARAMS) {
-                String fileResponse = sourceCodeRepo.readGitRepositoryFile(repositoryId, f, tag, null);
-                if (fileResponse != null) {
-                    SourceFile dockstoreFile = new SourceFile();
-                    dockstoreFile.setType(f);
-                    dockstoreFile.setContent(fileResponse);
-                    if (f == DescriptorLanguage.FileType.DOCKERFILE) {
-                        dockstoreFile.setPath(tag.getDockerfilePath());
-                        dockstoreFile.setAbsolutePath(tag.getDockerfilePath());
-                    } else if (f == DescriptorLanguage.FileType.DOCKSTORE_CWL) {
-                        dockstoreFile.setPath(tag.getCwlPath());
-                        dockstoreFile.setAbsolutePath(tag.getCwlPath());
-                        // see if there are imported files and resolve them
-                        Map<String, SourceFile> importedFiles = sourceCodeRepo.resolveImports(repositoryId, fileResponse, f, tag, tag.getCwlPath());
-                        files.addAll(importedFiles.values());
-                    } else if (f == DescriptorLanguage.FileType.DOCKSTORE_WDL) {
-                        dockstoreFile.setPath(tag.getWdlPath());
-                        dockstoreFile.setAbsolutePath(tag.getWdlPath());
-                        Map<String, SourceFile> importedFiles = sourceCodeRepo.resolveImports(repositoryId, fileResponse, f, tag, tag.getWdlPath());
-                        files.addAll(importedFiles.values());
-                    } else {
-                        //TODO add nextflow work here
-                        LOG.error("file type not implemented yet");
-                        continue;
-                    }
-                    files.add(dockstoreFile);
-                }
-            } else {
-                // If test json, must grab all
-                List<SourceFile> cwlTestJson = tag.getSourceFiles().stream().filter((SourceFile u) -> u.getType() == f)
-                    .collect(Collectors.toList());
-                cwlTestJson.forEach(file -> sourceCodeRepo.readFile(repositoryId, tag, files, f, file.getPath()));
-            }
+        loadFile(sourceCodeRepo, repositoryId, tag, commitID, commitFiles, DescriptorLanguage.FileType.DOCKERFILE, tag.getDockerfilePath(), files);
+        loadFile(sourceCodeRepo, repositoryId, tag, commitID, commitFiles, DescriptorLanguage.FileType.DOCKSTORE_CWL, tag.getCwlPath(), files);
+        loadFile(sourceCodeRepo, repositoryId, tag, commitID, commitFiles, DescriptorLanguage.FileType.DOCKSTORE_WDL, tag.getWdlPath(), files);
+        // If test json, must grab all
+        for (DescriptorLanguage.FileType f : Arrays.asList(DescriptorLanguage.FileType.CWL_TEST_JSON, DescriptorLanguage.FileType.WDL_TEST_JSON)) {
+            tag.getSourceFiles().stream().filter((SourceFile u) -> u.getType() == f).map(SourceFile::getPath).forEach(path -> files.addAll(
+                commitFiles.get(repositoryId, commitID, f + ":" + tag.getWorkingDirectory() + ":" + path,
+                    () -> sourceCodeRepo.readFile(repositoryId, tag, f, path).map(Collections::singletonList).orElse(Collections.emptyList()))));
         }
         return files;
     }
 
+    /**
+     * Loads the Dockerfile or a descriptor of a tag along with the files it imports
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    private static void loadFile(SourceCodeRepoInterface sourceCodeRepo, String repositoryId, Tag tag, String commitID, CommitFileCache commitFiles,
+        DescriptorLanguage.FileType f, String path, List<SourceFile> files) {
+        if (Strings.isNullOrEmpty(path)) {
+            return;
+        }
+        files.addAll(commitFiles.get(repositoryId, commitID, f + ":" + path, () -> {
+            String fileResponse = sourceCodeRepo.readGitRepositoryFile(repositoryId, f, tag, null);
+            if (fileResponse == null) {
+                return Collections.emptyList();
+            }
+            List<SourceFile> loaded = new ArrayList<>();
+            if (f != DescriptorLanguage.FileType.DOCKERFILE) {
+                // see if there are imported files and resolve them
+                loaded.addAll(sourceCodeRepo.resolveImports(repositoryId, fileResponse, f, tag, path).values());
+            }
+            SourceFile dockstoreFile = new SourceFile();
+            dockstoreFile.setType(f);
+            dockstoreFile.setContent(fileResponse);
+            dockstoreFile.setPath(path);
+            dockstoreFile.setAbsolutePath(path);
+            loaded.add(dockstoreFile);
+            return loaded;
+        }));
+    }
+
     private SourceFile createSourceFile(String path, DescriptorLanguage.FileType type) {
         SourceFile sourcefile = new SourceFile();
         sourcefile.setPath(path);
@@ -973,4 +1077,56 @@ public abstract class AbstractImageRegistry {
 
         return dbToolList;
     }
+
+    /**
+     * The files of one tag, loaded from git without touching the database or the tag, what was found is applied on the request thread
+     */
+    private static final class TagFiles {
+        private final Tool tool;
+        private final Tag tag;
+        private final SourceCodeRepoInterface sourceCodeRepo;
+        private final String repositoryId;
+        private final String gitHost;
+        private final String storedCommit;
+        private final CommitFileCache commitFiles;
+        private String commitID;
+        private Version.ReferenceType referenceType;
+        // null when the tag is still at the stored commit
+        private List<SourceFile> files;
+
+        @SuppressWarnings("checkstyle:parameternumber")
+        TagFiles(Tool tool, Tag tag, SourceCodeRepoInterface sourceCodeRepo, String repositoryId, String gitHost, String storedCommit,
+            CommitFileCache commitFiles) {
+            this.tool = tool;
+            this.tag = tag;
+            this.sourceCodeRepo = sourceCodeRepo;
+            this.repositoryId = repositoryId;
+            this.gitHost = gitHost;
+            this.storedCommit = storedCommit;
+            this.commitFiles = commitFiles;
+        }
+
+        String getGitHost() {
+            return gitHost;
+        }
+
+        boolean isUnchanged() {
+            return files == null;
+        }
+
+        TagFiles load() {
+            // check to see whether the commit id has changed
+            commitID = sourceCodeRepo.getCommitID(repositoryId, tag);
+            // determine type of git reference for tag, on a copy so the managed tag is only written on the request thread
+            Tag reference = new Tag();
+            reference.setReference(tag.getReference());
+            reference.setReferenceType(tag.getReferenceType());
+            sourceCodeRepo.updateReferenceType(repositoryId, reference);
+            referenceType = reference.getReferenceType();
+            if (!AbstractImageRegistry.isUnchanged(tag, commitID, storedCommit)) {
+                files = loadFiles(sourceCodeRepo, repositoryId, tag, commitID, commitFiles);
+            }
+            return this;
+        }
+    }
 }
@@ -50,6 +50,7 @@ import io.swagger.bitbucket.client.model.PaginatedRefs;
 import io.swagger.bitbucket.client.model.PaginatedRepositories;
 import io.swagger.bitbucket.client.model.PaginatedTags;
 import io.swagger.bitbucket.client.model.PaginatedTreeentries;
+import io.swagger.bitbucket.client.model.Ref;
 import io.swagger.bitbucket.client.model.Repository;
 import io.swagger.bitbucket.client.model.Tag;
 import org.apache.commons.lang3.StringUtils;
@@ -294,32 +295,15 @@ public class BitBucketSourceCodeRepo extends SourceCodeRepoInterface {
     public Workflow setupWorkflowVersions(String repositoryId, Workflow workflow, Optional<Workflow> existingWorkflow,
         Map<String, WorkflowVersion> existingDefaults, Optional<String> versionName) {
         RefsApi refsApi = new RefsApi(apiClient);
+        List<Ref> refs = new ArrayList<>();
         try {
             PaginatedRefs paginatedRefs = refsApi
                 .repositoriesUsernameRepoSlugRefsGet(repositoryId.split("/")[0], repositoryId.split("/")[1]);
             // this pagination structure is repetitive and should be refactored
             while (paginatedRefs != null) {
-                paginatedRefs.getValues().forEach(ref -> {
-                    String branchName = ref.getName();
-                    if (versionName.isEmpty() || Objects.equals(branchName, versionName.get())) {
-                        OffsetDateTime date = ref.getTarget().getDate();
-                        WorkflowVersion version = initializeWorkflowVersion(branchName, existingWorkflow, existingDefaults);
-                        version.setLastModified(Date.from(date.toInstant()));
-                        String calculatedPath = version.getWorkflowPath();
-                        // Now grab source files
-                        DescriptorLanguage.FileType identifiedType = workflow.getFileType();
-                        // TODO: No exceptions are caught here in the event of a failed call
-                        SourceFile sourceFile = getSourceFile(calculatedPath, repositoryId, branchName, identifiedType);
-
-                        // Use default test parameter file if either new version or existing version that hasn't been edited
-                        createTestParameterFiles(workflow, repositoryId, branchName, version, identifiedType);
-                        workflow.addWorkflowVersion(combineVersionAndSourcefile(repositoryId, sourceFile, workflow, identifiedType, version, existingDefaults));
-
-                        version.setCommitID(getCommitID(repositoryId, version));
-
-                        version = versionValidation(version, workflow, calculatedPath);
-                    }
-                });
+                paginatedRefs.getValues().stream()
+                    .filter(ref -> versionName.isEmpty() || Objects.equals(ref.getName(), versionName.get()))
+                    .forEach(refs::add);
 
                 if (paginatedRefs.getNext() != null) {
                     paginatedRefs = getArbitraryURL(paginatedRefs.getNext(), new GenericType<PaginatedRefs>() {
@@ -332,9 +316,34 @@ public class BitBucketSourceCodeRepo extends SourceCodeRepoInterface {
             LOG.error("Could not find Bitbucket repository " + repositoryId + " for user.");
             throw new CustomWebApplicationException("Could not reach Bitbucket", HttpStatus.SC_SERVICE_UNAVAILABLE);
         }
+        // added on this thread and in the order of the references, whichever finished first
+        RefreshExecutor.map(refs, RefreshExecutor.getParallelism(), ref -> getUnchangedVersion(ref.getName(), ref.getTarget().getHash(), existingWorkflow,
+            existingDefaults, versionName).orElseGet(() -> setupWorkflowVersion(repositoryId, ref, workflow, existingWorkflow, existingDefaults)))
+            .forEach(workflow::addWorkflowVersion);
         return workflow;
     }
 
+    private WorkflowVersion setupWorkflowVersion(String repositoryId, Ref ref, Workflow workflow, Optional<Workflow> existingWorkflow,
+        Map<String, WorkflowVersion> existingDefaults) {
+        String branchName = ref.getName();
+        OffsetDateTime date = ref.getTarget().getDate();
+        WorkflowVersion version = initializeWorkflowVersion(branchName, existingWorkflow, existingDefaults);
+        version.setLastModified(Date.from(date.toInstant()));
+        String calculatedPath = version.getWorkflowPath();
+        // Now grab source files
+        DescriptorLanguage.FileType identifiedType = workflow.getFileType();
+        // TODO: No exceptions are caught here in the event of a failed call
+        SourceFile sourceFile = getSourceFile(calculatedPath, repositoryId, branchName, identifiedType);
+
+        // Use default test parameter file if either new version or existing version that hasn't been edited
+        createTestParameterFiles(workflow, repositoryId, branchName, version, identifiedType);
+        version = combineVersionAndSourcefile(repositoryId, sourceFile, workflow, identifiedType, version, existingDefaults);
+
+        version.setCommitID(getCommitID(repositoryId, version));
+
+        return versionValidation(version, workflow, calculatedPath);
+    }
+
     @Override
     public String getRepositoryId(Entry entry) {
         String repositoryId;
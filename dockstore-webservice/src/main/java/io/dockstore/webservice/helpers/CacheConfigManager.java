@@ -10,6 +10,7 @@ import com.google.common.cache.LoadingCache;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import io.dockstore.webservice.DockstoreWebserviceApplication;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -21,6 +22,9 @@ import org.slf4j.LoggerFactory;
 public class CacheConfigManager {
 
     private static final Logger LOG = LoggerFactory.getLogger(CacheConfigManager.class);
+    // the shared client never times out, a stalled token request would hold up every refresh waiting on the cache
+    private static final long TOKEN_CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long TOKEN_READ_TIMEOUT_SECONDS = 30;
 
     private static CacheConfigManager cacheConfigManager = new CacheConfigManager();
 
@@ -54,7 +58,10 @@ public class CacheConfigManager {
      * @return Installation Access Token
      */
     private String getInstallationAccessTokenFromInstallationId(String installationId) throws Exception {
-        OkHttpClient client = new OkHttpClient();
+        OkHttpClient client = DockstoreWebserviceApplication.getOkHttpClient().newBuilder()
+                .connectTimeout(TOKEN_CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(TOKEN_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
 
         Request request = new Request.Builder()
                 .url("https://api.github.com/app/installations/" + installationId + "/access_tokens")
@@ -64,8 +71,7 @@ public class CacheConfigManager {
                 .build();
 
         String errorMsg = "Unable to retrieve installation access token.";
-        try {
-            Response response = client.newCall(request).execute();
+        try (Response response = client.newCall(request).execute()) {
             JsonElement body = new JsonParser().parse(response.body().string());
             if (body.isJsonObject()) {
                 JsonObject responseBody = body.getAsJsonObject();
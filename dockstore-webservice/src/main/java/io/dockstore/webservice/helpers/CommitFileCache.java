@@ -0,0 +1,79 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import io.dockstore.webservice.core.SourceFile;
+
+/**
+ * Files read from git during one refresh, by commit and path.
+ *
+ * Tags that point at the same commit share the files and the resolved imports of the first tag to read them, so
+ * refreshing many tags of an image built from few commits costs about as much as refreshing one tag per commit.
+ * Each caller gets its own copies, since every tag stores its own files.
+ */
+class CommitFileCache {
+    private final Map<String, CompletableFuture<List<SourceFile>>> files = new ConcurrentHashMap<>();
+
+    /**
+     * @param repositoryId repository the files are read from
+     * @param commitID     commit the files are read at, null if unknown in which case nothing is shared
+     * @param path         what is read, e.g. the type and path of a descriptor
+     * @param read         reads the files, at most once per commit and path
+     * @return copies of the files
+     */
+    List<SourceFile> get(String repositoryId, String commitID, String path, Supplier<List<SourceFile>> read) {
+        if (commitID == null) {
+            return read.get();
+        }
+        CompletableFuture<List<SourceFile>> loaded = new CompletableFuture<>();
+        CompletableFuture<List<SourceFile>> existing = files.putIfAbsent(repositoryId + "@" + commitID + ":" + path, loaded);
+        if (existing == null) {
+            try {
+                loaded.complete(read.get());
+            } catch (RuntimeException e) {
+                loaded.completeExceptionally(e);
+                throw e;
+            }
+            existing = loaded;
+        }
+        try {
+            return existing.join().stream().map(CommitFileCache::copy).collect(Collectors.toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static SourceFile copy(SourceFile file) {
+        SourceFile copy = new SourceFile();
+        copy.setType(file.getType());
+        copy.setPath(file.getPath());
+        copy.setAbsolutePath(file.getAbsolutePath());
+        copy.setContent(file.getContent());
+        return copy;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the DAG and tool table JSON of workflow versions in the background.
+ *
+ * A refresh hands over the versions it changed once it commits, so the JSON is usually stored before anyone asks for it.
+ * A request for a version whose JSON is not stored yet waits a while for the computation of that version instead of
+ * starting its own, so concurrent first visitors share one parse, and requests never write. A request that waits too
+ * long, because the pipeline is backed up, computes the JSON itself.
+ */
+public class DAGPipeline implements Managed {
+    private static final Logger LOG = LoggerFactory.getLogger(DAGPipeline.class);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final int threads;
+    private final long waitMillis;
+    private final ConcurrentMap<Long, CompletableFuture<Content>> inFlight = new ConcurrentHashMap<>();
+    private Runner runner;
+    private ExecutorService executor;
+
+    /**
+     * @param threads    how many versions are computed at a time
+     * @param waitMillis how long a request waits for a computation
+     */
+    public DAGPipeline(int threads, long waitMillis) {
+        this.threads = Math.max(1, threads);
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * @param computeRunner computes and stores the JSON, in its own transaction
+     */
+    public void setRunner(Runner computeRunner) {
+        this.runner = computeRunner;
+    }
+
+    /**
+     * @param workflowId        workflow of the version
+     * @param workflowVersionId the version
+     * @return the computation of the version, the one already in flight if there is one
+     */
+    public CompletableFuture<Content> compute(long workflowId, long workflowVersionId) {
+        CompletableFuture<Content> computation = new CompletableFuture<>();
+        CompletableFuture<Content> existing = inFlight.putIfAbsent(workflowVersionId, computation);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                Content content = null;
+                RuntimeException error = null;
+                try {
+                    content = runner.compute(workflowId, workflowVersionId);
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                // removed first, so that whatever runs when it completes can start another computation of the version
+                inFlight.remove(workflowVersionId, computation);
+                if (error == null) {
+                    computation.complete(content);
+                } else {
+                    computation.completeExceptionally(error);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(workflowVersionId, computation);
+            computation.completeExceptionally(new CustomWebApplicationException("The webservice is shutting down, try again later", HttpStatus.SC_SERVICE_UNAVAILABLE));
+        }
+        return computation;
+    }
+
+    /**
+     * Compute versions whose files just changed. A computation already in flight read the files before they changed, so
+     * the version is computed again after it.
+     * @param workflowId         workflow of the versions
+     * @param workflowVersionIds the versions
+     */
+    public void recompute(long workflowId, Collection<Long> workflowVersionIds) {
+        workflowVersionIds.forEach(workflowVersionId -> {
+            CompletableFuture<Content> existing = inFlight.get(workflowVersionId);
+            CompletableFuture<Content> computation = existing == null ? compute(workflowId, workflowVersionId)
+                : existing.handle((content, e) -> null).thenCompose(ignored -> compute(workflowId, workflowVersionId));
+            computation.exceptionally(e -> {
+                LOG.warn("Could not compute the DAG and tool table of workflow version " + workflowVersionId, e);
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Wait a while for the computation of a version. Nothing that holds a database connection should be waiting.
+     * @return the JSON of the version, empty if it was not computed in time
+     */
+    public Optional<Content> await(long workflowId, long workflowVersionId) {
+        try {
+            return Optional.of(compute(workflowId, workflowVersionId).get(waitMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void start() {
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "dag-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            // versions left without JSON are computed when they are next asked for
+            LOG.warn("DAG computations did not finish in time, interrupting them");
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Computes the JSON of a version and stores what is missing
+     */
+    public interface Runner {
+        /**
+         * @param workflowId        workflow of the version
+         * @param workflowVersionId the version
+         * @return the JSON of the version
+         */
+        Content compute(long workflowId, long workflowVersionId);
+    }
+
+    /**
+     * The DAG and tool table JSON of a version, either of which may have failed to compute
+     */
+    public static class Content {
+        private final String dagJson;
+        private final String toolTableJson;
+        private final RuntimeException dagError;
+        private final RuntimeException toolTableError;
+
+        public Content(String dagJson, RuntimeException dagError, String toolTableJson, RuntimeException toolTableError) {
+            this.dagJson = dagJson;
+            this.dagError = dagError;
+            this.toolTableJson = toolTableJson;
+            this.toolTableError = toolTableError;
+        }
+
+        /**
+         * @return the DAG, null if the version has no main descriptor
+         */
+        public String getDagJson() {
+            if (dagError != null) {
+                throw dagError;
+            }
+            return dagJson;
+        }
+
+        /**
+         * @return the tool table, null if the version has no main descriptor
+         */
+        public String getToolTableJson() {
+            if (toolTableError != null) {
+                throw toolTableError;
+            }
+            return toolTableJson;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The one Elasticsearch client of the webservice.
+ * The client keeps a pool of connections open, so it is built once when the application starts and closed when it stops
+ * instead of per request.
+ */
+public class ElasticSearchClient implements Managed {
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticSearchClient.class);
+
+    private final RestClient restClient;
+
+    public ElasticSearchClient(DockstoreWebserviceConfiguration.ElasticSearchConfig config) {
+        if (config.getHostname() == null || config.getHostname().isEmpty()) {
+            restClient = null;
+        } else {
+            final int maxConnections = config.getMaxConnections();
+            restClient = RestClient.builder(new HttpHost(config.getHostname(), config.getPort(), "http"))
+                .setHttpClientConfigCallback(builder -> builder.setMaxConnTotal(maxConnections).setMaxConnPerRoute(maxConnections))
+                .build();
+        }
+    }
+
+    /**
+     * @return whether an Elasticsearch host is configured
+     */
+    public boolean isConfigured() {
+        return restClient != null;
+    }
+
+    /**
+     * @return the shared client, must not be closed by callers
+     */
+    public RestClient getRestClient() {
+        if (restClient == null) {
+            throw new IllegalStateException("No Elasticsearch host is configured");
+        }
+        return restClient;
+    }
+
+    @Override
+    public void start() {
+        // the client is ready once built
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (restClient != null) {
+            LOG.info("Closing Elasticsearch client");
+            restClient.close();
+        }
+    }
+}
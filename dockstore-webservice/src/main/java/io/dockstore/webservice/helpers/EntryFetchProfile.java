@@ -0,0 +1,67 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.Collection;
+
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.Version;
+import org.hibernate.Hibernate;
+
+/**
+ * How much of the lazy parts of an entry's versions an endpoint needs.
+ * Must be applied while the entry is still attached to the session, i.e. before it is evicted or the session is closed.
+ * Anything that is not loaded is serialized as null, so every endpoint that returns versions applies a profile.
+ * The source files of all the versions in the session are loaded in batches (see Version#getSourceFiles), not one query
+ * per version.
+ */
+public enum EntryFetchProfile {
+    /**
+     * Versions without their source files, for listings, which leave the files out: their sourceFiles are serialized as
+     * null and no sourcefile row is read. Listed tools get their descriptor types from ToolDAO#loadDescriptorTypes.
+     */
+    VERSIONS_WITHOUT_CONTENT(false),
+    /**
+     * Versions with their source files
+     */
+    FULL(true);
+
+    private final boolean sourceFiles;
+
+    EntryFetchProfile(boolean sourceFiles) {
+        this.sourceFiles = sourceFiles;
+    }
+
+    public void apply(Entry<?, ?> entry) {
+        if (sourceFiles) {
+            entry.getWorkflowVersions().forEach(version -> Hibernate.initialize(version.getSourceFiles()));
+        }
+    }
+
+    public void apply(Collection<? extends Entry<?, ?>> entries) {
+        entries.forEach(this::apply);
+    }
+
+    /**
+     * For endpoints that return versions without their entry
+     */
+    public void applyToVersions(Collection<? extends Version<?>> versions) {
+        if (sourceFiles) {
+            versions.forEach(version -> Hibernate.initialize(version.getSourceFiles()));
+        }
+    }
+}
@@ -58,6 +58,7 @@ import io.dockstore.webservice.resources.AuthenticatedResourceInterface;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.http.HttpStatus;
+import org.hibernate.Hibernate;
 
 /**
  * This interface contains code for interacting with the files of versions for all types of entries (currently, tools and workflows)
@@ -93,6 +94,7 @@ public interface EntryVersionHelper<T extends Entry<T, U>, U extends Version, W
         checkEntry(result);
         entry.syncMetadataWithDefault();
         PublicStateManager.getInstance().handleIndexUpdate(result, StateManagerMode.UPDATE);
+        EntryFetchProfile.FULL.apply(result);
         return result;
     }
 
@@ -111,6 +113,15 @@ public interface EntryVersionHelper<T extends Entry<T, U>, U extends Version, W
      * @see EntryVersionHelper#filterContainersForHiddenTags(Entry)
      */
     default List<T> filterContainersForHiddenTags(List<T> entries) {
+        return filterContainersForHiddenTags(entries, EntryFetchProfile.FULL);
+    }
+
+    /**
+     * Filters a list of entries, loading only what the fetch profile asks for before they are evicted
+     * @see EntryVersionHelper#filterContainersForHiddenTags(Entry)
+     */
+    default List<T> filterContainersForHiddenTags(List<T> entries, EntryFetchProfile fetchProfile) {
+        fetchProfile.apply(entries);
         for (T entry : entries) {
             getDAO().evict(entry);
             // clear users which are also lazy loaded
@@ -136,7 +147,8 @@ public interface EntryVersionHelper<T extends Entry<T, U>, U extends Version, W
             entry.setUsers(null);
             // need to have this evicted so that hibernate does not actually delete the tags and users
             Set<Version> versions = entry.getWorkflowVersions();
-            versions.forEach(version ->
+            // source files that were never loaded have no content to strip
+            versions.stream().filter(version -> Hibernate.isInitialized(version.getSourceFiles())).forEach(version ->
                 version.getSourceFiles().forEach(sourceFile ->
                         ((SourceFile)sourceFile).setContent(null))
             );
@@ -151,6 +163,7 @@ public interface EntryVersionHelper<T extends Entry<T, U>, U extends Version, W
         EntryLabelHelper<T> labeller = new EntryLabelHelper<>(labelDAO);
         T entry = labeller.updateLabels(c, labelStrings);
         PublicStateManager.getInstance().handleIndexUpdate(entry, StateManagerMode.UPDATE);
+        EntryFetchProfile.FULL.apply(entry);
         return entry;
     }
 
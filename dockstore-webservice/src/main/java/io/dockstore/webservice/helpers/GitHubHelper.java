@@ -110,7 +110,7 @@ public final class GitHubHelper {
      */
     public static String makeGitHubAppRequestAndGetRepositorySelection(Request request) {
         try {
-            Response response = DockstoreWebserviceApplication.okHttpClient.newCall(request).execute();
+            Response response = DockstoreWebserviceApplication.getOkHttpClient().newCall(request).execute();
             JsonElement body = new JsonParser().parse(response.body().string());
             if (body.isJsonObject()) {
                 JsonObject responseBody = body.getAsJsonObject();
@@ -0,0 +1,167 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.github.GHContent;
+import org.kohsuke.github.GHRef;
+import org.kohsuke.github.GHRepository;
+
+/**
+ * Remembers the references of GitHub repositories, the commits they point at, and directory listings at those commits.
+ *
+ * An index lives as long as its GitHubSourceCodeRepo, which is one request, so reading many files in a refresh lists the
+ * references of the repository once. Behind it, a cache shared by every request keeps references and commits for a few
+ * seconds, bursts of requests for the same repository share them while a branch that moved is seen soon after. Listings
+ * are keyed by commit SHA, a commit never changes, so they are kept longer.
+ *
+ * The shared caches are keyed by repository only, callers must have fetched the repository with their own token first.
+ */
+public final class GitHubReferenceIndex {
+
+    private static final long SHARED_REFERENCES_SECONDS = 30;
+    private static final long SHARED_LISTINGS_MINUTES = 10;
+    private static final int MAX_REPOSITORIES = 1000;
+    private static final int MAX_REFERENCES = 10000;
+    private static final int MAX_LISTINGS = 10000;
+
+    private static final Cache<String, List<GHRef>> SHARED_REFS = CacheBuilder.newBuilder()
+        .expireAfterWrite(SHARED_REFERENCES_SECONDS, TimeUnit.SECONDS).maximumSize(MAX_REPOSITORIES).build();
+    // commit SHAs keyed by repository@reference
+    private static final Cache<String, String> SHARED_SHAS = CacheBuilder.newBuilder()
+        .expireAfterWrite(SHARED_REFERENCES_SECONDS, TimeUnit.SECONDS).maximumSize(MAX_REFERENCES).build();
+    // keyed by repository@sha:directory
+    private static final Cache<String, List<DirectoryEntry>> SHARED_LISTINGS = CacheBuilder.newBuilder()
+        .expireAfterAccess(SHARED_LISTINGS_MINUTES, TimeUnit.MINUTES).maximumSize(MAX_LISTINGS).build();
+
+    // only references this request listed itself, those taken from SHARED_REFS may be older than the request
+    private final Map<String, List<GHRef>> refs = new ConcurrentHashMap<>();
+    private final Map<String, String> shas = new ConcurrentHashMap<>();
+
+    /**
+     * @param repository GitHub repository object
+     * @param latest     only take references listed in this request or listed now, e.g. when a refresh has to see every branch as it is
+     * @return the branches and tags of the repository
+     * @throws IOException if GitHub could not list them, including a GHFileNotFoundException when there are none
+     */
+    public List<GHRef> getRefs(GHRepository repository, boolean latest) throws IOException {
+        String repositoryId = repository.getFullName();
+        List<GHRef> known = refs.get(repositoryId);
+        if (known == null && !latest) {
+            known = SHARED_REFS.getIfPresent(repositoryId);
+        }
+        if (known == null) {
+            known = Arrays.asList(repository.getRefs());
+            SHARED_REFS.put(repositoryId, known);
+            refs.put(repositoryId, known);
+        }
+        return known;
+    }
+
+    /**
+     * @param repository GitHub repository object
+     * @param reference  branch or tag name
+     * @return the matching reference, if the repository has it
+     */
+    public Optional<GHRef> findRef(GHRepository repository, String reference) throws IOException {
+        return getRefs(repository, false).stream().filter(ref -> getName(ref).equals(reference)).findFirst();
+    }
+
+    /**
+     * @return the reference without its refs/heads/ or refs/tags/ prefix
+     */
+    public static String getName(GHRef ref) {
+        return StringUtils.removePattern(ref.getRef(), "refs/.+?/");
+    }
+
+    /**
+     * @return the commit a reference was resolved to, or null if it was not resolved recently
+     */
+    public String getSha(String repositoryId, String reference) {
+        String key = repositoryId + "@" + reference;
+        String sha = shas.get(key);
+        if (sha == null) {
+            sha = SHARED_SHAS.getIfPresent(key);
+            if (sha != null) {
+                shas.put(key, sha);
+            }
+        }
+        return sha;
+    }
+
+    public void putSha(String repositoryId, String reference, String sha) {
+        shas.put(repositoryId + "@" + reference, sha);
+        SHARED_SHAS.put(repositoryId + "@" + reference, sha);
+    }
+
+    /**
+     * @param repository GitHub repository object
+     * @param sha        full commit SHA, a branch or tag name would go stale
+     * @param directory  path of the directory
+     * @return what is in the directory at that commit
+     */
+    public List<DirectoryEntry> getDirectory(GHRepository repository, String sha, String directory) throws IOException {
+        try {
+            return SHARED_LISTINGS.get(repository.getFullName() + "@" + sha + ":" + directory, () -> repository.getDirectoryContent(directory, sha)
+                .stream().map(DirectoryEntry::new).collect(Collectors.toList()));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * What a directory listing holds about a file, without ties to the request that listed it
+     */
+    public static final class DirectoryEntry {
+        private final String name;
+        private final String path;
+        private final boolean directory;
+
+        DirectoryEntry(GHContent content) {
+            this.name = content.getName();
+            this.path = content.getPath();
+            this.directory = content.isDirectory();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+    }
+}
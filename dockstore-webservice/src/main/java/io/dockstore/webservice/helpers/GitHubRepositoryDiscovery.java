@@ -0,0 +1,175 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Lists the repositories a GitHub user can see through the GraphQL API, 100 repositories per request.
+ *
+ * The REST API needs one request per 30 repositories, and more per repository to learn its default branch and where its
+ * branches and tags point. Here one page brings the name, SSH URL, default branch, and the commits of the first 100
+ * branches and tags of each repository.
+ */
+public final class GitHubRepositoryDiscovery {
+
+    public static final String GITHUB_GRAPHQL_URL = "https://api.github.com/graphql";
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    // annotated tags point at a tag object, which points at the commit
+    private static final String QUERY = "query($cursor: String) { viewer { repositories(first: 100, after: $cursor,"
+        + " affiliations: [OWNER, COLLABORATOR, ORGANIZATION_MEMBER], ownerAffiliations: [OWNER, COLLABORATOR, ORGANIZATION_MEMBER]) {"
+        + " pageInfo { hasNextPage endCursor }"
+        + " nodes { nameWithOwner sshUrl defaultBranchRef { name }"
+        + " branches: refs(refPrefix: \"refs/heads/\", first: 100) { nodes { name target { oid } } }"
+        + " tags: refs(refPrefix: \"refs/tags/\", first: 100) { nodes { name target { oid ... on Tag { target { oid } } } } } } } } }";
+
+    private final OkHttpClient client;
+    private final String graphqlUrl;
+    private final String token;
+
+    /**
+     * @param client     client to send the queries with
+     * @param graphqlUrl GitHub GraphQL endpoint
+     * @param token      GitHub token of the user
+     */
+    public GitHubRepositoryDiscovery(OkHttpClient client, String graphqlUrl, String token) {
+        this.client = client;
+        this.graphqlUrl = graphqlUrl;
+        this.token = token;
+    }
+
+    /**
+     * @return every repository the user owns, collaborates on, or can see as a member of an organization
+     * @throws IOException if GitHub could not be reached or answered with errors
+     */
+    public List<DiscoveredRepository> discover() throws IOException {
+        List<DiscoveredRepository> repositories = new ArrayList<>();
+        String cursor = null;
+        boolean hasNextPage = true;
+        while (hasNextPage) {
+            JsonObject page = query(cursor).getAsJsonObject("viewer").getAsJsonObject("repositories");
+            for (JsonElement node : page.getAsJsonArray("nodes")) {
+                repositories.add(toRepository(node.getAsJsonObject()));
+            }
+            JsonObject pageInfo = page.getAsJsonObject("pageInfo");
+            hasNextPage = pageInfo.get("hasNextPage").getAsBoolean();
+            cursor = hasNextPage ? pageInfo.get("endCursor").getAsString() : null;
+        }
+        return repositories;
+    }
+
+    private JsonObject query(String cursor) throws IOException {
+        JsonObject variables = new JsonObject();
+        // null starts at the first page
+        variables.addProperty("cursor", cursor);
+        JsonObject body = new JsonObject();
+        body.addProperty("query", QUERY);
+        body.add("variables", variables);
+        Request request = new Request.Builder().url(graphqlUrl)
+            .header("Authorization", "bearer " + token)
+            .post(RequestBody.create(JSON, body.toString()))
+            .build();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody responseBody = response.body();
+            if (!response.isSuccessful() || responseBody == null) {
+                throw new IOException("GitHub GraphQL returned " + response.code());
+            }
+            JsonObject result = new JsonParser().parse(responseBody.string()).getAsJsonObject();
+            if (result.has("errors") || !result.has("data") || result.get("data").isJsonNull()) {
+                throw new IOException("GitHub GraphQL returned errors " + result.get("errors"));
+            }
+            return result.getAsJsonObject("data");
+        }
+    }
+
+    private static DiscoveredRepository toRepository(JsonObject node) {
+        JsonElement defaultBranchRef = node.get("defaultBranchRef");
+        String defaultBranch = defaultBranchRef == null || defaultBranchRef.isJsonNull() ? null
+            : defaultBranchRef.getAsJsonObject().get("name").getAsString();
+        Map<String, String> headShas = new HashMap<>();
+        for (String refs : new String[] {"branches", "tags"}) {
+            JsonElement connection = node.get(refs);
+            if (connection == null || connection.isJsonNull()) {
+                continue;
+            }
+            for (JsonElement ref : connection.getAsJsonObject().getAsJsonArray("nodes")) {
+                JsonObject target = ref.getAsJsonObject().getAsJsonObject("target");
+                if (target.has("target")) {
+                    target = target.getAsJsonObject("target");
+                }
+                headShas.put(ref.getAsJsonObject().get("name").getAsString(), target.get("oid").getAsString());
+            }
+        }
+        return new DiscoveredRepository(node.get("nameWithOwner").getAsString(), node.get("sshUrl").getAsString(), defaultBranch, headShas);
+    }
+
+    /**
+     * A repository as discovered, with the commits its branches and tags point at
+     */
+    public static final class DiscoveredRepository {
+        private final String repositoryId;
+        private final String sshUrl;
+        private final String defaultBranch;
+        private final Map<String, String> headShas;
+
+        DiscoveredRepository(String repositoryId, String sshUrl, String defaultBranch, Map<String, String> headShas) {
+            this.repositoryId = repositoryId;
+            this.sshUrl = sshUrl;
+            this.defaultBranch = defaultBranch;
+            this.headShas = headShas;
+        }
+
+        /**
+         * @return Organization and repository (ex. dockstore/dockstore-ui2)
+         */
+        public String getRepositoryId() {
+            return repositoryId;
+        }
+
+        public String getSshUrl() {
+            return sshUrl;
+        }
+
+        /**
+         * @return the default branch, or null for an empty repository
+         */
+        public String getDefaultBranch() {
+            return defaultBranch;
+        }
+
+        /**
+         * @return commit SHAs keyed by branch or tag name
+         */
+        public Map<String, String> getHeadShas() {
+            return headShas;
+        }
+    }
+}
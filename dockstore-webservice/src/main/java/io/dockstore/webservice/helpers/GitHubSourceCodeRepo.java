@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -57,7 +58,6 @@ import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowMode;
 import io.dockstore.webservice.core.WorkflowVersion;
-import okhttp3.OkHttpClient;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -91,12 +91,19 @@ import static io.dockstore.webservice.Constants.LAMBDA_FAILURE;
 public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
 
     private static final Logger LOG = LoggerFactory.getLogger(GitHubSourceCodeRepo.class);
+    private static final Pattern COMMIT_SHA = Pattern.compile("[0-9a-f]{40}");
+    // rough cost of a version through the contents API, a snapshot costs less
+    private static final int ESTIMATED_REQUESTS_PER_VERSION = 20;
     private final GitHub github;
+    private final String githubTokenContent;
+    private final GitHubReferenceIndex referenceIndex = new GitHubReferenceIndex();
+    // default branches of the repositories discovered in this request, keyed by repository
+    private final Map<String, String> defaultBranches = new ConcurrentHashMap<>();
 
     GitHubSourceCodeRepo(String gitUsername, String githubTokenContent) {
         this.gitUsername = gitUsername;
-        ObsoleteUrlFactory obsoleteUrlFactory = new ObsoleteUrlFactory(
-            new OkHttpClient.Builder().cache(DockstoreWebserviceApplication.getCache()).build());
+        this.githubTokenContent = githubTokenContent;
+        ObsoleteUrlFactory obsoleteUrlFactory = new ObsoleteUrlFactory(DockstoreWebserviceApplication.getOkHttpClient());
         HttpConnector okHttp3Connector =  new ImpatientHttpConnector(obsoleteUrlFactory::open);
         try {
             this.github = new GitHubBuilder().withOAuthToken(githubTokenContent, gitUsername).withRateLimitHandler(RateLimitHandler.WAIT).withAbuseLimitHandler(AbuseLimitHandler.WAIT).withConnector(okHttp3Connector).build();
@@ -129,8 +136,11 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         GHRepository repo;
         try {
             repo = github.getRepository(repositoryId);
-            List<GHContent> directoryContent = repo.getDirectoryContent(pathToDirectory, reference);
-            return directoryContent.stream().map(GHContent::getName).collect(Collectors.toList());
+            Optional<SourceSnapshotStore.Snapshot> snapshot = getSnapshot(reference, repo);
+            if (snapshot.isPresent()) {
+                return snapshot.get().listFiles(pathToDirectory);
+            }
+            return getDirectoryContent(pathToDirectory, reference, repo).stream().map(GitHubReferenceIndex.DirectoryEntry::getName).collect(Collectors.toList());
         } catch (IOException e) {
             LOG.error(gitUsername + ": IOException on listFiles in " + pathToDirectory + " for repository " + repositoryId +  ":" + reference + ", " + e.getMessage());
             return null;
@@ -138,6 +148,10 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
     }
 
     private String readFileFromRepo(String fileName, String reference, GHRepository repo) {
+        Optional<SourceSnapshotStore.Snapshot> snapshot = getSnapshot(reference, repo);
+        if (snapshot.isPresent()) {
+            return snapshot.get().readFile(fileName);
+        }
         GHRateLimit startRateLimit = null;
         try {
             startRateLimit = getGhRateLimitQuietly();
@@ -188,6 +202,56 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         }
     }
 
+    /**
+     * Get the files of a repository at a reference from the snapshot store, if it is turned on
+     * @param reference branch, tag, or commit SHA
+     * @param repo GitHub repository object
+     * @return the snapshot, or empty if files need to be read through the contents API
+     */
+    private Optional<SourceSnapshotStore.Snapshot> getSnapshot(String reference, GHRepository repo) {
+        SourceSnapshotStore store = SourceSnapshotStore.getInstance();
+        if (store == null || reference == null) {
+            return Optional.empty();
+        }
+        String sha = resolveSha(reference, repo);
+        return sha == null ? Optional.empty() : store.getSnapshot(repo.getFullName(), sha, githubTokenContent);
+    }
+
+    /**
+     * Find the commit a reference points at, references refreshed in setupWorkflowVersions are already known
+     * @param reference branch, tag, or commit SHA
+     * @param repo GitHub repository object
+     * @return the commit SHA, or null if the repository has no such reference
+     */
+    private String resolveSha(String reference, GHRepository repo) {
+        if (COMMIT_SHA.matcher(reference).matches()) {
+            return reference;
+        }
+        String sha = referenceIndex.getSha(repo.getFullName(), reference);
+        if (sha == null) {
+            try {
+                Optional<GHRef> ref = referenceIndex.findRef(repo, reference);
+                if (ref.isPresent()) {
+                    sha = resolveCommit(ref.get(), GitHubReferenceIndex.getName(ref.get()), repo);
+                }
+            } catch (IOException e) {
+                LOG.debug("could not find the commit of " + reference + " in " + repo.getFullName());
+            }
+        }
+        return sha;
+    }
+
+    /**
+     * List a directory, by the commit the reference points at so that the listing can be shared
+     */
+    private List<GitHubReferenceIndex.DirectoryEntry> getDirectoryContent(String pathToDirectory, String reference, GHRepository repo) throws IOException {
+        String sha = resolveSha(reference, repo);
+        if (sha != null) {
+            return referenceIndex.getDirectory(repo, sha, pathToDirectory);
+        }
+        return repo.getDirectoryContent(pathToDirectory, reference).stream().map(GitHubReferenceIndex.DirectoryEntry::new).collect(Collectors.toList());
+    }
+
     /**
      * For a given file, in a github repo, with a particular cleaned reference name.
      * @param fileName
@@ -201,17 +265,17 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         // retrieval of directory content is cached as opposed to retrieving individual files
         String fullPathNoEndSeparator = FilenameUtils.getFullPathNoEndSeparator(fileName);
         // but tags on quay.io that do not match github are costly, avoid by checking cached references
-        GHRef[] refs = repo.getRefs();
-        if (Lists.newArrayList(refs).stream().noneMatch(ref -> ref.getRef().contains(reference))) {
+        List<GHRef> refs = referenceIndex.getRefs(repo, false);
+        if (refs.stream().noneMatch(ref -> ref.getRef().contains(reference))) {
             return null;
         }
         // only look at github if the reference exists
-        List<GHContent> directoryContent = repo.getDirectoryContent(fullPathNoEndSeparator, reference);
+        List<GitHubReferenceIndex.DirectoryEntry> directoryContent = getDirectoryContent(fullPathNoEndSeparator, reference, repo);
 
         String stripStart = StringUtils.stripStart(fileName, "/");
-        Optional<GHContent> firstMatch = directoryContent.stream().filter(content -> stripStart.equals(content.getPath())).findFirst();
+        Optional<GitHubReferenceIndex.DirectoryEntry> firstMatch = directoryContent.stream().filter(content -> stripStart.equals(content.getPath())).findFirst();
         if (firstMatch.isPresent()) {
-            GHContent content = firstMatch.get();
+            GitHubReferenceIndex.DirectoryEntry content = firstMatch.get();
             if (content.isDirectory()) {
                 // directories do not have content directly
                 return null;
@@ -234,6 +298,24 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
     @Override
     public Map<String, String> getWorkflowGitUrl2RepositoryId() {
         Map<String, String> reposByGitURl = new HashMap<>();
+        if (githubTokenContent != null) {
+            try {
+                GitHubRepositoryDiscovery discovery = new GitHubRepositoryDiscovery(DockstoreWebserviceApplication.getOkHttpClient(),
+                    GitHubRepositoryDiscovery.GITHUB_GRAPHQL_URL, githubTokenContent);
+                for (GitHubRepositoryDiscovery.DiscoveredRepository repository : discovery.discover()) {
+                    reposByGitURl.put(repository.getSshUrl(), repository.getRepositoryId());
+                    if (repository.getDefaultBranch() != null) {
+                        defaultBranches.put(repository.getRepositoryId(), repository.getDefaultBranch());
+                    }
+                    // a refresh of these repositories right after knows where their references point
+                    repository.getHeadShas().forEach((reference, sha) -> referenceIndex.putSha(repository.getRepositoryId(), reference, sha));
+                }
+                return reposByGitURl;
+            } catch (IOException | RuntimeException e) {
+                LOG.warn(gitUsername + ": could not list repositories through GraphQL, listing them through REST, " + e.getMessage());
+                reposByGitURl.clear();
+            }
+        }
         try {
             // TODO: This code should be optimized. Ex. Only grab repositories from a specific org if refreshing by org.
             // The filter all includes:
@@ -376,15 +458,11 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         GHRepository repository = getRepository(repositoryId);
 
         // when getting a full workflow, look for versions and check each version for valid workflows
-        List<Triple<String, Date, String>> references = new ArrayList<>();
+        List<GHRef> refs = new ArrayList<>();
         try {
-            GHRef[] refs = repository.getRefs();
-            for (GHRef ref : refs) {
-                Triple<String, Date, String> referenceTriple = getRef(ref, repository);
-                if (referenceTriple != null) {
-                    if (versionName.isEmpty() || Objects.equals(versionName.get(), referenceTriple.getLeft())) {
-                        references.add(referenceTriple);
-                    }
+            for (GHRef ref : referenceIndex.getRefs(repository, true)) {
+                if (versionName.isEmpty() || Objects.equals(versionName.get(), GitHubReferenceIndex.getName(ref))) {
+                    refs.add(ref);
                 }
             }
         } catch (GHFileNotFoundException e) {
@@ -396,15 +474,19 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         }
 
         // For each branch (reference) found, create a workflow version and find the associated descriptor files
-        for (Triple<String, Date, String> ref : references) {
-            if (ref != null) {
-                WorkflowVersion version = setupWorkflowVersionsHelper(workflow, ref, existingWorkflow, existingDefaults,
-                    repository, null, versionName);
-                if (version != null) {
-                    workflow.addWorkflowVersion(version);
-                }
+        List<WorkflowVersion> versions = RefreshExecutor.map(refs, getRefreshParallelism(startRateLimit, refs.size()), ref -> {
+            Triple<String, Date, String> referenceTriple = getRef(ref, repository);
+            if (referenceTriple == null) {
+                return null;
             }
-        }
+            Optional<WorkflowVersion> unchanged = getUnchangedVersion(referenceTriple.getLeft(), referenceTriple.getRight(), existingWorkflow, existingDefaults, versionName);
+            if (unchanged.isPresent()) {
+                return unchanged.get();
+            }
+            return setupWorkflowVersionsHelper(workflow, referenceTriple, existingWorkflow, existingDefaults, repository, null, versionName);
+        });
+        // added on this thread and in the order of the references, whichever finished first
+        versions.forEach(workflow::addWorkflowVersion);
 
         GHRateLimit endRateLimit = getGhRateLimitQuietly();
         reportOnRateLimit("setupWorkflowVersions", startRateLimit, endRateLimit);
@@ -412,6 +494,20 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         return workflow;
     }
 
+    /**
+     * Concurrent versions would only wait on the rate limit together, refresh them one at a time when it is running out
+     * @param rateLimit rate limit before the refresh
+     * @param references how many references will be refreshed
+     * @return how many references may be refreshed at a time
+     */
+    private int getRefreshParallelism(GHRateLimit rateLimit, int references) {
+        if (rateLimit != null && rateLimit.remaining < references * ESTIMATED_REQUESTS_PER_VERSION) {
+            LOG.info(gitUsername + ": " + rateLimit.remaining + " GitHub requests left, refreshing " + references + " versions one at a time");
+            return 1;
+        }
+        return RefreshExecutor.getParallelism();
+    }
+
     /**
      * Retrieves a repository from github
      * @param repositoryId of the form organization/repository (Ex. dockstore/dockstore-ui2)
@@ -452,15 +548,7 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
 
         if (!toIgnore) {
             try {
-                sha = ref.getObject().getSha();
-                if (ref.getObject().getType().equals("tag")) {
-                    GHTagObject tagObject = repository.getTagObject(sha);
-                    sha = tagObject.getObject().getSha();
-                } else if (ref.getObject().getType().equals("branch")) {
-                    GHBranch branch = repository.getBranch(refName);
-                    sha = branch.getSHA1();
-                }
-
+                sha = resolveCommit(ref, refName, repository);
                 GHCommit commit = repository.getCommit(sha);
                 branchDate = commit.getCommitDate();
                 if (branchDate.before(epochStart)) {
@@ -475,6 +563,26 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         }
     }
 
+    /**
+     * Find the commit a reference points at, following annotated tags, and remember it
+     * @param ref GitHub reference object
+     * @param refName reference without its refs/heads/ or refs/tags/ prefix
+     * @param repository GitHub repository object
+     * @return the commit SHA
+     */
+    private String resolveCommit(GHRef ref, String refName, GHRepository repository) throws IOException {
+        String sha = ref.getObject().getSha();
+        if (ref.getObject().getType().equals("tag")) {
+            GHTagObject tagObject = repository.getTagObject(sha);
+            sha = tagObject.getObject().getSha();
+        } else if (ref.getObject().getType().equals("branch")) {
+            GHBranch branch = repository.getBranch(refName);
+            sha = branch.getSHA1();
+        }
+        referenceIndex.putSha(repository.getFullName(), refName, sha);
+        return sha;
+    }
+
     /**
      * Creates a workflow version for a specific branch/tag on GitHub
      * @param workflow Workflow object
@@ -815,9 +923,12 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         // Get repository based on username and repo id
         if (repositoryId != null) {
             try {
-                GHRepository repository = github.getRepository(repositoryId);
-                // Determine the default branch on Github
-                mainBranch = repository.getDefaultBranch();
+                mainBranch = defaultBranches.get(repositoryId);
+                if (mainBranch == null) {
+                    GHRepository repository = github.getRepository(repositoryId);
+                    // Determine the default branch on Github
+                    mainBranch = repository.getDefaultBranch();
+                }
             } catch (IOException e) {
                 LOG.error("Unable to retrieve default branch for repository " + repositoryId);
                 return null;
@@ -844,10 +955,10 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         GHRepository repo;
         try {
             repo = github.getRepository(repositoryId);
-            GHRef[] refs = repo.getRefs();
+            List<GHRef> refs = referenceIndex.getRefs(repo, false);
 
             for (GHRef ref : refs) {
-                String reference = StringUtils.removePattern(ref.getRef(), "refs/.+?/");
+                String reference = GitHubReferenceIndex.getName(ref);
                 if (reference.equals(version.getReference())) {
                     if (ref.getRef().startsWith("refs/heads/")) {
                         version.setReferenceType(Version.ReferenceType.BRANCH);
@@ -870,10 +981,11 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         GHRepository repo;
         try {
             repo = github.getRepository(repositoryId);
-            GHRef[] refs = repo.getRefs();
+            // the commit decides whether a tag is fetched again, so it has to be current
+            List<GHRef> refs = referenceIndex.getRefs(repo, true);
 
             for (GHRef ref : refs) {
-                String reference = StringUtils.removePattern(ref.getRef(), "refs/.+?/");
+                String reference = GitHubReferenceIndex.getName(ref);
                 if (reference.equals(version.getReference())) {
                     return ref.getObject().getSha();
                 }
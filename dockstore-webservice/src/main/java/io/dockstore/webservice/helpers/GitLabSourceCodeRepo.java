@@ -18,6 +18,7 @@ package io.dockstore.webservice.helpers;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
@@ -25,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -136,21 +138,27 @@ public class GitLabSourceCodeRepo extends SourceCodeRepoInterface {
             GitlabProject project = gitlabAPI.getProject(repositoryId.split("/")[0], repositoryId.split("/")[1]);
             List<GitlabTag> tagList = gitlabAPI.getTags(repositoryId);
             List<GitlabBranch> branches = gitlabAPI.getBranches(project);
+            List<Supplier<WorkflowVersion>> refreshes = new ArrayList<>();
             tagList.forEach(tag -> {
                 if (versionName.isEmpty() || Objects.equals(versionName.get(), tag.getName())) {
                     Date committedDate = tag.getCommit().getCommittedDate();
                     String commitId = tag.getCommit().getId();
-                    handleVersionOfWorkflow(repositoryId, workflow, existingWorkflow, existingDefaults, repositoryId, tag.getName(), Version.ReferenceType.TAG, committedDate, commitId);
+                    refreshes.add(() -> getUnchangedVersion(tag.getName(), commitId, existingWorkflow, existingDefaults, versionName)
+                            .orElseGet(() -> handleVersionOfWorkflow(repositoryId, workflow, existingWorkflow, existingDefaults, repositoryId, tag.getName(),
+                                    Version.ReferenceType.TAG, committedDate, commitId)));
                 }
             });
             branches.forEach(branch -> {
                 if (versionName.isEmpty() || Objects.equals(versionName.get(), branch.getName())) {
                     Date committedDate = branch.getCommit().getCommittedDate();
                     String commitId = branch.getCommit().getId();
-                    handleVersionOfWorkflow(repositoryId, workflow, existingWorkflow, existingDefaults, repositoryId, branch.getName(),
-                            Version.ReferenceType.BRANCH, committedDate, commitId);
+                    refreshes.add(() -> getUnchangedVersion(branch.getName(), commitId, existingWorkflow, existingDefaults, versionName)
+                            .orElseGet(() -> handleVersionOfWorkflow(repositoryId, workflow, existingWorkflow, existingDefaults, repositoryId, branch.getName(),
+                                    Version.ReferenceType.BRANCH, committedDate, commitId)));
                 }
             });
+            // added on this thread and in the order of the references, whichever finished first
+            RefreshExecutor.map(refreshes, RefreshExecutor.getParallelism(), Supplier::get).forEach(workflow::addWorkflowVersion);
         } catch (IOException e) {
             LOG.info("could not find " + repositoryId + " due to " + e.getMessage());
         }
@@ -158,7 +166,7 @@ public class GitLabSourceCodeRepo extends SourceCodeRepoInterface {
     }
 
     @SuppressWarnings("checkstyle:parameternumber")
-    private void handleVersionOfWorkflow(String repositoryId, Workflow workflow, Optional<Workflow> existingWorkflow,
+    private WorkflowVersion handleVersionOfWorkflow(String repositoryId, Workflow workflow, Optional<Workflow> existingWorkflow,
         Map<String, WorkflowVersion> existingDefaults, String id, String branchName, Version.ReferenceType type, Date committedDate, String commitId) {
         // Initialize workflow version
         WorkflowVersion version = initializeWorkflowVersion(branchName, existingWorkflow, existingDefaults);
@@ -176,9 +184,7 @@ public class GitLabSourceCodeRepo extends SourceCodeRepoInterface {
         createTestParameterFiles(workflow, id, branchName, version, identifiedType);
         version = combineVersionAndSourcefile(repositoryId, sourceFile, workflow, identifiedType, version, existingDefaults);
 
-        version = versionValidation(version, workflow, calculatedPath);
-
-        workflow.addWorkflowVersion(version);
+        return versionValidation(version, workflow, calculatedPath);
     }
 
     @Override
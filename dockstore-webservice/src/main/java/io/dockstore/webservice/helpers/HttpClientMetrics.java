@@ -0,0 +1,109 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Counts, per host, how the requests of the shared OkHttp client were answered and how its pooled connections were used.
+ *
+ * A request is a hit when the cache answered it alone, a conditional hit when the server answered 304 Not Modified to
+ * the ETag of the cached response, which GitHub does not count against the rate limit, and a network request otherwise.
+ * Add it to the client both as an interceptor and as its event listener.
+ */
+public class HttpClientMetrics extends EventListener implements Interceptor {
+
+    private static final String[] COUNTS = {"requestCount", "hitCount", "conditionalHitCount", "networkCount", "connectionsOpened",
+        "connectionsAcquired", "connectionsInUse"};
+    private static final int REQUESTS = 0;
+    private static final int HITS = 1;
+    private static final int CONDITIONAL_HITS = 2;
+    private static final int NETWORK = 3;
+    private static final int OPENED = 4;
+    private static final int ACQUIRED = 5;
+    private static final int IN_USE = 6;
+
+    private final Map<String, AtomicLong[]> hosts = new ConcurrentHashMap<>();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        AtomicLong[] counts = getCounts(chain.request().url().host());
+        counts[REQUESTS].incrementAndGet();
+        if (response.networkResponse() == null) {
+            counts[response.cacheResponse() == null ? NETWORK : HITS].incrementAndGet();
+        } else if (response.cacheResponse() != null) {
+            counts[CONDITIONAL_HITS].incrementAndGet();
+        } else {
+            counts[NETWORK].incrementAndGet();
+        }
+        return response;
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        getCounts(call.request().url().host())[OPENED].incrementAndGet();
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        AtomicLong[] counts = getCounts(call.request().url().host());
+        counts[ACQUIRED].incrementAndGet();
+        counts[IN_USE].incrementAndGet();
+    }
+
+    @Override
+    public void connectionReleased(Call call, Connection connection) {
+        getCounts(call.request().url().host())[IN_USE].decrementAndGet();
+    }
+
+    private AtomicLong[] getCounts(String host) {
+        return hosts.computeIfAbsent(host, key -> {
+            AtomicLong[] counts = new AtomicLong[COUNTS.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new AtomicLong();
+            }
+            return counts;
+        });
+    }
+
+    /**
+     * @return the counts keyed by host and name, e.g. api.github.com.conditionalHitCount
+     */
+    public SortedMap<String, Long> getCounts() {
+        SortedMap<String, Long> results = new TreeMap<>();
+        hosts.forEach((host, counts) -> {
+            for (int i = 0; i < counts.length; i++) {
+                results.put(host + "." + COUNTS[i], counts[i].get());
+            }
+        });
+        return results;
+    }
+}
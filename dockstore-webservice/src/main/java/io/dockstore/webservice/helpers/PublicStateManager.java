@@ -25,6 +25,7 @@ import io.dockstore.webservice.helpers.statelisteners.ElasticListener;
 import io.dockstore.webservice.helpers.statelisteners.RSSListener;
 import io.dockstore.webservice.helpers.statelisteners.SitemapListener;
 import io.dockstore.webservice.helpers.statelisteners.StateListenerInterface;
+import org.hibernate.SessionFactory;
 
 /**
  * @author dyuen
@@ -51,6 +52,19 @@ public final class PublicStateManager {
         return rssListener;
     }
 
+    public ElasticListener getElasticListener() {
+        return elasticListener;
+    }
+
+    /**
+     * @param sessionFactory the session factory of the requests that update entries, the sitemap and the RSS feed apply
+     *                       their updates once the transaction commits
+     */
+    public void setSessionFactory(SessionFactory sessionFactory) {
+        sitemapListener.setSessionFactory(sessionFactory);
+        rssListener.setSessionFactory(sessionFactory);
+    }
+
     public static PublicStateManager getInstance() {
         return SINGLETON;
     }
@@ -66,6 +80,15 @@ public final class PublicStateManager {
         }
     }
 
+    public void handleIndexUpdate(List<? extends Entry> entries, StateManagerMode command) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        for (StateListenerInterface listener : getListeners()) {
+            listener.handleIndexUpdate(entries, command);
+        }
+    }
+
     public void bulkUpsert(List<Entry> entries) {
         for (StateListenerInterface listenerInterface : getListeners()) {
             listenerInterface.bulkUpsert(entries);
@@ -0,0 +1,170 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.dockstore.webservice.CustomWebApplicationException;
+import org.apache.http.HttpStatus;
+
+/**
+ * Refreshes the versions of an entry concurrently.
+ *
+ * Every refresh shares one bounded pool, and each refresh may only have a limited number of its versions in flight, so
+ * one repository with hundreds of tags neither takes minutes nor starves the other refreshes. Until a pool is
+ * configured, versions are refreshed one at a time on the calling thread.
+ *
+ * The versions must not touch the database while they are refreshed, anything lazy must be loaded beforehand.
+ *
+ * Requests to one host, such as a registry or a git host, may also be limited across every refresh so that each host's
+ * rate limit is respected on its own.
+ */
+public final class RefreshExecutor {
+
+    private static volatile ExecutorService executor;
+    private static volatile int parallelism = 1;
+    private static volatile int hostParallelism = Integer.MAX_VALUE;
+    private static final Map<String, Semaphore> HOST_PERMITS = new ConcurrentHashMap<>();
+    private static final Timer REFRESH_TIMER = new Timer();
+
+    private RefreshExecutor() {
+        // hide the constructor for utility classes
+    }
+
+    /**
+     * @param executorService pool shared by every refresh
+     * @param threads         how many versions a single refresh may have in flight
+     */
+    public static void configure(ExecutorService executorService, int threads) {
+        executor = executorService;
+        parallelism = Math.max(1, threads);
+    }
+
+    /**
+     * @param threads how many requests to one host may be in flight across every refresh
+     */
+    public static void configureHostParallelism(int threads) {
+        hostParallelism = Math.max(1, threads);
+        HOST_PERMITS.clear();
+    }
+
+    public static void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(RefreshExecutor.class, "refresh"), REFRESH_TIMER);
+    }
+
+    /**
+     * @return times the refresh of all versions of an entry
+     */
+    public static Timer.Context time() {
+        return REFRESH_TIMER.time();
+    }
+
+    /**
+     * @return how many versions a single refresh may have in flight
+     */
+    public static int getParallelism() {
+        return executor == null ? 1 : parallelism;
+    }
+
+    /**
+     * Refresh each reference, at most limit at a time
+     * @param references what to refresh, e.g. the branches and tags of a repository
+     * @param limit      at most this many at a time, lowered to the configured parallelism
+     * @param refresh    refreshes one reference, may return null to leave it out
+     * @return the results in the order of the references, without nulls
+     */
+    public static <T, R> List<R> map(List<T> references, int limit, Function<T, R> refresh) {
+        return mapInFlight(references, limit, refresh);
+    }
+
+    /**
+     * Refresh each reference while holding a permit for its host, so that no host has more than the configured number of
+     * requests in flight no matter how many refreshes are running
+     * @param references what to refresh, e.g. the tools of an organization
+     * @param host       the host a reference is refreshed from, e.g. quay.io or github.com
+     * @param refresh    refreshes one reference, may return null to leave it out
+     * @return the results in the order of the references, without nulls
+     */
+    public static <T, R> List<R> mapPerHost(List<T> references, Function<T, String> host, Function<T, R> refresh) {
+        return mapInFlight(references, getParallelism(), reference -> {
+            Semaphore permits = HOST_PERMITS.computeIfAbsent(String.valueOf(host.apply(reference)), key -> new Semaphore(hostParallelism));
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CustomWebApplicationException("Refresh was interrupted", HttpStatus.SC_SERVICE_UNAVAILABLE);
+            }
+            try {
+                return refresh.apply(reference);
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    private static <T, R> List<R> mapInFlight(List<T> references, int limit, Function<T, R> refresh) {
+        ExecutorService current = executor;
+        int permits = Math.min(limit, getParallelism());
+        if (current == null || permits <= 1 || references.size() <= 1) {
+            return references.stream().map(refresh).filter(Objects::nonNull).collect(Collectors.toList());
+        }
+        Semaphore inFlight = new Semaphore(permits);
+        List<Future<R>> futures = new ArrayList<>(references.size());
+        try {
+            for (T reference : references) {
+                inFlight.acquire();
+                futures.add(current.submit(() -> {
+                    try {
+                        return refresh.apply(reference);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+            List<R> results = new ArrayList<>(references.size());
+            for (Future<R> future : futures) {
+                R result = future.get();
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomWebApplicationException("Refresh was interrupted", HttpStatus.SC_SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.core.RefreshJob;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs refresh jobs in the background on a bounded number of threads.
+ *
+ * Jobs are taken round-robin across the users who submitted them, and for each user round-robin across organizations,
+ * so one user refreshing hundreds of tools does not hold up everyone else. Two jobs that refresh the same entry never
+ * run at the same time.
+ *
+ * The webservice leases the jobs it queues and renews the leases while it holds them, other webservices sharing the database
+ * leave them alone. Jobs whose lease expired, because the webservice that held them stopped or died, are claimed and queued
+ * again, on start and then periodically.
+ */
+public class RefreshJobQueue implements Managed {
+    private static final Logger LOG = LoggerFactory.getLogger(RefreshJobQueue.class);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private static final long LEASE_SECONDS = 120;
+    private static final long RENEW_SECONDS = LEASE_SECONDS / 4;
+
+    private final int threads;
+    // identifies this webservice in the leases of its jobs
+    private final String owner = UUID.randomUUID().toString();
+    private Runner runner;
+    private ExecutorService executor;
+    private ScheduledExecutorService leases;
+    private volatile boolean stopped;
+
+    // guarded by this, users and their organizations in the order they get their next turn
+    private final Deque<Long> users = new ArrayDeque<>();
+    private final Map<Long, Deque<String>> organizations = new HashMap<>();
+    private final Map<String, Deque<RefreshJob>> queued = new HashMap<>();
+    private final Set<String> running = new HashSet<>();
+
+    /**
+     * @param threads how many jobs run at a time
+     */
+    public RefreshJobQueue(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param jobRunner runs the jobs, each step in its own transaction
+     */
+    public void setRunner(Runner jobRunner) {
+        this.runner = jobRunner;
+    }
+
+    /**
+     * Lease a job to this webservice, before it is created
+     * @param job the job
+     */
+    public void lease(RefreshJob job) {
+        job.lease(owner, leaseExpiry());
+    }
+
+    private static Timestamp leaseExpiry() {
+        return new Timestamp(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LEASE_SECONDS));
+    }
+
+    /**
+     * Queue a job that has been committed
+     * @param job the job
+     */
+    public synchronized void add(RefreshJob job) {
+        long user = job.getUserId();
+        String organization = String.valueOf(job.getOrganization());
+        Deque<String> userOrganizations = organizations.get(user);
+        if (userOrganizations == null) {
+            userOrganizations = new ArrayDeque<>();
+            organizations.put(user, userOrganizations);
+            users.addLast(user);
+        }
+        Deque<RefreshJob> jobs = queued.get(key(user, organization));
+        if (jobs == null) {
+            jobs = new ArrayDeque<>();
+            queued.put(key(user, organization), jobs);
+            userOrganizations.addLast(organization);
+        }
+        jobs.addLast(job);
+        notifyAll();
+    }
+
+    /**
+     * @return the next job whose turn it is and whose entry is not being refreshed, null if there is none
+     */
+    synchronized RefreshJob poll() {
+        for (int u = users.size(); u > 0; u--) {
+            Long user = users.pollFirst();
+            Deque<String> userOrganizations = organizations.get(user);
+            RefreshJob job = null;
+            for (int o = userOrganizations.size(); o > 0 && job == null; o--) {
+                String organization = userOrganizations.pollFirst();
+                Deque<RefreshJob> jobs = queued.get(key(user, organization));
+                job = removeRunnable(jobs);
+                if (jobs.isEmpty()) {
+                    queued.remove(key(user, organization));
+                } else {
+                    userOrganizations.addLast(organization);
+                }
+            }
+            if (userOrganizations.isEmpty()) {
+                organizations.remove(user);
+            } else {
+                users.addLast(user);
+            }
+            if (job != null) {
+                running.add(job.getTarget());
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private RefreshJob removeRunnable(Deque<RefreshJob> jobs) {
+        Iterator<RefreshJob> iterator = jobs.iterator();
+        while (iterator.hasNext()) {
+            RefreshJob job = iterator.next();
+            if (!running.contains(job.getTarget())) {
+                iterator.remove();
+                return job;
+            }
+        }
+        return null;
+    }
+
+    synchronized void finished(RefreshJob job) {
+        running.remove(job.getTarget());
+        notifyAll();
+    }
+
+    /**
+     * @return how many jobs are waiting for their turn
+     */
+    public synchronized int getQueuedCount() {
+        return queued.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    private static String key(long user, String organization) {
+        return user + "/" + organization;
+    }
+
+    private synchronized RefreshJob take() throws InterruptedException {
+        RefreshJob job = poll();
+        while (job == null && !stopped) {
+            wait();
+            job = poll();
+        }
+        return job;
+    }
+
+    /**
+     * Keep the jobs held by this webservice, and queue those that no webservice holds anymore
+     */
+    private void renewLeases() {
+        try {
+            runner.renew(owner, leaseExpiry());
+            List<RefreshJob> claimed = runner.claim(owner, leaseExpiry());
+            if (!claimed.isEmpty()) {
+                LOG.info("Queueing " + claimed.size() + " refresh jobs whose lease expired");
+                claimed.forEach(this::add);
+            }
+        } catch (RuntimeException e) {
+            // tried again on the next renewal, before the leases expire
+            LOG.error("Could not renew the leases of the refresh jobs", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        stopped = false;
+        leases = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "refresh-job-leases");
+            thread.setDaemon(true);
+            return thread;
+        });
+        leases.scheduleWithFixedDelay(this::renewLeases, 0, RENEW_SECONDS, TimeUnit.SECONDS);
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "refresh-job-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            executor.submit(this::work);
+        }
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        stopped = true;
+        synchronized (this) {
+            notifyAll();
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            LOG.warn("Refresh jobs did not finish in time, interrupting them");
+            executor.shutdownNow();
+        }
+        leases.shutdownNow();
+        // the jobs left unfinished are claimed right away, by another webservice or by this one on the next start
+        try {
+            runner.renew(owner, new Timestamp(System.currentTimeMillis()));
+        } catch (RuntimeException e) {
+            LOG.warn("Could not give up the leases of the refresh jobs, they are claimed once they expire", e);
+        }
+    }
+
+    private void work() {
+        try {
+            RefreshJob job = take();
+            while (job != null) {
+                try {
+                    run(job);
+                } finally {
+                    finished(job);
+                }
+                job = stopped ? null : take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(RefreshJob job) {
+        try {
+            if (!runner.start(job.getId(), owner)) {
+                return;
+            }
+            runner.run(job.getId());
+        } catch (RuntimeException e) {
+            LOG.error("Refresh job " + job.getId() + " failed", e);
+            try {
+                runner.fail(job.getId(), e instanceof CustomWebApplicationException ? ((CustomWebApplicationException)e).getErrorMessage() : e.getMessage());
+            } catch (RuntimeException ex) {
+                LOG.error("Could not record that refresh job " + job.getId() + " failed", ex);
+            }
+        }
+    }
+
+    /**
+     * Runs the steps of a job, each in its own transaction
+     */
+    public interface Runner {
+        /**
+         * @param owner       who claims the jobs
+         * @param leaseExpiry the lease of the claimed jobs
+         * @return the queued or running jobs whose lease expired, leased to the owner and set back to queued
+         */
+        List<RefreshJob> claim(String owner, Timestamp leaseExpiry);
+
+        /**
+         * @param owner       whose unfinished jobs to renew the lease of
+         * @param leaseExpiry the new lease
+         */
+        void renew(String owner, Timestamp leaseExpiry);
+
+        /**
+         * @param jobId the job
+         * @param owner who runs the job
+         * @return false if the job no longer needs to run, or is leased to someone else
+         */
+        boolean start(long jobId, String owner);
+
+        /**
+         * Refresh, recording the results on the job
+         * @param jobId the job
+         */
+        void run(long jobId);
+
+        void fail(long jobId, String message);
+    }
+}
@@ -32,6 +32,7 @@ import java.util.stream.Collectors;
 
 import javax.validation.constraints.NotNull;
 
+import com.codahale.metrics.Timer;
 import com.google.common.base.Strings;
 import com.google.common.primitives.Bytes;
 import io.dockstore.common.DescriptorLanguage;
@@ -266,7 +267,11 @@ public abstract class SourceCodeRepoInterface {
 
         // Create versions and associated source files
         //TODO: calls validation eventually, may simplify if we take into account metadata parsing below
-        workflow = setupWorkflowVersions(repositoryId, workflow, existingWorkflow, existingDefaults, versionName);
+        // versions are refreshed off the request thread, so their files have to be loaded from the session here
+        EntryFetchProfile.FULL.apply(existingWorkflow.get());
+        try (Timer.Context ignored = RefreshExecutor.time()) {
+            workflow = setupWorkflowVersions(repositoryId, workflow, existingWorkflow, existingDefaults, versionName);
+        }
 
         if (versionName.isPresent() && workflow.getWorkflowVersions().size() == 0) {
             String msg = "Version " + versionName.get() + " was not found on Git repository";
@@ -330,7 +335,7 @@ public abstract class SourceCodeRepoInterface {
         }
         if (entry instanceof Workflow) {
             Workflow workflow = (Workflow)entry;
-            workflow.getWorkflowVersions().forEach(workflowVersion -> {
+            workflow.getWorkflowVersions().stream().filter(workflowVersion -> !workflowVersion.isUnchanged()).forEach(workflowVersion -> {
                 String filePath = workflowVersion.getWorkflowPath();
                 updateVersionMetadata(filePath, workflowVersion, type, repositoryId);
             });
@@ -489,6 +494,35 @@ public abstract class SourceCodeRepoInterface {
         return version;
     }
 
+    /**
+     * Checks whether a version can keep what was stored for it, which is the case when the reference still points at the commit
+     * the stored files came from and neither the version nor the default path changed since
+     * @param reference        branch or tag
+     * @param commitId         commit the reference points at now
+     * @param existingWorkflow workflow as stored
+     * @param existingDefaults stored versions by reference
+     * @param versionName      a refresh of one version always fetches it again
+     * @return a placeholder marked unchanged, the stored version is kept in its place
+     */
+    protected Optional<WorkflowVersion> getUnchangedVersion(String reference, String commitId, Optional<Workflow> existingWorkflow,
+        Map<String, WorkflowVersion> existingDefaults, Optional<String> versionName) {
+        WorkflowVersion existingVersion = existingDefaults.get(reference);
+        if (versionName.isPresent() || commitId == null || existingWorkflow.isEmpty() || existingVersion == null || existingVersion.isDirtyBit()
+            || !commitId.equals(existingVersion.getCommitID()) || existingVersion.getSourceFiles().isEmpty()
+            || !Objects.equals(existingVersion.getWorkflowPath(), existingWorkflow.get().getDefaultWorkflowPath())) {
+            return Optional.empty();
+        }
+        WorkflowVersion version = new WorkflowVersion();
+        version.setName(existingVersion.getName());
+        version.setReference(reference);
+        version.setCommitID(commitId);
+        version.setLastModified(existingVersion.getLastModified());
+        version.setReferenceType(existingVersion.getReferenceType());
+        version.setWorkflowPath(existingVersion.getWorkflowPath());
+        version.setUnchanged(true);
+        return Optional.of(version);
+    }
+
     /**
      * Resolves imports for a sourcefile, associates with version
      * @param repositoryId identifies the git repository that we wish to use, normally something like 'organization/repo_name`
@@ -0,0 +1,268 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the files of GitHub repositories at a given commit, downloaded as one tarball per commit.
+ *
+ * Reading a file through the contents API costs several requests per file, more when there are symbolic links along
+ * the path. A commit never changes, so its tarball is downloaded once and files, directory listings, and symbolic
+ * links are then resolved locally. Snapshots are kept in memory, keyed by repository and commit SHA, and weighted by
+ * their size. A commit that is too large for the budget is remembered as such and read through the contents API.
+ */
+public final class SourceSnapshotStore {
+
+    public static final String GITHUB_API_URL = "https://api.github.com";
+    private static final Logger LOG = LoggerFactory.getLogger(SourceSnapshotStore.class);
+    // a single archive may take up this fraction of the budget
+    private static final int ARCHIVE_BUDGET_DIVISOR = 4;
+    private static final int ENTRY_BYTES = 64;
+    // same limit as Linux
+    private static final int MAX_SYMLINK_HOPS = 40;
+    private static final Snapshot TOO_LARGE = new Snapshot(new HashMap<>(), new HashMap<>(), new HashMap<>(), ENTRY_BYTES);
+
+    private static volatile SourceSnapshotStore instance;
+
+    private final OkHttpClient client;
+    private final String apiUrl;
+    private final long maxArchiveBytes;
+    private final Cache<String, Snapshot> snapshots;
+
+    SourceSnapshotStore(OkHttpClient client, String apiUrl, long maximumBytes) {
+        // archives would push everything else out of the shared web cache, they are kept here instead
+        this.client = client.newBuilder().cache(null).build();
+        this.apiUrl = StringUtils.removeEnd(apiUrl, "/");
+        this.maxArchiveBytes = maximumBytes / ARCHIVE_BUDGET_DIVISOR;
+        this.snapshots = CacheBuilder.newBuilder()
+            .maximumWeight(maximumBytes)
+            .weigher((String key, Snapshot snapshot) -> snapshot.bytes)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * @return the store, or null if snapshots are turned off and files are read through the contents API
+     */
+    public static SourceSnapshotStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param client       client to download archives with
+     * @param maximumBytes approximate budget for all snapshots, 0 turns snapshots off
+     */
+    public static void configure(OkHttpClient client, long maximumBytes) {
+        instance = maximumBytes > 0 ? new SourceSnapshotStore(client, GITHUB_API_URL, maximumBytes) : null;
+    }
+
+    /**
+     * Get the files of a repository at a commit, downloading them if this commit was not seen yet
+     * @param repositoryId Organization and repository (ex. dockstore/dockstore-ui2)
+     * @param sha          full commit SHA, a branch or tag name would go stale
+     * @param token        GitHub token, needed for private repositories
+     * @return the snapshot, or empty if the commit could not be downloaded or is too large
+     */
+    public Optional<Snapshot> getSnapshot(String repositoryId, String sha, String token) {
+        try {
+            Snapshot snapshot = snapshots.get(repositoryId + "@" + sha, () -> download(repositoryId, sha, token));
+            return snapshot == TOO_LARGE ? Optional.empty() : Optional.of(snapshot);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            LOG.warn("Could not download " + repositoryId + " at " + sha + ", " + e.getCause().getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public long size() {
+        return snapshots.size();
+    }
+
+    private Snapshot download(String repositoryId, String sha, String token) throws IOException {
+        Request.Builder builder = new Request.Builder().url(apiUrl + "/repos/" + repositoryId + "/tarball/" + sha);
+        if (token != null) {
+            builder.header("Authorization", "token " + token);
+        }
+        try (Response response = client.newCall(builder.build()).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("GitHub returned " + response.code());
+            }
+            if (body.contentLength() > maxArchiveBytes) {
+                LOG.info(repositoryId + " at " + sha + " is too large for a snapshot");
+                return TOO_LARGE;
+            }
+            Snapshot snapshot = extract(body.byteStream(), maxArchiveBytes);
+            if (snapshot == null) {
+                LOG.info(repositoryId + " at " + sha + " is too large for a snapshot");
+                return TOO_LARGE;
+            }
+            LOG.debug("Downloaded " + repositoryId + " at " + sha + ", " + snapshot.bytes + " bytes");
+            return snapshot;
+        }
+    }
+
+    /**
+     * Read a gzipped tarball as GitHub makes them, with every path under one top level directory
+     * @param archive  the tarball
+     * @param maxBytes the most bytes the files may add up to
+     * @return the snapshot, or null if it is larger than maxBytes
+     */
+    static Snapshot extract(InputStream archive, long maxBytes) throws IOException {
+        Map<String, byte[]> files = new HashMap<>();
+        Map<String, String> symlinks = new HashMap<>();
+        Map<String, Set<String>> directories = new HashMap<>();
+        directories.put("", new TreeSet<>());
+        long bytes = 0;
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new GzipCompressorInputStream(archive))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                String path = StringUtils.substringAfter(StringUtils.removeEnd(entry.getName(), "/"), "/");
+                if (path.isEmpty()) {
+                    continue;
+                }
+                bytes += ENTRY_BYTES + path.length();
+                if (entry.isDirectory()) {
+                    directories.computeIfAbsent(path, key -> new TreeSet<>());
+                } else if (entry.isSymbolicLink()) {
+                    symlinks.put(path, entry.getLinkName());
+                } else if (entry.isFile()) {
+                    bytes += entry.getSize();
+                    if (bytes > maxBytes) {
+                        return null;
+                    }
+                    files.put(path, tar.readAllBytes());
+                } else {
+                    continue;
+                }
+                addToParents(path, directories);
+            }
+        }
+        return bytes > maxBytes ? null : new Snapshot(files, symlinks, directories, bytes);
+    }
+
+    private static void addToParents(String path, Map<String, Set<String>> directories) {
+        String child = path;
+        while (!child.isEmpty()) {
+            String parent = child.contains("/") ? StringUtils.substringBeforeLast(child, "/") : "";
+            boolean added = directories.computeIfAbsent(parent, key -> new TreeSet<>()).add(StringUtils.substringAfterLast("/" + child, "/"));
+            if (!added) {
+                return;
+            }
+            child = parent;
+        }
+    }
+
+    /**
+     * The files of a repository at one commit
+     */
+    public static final class Snapshot {
+        private final Map<String, byte[]> files;
+        private final Map<String, String> symlinks;
+        private final Map<String, Set<String>> directories;
+        private final int bytes;
+
+        private Snapshot(Map<String, byte[]> files, Map<String, String> symlinks, Map<String, Set<String>> directories, long bytes) {
+            this.files = files;
+            this.symlinks = symlinks;
+            this.directories = directories;
+            this.bytes = (int)Math.min(bytes, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param fileName path of the file, symbolic links along it are followed
+         * @return content of the file, or null if there is no such file
+         */
+        public String readFile(String fileName) {
+            String path = resolve(fileName);
+            byte[] content = path == null ? null : files.get(path);
+            return content == null ? null : new String(content, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @param pathToDirectory path of the directory, symbolic links along it are followed
+         * @return names of the files, directories, and symbolic links in the directory, or null if there is no such directory
+         */
+        public List<String> listFiles(String pathToDirectory) {
+            String path = resolve(pathToDirectory);
+            Set<String> names = path == null ? null : directories.get(path);
+            return names == null ? null : new ArrayList<>(names);
+        }
+
+        /**
+         * Follow the symbolic links along a path, the way the file system would
+         * @return the path without symbolic links, or null if it leads out of the repository or around in circles
+         */
+        private String resolve(String fileName) {
+            Deque<String> remaining = new ArrayDeque<>(List.of(StringUtils.defaultString(fileName).split("/")));
+            Deque<String> resolved = new ArrayDeque<>();
+            int hops = 0;
+            while (!remaining.isEmpty()) {
+                String segment = remaining.removeFirst();
+                if (segment.isEmpty() || ".".equals(segment)) {
+                    continue;
+                }
+                if ("..".equals(segment)) {
+                    if (resolved.pollLast() == null) {
+                        return null;
+                    }
+                    continue;
+                }
+                resolved.addLast(segment);
+                String target = symlinks.get(String.join("/", resolved));
+                if (target != null) {
+                    if (++hops > MAX_SYMLINK_HOPS || target.startsWith("/")) {
+                        return null;
+                    }
+                    // the target is relative to the directory the link is in
+                    resolved.removeLast();
+                    List<String> targetSegments = List.of(target.split("/"));
+                    for (int i = targetSegments.size() - 1; i >= 0; i--) {
+                        remaining.addFirst(targetSegments.get(i));
+                    }
+                }
+            }
+            return String.join("/", resolved);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers.statelisteners;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+
+/**
+ * Holds back the changes listeners keep in memory until the transaction that made them commits, so a rolled back
+ * request leaves no trace and a load from the database never misses a change
+ */
+final class AfterCommit {
+
+    private AfterCommit() {
+        // utility class
+    }
+
+    /**
+     * Run a change once the current transaction commits, right away if there is none
+     * @param sessionFactory the session factory of the requests that make the change, null if there are none
+     */
+    static void run(SessionFactory sessionFactory, Runnable change) {
+        if (sessionFactory == null || !ManagedSessionContext.hasBind(sessionFactory) || !sessionFactory.getCurrentSession().getTransaction().isActive()) {
+            change.run();
+            return;
+        }
+        sessionFactory.getCurrentSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do until committed
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    change.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers.statelisteners;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.helpers.ElasticSearchClient;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.elasticsearch.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends index updates to Elasticsearch in the background so that requests do not wait for Elasticsearch.
+ *
+ * Updates are collected for a flush interval, later updates to the same entry replace earlier ones,
+ * and everything collected is sent as one _bulk request. Failed updates are retried with exponential backoff,
+ * updates that still fail, or that do not fit in the queue, are logged to the dead-letter logger so the entries can be
+ * reindexed by hand.
+ *
+ * While a reindex writes a new index, the updates offered are also recorded, so that the reindex can replay them into
+ * the new index before and after the alias moves to it.
+ */
+public class ElasticIndexQueue implements Managed {
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticIndexQueue.class);
+    private static final Logger DEAD_LETTER_LOG = LoggerFactory.getLogger(ElasticIndexQueue.class.getName() + ".deadletter");
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_BACKOFF_DOUBLINGS = 10;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    // not in this version of httpcore
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private final ElasticSearchClient client;
+    private final int capacity;
+    private final long flushIntervalMillis;
+    private final int maxAttempts;
+    // guarded by this, keyed by entry type and id so that updates to the same entry coalesce
+    private final Map<String, IndexAction> pending = new LinkedHashMap<>();
+    // guarded by this, the updates offered while a reindex runs, null when none runs
+    private Map<String, IndexAction> recorded;
+    private ScheduledExecutorService executor;
+    private volatile boolean stopped;
+    // only used by the worker thread
+    private int consecutiveFailures;
+
+    public ElasticIndexQueue(ElasticSearchClient client, DockstoreWebserviceConfiguration.ElasticSearchConfig config) {
+        this.client = client;
+        this.capacity = config.getQueueCapacity();
+        this.flushIntervalMillis = config.getFlushIntervalMillis();
+        this.maxAttempts = config.getMaxAttempts();
+    }
+
+    /**
+     * Queue an index update, replacing any update to the same entry that has not been sent yet
+     * @param action the update
+     * @return false if the queue was full and the update was dead-lettered
+     */
+    public boolean offer(IndexAction action) {
+        synchronized (this) {
+            if (recorded != null) {
+                recorded.put(action.getKey(), action);
+            }
+            if (pending.size() < capacity || pending.containsKey(action.getKey())) {
+                pending.put(action.getKey(), action);
+                return true;
+            }
+        }
+        deadLetter(action, "the index queue is full");
+        return false;
+    }
+
+    /**
+     * Start recording the updates offered, for a reindex
+     */
+    public synchronized void startRecording() {
+        recorded = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return the updates offered since recording started or since this was last called, recording goes on
+     */
+    public synchronized List<IndexAction> takeRecorded() {
+        List<IndexAction> actions = new ArrayList<>(recorded.values());
+        recorded.clear();
+        return actions;
+    }
+
+    /**
+     * @return the updates offered since recording started or since they were last taken
+     */
+    public synchronized List<IndexAction> stopRecording() {
+        List<IndexAction> actions = recorded == null ? List.of() : new ArrayList<>(recorded.values());
+        recorded = null;
+        return actions;
+    }
+
+    /**
+     * Send updates to another index once, on the queue's thread so that they are ordered with the updates sent to the
+     * alias. Updates that fail are dead-lettered, not retried.
+     * @param index   the index
+     * @param actions the updates, usually recorded
+     * @throws IOException when the updates could not be handed to the queue's thread
+     */
+    public void replay(String index, List<IndexAction> actions) throws IOException {
+        if (actions.isEmpty()) {
+            return;
+        }
+        try {
+            executor.submit(() -> send(index, actions).forEach(action -> deadLetter(action, "it could not be replayed into " + index))).get();
+        } catch (RejectedExecutionException | ExecutionException e) {
+            throw new IOException("Could not replay index updates into " + index, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted replaying index updates into " + index, e);
+        }
+    }
+
+    @Override
+    public void start() {
+        stopped = false;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "elasticsearch-index-queue");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.schedule(this::run, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        stopped = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            LOG.warn("Elasticsearch index queue did not finish its last flush in time");
+        }
+        // one last attempt for whatever came in since, there is no time left to retry
+        List<IndexAction> remaining = drain();
+        if (!remaining.isEmpty()) {
+            remaining.forEach(action -> action.attempts++);
+            send(ElasticReindexer.ALIAS, remaining).forEach(action -> deadLetter(action, "the webservice is shutting down"));
+        }
+    }
+
+    private void run() {
+        long delay = flushIntervalMillis;
+        try {
+            delay = flush();
+        } catch (RuntimeException e) {
+            LOG.error("Unexpected error flushing the Elasticsearch index queue", e);
+        }
+        if (!stopped) {
+            executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Send everything that is queued
+     * @return how long to wait until the next flush
+     */
+    private long flush() {
+        List<IndexAction> batch = drain();
+        if (batch.isEmpty()) {
+            return flushIntervalMillis;
+        }
+        batch.forEach(action -> action.attempts++);
+        List<IndexAction> failed = send(ElasticReindexer.ALIAS, batch);
+        if (failed.isEmpty()) {
+            consecutiveFailures = 0;
+            return flushIntervalMillis;
+        }
+        failed.forEach(this::retry);
+        consecutiveFailures++;
+        return Math.min(flushIntervalMillis << Math.min(consecutiveFailures, MAX_BACKOFF_DOUBLINGS), MAX_BACKOFF_MILLIS);
+    }
+
+    synchronized List<IndexAction> drain() {
+        List<IndexAction> batch = new ArrayList<>(pending.values());
+        pending.clear();
+        return batch;
+    }
+
+    private void retry(IndexAction action) {
+        if (action.attempts >= maxAttempts) {
+            deadLetter(action, "it failed " + action.attempts + " times");
+            return;
+        }
+        synchronized (this) {
+            // a newer update to the same entry replaces the failed one
+            pending.putIfAbsent(action.getKey(), action);
+        }
+    }
+
+    /**
+     * @param index the index or alias to send to
+     * @param batch the updates to send
+     * @return the updates that failed but may succeed when retried
+     */
+    private List<IndexAction> send(String index, List<IndexAction> batch) {
+        JsonNode items;
+        try {
+            NByteArrayEntity entity = new NByteArrayEntity(toNDJSON(batch), ContentType.APPLICATION_JSON);
+            Response response = client.getRestClient().performRequest("POST", "/" + index + "/_bulk", Collections.emptyMap(), entity);
+            try (InputStream content = response.getEntity().getContent()) {
+                items = MAPPER.readTree(content).path("items");
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Could not submit " + batch.size() + " index updates to elastic search. " + e.getMessage());
+            return batch;
+        }
+        List<IndexAction> failed = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            IndexAction action = batch.get(i);
+            Iterator<JsonNode> results = items.path(i).elements();
+            if (!results.hasNext()) {
+                failed.add(action);
+                continue;
+            }
+            JsonNode result = results.next();
+            int status = result.path("status").asInt();
+            if (status >= HttpStatus.SC_OK && status < HttpStatus.SC_MULTIPLE_CHOICES || action.isDelete() && status == HttpStatus.SC_NOT_FOUND) {
+                continue;
+            }
+            if (status == SC_TOO_MANY_REQUESTS || status >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                failed.add(action);
+            } else {
+                deadLetter(action, "Elasticsearch rejected it: " + result.path("error"));
+            }
+        }
+        return failed;
+    }
+
+    private static void deadLetter(IndexAction action, String reason) {
+        DEAD_LETTER_LOG.error("Dropped index update of " + action.getKey() + " because " + reason + ": "
+            + (action.isDelete() ? "" : new String(action.document, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return the body of a _bulk request to the entry index
+     */
+    static byte[] toNDJSON(List<IndexAction> actions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            for (IndexAction action : actions) {
+                try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out)) {
+                    generator.writeStartObject();
+                    generator.writeObjectFieldStart(action.isDelete() ? "delete" : "update");
+                    generator.writeStringField("_type", action.type);
+                    generator.writeStringField("_id", String.valueOf(action.id));
+                    generator.writeEndObject();
+                    generator.writeEndObject();
+                }
+                out.write('\n');
+                if (!action.isDelete()) {
+                    out.write(action.document);
+                    out.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * An update of one document in the entry index
+     */
+    public static final class IndexAction {
+        private final String type;
+        private final long id;
+        private final byte[] document;
+        private int attempts;
+
+        private IndexAction(String type, long id, byte[] document) {
+            this.type = type;
+            this.id = id;
+            this.document = document;
+        }
+
+        /**
+         * @param document the partial document, with doc_as_upsert
+         */
+        public static IndexAction update(String type, long id, byte[] document) {
+            return new IndexAction(type, id, document);
+        }
+
+        public static IndexAction delete(String type, long id) {
+            return new IndexAction(type, id, null);
+        }
+
+        String getKey() {
+            return type + "/" + id;
+        }
+
+        boolean isDelete() {
+            return document == null;
+        }
+    }
+}
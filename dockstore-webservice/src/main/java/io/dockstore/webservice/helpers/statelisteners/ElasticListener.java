@@ -15,42 +15,32 @@
  */
 package io.dockstore.webservice.helpers.statelisteners;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceConfiguration;
-import io.dockstore.webservice.core.BioWorkflow;
 import io.dockstore.webservice.core.Entry;
-import io.dockstore.webservice.core.Label;
 import io.dockstore.webservice.core.Service;
-import io.dockstore.webservice.core.SourceFile;
 import io.dockstore.webservice.core.Tool;
-import io.dockstore.webservice.core.User;
-import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.helpers.ElasticSearchClient;
+import io.dockstore.webservice.helpers.EntryFetchProfile;
 import io.dockstore.webservice.helpers.StateManagerMode;
 import io.dropwizard.jackson.Jackson;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
 import org.apache.http.entity.ContentType;
-import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.entity.NByteArrayEntity;
 import org.elasticsearch.client.Response;
-import org.elasticsearch.client.RestClient;
 import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,20 +54,31 @@ public class ElasticListener implements StateListenerInterface {
     private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
     private static final String MAPPER_ERROR = "Could not convert Dockstore entry to Elasticsearch object";
     private String hostname;
-    private int port;
+    private ElasticSearchClient client;
+    private ElasticIndexQueue indexQueue;
 
     @Override
     public void setConfig(DockstoreWebserviceConfiguration config) {
         hostname = config.getEsConfiguration().getHostname();
-        port = config.getEsConfiguration().getPort();
+    }
+
+    /**
+     * @param elasticSearchClient the shared client, used for bulk upserts
+     * @param elasticIndexQueue   the queue that sends single index updates in the background
+     */
+    public void setIndexing(ElasticSearchClient elasticSearchClient, ElasticIndexQueue elasticIndexQueue) {
+        this.client = elasticSearchClient;
+        this.indexQueue = elasticIndexQueue;
     }
 
     /**
      * Manually eager load certain fields
      * @param entry
      */
-    private void eagerLoadEntry(Entry entry) {
+    private static void eagerLoadEntry(Entry entry) {
         Hibernate.initialize(entry.getAliases());
+        // the index needs the source files for verification and descriptor types
+        EntryFetchProfile.FULL.apply(entry);
     }
 
     @Override
@@ -98,33 +99,25 @@ public class ElasticListener implements StateListenerInterface {
             LOGGER.info("Could not perform the elastic search index update.");
             return;
         }
-        String json;
-        json = getDocumentValueFromEntry(entry);
-        try (RestClient restClient = RestClient.builder(new HttpHost(hostname, port, "http")).build()) {
-            String entryType = entry instanceof Tool ? "tool" : "workflow";
-            HttpEntity entity = new NStringEntity(json, ContentType.APPLICATION_JSON);
-            Response post;
-            switch (command) {
-            case PUBLISH:
-            case UPDATE:
-                post = restClient
-                    .performRequest("POST", "/entry/" + entryType + "/" + entry.getId() + "/_update", Collections.emptyMap(), entity);
-                break;
-            case DELETE:
-                post = restClient.performRequest("DELETE", "/entry/" + entryType + "/" + entry.getId(), Collections.emptyMap(), entity);
-                break;
-            default:
-                throw new RuntimeException("Unknown index command: " + command);
-            }
-            int statusCode = post.getStatusLine().getStatusCode();
-            if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED) {
-                LOGGER.info("Successful " + command + ".");
-            } else {
-                LOGGER.error("Could not submit index to elastic search. " + post.getStatusLine().getReasonPhrase());
-            }
-        } catch (Exception e) {
-            LOGGER.error("Could not submit index to elastic search. " + e.getMessage());
+        if (indexQueue == null) {
+            LOGGER.error("Elastic search indexing has not been started.");
+            return;
+        }
+        String entryType = entry instanceof Tool ? "tool" : "workflow";
+        ElasticIndexQueue.IndexAction action;
+        switch (command) {
+        case PUBLISH:
+        case UPDATE:
+            // the document has to be built now, the entry is lazily loaded and its session ends with the request
+            action = ElasticIndexQueue.IndexAction.update(entryType, entry.getId(), getUpdateBody(entry));
+            break;
+        case DELETE:
+            action = ElasticIndexQueue.IndexAction.delete(entryType, entry.getId());
+            break;
+        default:
+            throw new RuntimeException("Unknown index command: " + command);
         }
+        indexQueue.offer(action);
     }
 
     /**
@@ -155,17 +148,17 @@ public class ElasticListener implements StateListenerInterface {
 
     @Override
     public void bulkUpsert(List<Entry> entries) {
-        entries.forEach(this::eagerLoadEntry);
-        entries = filterCheckerWorkflows(entries);
-        // #2771 will need to disable this and properly create objects to get services into the index
-        entries = entries.stream().filter(entry -> !(entry instanceof Service)).collect(Collectors.toList());
-        if (entries.isEmpty()) {
+        byte[] newlineDJSON = getBulkIndexBody(entries);
+        if (newlineDJSON == null) {
+            return;
+        }
+        if (client == null || !client.isConfigured()) {
+            LOGGER.error("No elastic search host found.");
             return;
         }
-        try (RestClient restClient = RestClient.builder(new HttpHost(hostname, port, "http")).build()) {
-            String newlineDJSON = getNDJSON(entries);
-            HttpEntity bulkEntity = new NStringEntity(newlineDJSON, ContentType.APPLICATION_JSON);
-            Response post = restClient.performRequest("POST", "/entry/_bulk", Collections.emptyMap(), bulkEntity);
+        try {
+            HttpEntity bulkEntity = new NByteArrayEntity(newlineDJSON, ContentType.APPLICATION_JSON);
+            Response post = client.getRestClient().performRequest("POST", "/entry/_bulk", Collections.emptyMap(), bulkEntity);
             if (post.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
                 throw new CustomWebApplicationException("Could not submit index to elastic search", HttpStatus.SC_INTERNAL_SERVER_ERROR);
             }
@@ -175,178 +168,84 @@ public class ElasticListener implements StateListenerInterface {
     }
 
     /**
-     * This converts the entry into a document for elastic search to use
+     * Gets the _bulk request body that indexes the entries that belong in the index, without naming an index.
+     * The entries must still be attached to the session.
      *
-     * @param entry The entry that needs updating
-     * @return The entry converted into a json string
+     * @param entries The entries to index
+     * @return The body, or null if none of the entries belong in the index
      */
-    private String getDocumentValueFromEntry(Entry<?, ?> entry) {
-        ObjectMapper mapper = Jackson.newObjectMapper();
-        StringBuilder builder = new StringBuilder();
-        Map<String, Object> doc = new HashMap<>();
+    public static byte[] getBulkIndexBody(List<Entry> entries) {
+        entries.forEach(ElasticListener::eagerLoadEntry);
+        entries = filterCheckerWorkflows(entries);
+        // #2771 will need to disable this and properly create objects to get services into the index
+        entries = entries.stream().filter(entry -> !(entry instanceof Service)).collect(Collectors.toList());
+        if (entries.isEmpty()) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
-            JsonNode jsonNode = dockstoreEntryToElasticSearchObject(entry);
-            doc.put("doc", jsonNode);
-            doc.put("doc_as_upsert", true);
-            builder.append(mapper.writeValueAsString(doc));
+            writeNDJSON(entries, out);
+        } catch (IOException e) {
+            throw new CustomWebApplicationException(MAPPER_ERROR, HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Gets the partial update request that upserts the entry's document
+     *
+     * @param entry The entry that needs updating
+     * @return The update request body
+     */
+    private static byte[] getUpdateBody(Entry<?, ?> entry) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeObjectField("doc", EntryDocument.of(entry));
+            generator.writeBooleanField("doc_as_upsert", true);
+            generator.writeEndObject();
         } catch (IOException e) {
-            throw new CustomWebApplicationException(MAPPER_ERROR,
-                HttpStatus.SC_INTERNAL_SERVER_ERROR);
+            throw new CustomWebApplicationException(MAPPER_ERROR, HttpStatus.SC_INTERNAL_SERVER_ERROR);
         }
-        return builder.toString();
+        return out.toByteArray();
     }
 
     /**
-     * Gets the json used for bulk insert
+     * Writes the newline delimited json used for bulk insert
      *
      * @param publishedEntries A list of published entries
-     * @return The json used for bulk insert
+     * @param out Where the request body goes
      */
-    private String getNDJSON(List<Entry> publishedEntries) {
-        Gson gson = new GsonBuilder().create();
-        StringBuilder builder = new StringBuilder();
-        publishedEntries.forEach(entry -> {
-            entry.getWorkflowVersions().forEach(entryVersion -> {
-                ((Version)entryVersion).updateVerified();
-            });
-            Map<String, Map<String, String>> index = new HashMap<>();
-            Map<String, String> internal = new HashMap<>();
-            internal.put("_id", String.valueOf(entry.getId()));
-            internal.put("_type", entry instanceof Tool ? "tool" : "workflow");
-            index.put("index", internal);
-            builder.append(gson.toJson(index));
-            builder.append('\n');
-            try {
-                builder.append(MAPPER.writeValueAsString(dockstoreEntryToElasticSearchObject(entry)));
-            } catch (IOException e) {
-                throw new CustomWebApplicationException(MAPPER_ERROR, HttpStatus.SC_INTERNAL_SERVER_ERROR);
+    private static void writeNDJSON(List<Entry> publishedEntries, OutputStream out) throws IOException {
+        // a root value separator of a newline is what makes this newline delimited
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            for (Entry entry : publishedEntries) {
+                generator.writeStartObject();
+                generator.writeObjectFieldStart("index");
+                generator.writeStringField("_id", String.valueOf(entry.getId()));
+                generator.writeStringField("_type", entry instanceof Tool ? "tool" : "workflow");
+                generator.writeEndObject();
+                generator.writeEndObject();
+                generator.writeObject(EntryDocument.of(entry));
             }
-            builder.append('\n');
-        });
-        return builder.toString();
+            generator.writeRaw('\n');
+        }
     }
 
     /**
-     * This should be using an actual Elasticsearch object class instead of jsonNode
+     * Converts the entry into the document the index holds for it
      *
      * @param entry The Dockstore entry
-     * @return The Elasticsearch object string to be placed into the index
+     * @return The Elasticsearch object to be placed into the index
      * @throws IOException  Mapper problems
      */
     public static JsonNode dockstoreEntryToElasticSearchObject(final Entry entry) throws IOException {
-        Set<Version> workflowVersions = entry.getWorkflowVersions();
-        boolean verified = workflowVersions.stream().anyMatch(Version::isVerified);
-        Set<String> verifiedPlatforms = getVerifiedPlatforms(workflowVersions);
-        Entry detachedEntry = removeIrrelevantProperties(entry);
-        JsonNode jsonNode = MAPPER.readTree(MAPPER.writeValueAsString(detachedEntry));
-        ((ObjectNode)jsonNode).put("verified", verified);
-        ((ObjectNode)jsonNode).put("verified_platforms", MAPPER.valueToTree(verifiedPlatforms));
-        return jsonNode;
-    }
-
-    /**
-     * Remove some stuff that should not be indexed by ES.
-     * This is not ideal, we should be including things we want indexed, not removing.
-     * @param entry
-     */
-    private static Entry removeIrrelevantProperties(final Entry entry) {
-        Entry detachedEntry;
-        if (entry instanceof Tool) {
-            Tool tool = (Tool) entry;
-            Tool detachedTool = new Tool();
-            tool.getWorkflowVersions().forEach(version -> {
-                Hibernate.initialize(version.getSourceFiles());
-            });
-
-            // These are for facets
-            detachedTool.setDefaultWdlPath(tool.getDefaultWdlPath());
-            detachedTool.setDefaultCwlPath(tool.getDefaultCwlPath());
-            detachedTool.setNamespace(tool.getNamespace());
-            detachedTool.setRegistry(tool.getRegistry());
-            detachedTool.setPrivateAccess(tool.isPrivateAccess());
-
-            // These are for table
-            detachedTool.setGitUrl(tool.getGitUrl());
-            detachedTool.setName(tool.getName());
-            detachedTool.setToolname(tool.getToolname());
-            detachedEntry = detachedTool;
-        } else if (entry instanceof BioWorkflow) {
-            BioWorkflow bioWorkflow = (BioWorkflow) entry;
-            BioWorkflow detachedBioWorkflow = new BioWorkflow();
-            // These are for facets
-            detachedBioWorkflow.setDescriptorType(bioWorkflow.getDescriptorType());
-            detachedBioWorkflow.setSourceControl(bioWorkflow.getSourceControl());
-            detachedBioWorkflow.setOrganization(bioWorkflow.getOrganization());
-
-            // These are for table
-            detachedBioWorkflow.setWorkflowName(bioWorkflow.getWorkflowName());
-            detachedBioWorkflow.setRepository(bioWorkflow.getRepository());
-            detachedBioWorkflow.setGitUrl(bioWorkflow.getGitUrl());
-            detachedEntry = detachedBioWorkflow;
-        } else {
-            return entry;
-        }
-        detachedEntry.setDescription(entry.getDescription());
-        detachedEntry.setAuthor(entry.getAuthor());
-        detachedEntry.setAliases(entry.getAliases());
-        detachedEntry.setLabels((SortedSet<Label>)entry.getLabels());
-        detachedEntry.setCheckerWorkflow(entry.getCheckerWorkflow());
-        Set<Version> detachedVersions = cloneWorkflowVersion(entry.getWorkflowVersions());
-        detachedEntry.setWorkflowVersions(detachedVersions);
-        entry.getStarredUsers().forEach(user -> detachedEntry.addStarredUser((User)user));
-        String defaultVersion = entry.getDefaultVersion();
-        if (defaultVersion != null) {
-            boolean saneDefaultVersion = detachedVersions.stream().anyMatch(version -> defaultVersion.equals(version.getName()) || defaultVersion.equals(version.getReference()));
-            if (saneDefaultVersion) {
-                // If the tool/workflow has a default version, only keep the default version (and its sourcefile contents and description)
-                Set<Version> newWorkflowVersions = detachedEntry.getWorkflowVersions();
-                newWorkflowVersions.forEach(version -> {
-                    if (!defaultVersion.equals(version.getReference()) && !defaultVersion.equals(version.getName())) {
-                        version.setDescriptionAndDescriptionSource(null, null);
-                        SortedSet<SourceFile> sourceFiles = version.getSourceFiles();
-                        sourceFiles.forEach(sourceFile -> sourceFile.setContent(""));
-                    }
-                });
-            } else {
-                LOGGER.error("Entry has a default version that doesn't exist: " + entry.getEntryPath());
-            }
+        try {
+            return MAPPER.valueToTree(EntryDocument.of(entry));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
         }
-        return detachedEntry;
-    }
-
-    private static Set<Version> cloneWorkflowVersion(final Set<Version> originalWorkflowVersions) {
-        Set<Version> detatchedVersions = new HashSet<>();
-        originalWorkflowVersions.forEach(workflowVersion -> {
-            Version detatchedVersion = workflowVersion.createEmptyVersion();
-            detatchedVersion.setDescriptionAndDescriptionSource(workflowVersion.getDescription(), workflowVersion.getDescriptionSource());
-            detatchedVersion.setInputFileFormats(new TreeSet<>(workflowVersion.getInputFileFormats()));
-            detatchedVersion.setOutputFileFormats(new TreeSet<>(workflowVersion.getOutputFileFormats()));
-            detatchedVersion.setName(workflowVersion.getName());
-            detatchedVersion.setReference(workflowVersion.getReference());
-            SortedSet<SourceFile> sourceFiles = workflowVersion.getSourceFiles();
-            sourceFiles.forEach(sourceFile -> {
-                Gson gson = new Gson();
-                String gsonString = gson.toJson(sourceFile);
-                SourceFile detachedSourceFile = gson.fromJson(gsonString, SourceFile.class);
-                detatchedVersion.addSourceFile(detachedSourceFile);
-            });
-            detatchedVersion.updateVerified();
-            detatchedVersions.add(detatchedVersion);
-        });
-        return detatchedVersions;
-    }
-
-
-    private static Set<String> getVerifiedPlatforms(Set<? extends Version> workflowVersions) {
-        Set<String> platforms = new TreeSet<>();
-        workflowVersions.forEach(workflowVersion -> {
-            SortedSet<SourceFile> sourceFiles = workflowVersion.getSourceFiles();
-            sourceFiles.forEach(sourceFile -> {
-                Map<String, SourceFile.VerificationInformation> verifiedBySource = sourceFile.getVerifiedBySource();
-                platforms.addAll(verifiedBySource.keySet());
-            });
-        });
-        return platforms;
     }
 
     /**
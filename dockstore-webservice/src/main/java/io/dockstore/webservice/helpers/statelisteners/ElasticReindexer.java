@@ -0,0 +1,284 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers.statelisteners;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.Resources;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.helpers.ElasticSearchClient;
+import io.dockstore.webservice.jdbi.EntryDAO;
+import io.dropwizard.jackson.Jackson;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rebuilds the entry index without taking search down.
+ *
+ * The published entries are written into a new timestamped index, chunk by chunk, with up to a configured number of
+ * _bulk requests in flight. Only once every chunk made it in does the entry alias move to the new index, in one atomic
+ * step, and the old indices get deleted. If anything fails the new index is dropped and search keeps using the old one.
+ * Index updates made while a reindex runs go to the old index, the index queue records them and they are replayed into
+ * the new index once before the alias moves, and once more for those made in the meantime.
+ */
+public class ElasticReindexer {
+    /**
+     * What searches and index updates use, an alias of the current index
+     */
+    public static final String ALIAS = "entry";
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticReindexer.class);
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+    private static final DateTimeFormatter INDEX_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS").withZone(ZoneOffset.UTC);
+
+    private final RestClient restClient;
+    private final ElasticIndexQueue indexQueue;
+    private final int chunkSize;
+    private final int concurrency;
+    private final Semaphore inFlight;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private final AtomicLong processed = new AtomicLong();
+    private String index;
+    private long total;
+
+    /**
+     * A reindexer only runs one reindex
+     */
+    public ElasticReindexer(ElasticSearchClient client, ElasticIndexQueue indexQueue, DockstoreWebserviceConfiguration.ElasticSearchConfig config) {
+        this.restClient = client.getRestClient();
+        this.indexQueue = indexQueue;
+        this.chunkSize = config.getReindexChunkSize();
+        this.concurrency = config.getReindexConcurrency();
+        this.inFlight = new Semaphore(concurrency);
+    }
+
+    /**
+     * Must run in a unit of work, the session is cleared after every chunk.
+     *
+     * @param daos the DAOs of the entries to index
+     * @return the number of published entries that were read
+     * @throws IOException when the index could not be rebuilt, the current index is left as it was
+     */
+    public long reindex(EntryDAO<?>... daos) throws IOException {
+        index = ALIAS + "_" + INDEX_SUFFIX.format(Instant.now());
+        createIndex();
+        indexQueue.startRecording();
+        boolean swapped = false;
+        try {
+            long read = 0;
+            try {
+                for (EntryDAO<?> dao : daos) {
+                    total += dao.countAllPublished(Optional.empty());
+                }
+                LOG.info("Reindexing " + total + " published entries into " + index);
+                for (EntryDAO<?> dao : daos) {
+                    read += submitChunks(dao);
+                }
+            } finally {
+                // wait for the requests still in flight
+                inFlight.acquireUninterruptibly(concurrency);
+                inFlight.release(concurrency);
+            }
+            if (failure.get() != null) {
+                throw new IOException("Could not reindex into " + index + ": " + failure.get().getMessage(), failure.get());
+            }
+            // the chunks may have been read before these updates
+            indexQueue.replay(index, indexQueue.takeRecorded());
+            swapAlias();
+            swapped = true;
+            // what was sent to the old index while the first replay ran and the alias moved
+            indexQueue.replay(index, indexQueue.stopRecording());
+            return read;
+        } catch (IOException | RuntimeException e) {
+            if (!swapped) {
+                deleteIndex(index);
+            }
+            throw e;
+        } finally {
+            indexQueue.stopRecording();
+        }
+    }
+
+    private void createIndex() throws IOException {
+        URL url = Resources.getResource("queries/mapping.json");
+        String text = Resources.toString(url, StandardCharsets.UTF_8);
+        restClient.performRequest("PUT", "/" + index, Collections.emptyMap(), new NStringEntity(text, ContentType.APPLICATION_JSON));
+    }
+
+    private <T extends Entry> long submitChunks(EntryDAO<T> dao) {
+        long read = 0;
+        long afterId = 0;
+        List<T> chunk;
+        do {
+            chunk = dao.findPublishedAfterId(afterId, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            afterId = chunk.get(chunk.size() - 1).getId();
+            read += chunk.size();
+            byte[] body = ElasticListener.getBulkIndexBody(new ArrayList<>(chunk));
+            // the chunk is not needed anymore, this keeps the session from growing with the catalog
+            dao.clearSession();
+            if (body != null) {
+                submit(body, chunk.size());
+            } else {
+                processed.addAndGet(chunk.size());
+            }
+        } while (chunk.size() == chunkSize && failure.get() == null);
+        return read;
+    }
+
+    private void submit(byte[] body, int entries) {
+        inFlight.acquireUninterruptibly();
+        NByteArrayEntity entity = new NByteArrayEntity(body, ContentType.APPLICATION_JSON);
+        restClient.performRequestAsync("POST", "/" + index + "/_bulk", Collections.emptyMap(), entity, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                try (InputStream content = response.getEntity().getContent()) {
+                    JsonNode result = MAPPER.readTree(content);
+                    if (result.path("errors").asBoolean()) {
+                        failure.compareAndSet(null, new IOException("Elasticsearch rejected documents: " + firstError(result)));
+                    } else {
+                        LOG.info("Reindexed " + processed.addAndGet(entries) + " of " + total + " published entries into " + index);
+                    }
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                failure.compareAndSet(null, exception);
+                inFlight.release();
+            }
+        });
+    }
+
+    private static String firstError(JsonNode bulkResult) {
+        for (JsonNode item : bulkResult.path("items")) {
+            for (JsonNode action : item) {
+                if (action.has("error")) {
+                    return action.get("error").toString();
+                }
+            }
+        }
+        return "unknown error";
+    }
+
+    private void swapAlias() throws IOException {
+        Set<String> oldIndices = getAliasedIndices();
+        if (oldIndices.isEmpty() && indexExists(ALIAS)) {
+            // before the alias, the index itself was called entry, it makes way in the same request
+            LOG.warn("Replacing the " + ALIAS + " index with an alias");
+            try {
+                updateAliases(Set.of(), true);
+            } catch (ResponseException e) {
+                if (e.getResponse().getStatusLine().getStatusCode() != HttpStatus.SC_BAD_REQUEST) {
+                    throw e;
+                }
+                // remove_index is new in Elasticsearch 6.4, before that search is down for a moment, this happens once
+                LOG.warn("Elasticsearch cannot replace an index with an alias at once, deleting the " + ALIAS + " index first");
+                deleteIndex(ALIAS);
+                updateAliases(Set.of(), false);
+            }
+        } else {
+            updateAliases(oldIndices, false);
+        }
+        LOG.info("Alias " + ALIAS + " now points to " + index);
+        oldIndices.forEach(this::deleteIndex);
+    }
+
+    /**
+     * Points the alias at the new index in one request
+     * @param oldIndices the indices the alias points at now
+     * @param removeIndex whether to delete the index named like the alias
+     */
+    private void updateAliases(Set<String> oldIndices, boolean removeIndex) throws IOException {
+        ArrayNode actions = MAPPER.createArrayNode();
+        if (removeIndex) {
+            actions.addObject().putObject("remove_index").put("index", ALIAS);
+        }
+        oldIndices.forEach(oldIndex -> actions.addObject().putObject("remove").put("index", oldIndex).put("alias", ALIAS));
+        actions.addObject().putObject("add").put("index", index).put("alias", ALIAS);
+        ObjectNode body = MAPPER.createObjectNode();
+        body.set("actions", actions);
+        restClient.performRequest("POST", "/_aliases", Collections.emptyMap(),
+            new NStringEntity(MAPPER.writeValueAsString(body), ContentType.APPLICATION_JSON));
+    }
+
+    private Set<String> getAliasedIndices() throws IOException {
+        Set<String> indices = new HashSet<>();
+        try {
+            Response response = restClient.performRequest("GET", "/_alias/" + ALIAS);
+            try (InputStream content = response.getEntity().getContent()) {
+                MAPPER.readTree(content).fieldNames().forEachRemaining(indices::add);
+            }
+        } catch (ResponseException e) {
+            if (e.getResponse().getStatusLine().getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+                throw e;
+            }
+        }
+        return indices;
+    }
+
+    private boolean indexExists(String name) throws IOException {
+        try {
+            return restClient.performRequest("HEAD", "/" + name).getStatusLine().getStatusCode() == HttpStatus.SC_OK;
+        } catch (ResponseException e) {
+            if (e.getResponse().getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private void deleteIndex(String name) {
+        try {
+            restClient.performRequest("DELETE", "/" + name);
+        } catch (IOException e) {
+            LOG.warn("Could not delete elastic search index " + name, e);
+        }
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers.statelisteners;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.gson.Gson;
+import io.dockstore.common.DescriptorLanguage;
+import io.dockstore.common.Registry;
+import io.dockstore.common.SourceControl;
+import io.dockstore.webservice.core.Alias;
+import io.dockstore.webservice.core.DescriptionSource;
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.FileFormat;
+import io.dockstore.webservice.core.Label;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.ToolMode;
+import io.dockstore.webservice.core.User;
+import io.dockstore.webservice.core.Version;
+import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.core.WorkflowMode;
+import io.dockstore.webservice.helpers.EntryStarredSerializer;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The document the entry index holds for an entry.
+ *
+ * Reads straight from the entry instead of copying it, so Jackson can write it into a request body without
+ * intermediate objects. Property names and types follow the entry's own JSON, which the index mapping and the UI use.
+ * Only the default version keeps its description and file contents, if the entry has a default version.
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE,
+    isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+public abstract class EntryDocument {
+    private static final Logger LOG = LoggerFactory.getLogger(EntryDocument.class);
+    private static final Gson GSON = new Gson();
+
+    private final Entry<?, ?> entry;
+    private final String defaultVersion;
+    private final boolean saneDefaultVersion;
+
+    EntryDocument(Entry<?, ?> entry) {
+        this.entry = entry;
+        this.defaultVersion = entry.getDefaultVersion();
+        this.saneDefaultVersion = defaultVersion != null && entry.getWorkflowVersions().stream()
+            .anyMatch(version -> defaultVersion.equals(version.getName()) || defaultVersion.equals(version.getReference()));
+        if (defaultVersion != null && !saneDefaultVersion) {
+            LOG.error("Entry has a default version that doesn't exist: " + entry.getEntryPath());
+        }
+    }
+
+    public static EntryDocument of(Entry<?, ?> entry) {
+        return entry instanceof Tool ? new ToolDocument((Tool)entry) : new WorkflowDocument((Workflow)entry);
+    }
+
+    @JsonProperty
+    public long getId() {
+        return entry.getId();
+    }
+
+    @JsonProperty
+    public String getAuthor() {
+        return entry.getAuthor();
+    }
+
+    @JsonProperty
+    public String getDescription() {
+        return entry.getDescription();
+    }
+
+    @JsonProperty
+    public String getEmail() {
+        return entry.getEmail();
+    }
+
+    @JsonProperty
+    public String getGitUrl() {
+        return entry.getGitUrl();
+    }
+
+    @JsonProperty("is_published")
+    public boolean isPublished() {
+        return entry.getIsPublished();
+    }
+
+    @JsonProperty
+    public Date getLastUpdated() {
+        return entry.getLastUpdated();
+    }
+
+    @JsonProperty
+    public Map<String, Alias> getAliases() {
+        return entry.getAliases();
+    }
+
+    @JsonProperty
+    public Set<Label> getLabels() {
+        return entry.getLabels();
+    }
+
+    @JsonProperty
+    @JsonSerialize(using = EntryStarredSerializer.class)
+    public Set<User> getStarredUsers() {
+        return entry.getStarredUsers();
+    }
+
+    @JsonProperty("has_checker")
+    public boolean hasChecker() {
+        return entry.hasChecker();
+    }
+
+    @JsonProperty("checker_id")
+    public Long getCheckerId() {
+        return entry.getCheckerId();
+    }
+
+    @JsonProperty
+    public String getDefaultVersion() {
+        return defaultVersion;
+    }
+
+    @JsonProperty("input_file_formats")
+    public Set<FileFormat> getInputFileFormats() {
+        return entry.getInputFileFormats();
+    }
+
+    @JsonProperty("output_file_formats")
+    public Set<FileFormat> getOutputFileFormats() {
+        return entry.getOutputFileFormats();
+    }
+
+    @JsonProperty
+    public List<VersionDocument> getWorkflowVersions() {
+        return entry.getWorkflowVersions().stream().map(version -> new VersionDocument(version,
+            !saneDefaultVersion || defaultVersion.equals(version.getName()) || defaultVersion.equals(version.getReference())))
+            .collect(Collectors.toList());
+    }
+
+    @JsonProperty
+    public boolean isVerified() {
+        return entry.getWorkflowVersions().stream().anyMatch(version -> anyVerified(((Version<?>)version).getSourceFiles()));
+    }
+
+    @JsonProperty("verified_platforms")
+    public Set<String> getVerifiedPlatforms() {
+        return entry.getWorkflowVersions().stream().flatMap(version -> ((Version<?>)version).getSourceFiles().stream())
+            .flatMap(sourceFile -> sourceFile.getVerifiedBySource().keySet().stream()).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private static boolean anyVerified(Set<SourceFile> sourceFiles) {
+        return sourceFiles.stream().anyMatch(file -> file.getVerifiedBySource().values().stream().anyMatch(info -> info.verified));
+    }
+
+    public static class ToolDocument extends EntryDocument {
+        private final Tool tool;
+
+        ToolDocument(Tool tool) {
+            super(tool);
+            this.tool = tool;
+        }
+
+        @JsonProperty
+        public String getName() {
+            return tool.getName();
+        }
+
+        @JsonProperty
+        public String getNamespace() {
+            return tool.getNamespace();
+        }
+
+        @JsonProperty
+        public String getToolname() {
+            return tool.getToolname();
+        }
+
+        @JsonProperty("registry_string")
+        public String getRegistryString() {
+            return tool.getRegistry();
+        }
+
+        @JsonProperty
+        public Registry getRegistry() {
+            return tool.getRegistryProvider();
+        }
+
+        @JsonProperty("custom_docker_registry_path")
+        public String getCustomDockerRegistryPath() {
+            return tool.getCustomDockerRegistryPath();
+        }
+
+        @JsonProperty
+        public String getPath() {
+            return tool.getPath();
+        }
+
+        @JsonProperty("tool_path")
+        public String getToolPath() {
+            return tool.getToolPath();
+        }
+
+        @JsonProperty("private_access")
+        public boolean isPrivateAccess() {
+            return tool.isPrivateAccess();
+        }
+
+        @JsonProperty("default_dockerfile_path")
+        public String getDefaultDockerfilePath() {
+            return tool.getDefaultDockerfilePath();
+        }
+
+        @JsonProperty("default_cwl_path")
+        public String getDefaultCwlPath() {
+            return tool.getDefaultCwlPath();
+        }
+
+        @JsonProperty("default_wdl_path")
+        public String getDefaultWdlPath() {
+            return tool.getDefaultWdlPath();
+        }
+
+        @JsonProperty
+        public List<String> getDescriptorType() {
+            return tool.getDescriptorType();
+        }
+
+        @JsonProperty
+        public ToolMode getMode() {
+            return tool.getMode();
+        }
+
+        @JsonProperty
+        public Date getLastBuild() {
+            return tool.getLastBuild();
+        }
+    }
+
+    public static class WorkflowDocument extends EntryDocument {
+        private final Workflow workflow;
+
+        WorkflowDocument(Workflow workflow) {
+            super(workflow);
+            this.workflow = workflow;
+        }
+
+        /**
+         * The name the entry's own JSON gives the subclass
+         */
+        @JsonProperty
+        public String getType() {
+            return Hibernate.getClass(workflow).getSimpleName();
+        }
+
+        @JsonProperty
+        public String getOrganization() {
+            return workflow.getOrganization();
+        }
+
+        @JsonProperty
+        public String getRepository() {
+            return workflow.getRepository();
+        }
+
+        @JsonProperty
+        public String getWorkflowName() {
+            return workflow.getWorkflowName();
+        }
+
+        @JsonProperty
+        public DescriptorLanguage getDescriptorType() {
+            return workflow.getDescriptorType();
+        }
+
+        @JsonProperty
+        public SourceControl getSourceControl() {
+            return workflow.getSourceControl();
+        }
+
+        @JsonProperty("source_control_provider")
+        public String getSourceControlProvider() {
+            return workflow.getSourceControlProvider();
+        }
+
+        @JsonProperty
+        public String getPath() {
+            return workflow.getPath();
+        }
+
+        @JsonProperty("full_workflow_path")
+        public String getWorkflowPath() {
+            return workflow.getWorkflowPath();
+        }
+
+        @JsonProperty("workflow_path")
+        public String getDefaultWorkflowPath() {
+            return workflow.getDefaultWorkflowPath();
+        }
+
+        @JsonProperty
+        public WorkflowMode getMode() {
+            return workflow.getMode();
+        }
+    }
+
+    @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+    public static class VersionDocument {
+        private final Version<?> version;
+        private final boolean withContent;
+
+        VersionDocument(Version<?> version, boolean withContent) {
+            this.version = version;
+            this.withContent = withContent;
+        }
+
+        @JsonProperty
+        public String getName() {
+            return version.getName();
+        }
+
+        @JsonProperty
+        public String getReference() {
+            return version.getReference();
+        }
+
+        @JsonProperty
+        public String getDescription() {
+            return withContent ? version.getDescription() : null;
+        }
+
+        @JsonProperty
+        public DescriptionSource getDescriptionSource() {
+            return withContent ? version.getDescriptionSource() : null;
+        }
+
+        @JsonProperty("input_file_formats")
+        public Set<FileFormat> getInputFileFormats() {
+            return version.getInputFileFormats();
+        }
+
+        @JsonProperty("output_file_formats")
+        public Set<FileFormat> getOutputFileFormats() {
+            return version.getOutputFileFormats();
+        }
+
+        @JsonProperty
+        public boolean isVerified() {
+            return anyVerified(version.getSourceFiles());
+        }
+
+        @JsonProperty
+        public Set<String> getVerifiedSources() {
+            return version.getSourceFiles().stream().flatMap(sourceFile -> sourceFile.getVerifiedBySource().values().stream())
+                .filter(info -> info.verified).map(info -> info.metadata).collect(Collectors.toCollection(TreeSet::new));
+        }
+
+        /**
+         * The verified sources as the array-like string that versions store
+         */
+        @JsonProperty
+        public String getVerifiedSource() {
+            Set<String> verifiedSources = getVerifiedSources();
+            return verifiedSources.isEmpty() ? null : GSON.toJson(verifiedSources);
+        }
+
+        @JsonProperty
+        public List<SourceFileDocument> getSourceFiles() {
+            return version.getSourceFiles().stream().map(sourceFile -> new SourceFileDocument(sourceFile, withContent))
+                .collect(Collectors.toList());
+        }
+    }
+
+    @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+    public static class SourceFileDocument {
+        private final SourceFile sourceFile;
+        private final boolean withContent;
+
+        SourceFileDocument(SourceFile sourceFile, boolean withContent) {
+            this.sourceFile = sourceFile;
+            this.withContent = withContent;
+        }
+
+        @JsonProperty
+        public DescriptorLanguage.FileType getType() {
+            return sourceFile.getType();
+        }
+
+        @JsonProperty
+        public String getPath() {
+            return sourceFile.getPath();
+        }
+
+        @JsonProperty
+        public String getAbsolutePath() {
+            return sourceFile.getAbsolutePath();
+        }
+
+        @JsonProperty
+        public String getContent() {
+            return withContent ? sourceFile.getContent() : "";
+        }
+
+        @JsonProperty
+        public Map<String, SourceFile.VerificationInformation> getVerifiedBySource() {
+            return sourceFile.getVerifiedBySource();
+        }
+    }
+}
@@ -15,45 +15,215 @@
  */
 package io.dockstore.webservice.helpers.statelisteners;
 
+import java.io.ByteArrayOutputStream;
+import java.time.Year;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Deque;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.core.BioWorkflow;
 import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.helpers.MetadataResourceHelper;
 import io.dockstore.webservice.helpers.StateManagerMode;
+import io.dockstore.webservice.resources.MetadataResource;
+import io.dockstore.webservice.resources.rss.RSSEntry;
+import io.dockstore.webservice.resources.rss.RSSFeed;
+import io.dockstore.webservice.resources.rss.RSSHeader;
+import io.dockstore.webservice.resources.rss.RSSWriter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpStatus;
+import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Future home of code for managing the RSS feed
+ * Keeps the RSS feed of the most recently updated tools and workflows.
+ *
+ * The feed is loaded from the database on the first request, then an updated entry moves to the front and pushes
+ * the oldest one out. When an entry in the feed is unpublished, the feed is loaded again on the next request to fill
+ * its place. Updates are applied once the transaction that made them commits. The rendered feed is kept until the
+ * entries change.
  */
 public class RSSListener implements StateListenerInterface {
-
-    public static final String RSS_KEY = "rss";
     private static final Logger LOGGER = LoggerFactory.getLogger(RSSListener.class);
-    private Cache<String, String> cache = CacheBuilder.newBuilder().build();
+    private static final int DESCRIPTION_LIMIT = 200;
+
+    private final int limit;
+    // newest first, everything is guarded by this
+    private final Deque<RSSEntry> recent = new ArrayDeque<>();
+    private boolean loaded;
+    private Date lastModified = new Date();
+    private RenderedPage rendered;
+    private SessionFactory sessionFactory;
+
+    public RSSListener() {
+        this(MetadataResource.RSS_ENTRY_LIMIT);
+    }
+
+    RSSListener(int limit) {
+        this.limit = limit;
+    }
 
     /**
-     * Custom getter
-     * @return
+     * @param factory the session factory of the requests that update entries, so that their updates wait for the commit
      */
-    public Cache<String, String> getCache() {
-        return cache;
+    public void setSessionFactory(SessionFactory factory) {
+        this.sessionFactory = factory;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Fill in the feed from the database, does nothing if it already was
+     * @param entries the most recently updated published tools and workflows, newest first
+     */
+    public synchronized void load(List<Entry<?, ?>> entries) {
+        if (loaded) {
+            return;
+        }
+        recent.clear();
+        entries.stream().limit(limit).map(RSSListener::toRSSEntry).forEach(recent::addLast);
+        loaded = true;
+        changed();
     }
 
     @Override
     public void handleIndexUpdate(Entry entry, StateManagerMode command) {
-        //TODO ideally, we could should update the rss for the one new entry
-        invalidateCache();
+        handleIndexUpdate(List.of(entry), command);
+    }
+
+    @Override
+    public void handleIndexUpdate(List<? extends Entry> entries, StateManagerMode command) {
+        // read the entries now, the request may change them again before it commits
+        List<BooleanSupplier> updates = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry instanceof Tool || entry instanceof BioWorkflow) {
+                RSSEntry rssEntry = toRSSEntry(entry);
+                boolean published = command != StateManagerMode.DELETE && entry.getIsPublished();
+                updates.add(() -> update(rssEntry, published));
+            }
+        }
+        if (!updates.isEmpty()) {
+            AfterCommit.run(sessionFactory, () -> apply(updates));
+        }
+    }
+
+    private synchronized void apply(List<BooleanSupplier> updates) {
+        boolean changed = false;
+        for (BooleanSupplier update : updates) {
+            changed |= update.getAsBoolean();
+        }
+        if (changed) {
+            changed();
+        }
     }
 
-    public void invalidateCache() {
-        this.cache.invalidateAll();
+    /**
+     * @return whether the feed changed
+     */
+    private boolean update(RSSEntry rssEntry, boolean published) {
+        if (!loaded) {
+            return false;
+        }
+        boolean removed = recent.removeIf(existing -> existing.getGuid().equals(rssEntry.getGuid()));
+        if (published) {
+            recent.addFirst(rssEntry);
+            if (recent.size() > limit) {
+                recent.removeLast();
+            }
+            return true;
+        } else if (removed) {
+            // the entry that would take its place is only known to the database
+            loaded = false;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void invalidateCache() {
+        loaded = false;
+        recent.clear();
+        changed();
     }
 
     @Override
     public void bulkUpsert(List<Entry> entries) {
-        //TODO ideally, the listener should know how to generate a whole new rss, probably not worth it right now
         invalidateCache();
     }
+
+    /**
+     * @return the feed, rendered again only if it changed since the last time
+     */
+    public synchronized RenderedPage getRendered() {
+        if (rendered == null) {
+            rendered = render();
+        }
+        return rendered;
+    }
+
+    private RenderedPage render() {
+        RSSFeed feed = new RSSFeed();
+
+        RSSHeader header = new RSSHeader();
+        header.setCopyright("Copyright " + Year.now().getValue() + " OICR");
+        header.setTitle("Dockstore");
+        header.setDescription("Dockstore, developed by the Cancer Genome Collaboratory, is an open platform used by the GA4GH for sharing Docker-based tools described with either the Common Workflow Language (CWL) or the Workflow Description Language (WDL).");
+        header.setLanguage("en");
+        header.setLink("https://dockstore.org/");
+        header.setPubDate(formatDate(lastModified));
+
+        feed.setHeader(header);
+        feed.setEntries(new ArrayList<>(recent));
+
+        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
+            RSSWriter.write(feed, byteArrayOutputStream);
+            return new RenderedPage(byteArrayOutputStream.toByteArray(), lastModified);
+        } catch (Exception e) {
+            LOGGER.error("Could not write RSS feed", e);
+            throw new CustomWebApplicationException("Could not write RSS feed.", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private void changed() {
+        lastModified = new Date();
+        rendered = null;
+    }
+
+    private static RSSEntry toRSSEntry(Entry<?, ?> dbEntry) {
+        RSSEntry entry = new RSSEntry();
+        if (dbEntry instanceof BioWorkflow) {
+            BioWorkflow workflow = (BioWorkflow)dbEntry;
+            entry.setTitle(workflow.getWorkflowPath());
+            String workflowURL = MetadataResourceHelper.createWorkflowURL(workflow);
+            entry.setGuid(workflowURL);
+            entry.setLink(workflowURL);
+        } else if (dbEntry instanceof Tool) {
+            Tool tool = (Tool)dbEntry;
+            entry.setTitle(tool.getPath());
+            String toolURL = MetadataResourceHelper.createToolURL(tool);
+            entry.setGuid(toolURL);
+            entry.setLink(toolURL);
+        } else {
+            throw new CustomWebApplicationException("Unknown data type unsupported for RSS feed.", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        }
+        entry.setDescription(StringUtils.truncate(dbEntry.getDescription(), DESCRIPTION_LIMIT));
+        if (dbEntry.getLastUpdated() != null) {
+            entry.setPubDate(formatDate(dbEntry.getLastUpdated()));
+        }
+        return entry;
+    }
+
+    private static String formatDate(Date date) {
+        Calendar instance = Calendar.getInstance();
+        instance.setTime(date);
+        return RSSFeed.formatDate(instance);
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers.statelisteners;
+
+import java.util.Date;
+
+import javax.ws.rs.core.EntityTag;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * A response body that is rendered once and sent as is until it changes, with what conditional requests need
+ */
+public final class RenderedPage {
+    private final byte[] content;
+    private final EntityTag entityTag;
+    private final Date lastModified;
+
+    RenderedPage(byte[] content, Date lastModified) {
+        this.content = content;
+        this.entityTag = new EntityTag(Hashing.sha256().hashBytes(content).toString());
+        this.lastModified = lastModified;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public EntityTag getEntityTag() {
+        return entityTag;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+}
@@ -15,49 +15,372 @@
  */
 package io.dockstore.webservice.helpers.statelisteners;
 
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.SortedSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+
+import com.google.common.base.MoreObjects;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.BioWorkflow;
+import io.dockstore.webservice.core.Collection;
 import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.Organization;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.helpers.MetadataResourceHelper;
 import io.dockstore.webservice.helpers.StateManagerMode;
+import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Future home of code for managing the sitemap
+ * Keeps the sitemap up to date as tools, workflows, organizations, and collections change.
+ *
+ * The URLs are loaded from the database once, on the first request for the sitemap, and are then updated in place once the
+ * transaction that made the change commits. Changes that commit while the URLs are being loaded are applied after the load,
+ * since the load may have read the database before them.
+ * The rendered sitemap is kept until the URLs change, so repeat requests cost nothing and can be answered with a 304.
+ * Past the 50,000 URL limit of the sitemap protocol, the sitemap is split into pages and listed by a sitemap index.
  */
 public class SitemapListener implements StateListenerInterface {
-    // The cache only has one key, arbitrarily choosing it to be this
-    public static final String SITEMAP_KEY = "sitemap";
+    /**
+     * The most URLs a single sitemap may have, according to the sitemap protocol
+     */
+    public static final int MAX_URLS_PER_SITEMAP = 50000;
     private static final Logger LOGGER = LoggerFactory.getLogger(SitemapListener.class);
-    private Cache<String, SortedSet<String>> cache = CacheBuilder.newBuilder().build();
+    private static final String SITEMAP_INDEX_NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+
+    private final NavigableSet<String> urls = new ConcurrentSkipListSet<>();
+    // entries, organizations and collections can be renamed, these remember which URL to take out
+    private final Map<Long, String> toolURLs = new ConcurrentHashMap<>();
+    private final Map<Long, String> workflowURLs = new ConcurrentHashMap<>();
+    private final Map<Long, String> organizationURLs = new ConcurrentHashMap<>();
+    private final Map<Long, String> collectionURLs = new ConcurrentHashMap<>();
+    // bumped on every change, a rendered sitemap of an older modification is stale
+    private final AtomicLong modification = new AtomicLong();
+    private final int maxUrlsPerSitemap;
+    private volatile boolean loaded;
+    // changes that committed during a load, null when nothing is loading
+    private List<BooleanSupplier> changesDuringLoad;
+    private int loadsInProgress;
+    private SessionFactory sessionFactory;
+    private volatile Date lastModified = new Date();
+    private volatile Rendered rendered;
+    private String pageBaseUrl;
+
+    public SitemapListener() {
+        this(MAX_URLS_PER_SITEMAP);
+    }
+
+    SitemapListener(int maxUrlsPerSitemap) {
+        this.maxUrlsPerSitemap = maxUrlsPerSitemap;
+    }
+
+    @Override
+    public void setConfig(DockstoreWebserviceConfiguration config) {
+        int port = config.getExternalConfig().getPort() == null ? -1 : Integer.parseInt(config.getExternalConfig().getPort());
+        String basePath = MoreObjects.firstNonNull(config.getExternalConfig().getBasePath(), "/");
+        try {
+            pageBaseUrl = new URI(config.getExternalConfig().getScheme(), null, config.getExternalConfig().getHostname(), port,
+                basePath + "metadata/sitemap/", null, null).toString();
+        } catch (URISyntaxException e) {
+            LOGGER.error("Could not create the sitemap URL. Error is " + e.getMessage(), e);
+        }
+    }
 
     /**
-     * Custom getter
-     * @return
+     * @param factory the session factory of the requests that change the sitemap, so that their changes wait for the commit
      */
-    public Cache<String, SortedSet<String>> getCache() {
-        return cache;
+    public void setSessionFactory(SessionFactory factory) {
+        this.sessionFactory = factory;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Fill in the sitemap from the database, does nothing if it already was
+     * @param entries       the published tools and workflows, with their IDs
+     * @param organizations the approved organizations
+     * @param collections   collections of the approved organizations
+     */
+    public void load(Supplier<List<? extends Entry>> entries, Supplier<List<Organization>> organizations, Supplier<List<Collection>> collections) {
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            if (changesDuringLoad == null) {
+                changesDuringLoad = new ArrayList<>();
+            }
+            loadsInProgress++;
+        }
+        try {
+            // read without the lock, changes that commit meanwhile are kept until the read is in
+            List<? extends Entry> loadedEntries = entries.get();
+            List<Organization> loadedOrganizations = organizations.get();
+            List<Collection> loadedCollections = collections.get();
+            synchronized (this) {
+                if (loaded) {
+                    return;
+                }
+                loadedEntries.forEach(entry -> update(entry.getId(), getURLs(entry), getURL(entry)));
+                loadedOrganizations.forEach(this::addOrganization);
+                loadedCollections.forEach(collection -> addCollection(collection.getId(), MetadataResourceHelper.createCollectionURL(collection, collection.getOrganization())));
+                changesDuringLoad.forEach(BooleanSupplier::getAsBoolean);
+                loaded = true;
+                changed();
+            }
+        } finally {
+            synchronized (this) {
+                // a failed read stops keeping changes once no other load is waiting for them
+                if (--loadsInProgress == 0) {
+                    changesDuringLoad = null;
+                }
+            }
+        }
+        LOGGER.info("Loaded " + urls.size() + " sitemap URLs");
     }
 
     @Override
     public void handleIndexUpdate(Entry entry, StateManagerMode command) {
-        //TODO ideally, we could should update the sitemap for the one new entry
-        if (command == StateManagerMode.UPDATE) {
-            return;
+        handleIndexUpdate(List.of(entry), command);
+    }
+
+    @Override
+    public void handleIndexUpdate(List<? extends Entry> entries, StateManagerMode command) {
+        List<BooleanSupplier> updates = new ArrayList<>();
+        for (Entry entry : entries) {
+            String url = getURL(entry);
+            if (url != null) {
+                long id = entry.getId();
+                Map<Long, String> entryURLs = getURLs(entry);
+                String newURL = command != StateManagerMode.DELETE && entry.getIsPublished() ? url : null;
+                updates.add(() -> update(id, entryURLs, newURL));
+            }
         }
-        invalidateCache();
+        if (!updates.isEmpty()) {
+            afterCommit(() -> {
+                boolean changed = false;
+                for (BooleanSupplier update : updates) {
+                    changed |= update.getAsBoolean();
+                }
+                return changed;
+            });
+        }
+    }
+
+    /**
+     * Update the sitemap for an organization that was approved, rejected, or renamed
+     * @param organization the organization, as it is now
+     */
+    public void handleOrganizationUpdate(Organization organization) {
+        long id = organization.getId();
+        boolean approved = isApproved(organization);
+        String url = MetadataResourceHelper.createOrganizationURL(organization);
+        Map<Long, String> collections = new HashMap<>();
+        organization.getCollections().forEach(collection -> collections.put(collection.getId(), MetadataResourceHelper.createCollectionURL(collection, organization)));
+        afterCommit(() -> {
+            removeURL(organizationURLs.remove(id));
+            collections.keySet().forEach(collectionId -> removeURL(collectionURLs.remove(collectionId)));
+            if (approved) {
+                addOrganization(id, url);
+                collections.forEach(this::addCollection);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Update the sitemap for a collection that was created or renamed
+     * @param collection the collection, as it is now
+     */
+    public void handleCollectionUpdate(Collection collection) {
+        long id = collection.getId();
+        String url = isApproved(collection.getOrganization()) ? MetadataResourceHelper.createCollectionURL(collection, collection.getOrganization()) : null;
+        afterCommit(() -> {
+            removeURL(collectionURLs.remove(id));
+            if (url != null) {
+                addCollection(id, url);
+            }
+            return true;
+        });
     }
 
-    public void invalidateCache() {
-        this.cache.invalidateAll();
+    /**
+     * Throw the URLs away, they are loaded again on the next request
+     */
+    public synchronized void invalidateCache() {
+        loaded = false;
+        urls.clear();
+        toolURLs.clear();
+        workflowURLs.clear();
+        organizationURLs.clear();
+        collectionURLs.clear();
+        changed();
     }
 
     @Override
     public void bulkUpsert(List<Entry> entries) {
-        //TODO ideally, the listener should know how to generate a whole new sitemap, probably not worth it right now
         invalidateCache();
     }
+
+    /**
+     * @return the sitemap, rendered again only if it changed since the last time
+     */
+    public Rendered getRendered() {
+        Rendered current = rendered;
+        if (current != null && current.modification == modification.get()) {
+            return current;
+        }
+        synchronized (this) {
+            current = rendered;
+            long renderedModification = modification.get();
+            if (current == null || current.modification != renderedModification) {
+                current = render(renderedModification);
+                rendered = current;
+            }
+            return current;
+        }
+    }
+
+    private Rendered render(long renderedModification) {
+        List<String> snapshot = new ArrayList<>(urls);
+        Date renderedLastModified = lastModified;
+        List<RenderedPage> pages = new ArrayList<>();
+        for (int from = 0; from < snapshot.size() || from == 0; from += maxUrlsPerSitemap) {
+            List<String> pageURLs = snapshot.subList(from, Math.min(from + maxUrlsPerSitemap, snapshot.size()));
+            pages.add(new RenderedPage(String.join(System.lineSeparator(), pageURLs).getBytes(StandardCharsets.UTF_8), renderedLastModified));
+        }
+        RenderedPage index = null;
+        if (pages.size() > 1) {
+            StringBuilder builder = new StringBuilder();
+            builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<sitemapindex xmlns=\"").append(SITEMAP_INDEX_NAMESPACE).append("\">\n");
+            for (int i = 0; i < pages.size(); i++) {
+                builder.append("  <sitemap><loc>").append(pageBaseUrl).append(i).append("</loc></sitemap>\n");
+            }
+            builder.append("</sitemapindex>\n");
+            index = new RenderedPage(builder.toString().getBytes(StandardCharsets.UTF_8), renderedLastModified);
+        }
+        return new Rendered(renderedModification, index, pages);
+    }
+
+    private void changed() {
+        lastModified = new Date();
+        modification.incrementAndGet();
+    }
+
+    /**
+     * Apply a change once the current transaction commits, right away if there is none
+     * @param change returns whether the sitemap changed
+     */
+    private void afterCommit(BooleanSupplier change) {
+        AfterCommit.run(sessionFactory, () -> apply(change));
+    }
+
+    /**
+     * Changes to URLs that are not loaded are skipped, the load reads them from the database
+     */
+    private synchronized void apply(BooleanSupplier change) {
+        if (loaded) {
+            if (change.getAsBoolean()) {
+                changed();
+            }
+        } else if (changesDuringLoad != null) {
+            changesDuringLoad.add(change);
+        }
+    }
+
+    /**
+     * @param entryURLs the URLs of the entry's type
+     * @param url       the URL of the entry, null if it is not in the sitemap
+     * @return whether the sitemap changed
+     */
+    private boolean update(long id, Map<Long, String> entryURLs, String url) {
+        String previous = url == null ? entryURLs.remove(id) : entryURLs.put(id, url);
+        if (url == null) {
+            return previous != null && urls.remove(previous);
+        }
+        // a renamed entry leaves its old URL behind
+        boolean changed = previous != null && !previous.equals(url) && urls.remove(previous);
+        return urls.add(url) || changed;
+    }
+
+    private void addOrganization(Organization organization) {
+        addOrganization(organization.getId(), MetadataResourceHelper.createOrganizationURL(organization));
+    }
+
+    private void addOrganization(long id, String url) {
+        organizationURLs.put(id, url);
+        urls.add(url);
+    }
+
+    private void addCollection(long id, String url) {
+        collectionURLs.put(id, url);
+        urls.add(url);
+    }
+
+    private void removeURL(String url) {
+        if (url != null) {
+            urls.remove(url);
+        }
+    }
+
+    private static boolean isApproved(Organization organization) {
+        return organization != null && organization.getStatus() == Organization.ApplicationState.APPROVED;
+    }
+
+    private Map<Long, String> getURLs(Entry entry) {
+        return entry instanceof Tool ? toolURLs : workflowURLs;
+    }
+
+    /**
+     * Services are not in the sitemap, checker workflows are, like the database query that loads the sitemap
+     */
+    private static String getURL(Entry entry) {
+        if (entry instanceof Tool) {
+            return MetadataResourceHelper.createToolURL((Tool)entry);
+        } else if (entry instanceof BioWorkflow) {
+            return MetadataResourceHelper.createWorkflowURL((BioWorkflow)entry);
+        }
+        return null;
+    }
+
+    /**
+     * The sitemap, ready to be sent
+     */
+    public static final class Rendered {
+        private final long modification;
+        private final RenderedPage index;
+        private final List<RenderedPage> pages;
+
+        private Rendered(long modification, RenderedPage index, List<RenderedPage> pages) {
+            this.modification = modification;
+            this.index = index;
+            this.pages = Collections.unmodifiableList(pages);
+        }
+
+        /**
+         * @return the sitemap index, or null if all the URLs fit in one sitemap
+         */
+        public RenderedPage getIndex() {
+            return index;
+        }
+
+        public List<RenderedPage> getPages() {
+            return pages;
+        }
+    }
 }
@@ -37,6 +37,18 @@ public interface StateListenerInterface {
      */
     void handleIndexUpdate(Entry entry, StateManagerMode command);
 
+    /**
+     * This handles the same update of many entries at once, such as a bulk publish, so that caches are invalidated once
+     * <p>
+     * By default, each entry is handled on its own
+     *
+     * @param entries The entries that changed
+     * @param command The command to perform for the documents, either "update" or "delete" documents
+     */
+    default void handleIndexUpdate(List<? extends Entry> entries, StateManagerMode command) {
+        entries.forEach(entry -> handleIndexUpdate(entry, command));
+    }
+
     /**
      * This handles a bulk update of everything in Dockstore
      *
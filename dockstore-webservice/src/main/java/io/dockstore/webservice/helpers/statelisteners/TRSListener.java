@@ -15,47 +15,302 @@
  */
 package io.dockstore.webservice.helpers.statelisteners;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-import javax.ws.rs.core.Response;
-
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.database.TRSEntryKey;
 import io.dockstore.webservice.helpers.StateManagerMode;
+import io.dockstore.webservice.jdbi.TRSFilter;
 
 /**
- * Future home of code for managing cached TRS entries
+ * Caches GA4GH TRS /tools results.
+ *
+ * Pages only hold the keys of their entries and the total count, the converted tools are cached per entry.
+ * So an update to one entry only has to replace that entry's tool, pages are only dropped when the entry may have
+ * joined, left or moved within them, judged by both the state the listings last saw and the new one. Both caches are
+ * weighted by their approximate size in bytes, and everything expires after a while in case an update was missed.
  */
 public class TRSListener implements StateListenerInterface {
 
-    // TODO: implementor should tune this https://github.com/google/guava/wiki/CachesExplained
-    // arbitrarily picked 20
-    private static final int MAXIMUM_SIZE = 20;
-    private Cache<Integer, Response.ResponseBuilder> trsResponses = CacheBuilder.newBuilder()
-        // TODO: implementor should try to weight larger responses (like getting all tools without limits)
-        .maximumSize(MAXIMUM_SIZE)
-        // TODO: should refactor to use CacheLoader properly with a LoadingCache
-        .build();
+    // pages and listing states are small, most of the budget goes to the converted tools
+    private static final int PAGE_BUDGET_DIVISOR = 8;
+    private static final int PAGE_BYTES = 256;
+    private static final int PAGE_KEY_BYTES = 64;
+    private static final int STATE_BYTES = 512;
+    private static final int TOOL_BYTES = 1024;
+    private static final int VERSION_BYTES = 2048;
+    private static final long EXPIRE_AFTER_WRITE_MINUTES = 10;
+
+    private final Cache<List<Object>, TRSPage> trsPages;
+    private final Cache<TRSEntryKey, CachedTool> trsTools;
+    // what the listings last saw of an entry, so that an update can tell which listings it left
+    private final Cache<TRSEntryKey, ListingState> listingStates;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param maximumBytes approximate budget for all cached TRS results
+     */
+    public TRSListener(long maximumBytes) {
+        trsPages = CacheBuilder.newBuilder()
+            .maximumWeight(maximumBytes / PAGE_BUDGET_DIVISOR)
+            .weigher((List<Object> query, TRSPage page) -> PAGE_BYTES + PAGE_KEY_BYTES * page.getKeys().size())
+            .expireAfterWrite(EXPIRE_AFTER_WRITE_MINUTES, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+        trsTools = CacheBuilder.newBuilder()
+            .maximumWeight(maximumBytes - 2 * (maximumBytes / PAGE_BUDGET_DIVISOR))
+            .weigher((TRSEntryKey key, CachedTool tool) -> tool.bytes)
+            .expireAfterWrite(EXPIRE_AFTER_WRITE_MINUTES, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+        // outlives the pages, so that the entries on them are still known when they change
+        listingStates = CacheBuilder.newBuilder()
+            .maximumSize(maximumBytes / PAGE_BUDGET_DIVISOR / STATE_BYTES)
+            .build();
+    }
+
+    public void registerMetrics(MetricRegistry metrics) {
+        registerMetrics(metrics, "pages", trsPages);
+        registerMetrics(metrics, "tools", trsTools);
+    }
+
+    private static void registerMetrics(MetricRegistry metrics, String cacheName, Cache<?, ?> cache) {
+        metrics.register(MetricRegistry.name(TRSListener.class, cacheName, "hits"), (Gauge<Long>)() -> cache.stats().hitCount());
+        metrics.register(MetricRegistry.name(TRSListener.class, cacheName, "misses"), (Gauge<Long>)() -> cache.stats().missCount());
+        metrics.register(MetricRegistry.name(TRSListener.class, cacheName, "evictions"), (Gauge<Long>)() -> cache.stats().evictionCount());
+        metrics.register(MetricRegistry.name(TRSListener.class, cacheName, "size"), (Gauge<Long>)cache::size);
+    }
 
     @Override
     public void handleIndexUpdate(Entry entry, StateManagerMode command) {
-        //TODO: this should update TRS for the one new entry rather than wipe everything out
-        trsResponses.invalidateAll();
+        handleIndexUpdate(List.of(entry), command);
+    }
+
+    @Override
+    public void handleIndexUpdate(List<? extends Entry> entries, StateManagerMode command) {
+        final Set<TRSEntryKey> keys = new HashSet<>();
+        final List<ListingState> states = new ArrayList<>();
+        boolean unknownTools = false;
+        boolean unknownWorkflows = false;
+        for (Entry entry : entries) {
+            final TRSEntryKey key = TRSEntryKey.of(entry);
+            final ListingState previous = listingStates.getIfPresent(key);
+            final ListingState current = ListingState.of(entry);
+            keys.add(key);
+            listingStates.put(key, current);
+            if (current.equals(previous) && command == StateManagerMode.UPDATE) {
+                // only the converted tool changed
+                continue;
+            }
+            if (previous != null) {
+                states.add(previous);
+            } else if (command == StateManagerMode.UPDATE && current.published) {
+                // a published entry the listings have not seen may have left any of them, which the new state cannot tell
+                unknownTools |= entry instanceof Tool;
+                unknownWorkflows |= !(entry instanceof Tool);
+            }
+            // published, unpublished or deleted entries keep the fields they were listed with
+            states.add(current);
+        }
+        final boolean anyTools = unknownTools;
+        final boolean anyWorkflows = unknownWorkflows;
+        generation.incrementAndGet();
+        trsTools.invalidateAll(keys);
+        // one pass over the cached pages for the whole batch
+        trsPages.asMap().values().removeIf(page -> keys.stream().anyMatch(page::contains) || page.includes(anyTools, anyWorkflows)
+            || states.stream().anyMatch(page::mayContain) || entries.stream().anyMatch(page::isLookupOf));
     }
 
     @Override
     public void bulkUpsert(List<Entry> entries) {
-        trsResponses.invalidateAll();
+        generation.incrementAndGet();
+        trsPages.invalidateAll();
+        trsTools.invalidateAll();
+        listingStates.invalidateAll();
+    }
+
+    /**
+     * Read before querying the database, results loaded afterwards are discarded if something was invalidated in between.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @param query every parameter of the request, including the user
+     */
+    public Optional<TRSPage> getTRSPage(List<Object> query) {
+        return Optional.ofNullable(trsPages.getIfPresent(query));
+    }
+
+    public void loadTRSPage(List<Object> query, TRSPage page, long loadedGeneration) {
+        trsPages.put(query, page);
+        if (generation.get() != loadedGeneration) {
+            trsPages.invalidate(query);
+        }
+    }
+
+    public Optional<io.openapi.model.Tool> getTool(TRSEntryKey key) {
+        final CachedTool cachedTool = trsTools.getIfPresent(key);
+        return cachedTool == null ? Optional.empty() : Optional.of(cachedTool.tool);
+    }
+
+    public void loadTool(Entry<?, ?> entry, io.openapi.model.Tool tool, long loadedGeneration) {
+        final TRSEntryKey key = TRSEntryKey.of(entry);
+        trsTools.put(key, new CachedTool(tool, weigh(entry)));
+        if (generation.get() != loadedGeneration) {
+            trsTools.invalidate(key);
+        } else {
+            listingStates.put(key, ListingState.of(entry));
+        }
+    }
+
+    /**
+     * Roughly what the converted tool holds, without serializing it: the entry's text and a fixed amount per version
+     */
+    private static int weigh(Entry<?, ?> entry) {
+        return TOOL_BYTES + length(entry.getDescription()) + length(entry.getAuthor()) + length(entry.getGitUrl())
+            + VERSION_BYTES * entry.getWorkflowVersions().size();
     }
 
-    public Optional<Response.ResponseBuilder> getTrsResponse(Integer hashcode) {
-        final Response.ResponseBuilder cachedResponse = trsResponses.getIfPresent(hashcode);
-        return Optional.ofNullable(cachedResponse);
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
     }
 
-    public void loadTRSResponse(Integer hashcode, Response.ResponseBuilder r) {
-        trsResponses.put(hashcode, r);
+    /**
+     * Everything the TRS filters and the listing order look at
+     */
+    private static final class ListingState {
+        private final boolean tool;
+        private final boolean published;
+        private final String gitUrl;
+        private final TRSFilter.Fields fields;
+
+        private ListingState(boolean tool, boolean published, String gitUrl, TRSFilter.Fields fields) {
+            this.tool = tool;
+            this.published = published;
+            this.gitUrl = gitUrl;
+            this.fields = fields;
+        }
+
+        static ListingState of(Entry<?, ?> entry) {
+            return new ListingState(entry instanceof Tool, entry.getIsPublished(), entry.getGitUrl(), TRSFilter.Fields.of(entry));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ListingState that = (ListingState)o;
+            return tool == that.tool && published == that.published && Objects.equals(gitUrl, that.gitUrl) && fields.equals(that.fields);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tool, published, gitUrl, fields);
+        }
+    }
+
+    /**
+     * The entries on one page of TRS results and the total number of results
+     */
+    public static final class TRSPage {
+        private final List<TRSEntryKey> keys;
+        private final Set<TRSEntryKey> keySet;
+        private final long numberOfResults;
+        private final TRSFilter filter;
+        private final boolean includeTools;
+        private final boolean includeWorkflows;
+        private final String lookupPath;
+        private final String lookupAlias;
+
+        /**
+         * @param filter the filter of a listing
+         */
+        public TRSPage(List<TRSEntryKey> keys, long numberOfResults, TRSFilter filter, boolean includeTools, boolean includeWorkflows) {
+            this(keys, numberOfResults, filter, includeTools, includeWorkflows, null, null);
+        }
+
+        @SuppressWarnings("checkstyle:ParameterNumber")
+        private TRSPage(List<TRSEntryKey> keys, long numberOfResults, TRSFilter filter, boolean includeTools, boolean includeWorkflows, String lookupPath,
+            String lookupAlias) {
+            this.keys = List.copyOf(keys);
+            this.keySet = new HashSet<>(keys);
+            this.numberOfResults = numberOfResults;
+            this.filter = filter;
+            this.includeTools = includeTools;
+            this.includeWorkflows = includeWorkflows;
+            this.lookupPath = lookupPath;
+            this.lookupAlias = lookupAlias;
+        }
+
+        /**
+         * The result of an id or alias lookup, which has at most one entry
+         * @param path  the path of the entry looked up by id, or null
+         * @param alias the alias looked up, or null
+         */
+        public static TRSPage lookup(List<TRSEntryKey> keys, long numberOfResults, String path, String alias) {
+            return new TRSPage(keys, numberOfResults, null, false, false, path, alias);
+        }
+
+        public List<TRSEntryKey> getKeys() {
+            return keys;
+        }
+
+        public long getNumberOfResults() {
+            return numberOfResults;
+        }
+
+        boolean contains(TRSEntryKey key) {
+            return keySet.contains(key);
+        }
+
+        /**
+         * Whether this page is part of a listing of tools or workflows
+         */
+        boolean includes(boolean tools, boolean workflows) {
+            return filter != null && (tools && includeTools || workflows && includeWorkflows);
+        }
+
+        /**
+         * Whether an entry in this state belongs in the listing this page is part of, regardless of whether it is published
+         */
+        boolean mayContain(ListingState state) {
+            return filter != null && (state.tool ? includeTools : includeWorkflows) && filter.matches(state.fields);
+        }
+
+        /**
+         * Whether this page looked up the entry, which it may not have found at the time. The entry's aliases are not
+         * worth loading for this, so every alias lookup that found nothing is dropped.
+         */
+        boolean isLookupOf(Entry<?, ?> entry) {
+            return lookupPath != null && lookupPath.equals(entry.getEntryPath()) || lookupAlias != null && keys.isEmpty();
+        }
+    }
+
+    private static final class CachedTool {
+        private final io.openapi.model.Tool tool;
+        private final int bytes;
+
+        CachedTool(io.openapi.model.Tool tool, int bytes) {
+            this.tool = tool;
+            this.bytes = bytes;
+        }
     }
 }
@@ -32,4 +32,11 @@ public abstract class AbstractDockstoreDAO<T> extends AbstractDAO<T> {
         Session session = currentSession();
         session.evict(entry);
     }
+
+    /**
+     * Detaches everything from the session, for jobs that read more than should be kept in memory at once
+     */
+    public void clearSession() {
+        currentSession().clear();
+    }
 }
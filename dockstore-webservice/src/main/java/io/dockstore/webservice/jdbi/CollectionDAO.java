@@ -37,6 +37,10 @@ public class CollectionDAO extends AbstractDAO<Collection> {
         return list(query);
     }
 
+    public List<Collection> findAllFromApprovedOrganizations() {
+        return list(this.currentSession().getNamedQuery("io.dockstore.webservice.core.Collection.findAllFromApprovedOrganizations"));
+    }
+
     public Collection findByNameAndOrg(String name, long organizationId) {
         Query query = namedQuery("io.dockstore.webservice.core.Collection.findByNameAndOrg")
                 .setParameter("name", name)
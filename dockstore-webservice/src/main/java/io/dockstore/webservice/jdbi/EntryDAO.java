@@ -19,30 +19,39 @@ package io.dockstore.webservice.jdbi;
 import java.lang.reflect.ParameterizedType;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Strings;
+import io.dockstore.webservice.core.BioWorkflow;
 import io.dockstore.webservice.core.CollectionEntry;
 import io.dockstore.webservice.core.CollectionOrganization;
 import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.Service;
 import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.database.EntryLite;
+import io.dockstore.webservice.core.database.TRSEntryKey;
 import org.apache.commons.lang3.tuple.MutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +63,11 @@ public abstract class EntryDAO<T extends Entry> extends AbstractDockstoreDAO<T>
 
     private static final Logger LOG = LoggerFactory.getLogger(EntryDAO.class);
 
+    /**
+     * The entry classes that can show up in TRS listings, the index is used as the type column of TRS queries
+     */
+    private static final List<Class<? extends Entry>> TRS_TYPES = List.of(Tool.class, BioWorkflow.class, Service.class);
+
     final int registryIndex = 0;
     final int orgIndex = 1;
     final int repoIndex = 2;
@@ -192,6 +206,62 @@ public abstract class EntryDAO<T extends Entry> extends AbstractDockstoreDAO<T>
         return list(this.currentSession().getNamedQuery("io.dockstore.webservice.core." + typeOfT.getSimpleName() + ".findAllPublished"));
     }
 
+    /**
+     * Keyset (cursor) pagination variant of {@link #findAllPublished(String, Integer, String, String, String, Class)}.
+     * Deep pages cost the same as the first one since the database seeks to the cursor instead of skipping rows.
+     *
+     * @param cursor    an encoded cursor from a previous page, empty or null for the first page
+     * @param limit     maximum number of results
+     * @param filter    search string
+     * @param sortCol   sort column
+     * @param sortOrder sort order
+     * @param classType the type of entry to find
+     * @return the page, and the encoded cursor for the next page if there is one
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public Pair<List<T>, Optional<String>> findAllPublishedAfter(String cursor, int limit, String filter, String sortCol, String sortOrder,
+        Class<T> classType) {
+        KeysetCursor after = null;
+        if (!Strings.isNullOrEmpty(cursor)) {
+            after = KeysetCursor.decode(cursor);
+            after.checkSort(sortCol, sortOrder);
+        }
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> entry = query.from(classType != null ? classType : typeOfT);
+        Expression<?> sortExpression = processQuery(filter, sortCol, sortOrder, cb, query, entry, after);
+        if (sortExpression == null) {
+            query.multiselect(entry);
+        } else {
+            query.multiselect(entry, sortExpression);
+        }
+
+        // ask for one extra row to find out whether there is a next page
+        List<Tuple> tuples = currentSession().createQuery(query).setMaxResults(limit + 1).getResultList();
+        List<T> entries = tuples.stream().limit(limit).map(tuple -> (T)tuple.get(0)).collect(Collectors.toList());
+        Optional<String> nextCursor = Optional.empty();
+        if (limit > 0 && tuples.size() > limit) {
+            Tuple last = tuples.get(limit - 1);
+            Object sortValue = sortExpression == null ? null : last.get(1);
+            nextCursor = Optional.of(new KeysetCursor(sortCol, sortOrder, sortValue, entries.get(limit - 1).getId()).encode());
+        }
+        return Pair.of(entries, nextCursor);
+    }
+
+    /**
+     * One chunk of all published entries in id order, for jobs that go through the whole catalog
+     *
+     * @param afterId only entries with a greater id are returned, 0 for the first chunk
+     * @param limit   maximum number of results
+     */
+    public List<T> findPublishedAfterId(long afterId, int limit) {
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<T> query = criteriaQuery();
+        Root<T> entry = query.from(typeOfT);
+        query.select(entry).where(cb.isTrue(entry.get("isPublished")), cb.greaterThan(entry.get("id"), afterId)).orderBy(cb.asc(entry.get("id")));
+        return currentSession().createQuery(query).setMaxResults(limit).getResultList();
+    }
+
     public long countAllHosted(long userid) {
         return ((BigInteger)namedQuery("Entry.hostedWorkflowCount").setParameter("userid", userid).getSingleResult()).longValueExact();
     }
@@ -212,7 +282,137 @@ public abstract class EntryDAO<T extends Entry> extends AbstractDockstoreDAO<T>
         return (long)this.currentSession().getNamedQuery("io.dockstore.webservice.core." + typeOfT.getSimpleName() + ".countAllPublished").getSingleResult();
     }
 
+    /**
+     * Finds one page of published tools and/or workflows (including services) that match the GA4GH TRS filters.
+     * Filtering, ordering (by git url, in code point order) and paging are all done by the database, only the keys of the page are returned.
+     *
+     * @param filter           TRS filters
+     * @param includeTools     whether tools should be considered
+     * @param includeWorkflows whether workflows and services should be considered
+     * @param offset           index of the first result
+     * @param limit            maximum number of results
+     * @return keys of the entries on the page, in order
+     */
+    public List<TRSEntryKey> findPublishedTRSKeys(TRSFilter filter, boolean includeTools, boolean includeWorkflows, int offset, int limit) {
+        Map<String, Object> parameters = new HashMap<>();
+        Optional<String> union = buildTRSUnion(filter, includeTools, includeWorkflows, parameters);
+        if (union.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // the C collation orders by code point, like the listing used to be sorted in Java, whatever the database's locale
+        NativeQuery<Object[]> query = currentSession()
+            .createNativeQuery("SELECT type, id FROM (" + union.get() + ") AS entries ORDER BY COALESCE(giturl, '') COLLATE \"C\", type, id");
+        parameters.forEach(query::setParameter);
+        List<Object[]> rows = query.setFirstResult(offset).setMaxResults(limit).getResultList();
+        return rows.stream().map(row -> new TRSEntryKey(TRS_TYPES.get(((Number)row[0]).intValue()), ((Number)row[1]).longValue()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the number of published entries that match the GA4GH TRS filters
+     * @see #findPublishedTRSKeys(TRSFilter, boolean, boolean, int, int)
+     */
+    public long countPublishedTRS(TRSFilter filter, boolean includeTools, boolean includeWorkflows) {
+        Map<String, Object> parameters = new HashMap<>();
+        Optional<String> union = buildTRSUnion(filter, includeTools, includeWorkflows, parameters);
+        if (union.isEmpty()) {
+            return 0;
+        }
+        NativeQuery<?> query = currentSession().createNativeQuery("SELECT COUNT(*) FROM (" + union.get() + ") AS entries");
+        parameters.forEach(query::setParameter);
+        return ((Number)query.getSingleResult()).longValue();
+    }
+
+    /**
+     * Loads the entries identified by the keys, preserving their order. Entries that no longer exist are skipped.
+     */
+    public List<Entry<?, ?>> findByTRSKeys(List<TRSEntryKey> keys) {
+        List<Entry<?, ?>> entries = new ArrayList<>(keys.size());
+        keys.stream().collect(Collectors.groupingBy(TRSEntryKey::getEntryClass, Collectors.mapping(TRSEntryKey::getId, Collectors.toList())))
+            .forEach((clazz, ids) -> currentSession().byMultipleIds(clazz).multiLoad(ids));
+        // everything is now in the session, these lookups do not go back to the database
+        for (TRSEntryKey key : keys) {
+            Entry<?, ?> entry = currentSession().get(key.getEntryClass(), key.getId());
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    // TODO: Replace this with JPA when possible, criteria queries cannot union the tables of our entry subclasses
+    private Optional<String> buildTRSUnion(TRSFilter filter, boolean includeTools, boolean includeWorkflows, Map<String, Object> parameters) {
+        addTRSLikeParameter(parameters, "registry", filter.getRegistry());
+        addTRSLikeParameter(parameters, "organization", filter.getOrganization());
+        addTRSLikeParameter(parameters, "name", filter.getName());
+        addTRSLikeParameter(parameters, "toolname", filter.getToolname());
+        addTRSLikeParameter(parameters, "description", filter.getDescription());
+        addTRSLikeParameter(parameters, "author", filter.getAuthor());
+
+        List<String> selects = new ArrayList<>();
+        // tools are never checker workflows
+        if (includeTools && !Boolean.TRUE.equals(filter.getChecker())) {
+            selects.add(buildTRSSelect(TRS_TYPES.indexOf(Tool.class), "tool", "registry", "namespace", "name", "toolname", null, parameters));
+        }
+        if (includeWorkflows) {
+            if (filter.getChecker() != null) {
+                parameters.put("checker", filter.getChecker());
+            }
+            selects.add(buildTRSSelect(TRS_TYPES.indexOf(BioWorkflow.class), "workflow", "sourcecontrol", "organization", "repository",
+                "workflowname", filter.getChecker() == null ? null : "ischecker = :checker", parameters));
+            // services are never checker workflows
+            if (!Boolean.TRUE.equals(filter.getChecker())) {
+                selects.add(buildTRSSelect(TRS_TYPES.indexOf(Service.class), "service", "sourcecontrol", "organization", "repository",
+                    "workflowname", null, parameters));
+            }
+        }
+        return selects.isEmpty() ? Optional.empty() : Optional.of(String.join(" UNION ALL ", selects));
+    }
+
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private static String buildTRSSelect(int type, String table, String registryColumn, String organizationColumn, String nameColumn,
+        String toolnameColumn, String extraClause, Map<String, Object> parameters) {
+        StringBuilder select = new StringBuilder("SELECT " + type + " AS type, id, giturl FROM " + table + " WHERE ispublished = TRUE");
+        addTRSLikeClause(select, registryColumn, "registry", parameters);
+        addTRSLikeClause(select, organizationColumn, "organization", parameters);
+        addTRSLikeClause(select, nameColumn, "name", parameters);
+        addTRSLikeClause(select, toolnameColumn, "toolname", parameters);
+        addTRSLikeClause(select, "description", "description", parameters);
+        addTRSLikeClause(select, "author", "author", parameters);
+        if (extraClause != null) {
+            select.append(" AND ").append(extraClause);
+        }
+        return select.toString();
+    }
+
+    private static void addTRSLikeParameter(Map<String, Object> parameters, String parameterName, String value) {
+        if (value != null) {
+            String escaped = value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+            parameters.put(parameterName, "%" + escaped + "%");
+        }
+    }
+
+    /**
+     * TRS filters are substring matches that let entries with a null value through.
+     */
+    private static void addTRSLikeClause(StringBuilder select, String column, String parameterName, Map<String, Object> parameters) {
+        if (parameters.containsKey(parameterName)) {
+            select.append(" AND (").append(column).append(" IS NULL OR ").append(column).append(" LIKE :").append(parameterName)
+                .append(" ESCAPE '\\')");
+        }
+    }
+
     private void processQuery(String filter, String sortCol, String sortOrder, CriteriaBuilder cb, CriteriaQuery query, Root<T> entry) {
+        processQuery(filter, sortCol, sortOrder, cb, query, entry, null);
+    }
+
+    /**
+     * @param after when present, only entries that come after this cursor in the sort order are matched
+     * @return the expression the query is primarily sorted by, null when unsorted or only sorted by id
+     */
+    @SuppressWarnings({"checkstyle:ParameterNumber", "unchecked"})
+    private Expression<?> processQuery(String filter, String sortCol, String sortOrder, CriteriaBuilder cb, CriteriaQuery query, Root<T> entry,
+        KeysetCursor after) {
         List<Predicate> predicates = new ArrayList<>();
         if (!Strings.isNullOrEmpty(filter)) {
             // TODO: handle all search attributes that we want to hook up, this sucks since we didn't handle polymorphism quite right
@@ -232,25 +432,34 @@ public abstract class EntryDAO<T extends Entry> extends AbstractDockstoreDAO<T>
         } else {
             predicates.add(cb.isTrue(entry.get("isPublished")));
         }
+        Expression<?> sortExpression = null;
+        boolean descending = "desc".equalsIgnoreCase(sortOrder);
         if (!Strings.isNullOrEmpty(sortCol)) {
-            // sorting by stars is a special case since it needs a join
+            // sorting by stars uses the count kept by the database, counting the starred users of each entry is too slow
             if ("stars".equalsIgnoreCase(sortCol)) {
-                if ("desc".equalsIgnoreCase(sortOrder)) {
-                    query.orderBy(cb.desc(cb.size(entry.<Collection>get("starredUsers"))), cb.desc(entry.get("id")));
-                } else {
-                    query.orderBy(cb.asc(cb.size(entry.<Collection>get("starredUsers"))), cb.desc(entry.get("id")));
-                }
+                sortExpression = entry.get("starCount");
+            } else {
+                sortExpression = entry.get(sortCol);
+                predicates.add(sortExpression.isNotNull());
+            }
+            query.orderBy(descending ? cb.desc(sortExpression) : cb.asc(sortExpression), cb.desc(entry.get("id")));
+        } else if (after != null) {
+            // keyset pagination needs a stable order
+            query.orderBy(cb.desc(entry.get("id")));
+        }
+        if (after != null) {
+            // ties on the sort column are broken by descending id, same as the ordering above
+            Predicate idBefore = cb.lessThan(entry.get("id"), after.getId());
+            if (sortExpression == null) {
+                predicates.add(idBefore);
             } else {
-                Path<Object> sortPath = entry.get(sortCol);
-                if (!Strings.isNullOrEmpty(sortOrder) && "desc".equalsIgnoreCase(sortOrder)) {
-                    query.orderBy(cb.desc(sortPath), cb.desc(entry.get("id")));
-                    predicates.add(sortPath.isNotNull());
-                } else {
-                    query.orderBy(cb.asc(sortPath), cb.desc(entry.get("id")));
-                    predicates.add(sortPath.isNotNull());
-                }
+                Expression<Comparable> sortKey = (Expression<Comparable>)sortExpression;
+                Comparable sortValue = after.getSortValue(sortExpression.getJavaType());
+                Predicate pastSortValue = descending ? cb.lessThan(sortKey, sortValue) : cb.greaterThan(sortKey, sortValue);
+                predicates.add(cb.or(pastSortValue, cb.and(cb.equal(sortKey, sortValue), idBefore)));
             }
         }
         query.where(predicates.toArray(new Predicate[]{}));
+        return sortExpression;
     }
 }
@@ -0,0 +1,124 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.jdbi;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Objects;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import io.dockstore.webservice.CustomWebApplicationException;
+import org.apache.http.HttpStatus;
+
+/**
+ * An opaque cursor for keyset pagination of published entries.
+ * Holds the sort column and order it was created for, plus the (sort key, id) tuple of the last entry of the page.
+ * Paging with a cursor costs the same no matter how deep into the listing the page is, unlike an offset.
+ */
+public final class KeysetCursor {
+    private static final Gson GSON = new Gson();
+
+    private String sortCol;
+    private String sortOrder;
+    private String sortValue;
+    private long id;
+
+    private KeysetCursor() {
+        // for Gson
+    }
+
+    KeysetCursor(String sortCol, String sortOrder, Object sortValue, long id) {
+        this.sortCol = sortCol;
+        this.sortOrder = sortOrder;
+        this.sortValue = encodeValue(sortValue);
+        this.id = id;
+    }
+
+    /**
+     * @param cursor an encoded cursor
+     * @return the decoded cursor
+     * @throws CustomWebApplicationException when the cursor is not one we created
+     */
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            KeysetCursor keysetCursor = GSON.fromJson(json, KeysetCursor.class);
+            if (keysetCursor == null) {
+                throw new JsonParseException("Empty cursor");
+            }
+            return keysetCursor;
+        } catch (IllegalArgumentException | JsonParseException e) {
+            throw new CustomWebApplicationException("Invalid cursor", HttpStatus.SC_BAD_REQUEST);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(GSON.toJson(this).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Cursors are only valid for the sort they were created with.
+     */
+    public void checkSort(String expectedSortCol, String expectedSortOrder) {
+        if (!Objects.equals(Objects.toString(sortCol, ""), Objects.toString(expectedSortCol, "")) || !Objects
+            .equals(Objects.toString(sortOrder, ""), Objects.toString(expectedSortOrder, ""))) {
+            throw new CustomWebApplicationException("Cursor was created for a different sortCol or sortOrder", HttpStatus.SC_BAD_REQUEST);
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @param javaType the java type of the sort column
+     * @return the sort key of the last entry, as an instance of the type of the sort column
+     */
+    public Comparable<?> getSortValue(Class<?> javaType) {
+        try {
+            if (javaType == String.class) {
+                return sortValue;
+            } else if (javaType == Integer.class || javaType == int.class) {
+                return Integer.valueOf(sortValue);
+            } else if (javaType == Long.class || javaType == long.class) {
+                return Long.valueOf(sortValue);
+            } else if (javaType == Boolean.class || javaType == boolean.class) {
+                return Boolean.valueOf(sortValue);
+            } else if (Date.class.isAssignableFrom(javaType)) {
+                return Timestamp.from(Instant.parse(sortValue));
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new CustomWebApplicationException("Invalid cursor", HttpStatus.SC_BAD_REQUEST);
+        }
+        throw new CustomWebApplicationException("Cannot page by cursor when sorting by " + sortCol, HttpStatus.SC_BAD_REQUEST);
+    }
+
+    private static String encodeValue(Object value) {
+        if (value instanceof Timestamp) {
+            // keep the sub-millisecond part, the database does
+            return ((Timestamp)value).toInstant().toString();
+        } else if (value instanceof Date) {
+            return ((Date)value).toInstant().toString();
+        }
+        return value == null ? null : value.toString();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.jdbi;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.persistence.PersistenceException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import com.google.common.base.MoreObjects;
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.core.RefreshJob;
+import io.dockstore.webservice.core.RefreshJob.RefreshJobStatus;
+import io.dropwizard.hibernate.AbstractDAO;
+import org.apache.http.HttpStatus;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.query.Query;
+
+public class RefreshJobDAO extends AbstractDAO<RefreshJob> {
+    private static final List<RefreshJobStatus> UNFINISHED = List.of(RefreshJobStatus.QUEUED, RefreshJobStatus.RUNNING);
+    // the unique index of unfinished jobs by target, see the migration that creates the table
+    private static final String UNFINISHED_INDEX = "refreshjob_unfinished_index";
+
+    public RefreshJobDAO(SessionFactory factory) {
+        super(factory);
+    }
+
+    public RefreshJob findById(Long id) {
+        return get(id);
+    }
+
+    /**
+     * Create a job, handing it to onCommit once the transaction commits so that workers never look for a job that is not there yet
+     * @param refreshJob job to create
+     * @param onCommit   given the job after the commit
+     * @return the ID of the job
+     * @throws CustomWebApplicationException with 409 if the same refresh was created meanwhile, the transaction cannot go on
+     */
+    public long create(RefreshJob refreshJob, Consumer<RefreshJob> onCommit) {
+        long id;
+        try {
+            id = persist(refreshJob).getId();
+        } catch (PersistenceException e) {
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof ConstraintViolationException)) {
+                cause = cause.getCause();
+            }
+            if (cause != null && UNFINISHED_INDEX.equals(((ConstraintViolationException)cause).getConstraintName())) {
+                throw new CustomWebApplicationException("The same refresh was just submitted, submit it again to get it", HttpStatus.SC_CONFLICT);
+            }
+            throw e;
+        }
+        currentSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do until committed
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    onCommit.accept(refreshJob);
+                }
+            }
+        });
+        return id;
+    }
+
+    /**
+     * Claim the queued and running jobs whose lease expired, setting them back to queued. A job is claimed by one owner only,
+     * the update skips a job whose lease was renewed or claimed meanwhile.
+     * @param owner       who claims them
+     * @param leaseExpiry the lease of the claimed jobs
+     * @return the claimed jobs, oldest first
+     */
+    public List<RefreshJob> claimLeaseExpired(String owner, Timestamp leaseExpiry) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Query query = namedQuery("io.dockstore.webservice.core.RefreshJob.findLeaseExpired")
+                .setParameter("statuses", UNFINISHED)
+                .setParameter("now", now);
+        List<RefreshJob> expired = list(query);
+        return expired.stream().filter(refreshJob -> {
+            boolean claimed = namedQuery("io.dockstore.webservice.core.RefreshJob.claim")
+                    .setParameter("owner", owner)
+                    .setParameter("leaseExpiry", leaseExpiry)
+                    .setParameter("queued", RefreshJobStatus.QUEUED)
+                    .setParameter("id", refreshJob.getId())
+                    .setParameter("statuses", UNFINISHED)
+                    .setParameter("now", now)
+                    .executeUpdate() > 0;
+            if (claimed) {
+                currentSession().refresh(refreshJob);
+            }
+            return claimed;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * @param owner       whose unfinished jobs to renew the lease of
+     * @param leaseExpiry the new lease, the past to give the jobs up
+     * @return how many jobs were renewed
+     */
+    public int renew(String owner, Timestamp leaseExpiry) {
+        return namedQuery("io.dockstore.webservice.core.RefreshJob.renew")
+                .setParameter("owner", owner)
+                .setParameter("leaseExpiry", leaseExpiry)
+                .setParameter("statuses", UNFINISHED)
+                .executeUpdate();
+    }
+
+    /**
+     * @return the oldest queued or running job that refreshes the same as the given job
+     */
+    public Optional<RefreshJob> findUnfinished(RefreshJob refreshJob) {
+        Query query = namedQuery("io.dockstore.webservice.core.RefreshJob.findByTarget")
+                .setParameter("type", refreshJob.getType())
+                .setParameter("entryId", refreshJob.getEntryId())
+                .setParameter("organization", MoreObjects.firstNonNull(refreshJob.getOrganization(), ""))
+                .setParameter("dockerRegistry", MoreObjects.firstNonNull(refreshJob.getDockerRegistry(), ""))
+                .setParameter("statuses", UNFINISHED)
+                .setMaxResults(1);
+        return list(query).stream().findFirst();
+    }
+
+    public List<RefreshJob> findByUserId(long userId, int offset, int limit) {
+        Query query = namedQuery("io.dockstore.webservice.core.RefreshJob.findByUserId")
+                .setParameter("userId", userId)
+                .setFirstResult(offset)
+                .setMaxResults(limit);
+        return list(query);
+    }
+}
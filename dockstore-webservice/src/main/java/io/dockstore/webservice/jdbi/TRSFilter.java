@@ -0,0 +1,154 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.jdbi;
+
+import java.util.Objects;
+
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.Workflow;
+
+/**
+ * The GA4GH TRS /tools filters that can be evaluated by the database.
+ *
+ * Each filter is a case-sensitive substring match, and (matching the historical in-memory behaviour) an entry whose
+ * corresponding field is null is not excluded by that filter.
+ */
+public class TRSFilter {
+    private final String registry;
+    private final String organization;
+    private final String name;
+    private final String toolname;
+    private final String description;
+    private final String author;
+    private final Boolean checker;
+
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public TRSFilter(String registry, String organization, String name, String toolname, String description, String author, Boolean checker) {
+        this.registry = registry;
+        this.organization = organization;
+        this.name = name;
+        this.toolname = toolname;
+        this.description = description;
+        this.author = author;
+        this.checker = checker;
+    }
+
+    public String getRegistry() {
+        return registry;
+    }
+
+    public String getOrganization() {
+        return organization;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getToolname() {
+        return toolname;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public Boolean getChecker() {
+        return checker;
+    }
+
+    /**
+     * Applies the filters in memory, for the id and alias short circuits and for cache invalidation.
+     * Must stay consistent with {@link EntryDAO#findPublishedTRSKeys}.
+     */
+    public boolean matches(Entry<?, ?> c) {
+        return matches(Fields.of(c));
+    }
+
+    /**
+     * @see #matches(Entry)
+     */
+    public boolean matches(Fields c) {
+        return containsOrNull(c.registry, registry) && containsOrNull(c.organization, organization) && containsOrNull(c.name, name)
+            && containsOrNull(c.toolname, toolname) && (checker == null || c.checker == checker)
+            && containsOrNull(c.description, description) && containsOrNull(c.author, author);
+    }
+
+    private static boolean containsOrNull(String value, String filter) {
+        return filter == null || value == null || value.contains(filter);
+    }
+
+    /**
+     * What the filters look at in an entry, which is kept after the entry changes
+     */
+    public static final class Fields {
+        private final String registry;
+        private final String organization;
+        private final String name;
+        private final String toolname;
+        private final String description;
+        private final String author;
+        private final boolean checker;
+
+        @SuppressWarnings("checkstyle:ParameterNumber")
+        private Fields(String registry, String organization, String name, String toolname, String description, String author, boolean checker) {
+            this.registry = registry;
+            this.organization = organization;
+            this.name = name;
+            this.toolname = toolname;
+            this.description = description;
+            this.author = author;
+            this.checker = checker;
+        }
+
+        public static Fields of(Entry<?, ?> c) {
+            if (c instanceof Tool) {
+                Tool tool = (Tool)c;
+                // tools are never checker workflows
+                return new Fields(tool.getRegistry(), tool.getNamespace(), tool.getName(), tool.getToolname(), c.getDescription(), c.getAuthor(), false);
+            }
+            Workflow workflow = (Workflow)c;
+            String sourceControl = workflow.getSourceControl() == null ? null : workflow.getSourceControl().toString();
+            return new Fields(sourceControl, workflow.getOrganization(), workflow.getRepository(), workflow.getWorkflowName(), c.getDescription(),
+                c.getAuthor(), workflow.isIsChecker());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Fields that = (Fields)o;
+            return checker == that.checker && Objects.equals(registry, that.registry) && Objects.equals(organization, that.organization)
+                && Objects.equals(name, that.name) && Objects.equals(toolname, that.toolname) && Objects.equals(description, that.description)
+                && Objects.equals(author, that.author);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(registry, organization, name, toolname, description, author, checker);
+        }
+    }
+}
@@ -16,8 +16,14 @@
 
 package io.dockstore.webservice.jdbi;
 
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import io.dockstore.common.DescriptorLanguage;
 import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.database.RSSToolPath;
 import io.dockstore.webservice.core.database.ToolPath;
@@ -43,10 +49,42 @@ public class ToolDAO extends EntryDAO<Tool> {
         return list(this.currentSession().getNamedQuery("io.dockstore.webservice.core.Tool.findByUserRegistryNamespaceRepository").setParameter("userId", userId).setParameter("registry", registry).setParameter("namespace", namespace).setParameter("repository", repository));
     }
 
+    /**
+     * Give listed tools their descriptor types without loading the source files of their versions, only their types are read
+     * @param tools      the listed tools
+     * @param withHidden whether the files of hidden versions count, as they do when the versions are listed
+     */
+    public void loadDescriptorTypes(List<Tool> tools, boolean withHidden) {
+        if (tools.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = this.currentSession().getNamedQuery("io.dockstore.webservice.core.Tool.findFileTypes")
+                .setParameterList("ids", tools.stream().map(Tool::getId).collect(Collectors.toList()))
+                .setParameter("withHidden", withHidden).list();
+        Map<Long, Set<DescriptorLanguage.FileType>> fileTypes = new HashMap<>();
+        rows.forEach(row -> fileTypes.computeIfAbsent((Long)row[0], id -> EnumSet.noneOf(DescriptorLanguage.FileType.class))
+                .add((DescriptorLanguage.FileType)row[1]));
+        tools.forEach(tool -> tool.setListedFileTypes(fileTypes.getOrDefault(tool.getId(), Set.of())));
+    }
+
     public List<ToolPath> findAllPublishedPaths() {
         return list(this.currentSession().getNamedQuery("io.dockstore.webservice.core.Tool.findAllPublishedPaths"));
     }
 
+    /**
+     * Finds the paths of published tools in any combination of the given registries, namespaces and names, without loading the tools.
+     * Callers match the paths they asked for against the result.
+     *
+     * @param registries e.g. quay.io
+     * @param namespaces organizations
+     * @param names      repositories
+     * @return paths of the published tools
+     */
+    public List<ToolPath> findPublishedPathsByRepositories(Set<String> registries, Set<String> namespaces, Set<String> names) {
+        return list(this.currentSession().getNamedQuery("io.dockstore.webservice.core.Tool.findPublishedPathsByRepositories")
+                .setParameterList("registries", registries).setParameterList("namespaces", namespaces).setParameterList("names", names));
+    }
+
     public List<RSSToolPath> findAllPublishedPathsOrderByDbupdatedate() {
         return list(this.currentSession().getNamedQuery("io.dockstore.webservice.core.Tool.findAllPublishedPathsOrderByDbupdatedate").setMaxResults(RSS_ENTRY_LIMIT));
     }
@@ -17,6 +17,7 @@
 package io.dockstore.webservice.jdbi;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -31,6 +32,7 @@ import javax.persistence.criteria.Root;
 import io.dockstore.common.SourceControl;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.core.SourceControlConverter;
+import io.dockstore.webservice.core.User;
 import io.dockstore.webservice.core.Workflow;
 import org.apache.http.HttpStatus;
 import org.hibernate.SessionFactory;
@@ -239,10 +241,21 @@ public class WorkflowDAO extends EntryDAO<Workflow> {
             .setParameter("organization", organization));
     }
 
-    public List<Workflow> findByOrganization(SourceControl sourceControl, String organization) {
-        return list(this.currentSession().getNamedQuery("io.dockstore.webservice.core.Workflow.findByOrganization")
-                .setParameter("organization", organization)
-                .setParameter("sourceControl", sourceControl));
+    /**
+     * Find the workflows of many organizations in one query, skipping those the user already has
+     * @param sourceControl source control the organizations are on
+     * @param organizations organization names, in any case
+     * @param user          user to leave out the workflows of
+     * @return workflows of the organizations that the user does not have yet
+     */
+    public List<Workflow> findByOrganizationsWithoutUser(SourceControl sourceControl, Collection<String> organizations, User user) {
+        if (organizations.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return list(this.currentSession().getNamedQuery("io.dockstore.webservice.core.Workflow.findByOrganizationsWithoutUser")
+                .setParameterList("organizations", organizations.stream().map(String::toLowerCase).collect(Collectors.toSet()))
+                .setParameter("sourceControl", sourceControl)
+                .setParameter("user", user));
     }
 
     public Workflow findByAlias(String alias) {
@@ -16,6 +16,11 @@
 
 package io.dockstore.webservice.jdbi;
 
+import java.sql.Timestamp;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
 import io.dockstore.webservice.core.WorkflowVersion;
 import org.hibernate.SessionFactory;
 
@@ -31,4 +36,40 @@ public class WorkflowVersionDAO extends VersionDAO<WorkflowVersion> {
     public WorkflowVersion findByAlias(String alias) {
         return uniqueResult(this.currentSession().getNamedQuery("io.dockstore.webservice.core.WorkflowVersion.getByAlias").setParameter("alias", alias));
     }
+
+    /**
+     * Store the DAG and tool table of a version, unless the version changed since they were computed or they are already stored
+     * @param id            the version
+     * @param dbUpdateDate  when the version was last updated, as read before computing them
+     * @param dagJson       the DAG, null to leave it as is
+     * @param toolTableJson the tool table, null to leave it as is
+     * @return whether they were stored
+     */
+    public boolean storeDAGs(long id, Timestamp dbUpdateDate, String dagJson, String toolTableJson) {
+        return namedQuery("io.dockstore.webservice.core.WorkflowVersion.storeDAGs")
+            .setParameter("id", id)
+            .setParameter("dbUpdateDate", dbUpdateDate)
+            .setParameter("dagJson", dagJson)
+            .setParameter("toolTableJson", toolTableJson)
+            .executeUpdate() > 0;
+    }
+
+    /**
+     * Run something once the current transaction commits, e.g. to hand the versions it changed to a background task
+     */
+    public void afterCommit(Runnable onCommit) {
+        currentSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do until committed
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    onCommit.run();
+                }
+            }
+        });
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.languages;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * A CWL descriptor parsed once.
+ *
+ * Metadata, imports, file formats, validation, the DAG and the tool table all ask about the same descriptors during a
+ * refresh, and a workflow's steps often run the same tool. Documents are cached by content for a few minutes, so each
+ * of them is read from YAML once and turned into a typed CWL object once per class.
+ *
+ * The parsed mapping is shared and must not be modified.
+ */
+final class CWLDocument {
+    private static final int CACHED_DOCUMENTS = 1000;
+    private static final int CACHE_MINUTES = 5;
+
+    private static final Cache<String, CWLDocument> DOCUMENTS = CacheBuilder.newBuilder()
+            .maximumSize(CACHED_DOCUMENTS)
+            .expireAfterAccess(CACHE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    private final Map<String, Object> mapping;
+    private final RuntimeException error;
+    private final Map<Class<?>, Object> typed = new ConcurrentHashMap<>();
+    private volatile String json;
+
+    private CWLDocument(String content) {
+        Map<String, Object> parsed = null;
+        RuntimeException parseError = null;
+        try {
+            parsed = new Yaml().loadAs(content, Map.class);
+        } catch (RuntimeException e) {
+            parseError = e;
+        }
+        this.mapping = parsed;
+        this.error = parseError;
+    }
+
+    /**
+     * @param content content of a CWL descriptor
+     * @return the descriptor, parsed at most once every few minutes
+     */
+    static CWLDocument of(String content) {
+        String key = Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
+        return DOCUMENTS.asMap().computeIfAbsent(key, k -> new CWLDocument(content));
+    }
+
+    static void invalidateAll() {
+        DOCUMENTS.invalidateAll();
+    }
+
+    /**
+     * @return the descriptor as YAML, null if it is empty
+     * @throws RuntimeException what parsing the descriptor threw, e.g. a YAMLException or ClassCastException
+     */
+    Map<String, Object> getMapping() {
+        if (error != null) {
+            throw error;
+        }
+        return mapping;
+    }
+
+    /**
+     * @return the class of the descriptor, e.g. Workflow or CommandLineTool, null if it has none
+     */
+    String getCwlClass() {
+        Map<String, Object> map = getMapping();
+        Object cwlClass = map == null ? null : map.get("class");
+        return cwlClass == null ? null : cwlClass.toString();
+    }
+
+    /**
+     * @param type e.g. Workflow, CommandLineTool or ExpressionTool
+     * @param gson a type-safe CWL Gson
+     * @return the descriptor as a typed CWL object, shared like the mapping
+     */
+    <T> T as(Class<T> type, Gson gson) {
+        return type.cast(typed.computeIfAbsent(type, t -> gson.fromJson(getJson(), t)));
+    }
+
+    private String getJson() {
+        if (json == null) {
+            JSONObject cwlJson = new JSONObject(getMapping());
+            // CWLAvro only supports requirements and hints as an array, must be converted
+            cwlJson = convertJSONObjectToArray("requirements", cwlJson);
+            cwlJson = convertJSONObjectToArray("hints", cwlJson);
+            json = cwlJson.toString();
+        }
+        return json;
+    }
+
+    /**
+     * Converts a JSON Object in CWL to JSON Array
+     * @param keyName Name of key to convert (Ex. requirements, hints)
+     * @param entryJson JSON representation of file
+     * @return Updated JSON representation of file
+     */
+    private static JSONObject convertJSONObjectToArray(String keyName, JSONObject entryJson) {
+        if (entryJson.has(keyName)) {
+            if (entryJson.get(keyName) instanceof JSONObject) {
+                JSONArray reqArray = new JSONArray();
+                JSONObject requirements = (JSONObject)entryJson.get(keyName);
+                requirements.keySet().stream().forEach(key -> {
+                    JSONObject newReqEntry = requirements.getJSONObject(key);
+                    newReqEntry.put("class", key);
+                    reqArray.put(newReqEntry);
+                });
+                entryJson.put(keyName, reqArray);
+            }
+        }
+        return entryJson;
+    }
+}
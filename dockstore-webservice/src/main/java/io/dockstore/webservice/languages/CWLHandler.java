@@ -24,11 +24,13 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 import com.google.gson.internal.LinkedTreeMap;
 import com.google.gson.reflect.TypeToken;
@@ -53,11 +55,8 @@ import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.MutableTriple;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.error.YAMLException;
 
 /**
@@ -71,8 +70,7 @@ public class CWLHandler implements LanguageHandlerInterface {
         // parse the collab.cwl file to get important metadata
         if (content != null && !content.isEmpty()) {
             try {
-                Yaml yaml = new Yaml();
-                Map map = yaml.loadAs(content, Map.class);
+                Map map = CWLDocument.of(content).getMapping();
                 String description = null;
                 try {
                     // draft-3 construct
@@ -177,9 +175,8 @@ public class CWLHandler implements LanguageHandlerInterface {
         SourceCodeRepoInterface sourceCodeRepoInterface, String workingDirectoryForFile) {
 
         Map<String, SourceFile> imports = new HashMap<>();
-        Yaml yaml = new Yaml();
         try {
-            Map<String, ?> fileContentMap = yaml.loadAs(content, Map.class);
+            Map<String, ?> fileContentMap = CWLDocument.of(content).getMapping();
             handleMap(repositoryId, workingDirectoryForFile, version, imports, fileContentMap, sourceCodeRepoInterface);
         } catch (YAMLException e) {
             SourceCodeRepoInterface.LOG.error("Could not process content from workflow as yaml");
@@ -203,9 +200,8 @@ public class CWLHandler implements LanguageHandlerInterface {
      */
     public Set<FileFormat> getFileFormats(String content, String type) {
         Set<FileFormat> fileFormats = new HashSet<>();
-        Yaml yaml = new Yaml();
         try {
-            Map<String, ?> map = yaml.loadAs(content, Map.class);
+            Map<String, ?> map = CWLDocument.of(content).getMapping();
             Object targetType = map.get(type);
             if (targetType instanceof Map) {
                 Map<String, ?> outputsMap = (Map<String, ?>)targetType;
@@ -242,8 +238,7 @@ public class CWLHandler implements LanguageHandlerInterface {
     //TODO: Occassionally misses dockerpulls. One case is when a dockerPull is nested within a run that's within a step. There are other missed cases though that are TBD.
     public String getContent(String mainDescriptorPath, String mainDescriptor, Set<SourceFile> secondarySourceFiles, LanguageHandlerInterface.Type type,
         ToolDAO dao) {
-        Yaml yaml = new Yaml();
-        if (isValidCwl(mainDescriptor, yaml)) {
+        if (isValidCwl(mainDescriptor)) {
             // Initialize data structures for DAG
             Map<String, ToolInfo> toolInfoMap = new HashMap<>(); // Mapping of stepId -> array of dependencies for the step
             List<Pair<String, String>> nodePairs = new ArrayList<>();       // List of pairings of step id and dockerPull url
@@ -252,14 +247,7 @@ public class CWLHandler implements LanguageHandlerInterface {
 
             // Initialize data structures for Tool table
             Map<String, Triple<String, String, String>> nodeDockerInfo = new HashMap<>(); // map of stepId -> (run path, docker image, docker url)
-
-            // Convert YAML to JSON
-            Map<String, Object> mapping = yaml.loadAs(mainDescriptor, Map.class);
-            JSONObject cwlJson = new JSONObject(mapping);
-
-            // CWLAvro only supports requirements and hints as an array, must be converted
-            cwlJson = convertJSONObjectToArray("requirements", cwlJson);
-            cwlJson = convertJSONObjectToArray("hints", cwlJson);
+            List<MutableTriple<String, String, String>> stepsWithImages = new ArrayList<>(); // docker info of the steps whose docker url is needed
 
             // Other useful variables
             String nodePrefix = "dockstore_";
@@ -272,7 +260,7 @@ public class CWLHandler implements LanguageHandlerInterface {
             try {
                 gson = CWL.getTypeSafeCWLToolDocument();
 
-                final Workflow workflow = gson.fromJson(cwlJson.toString(), Workflow.class);
+                final Workflow workflow = CWLDocument.of(mainDescriptor).as(Workflow.class, gson);
 
                 if (workflow == null) {
                     LOG.error("The workflow does not seem to conform to CWL specs.");
@@ -284,7 +272,7 @@ public class CWLHandler implements LanguageHandlerInterface {
 
                 // Store workflow steps in json and then read it into map <String, WorkflowStep>
                 Object steps = workflow.getSteps();
-                String stepJson = gson.toJson(steps);
+                JsonElement stepJson = gson.toJsonTree(steps);
                 Map<String, WorkflowStep> workflowStepMap;
                 if (steps instanceof ArrayList) {
                     ArrayList<WorkflowStep> workflowStepList = gson.fromJson(stepJson, new TypeToken<ArrayList<WorkflowStep>>() {
@@ -296,7 +284,7 @@ public class CWLHandler implements LanguageHandlerInterface {
                     }.getType());
                 }
 
-                if (stepJson == null) {
+                if (stepJson.isJsonNull()) {
                     LOG.error("Could not find any steps for the workflow.");
                     return null;
                 }
@@ -337,22 +325,23 @@ public class CWLHandler implements LanguageHandlerInterface {
                     // Check for docker requirement within workflow step file
                     String secondaryFile = null;
                     Object run = workflowStep.getRun();
-                    String runAsJson = gson.toJson(gson.toJsonTree(run));
+                    // an inline run was already parsed with the workflow, only its class is needed to type it
+                    Object runClass = run instanceof Map ? ((Map)run).get("class") : null;
 
                     if (run instanceof String) {
                         secondaryFile = (String)run;
-                    } else if (isTool(runAsJson, yaml)) {
-                        CommandLineTool clTool = gson.fromJson(runAsJson, CommandLineTool.class);
+                    } else if ("CommandLineTool".equals(runClass)) {
+                        CommandLineTool clTool = gson.fromJson(gson.toJsonTree(run), CommandLineTool.class);
                         stepDockerRequirement = getRequirementOrHint(clTool.getRequirements(), clTool.getHints(),
                             stepDockerRequirement);
                         stepToType.put(workflowStepId, toolType);
-                    } else if (isWorkflow(runAsJson, yaml)) {
-                        Workflow stepWorkflow = gson.fromJson(runAsJson, Workflow.class);
+                    } else if ("Workflow".equals(runClass)) {
+                        Workflow stepWorkflow = gson.fromJson(gson.toJsonTree(run), Workflow.class);
                         stepDockerRequirement = getRequirementOrHint(stepWorkflow.getRequirements(), stepWorkflow.getHints(),
                             stepDockerRequirement);
                         stepToType.put(workflowStepId, workflowType);
-                    } else if (isExpressionTool(runAsJson, yaml)) {
-                        ExpressionTool expressionTool = gson.fromJson(runAsJson, ExpressionTool.class);
+                    } else if ("ExpressionTool".equals(runClass)) {
+                        ExpressionTool expressionTool = gson.fromJson(gson.toJsonTree(run), ExpressionTool.class);
                         stepDockerRequirement = getRequirementOrHint(expressionTool.getRequirements(), expressionTool.getHints(),
                             stepDockerRequirement);
                         stepToType.put(workflowStepId, expressionToolType);
@@ -375,35 +364,37 @@ public class CWLHandler implements LanguageHandlerInterface {
                         final Optional<SourceFile> sourceFileOptional = secondarySourceFiles.stream()
                                 .filter(sf -> sf.getPath().equals(finalSecondaryFile)).findFirst();
                         final String content = sourceFileOptional.map(SourceFile::getContent).orElse(null);
-                        stepDockerRequirement = parseSecondaryFile(stepDockerRequirement, content, gson, yaml);
-                        if (isExpressionTool(content, yaml)) {
+                        stepDockerRequirement = parseSecondaryFile(stepDockerRequirement, content, gson);
+                        if (isExpressionTool(content)) {
                             stepToType.put(workflowStepId, expressionToolType);
-                        } else if (isTool(content, yaml)) {
+                        } else if (isTool(content)) {
                             stepToType.put(workflowStepId, toolType);
-                        } else if (isWorkflow(content, yaml)) {
+                        } else if (isWorkflow(content)) {
                             stepToType.put(workflowStepId, workflowType);
                         } else {
                             stepToType.put(workflowStepId, "n/a");
                         }
                     }
 
-                    String dockerUrl = null;
+                    // the docker URL is filled in below, once the images of all the steps are known
+                    MutableTriple<String, String, String> dockerInfo = new MutableTriple<>(secondaryFile != null ? secondaryFile : mainDescriptorPath,
+                        stepDockerRequirement, null);
                     if (!stepToType.get(workflowStepId).equals(workflowType) && !Strings.isNullOrEmpty(stepDockerRequirement)) {
-                        dockerUrl = getURLFromEntry(stepDockerRequirement, dao);
+                        stepsWithImages.add(dockerInfo);
                     }
 
                     if (type == LanguageHandlerInterface.Type.DAG) {
-                        nodePairs.add(new MutablePair<>(workflowStepId, dockerUrl));
-                    }
-
-                    if (secondaryFile != null) {
-                        nodeDockerInfo.put(workflowStepId, new MutableTriple<>(secondaryFile, stepDockerRequirement, dockerUrl));
-                    } else {
-                        nodeDockerInfo.put(workflowStepId, new MutableTriple<>(mainDescriptorPath, stepDockerRequirement, dockerUrl));
+                        nodePairs.add(new MutablePair<>(workflowStepId, null));
                     }
 
+                    nodeDockerInfo.put(workflowStepId, dockerInfo);
                 }
 
+                // Look up the URLs of all the docker images at once
+                Map<String, String> dockerUrls = getURLsFromEntries(stepsWithImages.stream().map(Triple::getMiddle).collect(Collectors.toSet()), dao);
+                stepsWithImages.forEach(dockerInfo -> dockerInfo.setRight(dockerUrls.get(dockerInfo.getMiddle())));
+                nodePairs.forEach(node -> node.setValue(nodeDockerInfo.get(node.getLeft()).getRight()));
+
                 if (type == LanguageHandlerInterface.Type.DAG) {
                     // Determine steps that point to end
                     List<String> endDependencies = new ArrayList<>();
@@ -558,31 +549,25 @@ public class CWLHandler implements LanguageHandlerInterface {
      * @param stepDockerRequirement
      * @param secondaryFileContents
      * @param gson
-     * @param yaml
      * @return
      */
-    private String parseSecondaryFile(String stepDockerRequirement, String secondaryFileContents, Gson gson, Yaml yaml) {
+    private String parseSecondaryFile(String stepDockerRequirement, String secondaryFileContents, Gson gson) {
         if (secondaryFileContents != null) {
-            Map<String, Object> entryMapping = yaml.loadAs(secondaryFileContents, Map.class);
-            JSONObject entryJson = new JSONObject(entryMapping);
+            CWLDocument document = CWLDocument.of(secondaryFileContents);
 
             List<Object> cltRequirements = null;
             List<Object> cltHints = null;
 
-            // CWLAvro only supports requirements and hints as an array, must be converted
-            entryJson = convertJSONObjectToArray("requirements", entryJson);
-            entryJson = convertJSONObjectToArray("hints", entryJson);
-
-            if (isExpressionTool(secondaryFileContents, yaml)) {
-                final ExpressionTool expressionTool = gson.fromJson(entryJson.toString(), ExpressionTool.class);
+            if (isExpressionTool(secondaryFileContents)) {
+                final ExpressionTool expressionTool = document.as(ExpressionTool.class, gson);
                 cltRequirements = expressionTool.getRequirements();
                 cltHints = expressionTool.getHints();
-            } else if (isTool(secondaryFileContents, yaml)) {
-                final CommandLineTool commandLineTool = gson.fromJson(entryJson.toString(), CommandLineTool.class);
+            } else if (isTool(secondaryFileContents)) {
+                final CommandLineTool commandLineTool = document.as(CommandLineTool.class, gson);
                 cltRequirements = commandLineTool.getRequirements();
                 cltHints = commandLineTool.getHints();
-            } else if (isWorkflow(secondaryFileContents, yaml)) {
-                final Workflow workflow = gson.fromJson(entryJson.toString(), Workflow.class);
+            } else if (isWorkflow(secondaryFileContents)) {
+                final Workflow workflow = document.as(Workflow.class, gson);
                 cltRequirements = workflow.getRequirements();
                 cltHints = workflow.getHints();
             }
@@ -592,28 +577,6 @@ public class CWLHandler implements LanguageHandlerInterface {
         return stepDockerRequirement;
     }
 
-    /**
-     * Converts a JSON Object in CWL to JSON Array
-     * @param keyName Name of key to convert (Ex. requirements, hints)
-     * @param entryJson JSON representation of file
-     * @return Updated JSON representation of file
-     */
-    private JSONObject convertJSONObjectToArray(String keyName, JSONObject entryJson) {
-        if (entryJson.has(keyName)) {
-            if (entryJson.get(keyName) instanceof JSONObject) {
-                JSONArray reqArray = new JSONArray();
-                JSONObject requirements = (JSONObject)entryJson.get(keyName);
-                requirements.keySet().stream().forEach(key -> {
-                    JSONObject newReqEntry = requirements.getJSONObject(key);
-                    newReqEntry.put("class", key);
-                    reqArray.put(newReqEntry);
-                });
-                entryJson.put(keyName, reqArray);
-            }
-        }
-        return entryJson;
-    }
-
     /**
      * Given a list of CWL requirements, will return the DockerPull information if present.
      * If not will return the current docker path (currentDefault)
@@ -664,15 +627,8 @@ public class CWLHandler implements LanguageHandlerInterface {
      * @param content
      * @return true if workflow, false otherwise
      */
-    private boolean isWorkflow(String content, Yaml yaml) {
-        if (!Strings.isNullOrEmpty(content)) {
-            Map<String, Object> mapping = yaml.loadAs(content, Map.class);
-            if (mapping.get("class") != null) {
-                String cwlClass = mapping.get("class").toString();
-                return "Workflow".equals(cwlClass);
-            }
-        }
-        return false;
+    private boolean isWorkflow(String content) {
+        return !Strings.isNullOrEmpty(content) && "Workflow".equals(CWLDocument.of(content).getCwlClass());
     }
 
     /**
@@ -681,15 +637,8 @@ public class CWLHandler implements LanguageHandlerInterface {
      * @param content
      * @return true if expression tool, false otherwise
      */
-    private boolean isExpressionTool(String content, Yaml yaml) {
-        if (!Strings.isNullOrEmpty(content)) {
-            Map<String, Object> mapping = yaml.loadAs(content, Map.class);
-            if (mapping.get("class") != null) {
-                String cwlClass = mapping.get("class").toString();
-                return "ExpressionTool".equals(cwlClass);
-            }
-        }
-        return false;
+    private boolean isExpressionTool(String content) {
+        return !Strings.isNullOrEmpty(content) && "ExpressionTool".equals(CWLDocument.of(content).getCwlClass());
     }
 
     /**
@@ -698,26 +647,18 @@ public class CWLHandler implements LanguageHandlerInterface {
      * @param content
      * @return true if tool, false otherwise
      */
-    private boolean isTool(String content, Yaml yaml) {
-        if (!Strings.isNullOrEmpty(content)) {
-            Map<String, Object> mapping = yaml.loadAs(content, Map.class);
-            if (mapping.get("class") != null) {
-                String cwlClass = mapping.get("class").toString();
-                return "CommandLineTool".equals(cwlClass);
-            }
-        }
-        return false;
+    private boolean isTool(String content) {
+        return !Strings.isNullOrEmpty(content) && "CommandLineTool".equals(CWLDocument.of(content).getCwlClass());
     }
 
     /**
      * Checks that the CWL file is the correct version
      * @param content
-     * @param yaml
      * @return true if file is valid CWL version, false otherwise
      */
-    private boolean isValidCwl(String content, Yaml yaml) {
+    private boolean isValidCwl(String content) {
         try {
-            Map<String, Object> mapping = yaml.loadAs(content, Map.class);
+            Map<String, Object> mapping = CWLDocument.of(content).getMapping();
             final Object cwlVersion = mapping.get("cwlVersion");
 
             if (cwlVersion != null) {
@@ -763,7 +704,6 @@ public class CWLHandler implements LanguageHandlerInterface {
         Map<String, String> validationMessageObject = new HashMap<>();
 
         if (mainDescriptor.isPresent()) {
-            Yaml yaml = new Yaml();
             String content = mainDescriptor.get().getContent();
             if (content == null || content.isEmpty()) {
                 isValid = false;
@@ -775,7 +715,7 @@ public class CWLHandler implements LanguageHandlerInterface {
                     String cwlClass = content.contains("class: CommandLineTool") ? "CommandLineTool" : "ExpressionTool";
                     validationMessage.append(" This file contains 'class: ").append(cwlClass).append("'. Did you mean to register a tool?");
                 }
-            } else if (!this.isValidCwl(content, yaml)) {
+            } else if (!this.isValidCwl(content)) {
                 isValid = false;
                 validationMessage.append("Invalid CWL version.");
             }
@@ -803,7 +743,6 @@ public class CWLHandler implements LanguageHandlerInterface {
         Map<String, String> validationMessageObject = new HashMap<>();
 
         if (mainDescriptor.isPresent()) {
-            Yaml yaml = new Yaml();
             String content = mainDescriptor.get().getContent();
             if (content == null || content.isEmpty()) {
                 isValid = false;
@@ -814,7 +753,7 @@ public class CWLHandler implements LanguageHandlerInterface {
                 if (content.contains("class: Workflow")) {
                     validationMessage += " This file contains 'class: Workflow'. Did you mean to register a workflow?";
                 }
-            } else if (!this.isValidCwl(content, yaml)) {
+            } else if (!this.isValidCwl(content)) {
                 isValid = false;
                 validationMessage = "Invalid CWL version.";
             }
@@ -0,0 +1,150 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.languages;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.database.ToolPath;
+import io.dockstore.webservice.jdbi.ToolDAO;
+
+/**
+ * Links the Docker images of a workflow's steps to Dockstore, Quay.io or Docker Hub.
+ *
+ * An image links to Dockstore when a tool is published for its repository. All the images of a DAG or tool table are
+ * looked up with one query, and whether a repository has a published tool is remembered for a minute across requests,
+ * so a newly published tool may take that long to be linked.
+ */
+final class DockerImageUrls {
+    private static final String QUAY_IO_PATH = "https://quay.io/repository/";
+    private static final String DOCKER_HUB_PATH_R = "https://hub.docker.com/r/"; // For type repo/subrepo:tag
+    private static final String DOCKER_HUB_PATH_UNDERSCORE = "https://hub.docker.com/_/"; // For type repo:tag
+    private static final String DOCKSTORE_PATH = "https://www.dockstore.org/containers/"; // Update to tools once UI is updated to use /tools instead of /containers
+    private static final String DOCKER_HUB_REGISTRY = "registry.hub.docker.com/";
+    private static final Pattern TAG = Pattern.compile("([^:]+):?(\\S+)?");
+
+    private static final int CACHED_PATHS = 10000;
+    private static final int CACHE_SECONDS = 60;
+    private static final Cache<String, Boolean> PUBLISHED_PATHS = CacheBuilder.newBuilder()
+            .maximumSize(CACHED_PATHS)
+            .expireAfterWrite(CACHE_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private DockerImageUrls() {
+    }
+
+    /**
+     * @param dockerEntries Docker images, e.g. quay.io/pancancer/pcawg-bwa-mem-workflow:2.7.0 or debian:8
+     * @param toolDAO       only used when an image could be a Dockstore tool
+     * @return URL of each image, null for images without one
+     */
+    static Map<String, String> getUrls(Collection<String> dockerEntries, ToolDAO toolDAO) {
+        // For now ignore tag, later on it may be more useful
+        Map<String, String> images = dockerEntries.stream().distinct().collect(Collectors.toMap(entry -> entry, DockerImageUrls::removeTag));
+        Map<String, String> dockstorePaths = new HashMap<>();
+        images.values().forEach(image -> {
+            if (image.startsWith("quay.io/")) {
+                dockstorePaths.put(image, image);
+            } else if (image.split("/").length == 2) {
+                dockstorePaths.put(image, DOCKER_HUB_REGISTRY + image);
+            }
+        });
+        Set<String> published = findPublished(new HashSet<>(dockstorePaths.values()), toolDAO);
+
+        // TODO: How to deal with multiple entries of a tool? For now just grab the first
+        // TODO: How do we check that the URL is valid? If not then the entry is likely a local docker build
+        Map<String, String> urls = new HashMap<>();
+        images.forEach((entry, image) -> {
+            String dockstorePath = dockstorePaths.get(image);
+            String url;
+            if (dockstorePath != null && published.contains(dockstorePath)) {
+                // when we found a published tool, link to the tool on Dockstore
+                url = DOCKSTORE_PATH + dockstorePath;
+            } else if (image.startsWith("quay.io/")) {
+                // when we cannot find a published tool on Dockstore, link to quay.io
+                url = image.replaceFirst("quay\\.io/", QUAY_IO_PATH);
+            } else if (dockstorePath != null) {
+                // if the path looks like pancancer/pcawg-oxog-tools, link to docker hub
+                url = DOCKER_HUB_PATH_R + image;
+            } else {
+                // if the path looks like debian:8 or debian
+                url = image.isEmpty() ? null : DOCKER_HUB_PATH_UNDERSCORE + image;
+            }
+            urls.put(entry, url);
+        });
+        return urls;
+    }
+
+    private static String removeTag(String dockerEntry) {
+        Matcher m = TAG.matcher(dockerEntry);
+        return m.matches() ? m.group(1) : dockerEntry;
+    }
+
+    /**
+     * @return the paths that have a published tool, looking up the ones not seen in the last minute with one query
+     */
+    private static Set<String> findPublished(Set<String> dockstorePaths, ToolDAO toolDAO) {
+        Set<String> published = new HashSet<>();
+        Set<String> registries = new HashSet<>();
+        Set<String> namespaces = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        Map<String, String> unknown = new HashMap<>();
+        for (String dockstorePath : dockstorePaths) {
+            Boolean isPublished = PUBLISHED_PATHS.getIfPresent(dockstorePath);
+            String[] splitPath = Tool.splitPath(dockstorePath);
+            if (isPublished != null) {
+                if (isPublished) {
+                    published.add(dockstorePath);
+                }
+            } else if (splitPath == null) {
+                // Not a valid path
+                PUBLISHED_PATHS.put(dockstorePath, false);
+            } else {
+                registries.add(splitPath[0]);
+                namespaces.add(splitPath[1]);
+                names.add(splitPath[2]);
+                unknown.put(dockstorePath, splitPath[0] + '/' + splitPath[1] + '/' + splitPath[2]);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            Set<String> found = toolDAO.findPublishedPathsByRepositories(registries, namespaces, names).stream()
+                    .map(ToolPath::getTool).map(Tool::getPath).collect(Collectors.toSet());
+            unknown.forEach((dockstorePath, repository) -> {
+                boolean isPublished = found.contains(repository);
+                PUBLISHED_PATHS.put(dockstorePath, isPublished);
+                if (isPublished) {
+                    published.add(dockstorePath);
+                }
+            });
+        }
+        return published;
+    }
+
+    static void invalidateAll() {
+        PUBLISHED_PATHS.invalidateAll();
+    }
+}
@@ -20,6 +20,7 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -29,7 +30,6 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -42,7 +42,6 @@ import io.dockstore.common.VersionTypeValidation;
 import io.dockstore.webservice.core.Checksum;
 import io.dockstore.webservice.core.Image;
 import io.dockstore.webservice.core.SourceFile;
-import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.dockerhub.DockerHubImage;
 import io.dockstore.webservice.core.dockerhub.DockerHubTag;
@@ -304,56 +303,17 @@ public interface LanguageHandlerInterface {
      */
     // TODO: Don't assume that it's dockerhub when it's not Quay. Potentially add support for other registries and add message that the registry is unsupported
     default String getURLFromEntry(String dockerEntry, ToolDAO toolDAO) {
-        // For now ignore tag, later on it may be more useful
-        String quayIOPath = "https://quay.io/repository/";
-        String dockerHubPathR = "https://hub.docker.com/r/"; // For type repo/subrepo:tag
-        String dockerHubPathUnderscore = "https://hub.docker.com/_/"; // For type repo:tag
-        String dockstorePath = "https://www.dockstore.org/containers/"; // Update to tools once UI is updated to use /tools instead of /containers
-
-        String url;
-
-        // Remove tag if exists
-        Pattern p = Pattern.compile("([^:]+):?(\\S+)?");
-        Matcher m = p.matcher(dockerEntry);
-        if (m.matches()) {
-            dockerEntry = m.group(1);
-        }
-
-        // TODO: How to deal with multiple entries of a tool? For now just grab the first
-        // TODO: How do we check that the URL is valid? If not then the entry is likely a local docker build
-        if (dockerEntry.startsWith("quay.io/")) {
-            List<Tool> byPath = toolDAO.findAllByPath(dockerEntry, true);
-            if (byPath == null || byPath.isEmpty()) {
-                // when we cannot find a published tool on Dockstore, link to quay.io
-                url = dockerEntry.replaceFirst("quay\\.io/", quayIOPath);
-            } else {
-                // when we found a published tool, link to the tool on Dockstore
-                url = dockstorePath + dockerEntry;
-            }
-        } else {
-            String[] parts = dockerEntry.split("/");
-            if (parts.length == 2) {
-                // if the path looks like pancancer/pcawg-oxog-tools
-                List<Tool> publishedByPath = toolDAO.findAllByPath("registry.hub.docker.com/" + dockerEntry, true);
-                if (publishedByPath == null || publishedByPath.isEmpty()) {
-                    // when we cannot find a published tool on Dockstore, link to docker hub
-                    url = dockerHubPathR + dockerEntry;
-                } else {
-                    // when we found a published tool, link to the tool on Dockstore
-                    url = dockstorePath + "registry.hub.docker.com/" + dockerEntry;
-                }
-            } else {
-                // if the path looks like debian:8 or debian
-                url = dockerHubPathUnderscore + dockerEntry;
-
-                if (url.equals(dockerHubPathUnderscore)) {
-                    url = null;
-                }
-            }
-
-        }
+        return getURLsFromEntries(Collections.singleton(dockerEntry), toolDAO).get(dockerEntry);
+    }
 
-        return url;
+    /**
+     * Given the docker entries of a workflow, return a URL to each of them, looking up the Dockstore tools of all of them at once
+     *
+     * @param dockerEntries have the docker names
+     * @return map of docker entry to URL, which is null when there is none
+     */
+    default Map<String, String> getURLsFromEntries(Collection<String> dockerEntries, ToolDAO toolDAO) {
+        return DockerImageUrls.getUrls(dockerEntries, toolDAO);
     }
 
     default Optional<Registry> determineImageRegistry(String image) {
@@ -572,6 +532,10 @@ public interface LanguageHandlerInterface {
         // Initialize data structures for Tool table
         Map<String, Triple<String, String, String>> nodeDockerInfo = new HashMap<>(); // map of stepId -> (run path, docker image, docker url)
 
+        // Look up the URLs of all the docker images at once
+        Map<String, String> dockerUrls = getURLsFromEntries(toolInfoMap.values().stream().map(toolInfo -> toolInfo.dockerContainer)
+            .filter(docker -> !Strings.isNullOrEmpty(docker)).collect(Collectors.toSet()), dao);
+
         // Create nodePairs, callToType, toolID, and toolDocker
         for (Map.Entry<String, ToolInfo> entry : toolInfoMap.entrySet()) {
             String callId = entry.getKey();
@@ -584,7 +548,7 @@ public interface LanguageHandlerInterface {
             }
             String dockerUrl = null;
             if (!Strings.isNullOrEmpty(docker)) {
-                dockerUrl = getURLFromEntry(docker, dao);
+                dockerUrl = dockerUrls.get(docker);
             }
 
             // Determine if call is imported
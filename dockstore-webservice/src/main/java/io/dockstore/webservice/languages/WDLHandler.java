@@ -36,11 +36,11 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import com.google.common.base.Strings;
-import com.google.common.io.Files;
 import io.dockstore.common.DescriptorLanguage;
 import io.dockstore.common.LanguageHandlerHelper;
 import io.dockstore.common.VersionTypeValidation;
 import io.dockstore.common.WdlBridge;
+import io.dockstore.common.WdlBundle;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.core.DescriptionSource;
 import io.dockstore.webservice.core.SourceFile;
@@ -113,62 +113,53 @@ public class WDLHandler implements LanguageHandlerInterface {
         final Map<String, String> secondaryFiles = sourceFiles.stream()
                 .collect(Collectors.toMap(SourceFile::getAbsolutePath, SourceFile::getContent));
         wdlBridge.setSecondaryFiles((HashMap<String, String>)secondaryFiles);
-        File tempMainDescriptor = null;
         try {
-            tempMainDescriptor = File.createTempFile("main", "descriptor", Files.createTempDir());
-            Files.asCharSink(tempMainDescriptor, StandardCharsets.UTF_8).write(content);
-            try {
-                List<Map<String, String>> metadata = wdlBridge.getMetadata(tempMainDescriptor.getAbsolutePath(), filepath);
-                Set<String> authors = new HashSet<>();
-                Set<String> emails = new HashSet<>();
-                final String[] mainDescription = { null };
-
-                metadata.forEach(metaBlock -> {
-                    String author = metaBlock.get("author");
-                    String[] callAuthors = author != null ? author.split(",") : null;
-                    if (callAuthors != null) {
-                        for (String callAuthor : callAuthors) {
-                            authors.add(callAuthor.trim());
-                        }
-                    }
-
-                    String email = metaBlock.get("email");
-                    String[] callEmails = email != null ? email.split(",") : null;
-                    if (callEmails != null) {
-                        for (String callEmail : callEmails) {
-                            emails.add(callEmail.trim());
-                        }
+            List<Map<String, String>> metadata = wdlBridge.getWdlBundleFromContent(content, filepath).getMetadata();
+            Set<String> authors = new HashSet<>();
+            Set<String> emails = new HashSet<>();
+            final String[] mainDescription = { null };
+
+            metadata.forEach(metaBlock -> {
+                String author = metaBlock.get("author");
+                String[] callAuthors = author != null ? author.split(",") : null;
+                if (callAuthors != null) {
+                    for (String callAuthor : callAuthors) {
+                        authors.add(callAuthor.trim());
                     }
+                }
 
-                    String description = metaBlock.get("description");
-                    if (description != null && !description.isBlank()) {
-                        mainDescription[0] = description;
+                String email = metaBlock.get("email");
+                String[] callEmails = email != null ? email.split(",") : null;
+                if (callEmails != null) {
+                    for (String callEmail : callEmails) {
+                        emails.add(callEmail.trim());
                     }
-                });
-
-                if (!authors.isEmpty()) {
-                    version.setAuthor(String.join(", ", authors));
                 }
-                if (!emails.isEmpty()) {
-                    version.setEmail(String.join(", ", emails));
-                }
-                if (!Strings.isNullOrEmpty(mainDescription[0])) {
-                    version.setDescriptionAndDescriptionSource(mainDescription[0], DescriptionSource.DESCRIPTOR);
+
+                String description = metaBlock.get("description");
+                if (description != null && !description.isBlank()) {
+                    mainDescription[0] = description;
                 }
-            } catch (WdlParser.SyntaxError ex) {
-                LOG.error("Unable to parse WDL file " + filepath, ex);
-                Map<String, String> validationMessageObject = new HashMap<>();
-                validationMessageObject.put(filepath, "WDL file is malformed or missing, cannot extract metadata. " + ex.getMessage());
-                version.addOrUpdateValidation(new Validation(DescriptorLanguage.FileType.DOCKSTORE_WDL, false, validationMessageObject));
-                version.setAuthor(null);
-                version.setDescriptionAndDescriptionSource(null, null);
-                version.setEmail(null);
-                return version;
+            });
+
+            if (!authors.isEmpty()) {
+                version.setAuthor(String.join(", ", authors));
+            }
+            if (!emails.isEmpty()) {
+                version.setEmail(String.join(", ", emails));
             }
-        } catch (IOException e) {
-            throw new CustomWebApplicationException(e.getMessage(), HttpStatus.SC_INTERNAL_SERVER_ERROR);
-        } finally {
-            FileUtils.deleteQuietly(tempMainDescriptor);
+            if (!Strings.isNullOrEmpty(mainDescription[0])) {
+                version.setDescriptionAndDescriptionSource(mainDescription[0], DescriptionSource.DESCRIPTOR);
+            }
+        } catch (WdlParser.SyntaxError ex) {
+            LOG.error("Unable to parse WDL file " + filepath, ex);
+            Map<String, String> validationMessageObject = new HashMap<>();
+            validationMessageObject.put(filepath, "WDL file is malformed or missing, cannot extract metadata. " + ex.getMessage());
+            version.addOrUpdateValidation(new Validation(DescriptorLanguage.FileType.DOCKSTORE_WDL, false, validationMessageObject));
+            version.setAuthor(null);
+            version.setDescriptionAndDescriptionSource(null, null);
+            version.setEmail(null);
+            return version;
         }
         return version;
     }
@@ -201,7 +192,6 @@ public class WDLHandler implements LanguageHandlerInterface {
      * @return
      */
     public VersionTypeValidation validateEntrySet(Set<SourceFile> sourcefiles, String primaryDescriptorFilePath, String type) {
-        File tempMainDescriptor = null;
         String mainDescriptor = null;
 
         List<DescriptorLanguage.FileType> fileTypes = new ArrayList<>(Collections.singletonList(DescriptorLanguage.FileType.DOCKSTORE_WDL));
@@ -241,11 +231,8 @@ public class WDLHandler implements LanguageHandlerInterface {
                         secondaryDescContent.put(sourceFile.getAbsolutePath(), sourceFile.getContent());
                     }
                 }
-                tempMainDescriptor = File.createTempFile("main", "descriptor", Files.createTempDir());
-                Files.asCharSink(tempMainDescriptor, StandardCharsets.UTF_8).write(mainDescriptor);
-                String content = FileUtils.readFileToString(tempMainDescriptor, StandardCharsets.UTF_8);
                 try {
-                    checkForRecursiveHTTPImports(content, new HashSet<>());
+                    checkForRecursiveHTTPImports(mainDescriptor, new HashSet<>());
                 } catch (IOException e) {
                     validationMessageObject.put(primaryDescriptorFilePath, e.getMessage());
                     return new VersionTypeValidation(false, validationMessageObject);
@@ -254,7 +241,7 @@ public class WDLHandler implements LanguageHandlerInterface {
                     return new VersionTypeValidation(false, validationMessageObject);
                 }
 
-                Optional<String> optValidationMessage = reportValidationForLocalRecursiveImports(content,
+                Optional<String> optValidationMessage = reportValidationForLocalRecursiveImports(mainDescriptor,
                         sourcefiles, primaryDescriptorFilePath);
                 if (optValidationMessage.isPresent()) {
                     validationMessageObject.put(primaryDescriptorFilePath, optValidationMessage.get());
@@ -265,9 +252,9 @@ public class WDLHandler implements LanguageHandlerInterface {
                 wdlBridge.setSecondaryFiles((HashMap<String, String>)secondaryDescContent);
 
                 if (Objects.equals(type, "tool")) {
-                    wdlBridge.validateTool(tempMainDescriptor.getAbsolutePath(), primaryDescriptorFilePath);
+                    wdlBridge.getWdlBundleFromContent(mainDescriptor, primaryDescriptorFilePath).validateTool();
                 } else {
-                    wdlBridge.validateWorkflow(tempMainDescriptor.getAbsolutePath(), primaryDescriptor.get().getAbsolutePath());
+                    wdlBridge.getWdlBundleFromContent(mainDescriptor, primaryDescriptor.get().getAbsolutePath()).validateWorkflow();
                 }
             } catch (WdlParser.SyntaxError | IllegalArgumentException e) {
                 validationMessageObject.put(primaryDescriptorFilePath, e.getMessage());
@@ -277,8 +264,6 @@ public class WDLHandler implements LanguageHandlerInterface {
             } catch (Exception e) {
                 LOG.error("Unhandled exception", e);
                 throw new CustomWebApplicationException(e.getMessage(), HttpStatus.SC_INTERNAL_SERVER_ERROR);
-            } finally {
-                FileUtils.deleteQuietly(tempMainDescriptor);
             }
         } else {
             validationMessageObject.put(primaryDescriptorFilePath, "Primary WDL descriptor is not present.");
@@ -405,30 +390,25 @@ public class WDLHandler implements LanguageHandlerInterface {
         // Initialize data structures for DAG
         Map<String, ToolInfo> toolInfoMap;
         Map<String, String> namespaceToPath;
-        File tempMainDescriptor = null;
-        // Write main descriptor to file
-        // The use of temporary files is not needed here and might cause new problems
         try {
-            tempMainDescriptor = File.createTempFile("main", "descriptor", Files.createTempDir());
-            Files.asCharSink(tempMainDescriptor, StandardCharsets.UTF_8).write(mainDescriptor);
-
             WdlBridge wdlBridge = new WdlBridge();
             final Map<String, String> pathToContentMap = secondarySourceFiles.stream()
                     .collect(Collectors.toMap(SourceFile::getAbsolutePath, SourceFile::getContent));
             wdlBridge.setSecondaryFiles(new HashMap<>(pathToContentMap));
 
+            // Parse once, the calls, dependencies and imports all come from the same bundle
+            WdlBundle wdlBundle = wdlBridge.getWdlBundleFromContent(mainDescriptor, mainDescName);
+
             // Iterate over each call, grab docker containers
-            Map<String, String> callsToDockerMap = wdlBridge.getCallsToDockerMap(tempMainDescriptor.getAbsolutePath(), mainDescName);
+            Map<String, String> callsToDockerMap = wdlBundle.getCallsToDockerMap();
 
             // Iterate over each call, determine dependencies
-            Map<String, List<String>> callsToDependencies = wdlBridge.getCallsToDependencies(tempMainDescriptor.getAbsolutePath(), mainDescName);
+            Map<String, List<String>> callsToDependencies = wdlBundle.getCallsToDependencies();
             toolInfoMap = mapConverterToToolInfo(callsToDockerMap, callsToDependencies);
             // Get import files
-            namespaceToPath = wdlBridge.getImportMap(tempMainDescriptor.getAbsolutePath(), mainDescName);
-        } catch (IOException | NoSuchElementException | WdlParser.SyntaxError e) {
+            namespaceToPath = wdlBundle.getImportMap();
+        } catch (NoSuchElementException | WdlParser.SyntaxError e) {
             throw new CustomWebApplicationException("could not process wdl into DAG: " + e.getMessage(), HttpStatus.SC_INTERNAL_SERVER_ERROR);
-        } finally {
-            FileUtils.deleteQuietly(tempMainDescriptor);
         }
         return convertMapsToContent(mainDescName, type, dao, callType, toolType, toolInfoMap, namespaceToPath);
     }
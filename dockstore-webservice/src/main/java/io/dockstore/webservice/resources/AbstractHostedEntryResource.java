@@ -52,6 +52,7 @@ import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowMode;
 import io.dockstore.webservice.core.WorkflowVersion;
+import io.dockstore.webservice.helpers.EntryFetchProfile;
 import io.dockstore.webservice.helpers.FileFormatHelper;
 import io.dockstore.webservice.helpers.PublicStateManager;
 import io.dockstore.webservice.helpers.StateManagerMode;
@@ -143,6 +144,7 @@ public abstract class AbstractHostedEntryResource<T extends Entry<T, U>, U exten
         checkForDuplicatePath(entry);
         long l = getEntryDAO().create(entry);
         T byId = getEntryDAO().findById(l);
+        EntryFetchProfile.FULL.apply(byId);
         return byId;
     }
 
@@ -267,6 +269,8 @@ public abstract class AbstractHostedEntryResource<T extends Entry<T, U>, U exten
         T newTool = getEntryDAO().findById(entryId);
         PublicStateManager.getInstance().handleIndexUpdate(newTool, StateManagerMode.UPDATE);
         this.eventDAO.createAddTagToEntryEvent(user, newTool, version);
+        // the hosted editor shows the files of every version
+        EntryFetchProfile.FULL.apply(newTool);
         return newTool;
     }
 
@@ -396,6 +400,7 @@ public abstract class AbstractHostedEntryResource<T extends Entry<T, U>, U exten
         }
         entry.getWorkflowVersions().removeIf(v -> Objects.equals(v.getName(), version));
         PublicStateManager.getInstance().handleIndexUpdate(entry, StateManagerMode.UPDATE);
+        EntryFetchProfile.FULL.apply(entry);
         return entry;
     }
 
@@ -32,6 +32,7 @@ import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowMode;
 import io.dockstore.webservice.core.WorkflowVersion;
 import io.dockstore.webservice.helpers.CacheConfigManager;
+import io.dockstore.webservice.helpers.DAGPipeline;
 import io.dockstore.webservice.helpers.FileFormatHelper;
 import io.dockstore.webservice.helpers.GitHelper;
 import io.dockstore.webservice.helpers.GitHubHelper;
@@ -85,6 +86,7 @@ public abstract class AbstractWorkflowResource<T extends Workflow> implements So
 
     protected final String bitbucketClientSecret;
     protected final String bitbucketClientID;
+    protected DAGPipeline dagPipeline;
     private final Class<T> entityClass;
 
     public AbstractWorkflowResource(HttpClient client, SessionFactory sessionFactory, DockstoreWebserviceConfiguration configuration, Class<T> clazz) {
@@ -106,6 +108,28 @@ public abstract class AbstractWorkflowResource<T extends Workflow> implements So
         this.entityClass = clazz;
     }
 
+    /**
+     * @param pipeline computes the DAG and tool table of the versions a refresh changes, once it commits
+     */
+    public void setDAGPipeline(DAGPipeline pipeline) {
+        this.dagPipeline = pipeline;
+    }
+
+    /**
+     * Compute the DAG and tool table of versions in the background once the current transaction commits, so that they
+     * are stored before anyone asks for them
+     * @param workflow workflow of the versions
+     * @param versions versions whose files changed, new ones included
+     */
+    protected void precomputeDAGs(Workflow workflow, Collection<WorkflowVersion> versions) {
+        if (dagPipeline == null || !(workflow instanceof BioWorkflow) || versions.isEmpty()) {
+            return;
+        }
+        // ids of new versions are only known once they are flushed
+        workflowVersionDAO.afterCommit(() -> dagPipeline.recompute(workflow.getId(),
+            versions.stream().map(Version::getId).collect(Collectors.toList())));
+    }
+
     /**
      * Finds all workflows from a general Dockstore path that are of type FULL
      * @param dockstoreWorkflowPath Dockstore path (ex. github.com/dockstore/dockstore-ui2)
@@ -167,6 +191,7 @@ public abstract class AbstractWorkflowResource<T extends Workflow> implements So
         }
 
         // Then copy over content that changed
+        List<WorkflowVersion> changedVersions = new ArrayList<>();
         for (WorkflowVersion version : newWorkflow.getWorkflowVersions()) {
             // skip frozen versions
             WorkflowVersion workflowVersionFromDB = existingVersionMap.get(version.getName());
@@ -174,6 +199,10 @@ public abstract class AbstractWorkflowResource<T extends Workflow> implements So
                 if (workflowVersionFromDB.isFrozen()) {
                     continue;
                 }
+                // still at the same commit, keep the stored files, validations, DAG, and tool table
+                if (version.isUnchanged()) {
+                    continue;
+                }
                 workflowVersionFromDB.update(version);
             } else {
                 // attach real workflow
@@ -187,10 +216,12 @@ public abstract class AbstractWorkflowResource<T extends Workflow> implements So
             }
             workflowVersionFromDB.setToolTableJson(null);
             workflowVersionFromDB.setDagJson(null);
+            changedVersions.add(workflowVersionFromDB);
 
             // Update sourcefiles
             updateDBVersionSourceFilesWithRemoteVersionSourceFiles(workflowVersionFromDB, version);
         }
+        precomputeDAGs(workflow, changedVersions);
     }
 
     /**
@@ -208,6 +239,10 @@ public abstract class AbstractWorkflowResource<T extends Workflow> implements So
             String fileKey = file.getType().toString() + file.getAbsolutePath();
             SourceFile existingFile = existingFileMap.get(fileKey);
             if (existingFileMap.containsKey(fileKey)) {
+                // file bodies are stored once per SHA-1, so an unchanged file needs no write at all
+                if (existingFile.getContentSha1() != null && existingFile.getContentSha1().equals(file.getContentSha1())) {
+                    continue;
+                }
                 List<Checksum> checksums = new ArrayList<>();
                 Optional<String> sha = FileFormatHelper.calcSHA1(file.getContent());
                 if (sha.isPresent()) {
@@ -508,6 +543,7 @@ public abstract class AbstractWorkflowResource<T extends Workflow> implements So
             Optional<WorkflowVersion> addedVersion = workflow.getWorkflowVersions().stream().filter(workflowVersion -> Objects.equals(workflowVersion.getName(), remoteWorkflowVersion.getName())).findFirst();
             addedVersion.ifPresent(workflowVersion -> gitHubSourceCodeRepo
                     .updateVersionMetadata(workflowVersion.getWorkflowPath(), workflowVersion, workflow.getDescriptorType(), repository));
+            addedVersion.ifPresent(workflowVersion -> precomputeDAGs(workflow, List.of(workflowVersion)));
 
             LOG.info("Version " + remoteWorkflowVersion.getName() + " has been added to workflow " + workflow.getWorkflowPath() + ".");
         } catch (IOException ex) {
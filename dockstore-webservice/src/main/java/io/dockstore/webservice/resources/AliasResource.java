@@ -1,5 +1,6 @@
 package io.dockstore.webservice.resources;
 
+import java.util.Collections;
 import java.util.Optional;
 
 import javax.ws.rs.GET;
@@ -16,6 +17,7 @@ import io.dockstore.webservice.core.User;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowVersion;
 import io.dockstore.webservice.helpers.AliasHelper;
+import io.dockstore.webservice.helpers.EntryFetchProfile;
 import io.dockstore.webservice.helpers.PublicStateManager;
 import io.dockstore.webservice.jdbi.WorkflowDAO;
 import io.dockstore.webservice.jdbi.WorkflowVersionDAO;
@@ -67,7 +69,9 @@ public class AliasResource implements AliasableResourceInterface<WorkflowVersion
     public WorkflowVersion addAliases(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
             @ApiParam(value = "workflow version to modify.", required = true) @PathParam("workflowVersionId") Long workflowVersionId,
             @ApiParam(value = "Comma-delimited list of aliases.", required = true) @QueryParam("aliases") String aliases) {
-        return addAliasesAndCheck(user, workflowVersionId, aliases, true);
+        WorkflowVersion workflowVersion = addAliasesAndCheck(user, workflowVersionId, aliases, true);
+        EntryFetchProfile.FULL.applyToVersions(Collections.singleton(workflowVersion));
+        return workflowVersion;
     }
 
     @GET
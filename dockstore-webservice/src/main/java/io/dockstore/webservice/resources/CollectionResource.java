@@ -429,6 +429,7 @@ public class CollectionResource implements AuthenticatedResourceInterface, Alias
         // Save the collection
         long id = collectionDAO.create(collection);
         organization.addCollection(collection);
+        PublicStateManager.getInstance().getSitemapListener().handleCollectionUpdate(collection);
 
         // Event for creation
         User foundUser = userDAO.findById(user.getId());
@@ -477,6 +478,7 @@ public class CollectionResource implements AuthenticatedResourceInterface, Alias
         existingCollection.setDisplayName(collection.getDisplayName());
         existingCollection.setDescription(collection.getDescription());
         existingCollection.setTopic(collection.getTopic());
+        PublicStateManager.getInstance().getSitemapListener().handleCollectionUpdate(existingCollection);
 
         // Event for update
         Event updateCollectionEvent = new Event.Builder()
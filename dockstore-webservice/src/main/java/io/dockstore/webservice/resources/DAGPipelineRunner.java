@@ -0,0 +1,39 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.resources;
+
+import io.dockstore.webservice.helpers.DAGPipeline;
+import io.dropwizard.hibernate.UnitOfWork;
+
+/**
+ * Computes the DAG and tool table of a version with the same code as the DAG endpoints.
+ *
+ * Create it with a UnitOfWorkAwareProxyFactory so that each computation runs in its own session and transaction.
+ */
+public class DAGPipelineRunner implements DAGPipeline.Runner {
+    private final WorkflowResource workflowResource;
+
+    public DAGPipelineRunner(WorkflowResource workflowResource) {
+        this.workflowResource = workflowResource;
+    }
+
+    @Override
+    @UnitOfWork
+    public DAGPipeline.Content compute(long workflowId, long workflowVersionId) {
+        return workflowResource.computeDAGs(workflowId, workflowVersionId);
+    }
+}
@@ -18,14 +18,17 @@ package io.dockstore.webservice.resources;
 
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.DELETE;
@@ -53,6 +56,7 @@ import io.dockstore.common.DescriptorLanguage.FileType;
 import io.dockstore.common.Registry;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.api.BulkPublishRequest;
 import io.dockstore.webservice.api.PublishRequest;
 import io.dockstore.webservice.api.StarRequest;
 import io.dockstore.webservice.core.Entry;
@@ -67,6 +71,7 @@ import io.dockstore.webservice.core.User;
 import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.helpers.AbstractImageRegistry;
+import io.dockstore.webservice.helpers.EntryFetchProfile;
 import io.dockstore.webservice.helpers.EntryVersionHelper;
 import io.dockstore.webservice.helpers.ImageRegistryFactory;
 import io.dockstore.webservice.helpers.PublicStateManager;
@@ -90,11 +95,16 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Authorization;
+import io.swagger.annotations.ResponseHeader;
 import io.swagger.model.DescriptorType;
 import io.swagger.quay.client.model.QuayRepo;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.headers.Header;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.hibernate.Hibernate;
@@ -241,11 +251,30 @@ public class DockerRepoResource
     @Path("/{containerId}/refresh")
     @Timed
     @UnitOfWork
-    @Operation(operationId = "refresh", description = "Refresh one particular tool.", security = @SecurityRequirement(name = OPENAPI_JWT_SECURITY_DEFINITION_NAME))
-    @ApiOperation(value = "Refresh one particular tool.", authorizations = {
-        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = Tool.class)
+    @Operation(operationId = "refresh", description = "Refresh one particular tool. Tags still at the commit they were stored at are kept as is, the X-versions-skipped and X-versions-refetched headers count them.",
+        security = @SecurityRequirement(name = OPENAPI_JWT_SECURITY_DEFINITION_NAME), responses = @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "default", description = "default response",
+        content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = Tool.class)), headers = {
+            @Header(name = ResourceUtilities.VERSIONS_SKIPPED_HEADER, description = ResourceUtilities.VERSIONS_SKIPPED_DESCRIPTION, schema = @Schema(type = "integer", format = "int64")),
+            @Header(name = ResourceUtilities.VERSIONS_REFETCHED_HEADER, description = ResourceUtilities.VERSIONS_REFETCHED_DESCRIPTION, schema = @Schema(type = "integer", format = "int64")) }))
+    @ApiOperation(value = "Refresh one particular tool.", notes = "Tags still at the commit they were stored at are kept as is, the X-versions-skipped and X-versions-refetched headers count them.", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = Tool.class, responseHeaders = {
+            @ResponseHeader(name = ResourceUtilities.VERSIONS_SKIPPED_HEADER, description = ResourceUtilities.VERSIONS_SKIPPED_DESCRIPTION, response = Long.class),
+            @ResponseHeader(name = ResourceUtilities.VERSIONS_REFETCHED_HEADER, description = ResourceUtilities.VERSIONS_REFETCHED_DESCRIPTION, response = Long.class) })
     public Tool refresh(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
-        @ApiParam(value = "Tool ID", required = true) @PathParam("containerId") Long containerId) {
+        @ApiParam(value = "Tool ID", required = true) @PathParam("containerId") Long containerId, @Context HttpServletResponse response) {
+        Tool tool = refreshTool(user, containerId, (skipped, refetched) -> ResourceUtilities.addRefreshCountHeaders(response, skipped, refetched));
+        EntryFetchProfile.FULL.apply(tool);
+        return tool;
+    }
+
+    /**
+     * Refresh a tool and its checker workflow
+     * @param user          user who made the call
+     * @param containerId   ID of the tool
+     * @param refreshCounts given how many tags were kept as stored and how many were fetched again
+     * @return the refreshed tool
+     */
+    Tool refreshTool(User user, Long containerId, BiConsumer<Long, Long> refreshCounts) {
         Tool tool = toolDAO.findById(containerId);
         checkEntry(tool);
         checkUser(user, tool);
@@ -261,18 +290,18 @@ public class DockerRepoResource
             refreshBitbucketToken(bitbucketToken, client, tokenDAO, bitbucketClientID, bitbucketClientSecret);
         }
 
-        Tool refreshedTool = refreshContainer(containerId, user.getId());
+        Tool refreshedTool = refreshContainer(containerId, user.getId(), refreshCounts);
 
         // Refresh checker workflow
         if (refreshedTool.getCheckerWorkflow() != null) {
-            workflowResource.refresh(user, refreshedTool.getCheckerWorkflow().getId());
+            workflowResource.refresh(user, refreshedTool.getCheckerWorkflow().getId(), null);
         }
         refreshedTool.getWorkflowVersions().forEach(Version::updateVerified);
         PublicStateManager.getInstance().handleIndexUpdate(refreshedTool, StateManagerMode.UPDATE);
         return refreshedTool;
     }
 
-    private Tool refreshContainer(final long containerId, final long userId) {
+    private Tool refreshContainer(final long containerId, final long userId, BiConsumer<Long, Long> refreshCounts) {
         Tool tool = toolDAO.findById(containerId);
 
         // Check if tool has a valid Git URL (needed to refresh!)
@@ -307,7 +336,8 @@ public class DockerRepoResource
             throw new CustomWebApplicationException("unable to establish connection to registry, check that you have linked your accounts",
                 HttpStatus.SC_NOT_FOUND);
         }
-        return abstractImageRegistry.refreshTool(containerId, userId, userDAO, toolDAO, tagDAO, fileDAO, fileFormatDAO, sourceCodeRepo, eventDAO, dashboardPrefix);
+        return abstractImageRegistry.refreshTool(containerId, userId, userDAO, toolDAO, tagDAO, fileDAO, fileFormatDAO, sourceCodeRepo, eventDAO,
+            dashboardPrefix, refreshCounts);
     }
 
     @GET
@@ -328,6 +358,7 @@ public class DockerRepoResource
         }
         tool.getWorkflowVersions().forEach(tag -> Hibernate.initialize(tag.getImages()));
         Hibernate.initialize(tool.getAliases());
+        EntryFetchProfile.FULL.apply(tool);
         return tool;
     }
 
@@ -387,6 +418,7 @@ public class DockerRepoResource
         Tool result = toolDAO.findById(containerId);
         checkEntry(result);
         PublicStateManager.getInstance().handleIndexUpdate(result, StateManagerMode.UPDATE);
+        EntryFetchProfile.FULL.apply(result);
         return result;
 
     }
@@ -462,7 +494,9 @@ public class DockerRepoResource
             }
         }
         PublicStateManager.getInstance().handleIndexUpdate(foundTool, StateManagerMode.UPDATE);
-        return toolDAO.findById(containerId);
+        Tool result = toolDAO.findById(containerId);
+        EntryFetchProfile.FULL.apply(result);
+        return result;
     }
 
     @GET
@@ -596,7 +630,9 @@ public class DockerRepoResource
             tool.setGitUrl(convertHttpsToSsh(tool.getGitUrl()));
         }
 
-        return toolDAO.findById(id);
+        Tool result = toolDAO.findById(id);
+        EntryFetchProfile.FULL.apply(result);
+        return result;
     }
 
     /**
@@ -658,6 +694,36 @@ public class DockerRepoResource
     public Tool publish(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
         @ApiParam(value = "Tool id to publish", required = true) @PathParam("containerId") Long containerId,
         @ApiParam(value = "PublishRequest to refresh the list of repos for a user", required = true) PublishRequest request) {
+        Tool tool = setPublished(user, containerId, request.getPublish());
+        handlePublished(Collections.singletonList(tool), request.getPublish());
+        EntryFetchProfile.FULL.apply(tool);
+        return tool;
+    }
+
+    @POST
+    @Timed
+    @UnitOfWork
+    @Path("/publish")
+    @Operation(operationId = "bulkPublish", description = "Publish or unpublish many tools at once.", security = @SecurityRequirement(name = OPENAPI_JWT_SECURITY_DEFINITION_NAME))
+    @ApiOperation(nickname = "bulkPublish", value = "Publish or unpublish many tools at once.", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, notes = "Either every tool is published/unpublished or none are. At most "
+        + PAGINATION_LIMIT + " tools at a time.", response = Tool.class, responseContainer = "List")
+    public List<Tool> bulkPublish(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
+        @ApiParam(value = "IDs of the tools to publish/unpublish", required = true) BulkPublishRequest request) {
+        List<Long> containerIds = request.getIds().stream().distinct().collect(Collectors.toList());
+        if (containerIds.size() > Integer.parseInt(PAGINATION_LIMIT)) {
+            throw new CustomWebApplicationException("Cannot publish/unpublish more than " + PAGINATION_LIMIT + " tools at a time.", HttpStatus.SC_BAD_REQUEST);
+        }
+        List<Tool> tools = containerIds.stream().map(containerId -> setPublished(user, containerId, request.getPublish())).collect(Collectors.toList());
+        handlePublished(tools, request.getPublish());
+        EntryFetchProfile.FULL.apply(tools);
+        return tools;
+    }
+
+    /**
+     * Publish or unpublish a tool along with its checker workflow, without telling anyone yet
+     */
+    private Tool setPublished(User user, Long containerId, boolean publish) {
         Tool tool = toolDAO.findById(containerId);
         checkEntry(tool);
 
@@ -665,7 +731,7 @@ public class DockerRepoResource
 
         Workflow checker = tool.getCheckerWorkflow();
 
-        if (request.getPublish()) {
+        if (publish) {
             boolean validTag = false;
 
             Set<Tag> tags = tool.getWorkflowVersions();
@@ -701,20 +767,25 @@ public class DockerRepoResource
         }
 
         long id = toolDAO.create(tool);
-        tool = toolDAO.findById(id);
-        if (request.getPublish()) {
-            PublicStateManager.getInstance().handleIndexUpdate(tool, StateManagerMode.PUBLISH);
-            if (tool.getTopicId() == null) {
-                try {
-                    entryResource.createAndSetDiscourseTopic(id);
-                } catch (CustomWebApplicationException ex) {
-                    LOG.error("Error adding discourse topic.", ex);
+        return toolDAO.findById(id);
+    }
+
+    /**
+     * Tell the state listeners about the tools in one batch, then create the discourse topics of newly published ones
+     */
+    private void handlePublished(List<Tool> tools, boolean publish) {
+        PublicStateManager.getInstance().handleIndexUpdate(tools, publish ? StateManagerMode.PUBLISH : StateManagerMode.DELETE);
+        if (publish) {
+            for (Tool tool : tools) {
+                if (tool.getTopicId() == null) {
+                    try {
+                        entryResource.createAndSetDiscourseTopic(tool.getId());
+                    } catch (CustomWebApplicationException ex) {
+                        LOG.error("Error adding discourse topic.", ex);
+                    }
                 }
             }
-        } else {
-            PublicStateManager.getInstance().handleIndexUpdate(tool, StateManagerMode.DELETE);
         }
-        return tool;
     }
 
     @GET
@@ -723,7 +794,7 @@ public class DockerRepoResource
     @Path("published")
     @Operation(operationId = "allPublishedContainers", description = "List all published tools.")
     @ApiOperation(value = "List all published tools.", tags = {
-        "containers" }, notes = "NO authentication", response = Tool.class, responseContainer = "List")
+        "containers" }, notes = "NO authentication. The source files of the versions are not listed.", response = Tool.class, responseContainer = "List")
     public List<Tool> allPublishedContainers(
         @ApiParam(value = "Start index of paging. Pagination results can be based on numbers or other values chosen by the registry implementor (for example, SHA values). If this exceeds the current result set return an empty set.  If not specified in the request, this will start at the beginning of the results.") @QueryParam("offset") String offset,
         @ApiParam(value = "Amount of records to return in a given page, limited to "
@@ -731,10 +802,23 @@ public class DockerRepoResource
         @ApiParam(value = "Filter, this is a search string that filters the results.") @DefaultValue("") @QueryParam("filter") String filter,
         @ApiParam(value = "Sort column") @DefaultValue("stars") @QueryParam("sortCol") String sortCol,
         @ApiParam(value = "Sort order", allowableValues = "asc,desc") @DefaultValue("desc") @QueryParam("sortOrder") String sortOrder,
+        @ApiParam(value = "Cursor for keyset pagination, taken from the X-next-cursor header of the previous page. An empty cursor starts at the beginning. When present, offset is ignored and X-total-count is not returned.") @QueryParam("cursor") String cursor,
         @Context HttpServletResponse response) {
         int maxLimit = Math.min(Integer.parseInt(PAGINATION_LIMIT), limit);
+        if (cursor != null) {
+            // the total count is skipped so that walking the whole listing costs the same for every page
+            Pair<List<Tool>, Optional<String>> page = toolDAO.findAllPublishedAfter(cursor, maxLimit, filter, sortCol, sortOrder, Tool.class);
+            List<Tool> tools = page.getLeft();
+            toolDAO.loadDescriptorTypes(tools, false);
+            filterContainersForHiddenTags(tools, EntryFetchProfile.VERSIONS_WITHOUT_CONTENT);
+            stripContent(tools);
+            page.getRight().ifPresent(nextCursor -> response.addHeader("X-next-cursor", nextCursor));
+            response.addHeader("Access-Control-Expose-Headers", "X-next-cursor");
+            return tools;
+        }
         List<Tool> tools = toolDAO.findAllPublished(offset, maxLimit, filter, sortCol, sortOrder);
-        filterContainersForHiddenTags(tools);
+        toolDAO.loadDescriptorTypes(tools, false);
+        filterContainersForHiddenTags(tools, EntryFetchProfile.VERSIONS_WITHOUT_CONTENT);
         stripContent(tools);
         response.addHeader("X-total-count", String.valueOf(toolDAO.countAllPublished(Optional.of(filter))));
         response.addHeader("Access-Control-Expose-Headers", "X-total-count");
@@ -767,6 +851,7 @@ public class DockerRepoResource
         List<Tool> tools = toolDAO.findAllByPath(path, false);
         checkEntry(tools);
         AuthenticatedResourceInterface.checkUser(user, tools);
+        EntryFetchProfile.FULL.apply(tools);
         return tools;
     }
 
@@ -787,6 +872,7 @@ public class DockerRepoResource
             tool.getWorkflowVersions().forEach(tag -> Hibernate.initialize(tag.getValidations()));
         }
         Hibernate.initialize(tool.getAliases());
+        EntryFetchProfile.FULL.apply(tool);
         return tool;
     }
 
@@ -832,6 +918,7 @@ public class DockerRepoResource
 
         checkUser(user, repository);
 
+        EntryFetchProfile.FULL.apply(repository);
         return new ArrayList<>(repository.getWorkflowVersions());
     }
 
@@ -1200,6 +1287,7 @@ public class DockerRepoResource
         final Tool tool = this.toolDAO.findByAlias(alias);
         checkEntry(tool);
         optionalUserCheckEntry(user, tool);
+        EntryFetchProfile.FULL.apply(tool);
         return tool;
     }
 }
@@ -43,6 +43,7 @@ import io.dockstore.webservice.core.Tag;
 import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.ToolMode;
 import io.dockstore.webservice.core.User;
+import io.dockstore.webservice.helpers.EntryFetchProfile;
 import io.dockstore.webservice.helpers.EntryVersionHelper;
 import io.dockstore.webservice.helpers.PublicStateManager;
 import io.dockstore.webservice.helpers.StateManagerMode;
@@ -103,6 +104,7 @@ public class DockerRepoTagResource implements AuthenticatedResourceInterface, En
     public Set<Tag> getTagsByPath(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
             @ApiParam(value = "Tool to modify.", required = true) @PathParam("containerId") Long containerId) {
         Tool tool = findToolByIdAndCheckToolAndUser(containerId, user);
+        EntryFetchProfile.FULL.apply(tool);
         return tool.getWorkflowVersions();
     }
 
@@ -143,6 +145,7 @@ public class DockerRepoTagResource implements AuthenticatedResourceInterface, En
         Tool result = toolDAO.findById(containerId);
         checkEntry(result);
         PublicStateManager.getInstance().handleIndexUpdate(result, StateManagerMode.UPDATE);
+        EntryFetchProfile.FULL.apply(result);
         return result.getWorkflowVersions();
     }
 
@@ -181,6 +184,7 @@ public class DockerRepoTagResource implements AuthenticatedResourceInterface, En
         Tool result = toolDAO.findById(containerId);
         checkEntry(result);
         PublicStateManager.getInstance().handleIndexUpdate(result, StateManagerMode.UPDATE);
+        EntryFetchProfile.FULL.apply(result);
         return result.getWorkflowVersions();
     }
 
@@ -0,0 +1,59 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.resources;
+
+import java.io.IOException;
+
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.helpers.ElasticSearchClient;
+import io.dockstore.webservice.helpers.statelisteners.ElasticIndexQueue;
+import io.dockstore.webservice.helpers.statelisteners.ElasticReindexer;
+import io.dockstore.webservice.jdbi.ToolDAO;
+import io.dockstore.webservice.jdbi.WorkflowDAO;
+import io.dropwizard.hibernate.UnitOfWork;
+import org.hibernate.SessionFactory;
+
+/**
+ * Rebuilds the entry index away from the request that asked for it.
+ *
+ * Create it with a UnitOfWorkAwareProxyFactory so that each reindex runs in its own session.
+ */
+public class ElasticReindexRunner {
+    private final ToolDAO toolDAO;
+    private final WorkflowDAO workflowDAO;
+    private final ElasticSearchClient elasticSearchClient;
+    private final ElasticIndexQueue elasticIndexQueue;
+    private final DockstoreWebserviceConfiguration.ElasticSearchConfig config;
+
+    public ElasticReindexRunner(SessionFactory sessionFactory, ElasticSearchClient elasticSearchClient, ElasticIndexQueue elasticIndexQueue,
+        DockstoreWebserviceConfiguration.ElasticSearchConfig config) {
+        this.toolDAO = new ToolDAO(sessionFactory);
+        this.workflowDAO = new WorkflowDAO(sessionFactory);
+        this.elasticSearchClient = elasticSearchClient;
+        this.elasticIndexQueue = elasticIndexQueue;
+        this.config = config;
+    }
+
+    /**
+     * @return the number of published entries that were read
+     * @throws IOException when the index could not be rebuilt
+     */
+    @UnitOfWork(readOnly = true)
+    public long reindex() throws IOException {
+        return new ElasticReindexer(elasticSearchClient, elasticIndexQueue, config).reindex(toolDAO, workflowDAO);
+    }
+}
@@ -41,6 +41,7 @@ import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.User;
 import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.database.VersionVerifiedPlatform;
+import io.dockstore.webservice.helpers.EntryFetchProfile;
 import io.dockstore.webservice.helpers.PublicStateManager;
 import io.dockstore.webservice.jdbi.ToolDAO;
 import io.dockstore.webservice.jdbi.VersionDAO;
@@ -120,7 +121,9 @@ public class EntryResource implements AuthenticatedResourceInterface, AliasableR
     public Entry addAliases(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
                                @ApiParam(value = "Entry to modify.", required = true) @PathParam("id") Long id,
                                @ApiParam(value = "Comma-delimited list of aliases.", required = true) @QueryParam("aliases") String aliases) {
-        return AliasableResourceInterface.super.addAliases(user, id, aliases);
+        Entry entry = AliasableResourceInterface.super.addAliases(user, id, aliases);
+        EntryFetchProfile.FULL.apply(entry);
+        return entry;
     }
 
     @GET
@@ -162,7 +165,9 @@ public class EntryResource implements AuthenticatedResourceInterface, AliasableR
             @ApiParam(value = "The id of the entry to add a topic to.", required = true)
             @Parameter(description = "The id of the entry to add a topic to.", name = "id", in = ParameterIn.PATH, required = true)
             @PathParam("id") Long id) {
-        return createAndSetDiscourseTopic(id);
+        Entry entry = createAndSetDiscourseTopic(id);
+        EntryFetchProfile.FULL.apply(entry);
+        return entry;
     }
 
     /**
@@ -16,32 +16,26 @@
 
 package io.dockstore.webservice.resources;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
-import java.time.Year;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
 
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import com.codahale.metrics.annotation.Timed;
@@ -54,16 +48,12 @@ import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceApplication;
 import io.dockstore.webservice.DockstoreWebserviceConfiguration;
 import io.dockstore.webservice.api.Config;
-import io.dockstore.webservice.core.Collection;
 import io.dockstore.webservice.core.Entry;
-import io.dockstore.webservice.core.Organization;
-import io.dockstore.webservice.core.Tool;
-import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.database.RSSToolPath;
 import io.dockstore.webservice.core.database.RSSWorkflowPath;
-import io.dockstore.webservice.helpers.MetadataResourceHelper;
 import io.dockstore.webservice.helpers.PublicStateManager;
 import io.dockstore.webservice.helpers.statelisteners.RSSListener;
+import io.dockstore.webservice.helpers.statelisteners.RenderedPage;
 import io.dockstore.webservice.helpers.statelisteners.SitemapListener;
 import io.dockstore.webservice.jdbi.BioWorkflowDAO;
 import io.dockstore.webservice.jdbi.CollectionDAO;
@@ -72,10 +62,6 @@ import io.dockstore.webservice.jdbi.ToolDAO;
 import io.dockstore.webservice.languages.LanguageHandlerFactory;
 import io.dockstore.webservice.resources.proposedGA4GH.ToolsApiExtendedServiceFactory;
 import io.dockstore.webservice.resources.proposedGA4GH.ToolsExtendedApiService;
-import io.dockstore.webservice.resources.rss.RSSEntry;
-import io.dockstore.webservice.resources.rss.RSSFeed;
-import io.dockstore.webservice.resources.rss.RSSHeader;
-import io.dockstore.webservice.resources.rss.RSSWriter;
 import io.dropwizard.hibernate.UnitOfWork;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -89,8 +75,8 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import okhttp3.Cache;
+import okhttp3.ConnectionPool;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpStatus;
 import org.hibernate.SessionFactory;
 import org.json.JSONArray;
@@ -98,8 +84,6 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static io.dockstore.webservice.helpers.statelisteners.RSSListener.RSS_KEY;
-import static io.dockstore.webservice.helpers.statelisteners.SitemapListener.SITEMAP_KEY;
 
 /**
  * @author dyuen
@@ -137,62 +121,59 @@ public class MetadataResource {
     @UnitOfWork(readOnly = true)
     @Path("sitemap")
     @Operation(summary = "List all available workflow, tool, organization, and collection paths.", description = "List all available workflow, tool, organization, and collection paths. Available means published for tools/workflows, and approved for organizations and their respective collections. NO authentication")
-    @ApiOperation(value = "List all available workflow, tool, organization, and collection paths.", notes = "List all available workflow, tool, organization, and collection paths. Available means published for tools/workflows, and approved for organizations and their respective collections.")
-    public String sitemap() {
-        try {
-            SortedSet<String> sitemap = sitemapListener.getCache().get(SITEMAP_KEY, this::getSitemap);
-            return String.join(System.lineSeparator(), sitemap);
-        } catch (ExecutionException e) {
-            throw new CustomWebApplicationException("Sitemap cache problems", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+    @ApiResponse(description = "The paths, or a sitemap index of the pages of paths when there are more than 50,000", content = @Content(
+        mediaType = "text/xml",
+        schema = @Schema(implementation = String.class)))
+    @ApiOperation(value = "List all available workflow, tool, organization, and collection paths.", notes = "List all available workflow, tool, organization, and collection paths. Available means published for tools/workflows, and approved for organizations and their respective collections.", response = String.class)
+    public Response sitemap(@Context Request request) {
+        SitemapListener.Rendered sitemap = getRenderedSitemap();
+        if (sitemap.getIndex() != null) {
+            return conditionalResponse(request, sitemap.getIndex(), MediaType.TEXT_XML);
         }
+        return conditionalResponse(request, sitemap.getPages().get(0), MediaType.TEXT_HTML);
     }
 
-    public SortedSet<String> getSitemap() {
-        SortedSet<String> urls = new TreeSet<>();
-        urls.addAll(getToolPaths());
-        urls.addAll(getBioWorkflowPaths());
-        urls.addAll(getOrganizationAndCollectionPaths());
-        return urls;
-    }
-
-    /**
-     * Adds organization and collection URLs
-     * //TODO needs to be more efficient via JPA query
-     */
-    private List<String> getOrganizationAndCollectionPaths() {
-        List<String> urls = new ArrayList<>();
-        List<Organization> organizations = organizationDAO.findAllApproved();
-        organizations.forEach(organization -> {
-            urls.add(createOrganizationURL(organization));
-            List<Collection> collections = collectionDAO.findAllByOrg(organization.getId());
-            collections.stream().map(collection -> createCollectionURL(collection, organization)).forEach(urls::add);
-        });
-        return urls;
-    }
-
-    private List<String> getToolPaths() {
-        return toolDAO.findAllPublishedPaths().stream().map(toolPath -> createToolURL(toolPath.getTool())).collect(Collectors.toList());
-    }
-
-    private List<String> getBioWorkflowPaths() {
-        return bioWorkflowDAO.findAllPublishedPaths().stream().map(workflowPath -> createWorkflowURL(workflowPath.getBioWorkflow())).collect(
-                Collectors.toList());
-    }
-
-    private String createOrganizationURL(Organization organization) {
-        return MetadataResourceHelper.createOrganizationURL(organization);
+    @GET
+    @Timed
+    @UnitOfWork(readOnly = true)
+    @Path("sitemap/{page}")
+    @Operation(summary = "List one page of the available workflow, tool, organization, and collection paths.", description = "List one page of the available paths, for sitemaps that are too large for one file. The pages are listed by the sitemap index at /metadata/sitemap. NO authentication")
+    @ApiResponse(description = "One page of the paths", content = @Content(
+        mediaType = "text/html",
+        schema = @Schema(implementation = String.class)))
+    @ApiOperation(value = "List one page of the available workflow, tool, organization, and collection paths.", notes = "For sitemaps that are too large for one file. The pages are listed by the sitemap index at /metadata/sitemap.", response = String.class)
+    public Response sitemapPage(@Context Request request,
+        @ApiParam(value = "Page of the sitemap, starting from 0", required = true) @Parameter(description = "Page of the sitemap, starting from 0", name = "page", in = ParameterIn.PATH, required = true) @PathParam("page") int page) {
+        SitemapListener.Rendered sitemap = getRenderedSitemap();
+        if (page < 0 || page >= sitemap.getPages().size()) {
+            throw new CustomWebApplicationException("Sitemap page not found", HttpStatus.SC_NOT_FOUND);
+        }
+        return conditionalResponse(request, sitemap.getPages().get(page), MediaType.TEXT_HTML);
     }
 
-    private String createCollectionURL(Collection collection, Organization organization) {
-        return MetadataResourceHelper.createCollectionURL(collection, organization);
+    private SitemapListener.Rendered getRenderedSitemap() {
+        if (!sitemapListener.isLoaded()) {
+            sitemapListener.load(this::getPublishedEntries, organizationDAO::findAllApproved, collectionDAO::findAllFromApprovedOrganizations);
+        }
+        return sitemapListener.getRendered();
     }
 
-    private String createWorkflowURL(Workflow workflow) {
-        return MetadataResourceHelper.createWorkflowURL(workflow);
+    private static Response conditionalResponse(Request request, RenderedPage page, String mediaType) {
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(page.getLastModified(), page.getEntityTag());
+        if (notModified != null) {
+            return notModified.build();
+        }
+        return Response.ok(page.getContent(), mediaType).tag(page.getEntityTag()).lastModified(page.getLastModified()).build();
     }
 
-    private String createToolURL(Tool tool) {
-        return MetadataResourceHelper.createToolURL(tool);
+    /**
+     * @return the published tools and workflows, with only their IDs and paths
+     */
+    private List<Entry<?, ?>> getPublishedEntries() {
+        List<Entry<?, ?>> entries = new ArrayList<>();
+        toolDAO.findAllPublishedPaths().forEach(toolPath -> entries.add(toolPath.getTool()));
+        bioWorkflowDAO.findAllPublishedPaths().forEach(workflowPath -> entries.add(workflowPath.getBioWorkflow()));
+        return entries;
     }
 
     @GET
@@ -200,72 +181,35 @@ public class MetadataResource {
     @UnitOfWork(readOnly = true)
     @Path("rss")
     @Produces(MediaType.TEXT_XML)
-    @Operation(summary = "List all published tools and workflows in creation order", description = "List all published tools and workflows in creation order, NO authentication")
-    @ApiOperation(value = "List all published tools and workflows in creation order.", notes = "NO authentication")
-    public String rssFeed() {
-        try {
-            return rssListener.getCache().get(RSS_KEY, this::getRSS);
-        } catch (ExecutionException e) {
-            throw new CustomWebApplicationException("RSS cache problems", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+    @Operation(summary = "List the most recently updated published tools and workflows", description = "List the most recently updated published tools and workflows, newest first, NO authentication")
+    @ApiResponse(description = "RSS feed", content = @Content(
+        mediaType = "text/xml",
+        schema = @Schema(implementation = String.class)))
+    @ApiOperation(value = "List the most recently updated published tools and workflows.", notes = "Newest first, NO authentication", response = String.class)
+    public Response rssFeed(@Context Request request) {
+        if (!rssListener.isLoaded()) {
+            rssListener.load(getMostRecentlyUpdatedEntries());
         }
+        return conditionalResponse(request, rssListener.getRendered(), MediaType.TEXT_XML);
     }
 
-    private String getRSS() {
-        List<Tool> tools = toolDAO.findAllPublishedPathsOrderByDbupdatedate().stream().map(RSSToolPath::getTool).collect(Collectors.toList());
-        List<Workflow> workflows = bioWorkflowDAO.findAllPublishedPathsOrderByDbupdatedate().stream().map(RSSWorkflowPath::getBioWorkflow).collect(
-                Collectors.toList());
-
-        List<Entry<?, ?>> dbEntries =  new ArrayList<>();
-        dbEntries.addAll(tools);
-        dbEntries.addAll(workflows);
-        dbEntries.sort(Comparator.comparingLong(entry -> entry.getLastUpdated().getTime()));
-
-        // TODO: after seeing if this works, make this more efficient than just returning everything
-        RSSFeed feed = new RSSFeed();
-
-        RSSHeader header = new RSSHeader();
-        header.setCopyright("Copyright " + Year.now().getValue() + " OICR");
-        header.setTitle("Dockstore");
-        header.setDescription("Dockstore, developed by the Cancer Genome Collaboratory, is an open platform used by the GA4GH for sharing Docker-based tools described with either the Common Workflow Language (CWL) or the Workflow Description Language (WDL).");
-        header.setLanguage("en");
-        header.setLink("https://dockstore.org/");
-        header.setPubDate(RSSFeed.formatDate(Calendar.getInstance()));
-
-        feed.setHeader(header);
-
-        List<RSSEntry> entries = new ArrayList<>();
-        for (Entry<?, ?> dbEntry : dbEntries) {
-            RSSEntry entry = new RSSEntry();
-            if (dbEntry instanceof Workflow) {
-                Workflow workflow = (Workflow)dbEntry;
-                entry.setTitle(workflow.getWorkflowPath());
-                String workflowURL = createWorkflowURL(workflow);
-                entry.setGuid(workflowURL);
-                entry.setLink(workflowURL);
-            } else if (dbEntry instanceof Tool) {
-                Tool tool = (Tool)dbEntry;
-                entry.setTitle(tool.getPath());
-                String toolURL = createToolURL(tool);
-                entry.setGuid(toolURL);
-                entry.setLink(toolURL);
+    /**
+     * Merges the most recently updated tools and workflows, each query returns at most RSS_ENTRY_LIMIT
+     */
+    private List<Entry<?, ?>> getMostRecentlyUpdatedEntries() {
+        List<RSSToolPath> tools = toolDAO.findAllPublishedPathsOrderByDbupdatedate();
+        List<RSSWorkflowPath> workflows = bioWorkflowDAO.findAllPublishedPathsOrderByDbupdatedate();
+        List<Entry<?, ?>> entries = new ArrayList<>();
+        int tool = 0;
+        int workflow = 0;
+        while (entries.size() < RSS_ENTRY_LIMIT && (tool < tools.size() || workflow < workflows.size())) {
+            if (workflow >= workflows.size() || tool < tools.size() && !tools.get(tool).getDbUpdateDate().before(workflows.get(workflow).getDbUpdateDate())) {
+                entries.add(tools.get(tool++).getTool());
             } else {
-                throw new CustomWebApplicationException("Unknown data type unsupported for RSS feed.", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+                entries.add(workflows.get(workflow++).getBioWorkflow());
             }
-            final int arbitraryDescriptionLimit = 200;
-            entry.setDescription(StringUtils.truncate(dbEntry.getDescription(), arbitraryDescriptionLimit));
-            Calendar instance = Calendar.getInstance();
-            instance.setTime(dbEntry.getLastUpdated());
-            entry.setPubDate(RSSFeed.formatDate(instance));
-            entries.add(entry);
-        }
-        feed.setEntries(entries);
-
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            RSSWriter.write(feed, byteArrayOutputStream);
-            return byteArrayOutputStream.toString(StandardCharsets.UTF_8.name());
-        } catch (Exception e) {
-            throw new CustomWebApplicationException("Could not write RSS feed.", HttpStatus.SC_INTERNAL_SERVER_ERROR);
         }
+        return entries;
     }
 
     @GET
@@ -367,6 +311,11 @@ public class MetadataResource {
         results.put("networkCount", String.valueOf(cache.networkCount()));
         results.put("hitCount", String.valueOf(cache.hitCount()));
         results.put("maxSize", cache.maxSize() + " bytes");
+        ConnectionPool connectionPool = DockstoreWebserviceApplication.getOkHttpClient().connectionPool();
+        results.put("connectionCount", String.valueOf(connectionPool.connectionCount()));
+        results.put("idleConnectionCount", String.valueOf(connectionPool.idleConnectionCount()));
+        // per host, e.g. api.github.com.conditionalHitCount for requests answered with 304 Not Modified
+        DockstoreWebserviceApplication.getHttpClientMetrics().getCounts().forEach((name, count) -> results.put(name, String.valueOf(count)));
 
         try {
             results.put("size", cache.size() + " bytes");
@@ -113,6 +113,7 @@ public class OrganizationResource implements AuthenticatedResourceInterface, Ali
 
         if (!Objects.equals(organization.getStatus(), Organization.ApplicationState.APPROVED)) {
             organization.setStatus(Organization.ApplicationState.APPROVED);
+            PublicStateManager.getInstance().getSitemapListener().handleOrganizationUpdate(organization);
 
             Event approveOrgEvent = new Event.Builder().withOrganization(organization).withInitiatorUser(user)
                 .withType(Event.EventType.APPROVE_ORG).build();
@@ -561,6 +562,7 @@ public class OrganizationResource implements AuthenticatedResourceInterface, Ali
         oldOrganization.setLink(organization.getLink());
         oldOrganization.setLocation(organization.getLocation());
         oldOrganization.setAvatarUrl(organization.getAvatarUrl());
+        PublicStateManager.getInstance().getSitemapListener().handleOrganizationUpdate(oldOrganization);
 
         Event updateOrganizationEvent = new Event.Builder().withOrganization(oldOrganization).withInitiatorUser(user)
             .withType(Event.EventType.MODIFY_ORG).build();
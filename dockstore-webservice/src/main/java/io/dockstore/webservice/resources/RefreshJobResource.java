@@ -0,0 +1,188 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.resources;
+
+import java.util.List;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+import com.codahale.metrics.annotation.Timed;
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.core.RefreshJob;
+import io.dockstore.webservice.core.RefreshJob.RefreshJobType;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.User;
+import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.helpers.RefreshJobQueue;
+import io.dockstore.webservice.jdbi.RefreshJobDAO;
+import io.dockstore.webservice.jdbi.ToolDAO;
+import io.dockstore.webservice.jdbi.WorkflowDAO;
+import io.dropwizard.auth.Auth;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.Authorization;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.apache.http.HttpStatus;
+import org.hibernate.SessionFactory;
+
+import static io.dockstore.webservice.Constants.JWT_SECURITY_DEFINITION_NAME;
+import static io.dockstore.webservice.resources.ResourceConstants.OPENAPI_JWT_SECURITY_DEFINITION_NAME;
+import static io.dockstore.webservice.resources.ResourceConstants.PAGINATION_LIMIT;
+import static io.dockstore.webservice.resources.ResourceConstants.PAGINATION_LIMIT_TEXT;
+import static io.dockstore.webservice.resources.ResourceConstants.PAGINATION_OFFSET_TEXT;
+
+/**
+ * Refreshes in the background. Submitting returns the job at once, the job is then polled until it succeeds or fails.
+ *
+ * There is at most one queued or running job per target. Submitting the same refresh again returns that job, also to a
+ * user other than the one who submitted it, so anyone who may refresh the target may poll it.
+ */
+@Path("/refreshJobs")
+@Api("/refreshJobs")
+@Produces(MediaType.APPLICATION_JSON)
+@Tag(name = "refreshJobs", description = ResourceConstants.REFRESHJOBS)
+public class RefreshJobResource implements AuthenticatedResourceInterface {
+    private final RefreshJobDAO refreshJobDAO;
+    private final WorkflowDAO workflowDAO;
+    private final ToolDAO toolDAO;
+    private final RefreshJobQueue refreshJobQueue;
+
+    public RefreshJobResource(SessionFactory sessionFactory, RefreshJobQueue refreshJobQueue) {
+        this.refreshJobDAO = new RefreshJobDAO(sessionFactory);
+        this.workflowDAO = new WorkflowDAO(sessionFactory);
+        this.toolDAO = new ToolDAO(sessionFactory);
+        this.refreshJobQueue = refreshJobQueue;
+    }
+
+    @POST
+    @Timed
+    @UnitOfWork
+    @Path("/workflows/{workflowId}")
+    @Operation(operationId = "submitWorkflowRefresh", description = "Refresh one particular workflow in the background.", security = @SecurityRequirement(name = OPENAPI_JWT_SECURITY_DEFINITION_NAME))
+    @ApiOperation(nickname = "submitWorkflowRefresh", value = "Refresh one particular workflow in the background.", notes = "Returns the queued or running refresh of the workflow if there is one.", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = RefreshJob.class)
+    public RefreshJob submitWorkflowRefresh(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
+        @ApiParam(value = "workflow ID", required = true) @PathParam("workflowId") Long workflowId) {
+        Workflow workflow = workflowDAO.findById(workflowId);
+        checkEntry(workflow);
+        checkUser(user, workflow);
+        return submit(new RefreshJob(RefreshJobType.WORKFLOW, workflowId, workflow.getOrganization(), null, user.getId()));
+    }
+
+    @POST
+    @Timed
+    @UnitOfWork
+    @Path("/containers/{containerId}")
+    @Operation(operationId = "submitToolRefresh", description = "Refresh one particular tool in the background.", security = @SecurityRequirement(name = OPENAPI_JWT_SECURITY_DEFINITION_NAME))
+    @ApiOperation(nickname = "submitToolRefresh", value = "Refresh one particular tool in the background.", notes = "Returns the queued or running refresh of the tool if there is one.", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = RefreshJob.class)
+    public RefreshJob submitToolRefresh(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
+        @ApiParam(value = "Tool ID", required = true) @PathParam("containerId") Long containerId) {
+        Tool tool = toolDAO.findById(containerId);
+        checkEntry(tool);
+        checkUser(user, tool);
+        return submit(new RefreshJob(RefreshJobType.TOOL, containerId, tool.getNamespace(), null, user.getId()));
+    }
+
+    @POST
+    @Timed
+    @UnitOfWork
+    @Path("/users/{userId}/containers/{organization}")
+    @Operation(operationId = "submitToolsByOrganizationRefresh", description = "Refresh all tools owned by the user with specified organization in the background.", security = @SecurityRequirement(name = OPENAPI_JWT_SECURITY_DEFINITION_NAME))
+    @ApiOperation(nickname = "submitToolsByOrganizationRefresh", value = "Refresh all tools owned by the user with specified organization in the background.", notes = "Returns the queued or running refresh of the organization if there is one.", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = RefreshJob.class)
+    public RefreshJob submitToolsByOrganizationRefresh(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
+        @ApiParam(value = "User ID", required = true) @PathParam("userId") Long userId,
+        @ApiParam(value = "Organization", required = true) @PathParam("organization") String organization,
+        @ApiParam(value = "Docker registry") @QueryParam("dockerRegistry") String dockerRegistry) {
+        checkUser(user, userId);
+        return submit(new RefreshJob(RefreshJobType.ORGANIZATION_TOOLS, userId, organization, dockerRegistry, user.getId()));
+    }
+
+    @GET
+    @Timed
+    @UnitOfWork(readOnly = true)
+    @Path("/{jobId}")
+    @Operation(operationId = "getRefreshJob", description = "Get a refresh job.", security = @SecurityRequirement(name = OPENAPI_JWT_SECURITY_DEFINITION_NAME))
+    @ApiOperation(nickname = "getRefreshJob", value = "Get a refresh job.", notes = "The job of anything the user may refresh, whoever submitted it.", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = RefreshJob.class)
+    public RefreshJob getRefreshJob(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
+        @ApiParam(value = "Refresh job ID", required = true) @PathParam("jobId") Long jobId) {
+        RefreshJob refreshJob = refreshJobDAO.findById(jobId);
+        if (refreshJob == null) {
+            throw new CustomWebApplicationException("Refresh job not found", HttpStatus.SC_NOT_FOUND);
+        }
+        if (refreshJob.getUserId() != user.getId()) {
+            checkCanRefresh(user, refreshJob);
+        }
+        return refreshJob;
+    }
+
+    private void checkCanRefresh(User user, RefreshJob refreshJob) {
+        switch (refreshJob.getType()) {
+        case WORKFLOW:
+            Workflow workflow = workflowDAO.findById(refreshJob.getEntryId());
+            checkEntry(workflow);
+            checkUser(user, workflow);
+            break;
+        case TOOL:
+            Tool tool = toolDAO.findById(refreshJob.getEntryId());
+            checkEntry(tool);
+            checkUser(user, tool);
+            break;
+        default:
+            // the tools of a user are refreshed by that user
+            checkUser(user, refreshJob.getEntryId());
+        }
+    }
+
+    @GET
+    @Timed
+    @UnitOfWork(readOnly = true)
+    @Operation(operationId = "getRefreshJobs", description = "List the refresh jobs of the user, newest first.", security = @SecurityRequirement(name = OPENAPI_JWT_SECURITY_DEFINITION_NAME))
+    @ApiOperation(nickname = "getRefreshJobs", value = "List the refresh jobs of the user, newest first.", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = RefreshJob.class, responseContainer = "List")
+    public List<RefreshJob> getRefreshJobs(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
+        @ApiParam(value = PAGINATION_OFFSET_TEXT) @QueryParam("offset") @DefaultValue("0") Integer offset,
+        @ApiParam(value = PAGINATION_LIMIT_TEXT, allowableValues = "range[1,100]", defaultValue = PAGINATION_LIMIT) @DefaultValue(PAGINATION_LIMIT) @QueryParam("limit") Integer limit) {
+        return refreshJobDAO.findByUserId(user.getId(), offset, Math.min(limit, Integer.parseInt(PAGINATION_LIMIT)));
+    }
+
+    /**
+     * Queue a job once the request commits, unless the same is already queued or running
+     * @return the new job, or the one already queued or running
+     */
+    private RefreshJob submit(RefreshJob refreshJob) {
+        return refreshJobDAO.findUnfinished(refreshJob).orElseGet(() -> {
+            refreshJobQueue.lease(refreshJob);
+            refreshJobDAO.create(refreshJob, refreshJobQueue::add);
+            return refreshJob;
+        });
+    }
+}
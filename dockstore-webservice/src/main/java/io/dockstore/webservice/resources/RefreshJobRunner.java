@@ -0,0 +1,115 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.resources;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.core.RefreshJob;
+import io.dockstore.webservice.core.RefreshJob.RefreshJobStatus;
+import io.dockstore.webservice.core.User;
+import io.dockstore.webservice.helpers.RefreshJobQueue;
+import io.dockstore.webservice.jdbi.RefreshJobDAO;
+import io.dockstore.webservice.jdbi.UserDAO;
+import io.dropwizard.hibernate.UnitOfWork;
+import org.apache.http.HttpStatus;
+import org.hibernate.SessionFactory;
+
+/**
+ * Runs refresh jobs with the same code as the refresh endpoints.
+ *
+ * Create it with a UnitOfWorkAwareProxyFactory so that each step runs in its own session and transaction, the refresh
+ * and the success of the job commit together.
+ */
+public class RefreshJobRunner implements RefreshJobQueue.Runner {
+    private final RefreshJobDAO refreshJobDAO;
+    private final UserDAO userDAO;
+    private final WorkflowResource workflowResource;
+    private final DockerRepoResource dockerRepoResource;
+    private final UserResource userResource;
+
+    public RefreshJobRunner(SessionFactory sessionFactory, WorkflowResource workflowResource, DockerRepoResource dockerRepoResource,
+        UserResource userResource) {
+        this.refreshJobDAO = new RefreshJobDAO(sessionFactory);
+        this.userDAO = new UserDAO(sessionFactory);
+        this.workflowResource = workflowResource;
+        this.dockerRepoResource = dockerRepoResource;
+        this.userResource = userResource;
+    }
+
+    @Override
+    @UnitOfWork
+    public List<RefreshJob> claim(String owner, Timestamp leaseExpiry) {
+        return refreshJobDAO.claimLeaseExpired(owner, leaseExpiry);
+    }
+
+    @Override
+    @UnitOfWork
+    public void renew(String owner, Timestamp leaseExpiry) {
+        refreshJobDAO.renew(owner, leaseExpiry);
+    }
+
+    @Override
+    @UnitOfWork
+    public boolean start(long jobId, String owner) {
+        RefreshJob refreshJob = refreshJobDAO.findById(jobId);
+        if (refreshJob == null || refreshJob.getStatus() != RefreshJobStatus.QUEUED || !owner.equals(refreshJob.getOwner())) {
+            return false;
+        }
+        refreshJob.setStatus(RefreshJobStatus.RUNNING);
+        refreshJob.setStartDate(new Timestamp(System.currentTimeMillis()));
+        return true;
+    }
+
+    @Override
+    @UnitOfWork
+    public void run(long jobId) {
+        RefreshJob refreshJob = refreshJobDAO.findById(jobId);
+        User user = userDAO.findById(refreshJob.getUserId());
+        if (user == null) {
+            throw new CustomWebApplicationException("The user who submitted the refresh no longer exists", HttpStatus.SC_BAD_REQUEST);
+        }
+        switch (refreshJob.getType()) {
+        case WORKFLOW:
+            workflowResource.refreshWorkflow(user, refreshJob.getEntryId(), Optional.empty(), refreshJob::setVersionCounts);
+            break;
+        case TOOL:
+            dockerRepoResource.refreshTool(user, refreshJob.getEntryId(), refreshJob::setVersionCounts);
+            break;
+        case ORGANIZATION_TOOLS:
+            userResource.refreshToolsByOrganization(user, refreshJob.getEntryId(), refreshJob.getOrganization(), refreshJob.getDockerRegistry());
+            break;
+        default:
+            throw new CustomWebApplicationException("Unknown refresh job type " + refreshJob.getType(), HttpStatus.SC_BAD_REQUEST);
+        }
+        refreshJob.setStatus(RefreshJobStatus.SUCCEEDED);
+        refreshJob.setEndDate(new Timestamp(System.currentTimeMillis()));
+    }
+
+    @Override
+    @UnitOfWork
+    public void fail(long jobId, String message) {
+        RefreshJob refreshJob = refreshJobDAO.findById(jobId);
+        if (refreshJob != null) {
+            refreshJob.setStatus(RefreshJobStatus.FAILED);
+            refreshJob.setMessage(message);
+            refreshJob.setEndDate(new Timestamp(System.currentTimeMillis()));
+        }
+    }
+}
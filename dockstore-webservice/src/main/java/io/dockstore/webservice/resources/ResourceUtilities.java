@@ -22,6 +22,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.Optional;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
@@ -38,12 +40,31 @@ import org.slf4j.LoggerFactory;
  * @author dyuen
  */
 public final class ResourceUtilities {
+    public static final String VERSIONS_SKIPPED_HEADER = "X-versions-skipped";
+    public static final String VERSIONS_SKIPPED_DESCRIPTION = "How many versions were still at the commit they were stored at and kept as is";
+    public static final String VERSIONS_REFETCHED_HEADER = "X-versions-refetched";
+    public static final String VERSIONS_REFETCHED_DESCRIPTION = "How many versions had their files fetched again";
     private static final Logger LOG = LoggerFactory.getLogger(ResourceUtilities.class);
 
     private ResourceUtilities() {
         // hide the constructor for utility classes
     }
 
+    /**
+     * Tell the caller of a refresh how many versions were still at the commit they were stored at, and how many were fetched again
+     * @param response  response to the refresh, null when refreshed from within another request
+     * @param skipped   versions kept as stored
+     * @param refetched versions fetched again
+     */
+    public static void addRefreshCountHeaders(HttpServletResponse response, long skipped, long refetched) {
+        if (response == null) {
+            return;
+        }
+        response.addHeader(VERSIONS_SKIPPED_HEADER, String.valueOf(skipped));
+        response.addHeader(VERSIONS_REFETCHED_HEADER, String.valueOf(refetched));
+        response.addHeader("Access-Control-Expose-Headers", VERSIONS_SKIPPED_HEADER + ", " + VERSIONS_REFETCHED_HEADER);
+    }
+
     // from dropwizard example
     public static Optional<String> asString(String input, String token, HttpClient client) {
         return getResponseAsString(buildHttpGet(input, token), client);
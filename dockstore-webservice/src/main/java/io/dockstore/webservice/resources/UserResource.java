@@ -70,6 +70,7 @@ import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowMode;
 import io.dockstore.webservice.core.database.EntryLite;
 import io.dockstore.webservice.core.database.MyWorkflows;
+import io.dockstore.webservice.helpers.EntryFetchProfile;
 import io.dockstore.webservice.helpers.EntryVersionHelper;
 import io.dockstore.webservice.helpers.GoogleHelper;
 import io.dockstore.webservice.helpers.PublicStateManager;
@@ -423,6 +424,7 @@ public class UserResource implements AuthenticatedResourceInterface, SourceContr
         final List<Tool> immutableList = toolDAO.findMyEntriesPublished(user.getId());
         final List<Tool> repositories = Lists.newArrayList(immutableList);
         repositories.removeIf(c -> !c.getIsPublished());
+        EntryFetchProfile.FULL.apply(repositories);
         return repositories;
     }
 
@@ -441,6 +443,7 @@ public class UserResource implements AuthenticatedResourceInterface, SourceContr
         final List<Workflow> immutableList = workflowDAO.findMyEntriesPublished(user.getId());
         final List<Workflow> repositories = Lists.newArrayList(immutableList);
         repositories.removeIf(workflow -> !workflow.getIsPublished());
+        EntryFetchProfile.FULL.apply(repositories);
         return repositories;
     }
 
@@ -472,6 +475,7 @@ public class UserResource implements AuthenticatedResourceInterface, SourceContr
 
         List<Tool> finalTools = getTools(authUser);
         bulkUpsertTools(authUser);
+        EntryFetchProfile.FULL.apply(finalTools);
         return finalTools;
     }
 
@@ -518,6 +522,7 @@ public class UserResource implements AuthenticatedResourceInterface, SourceContr
         if (fetchedUser == null) {
             throw new CustomWebApplicationException("The given user does not exist.", HttpStatus.SC_NOT_FOUND);
         }
+        // built from a projection without any versions, so there is nothing for an EntryFetchProfile to load
         return convertMyWorkflowsToWorkflow(this.bioWorkflowDAO.findUserBioWorkflows(fetchedUser.getId()));
     }
 
@@ -564,6 +569,7 @@ public class UserResource implements AuthenticatedResourceInterface, SourceContr
     }
     private List<Workflow> getStrippedServices(User user) {
         final List<Workflow> services = getServices(user);
+        EntryFetchProfile.VERSIONS_WITHOUT_CONTENT.apply(services);
         EntryVersionHelper.stripContent(services, this.userDAO);
         return services;
     }
@@ -575,12 +581,14 @@ public class UserResource implements AuthenticatedResourceInterface, SourceContr
     // TODO: Replace with code similar to the new userWorkflows endpoint once it is optimised
     private List<Workflow> getStrippedBioworkflows(User user) {
         final List<Workflow> bioworkflows = getBioworkflows(user);
+        EntryFetchProfile.VERSIONS_WITHOUT_CONTENT.apply(bioworkflows);
         EntryVersionHelper.stripContent(bioworkflows, this.userDAO);
         return bioworkflows;
     }
 
     private List<Workflow> getStrippedWorkflowsAndServices(User user) {
         final List<Workflow> workflows = workflowDAO.findMyEntries(user.getId());
+        EntryFetchProfile.VERSIONS_WITHOUT_CONTENT.apply(workflows);
         EntryVersionHelper.stripContent(workflows, this.userDAO);
         return workflows;
 
@@ -601,6 +609,8 @@ public class UserResource implements AuthenticatedResourceInterface, SourceContr
         checkUser(user, userId);
         final User byId = this.userDAO.findById(userId);
         List<Tool> tools = getTools(byId);
+        toolDAO.loadDescriptorTypes(tools, true);
+        EntryFetchProfile.VERSIONS_WITHOUT_CONTENT.apply(tools);
         EntryVersionHelper.stripContent(tools, this.userDAO);
         return tools;
     }
@@ -677,8 +687,10 @@ public class UserResource implements AuthenticatedResourceInterface, SourceContr
     @ApiOperation(value = "Get the authenticated user's starred tools.", authorizations = { @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = Entry.class, responseContainer = "List")
     public Set<Entry> getStarredTools(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user) {
         User u = userDAO.findById(user.getId());
-        return u.getStarredEntries().stream().filter(element -> element instanceof Tool)
+        Set<Entry> starredTools = u.getStarredEntries().stream().filter(element -> element instanceof Tool)
                 .collect(Collectors.toCollection(LinkedHashSet::new));
+        starredTools.forEach(EntryFetchProfile.FULL::apply);
+        return starredTools;
     }
 
     @GET
@@ -689,8 +701,10 @@ public class UserResource implements AuthenticatedResourceInterface, SourceContr
     @ApiOperation(value = "Get the authenticated user's starred workflows.", authorizations = { @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = Entry.class, responseContainer = "List")
     public Set<Entry> getStarredWorkflows(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user) {
         User u = userDAO.findById(user.getId());
-        return u.getStarredEntries().stream().filter(element -> element instanceof Workflow)
+        Set<Entry> starredWorkflows = u.getStarredEntries().stream().filter(element -> element instanceof Workflow)
                 .collect(Collectors.toCollection(LinkedHashSet::new));
+        starredWorkflows.forEach(EntryFetchProfile.FULL::apply);
+        return starredWorkflows;
     }
 
     @GET
@@ -823,10 +837,9 @@ public class UserResource implements AuthenticatedResourceInterface, SourceContr
             Map<String, String> gitUrlToRepositoryId = sourceCodeRepo.getWorkflowGitUrl2RepositoryId();
             Set<String> organizations = gitUrlToRepositoryId.values().stream().map(repository -> repository.split("/")[0]).collect(Collectors.toSet());
 
-            organizations.forEach(organization -> {
-                List<Workflow> workflows = workflowDAO.findByOrganization(token.getTokenSource().getSourceControl(), organization);
-                workflows.stream().forEach(workflow -> workflow.getUsers().add(user));
-            });
+            // one query for all organizations, only loading the workflows the user is missing from
+            List<Workflow> workflows = workflowDAO.findByOrganizationsWithoutUser(token.getTokenSource().getSourceControl(), organizations, user);
+            workflows.forEach(workflow -> workflow.getUsers().add(user));
         });
 
         return getStrippedBioworkflows(userDAO.findById(user.getId()));
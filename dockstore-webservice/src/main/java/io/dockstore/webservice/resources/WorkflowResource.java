@@ -18,9 +18,11 @@ package io.dockstore.webservice.resources;
 
 import java.net.URISyntaxException;
 import java.nio.file.Paths;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -29,6 +31,8 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -62,6 +66,7 @@ import io.dockstore.common.DescriptorLanguage.FileType;
 import io.dockstore.common.SourceControl;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.api.BulkPublishRequest;
 import io.dockstore.webservice.api.PublishRequest;
 import io.dockstore.webservice.api.StarRequest;
 import io.dockstore.webservice.core.BioWorkflow;
@@ -81,6 +86,8 @@ import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowMode;
 import io.dockstore.webservice.core.WorkflowVersion;
 import io.dockstore.webservice.helpers.AliasHelper;
+import io.dockstore.webservice.helpers.DAGPipeline;
+import io.dockstore.webservice.helpers.EntryFetchProfile;
 import io.dockstore.webservice.helpers.EntryVersionHelper;
 import io.dockstore.webservice.helpers.FileFormatHelper;
 import io.dockstore.webservice.helpers.MetadataResourceHelper;
@@ -109,12 +116,15 @@ import io.dropwizard.hibernate.UnitOfWork;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.Authorization;
+import io.swagger.annotations.ResponseHeader;
 import io.swagger.api.impl.ToolsImplCommon;
 import io.swagger.jaxrs.PATCH;
 import io.swagger.model.DescriptorType;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.headers.Header;
+import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -122,9 +132,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.zenodo.client.ApiClient;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.tuple.MutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.hibernate.Hibernate;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -249,6 +261,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         workflow.setCheckerWorkflow(null);
 
         PublicStateManager.getInstance().handleIndexUpdate(workflow, StateManagerMode.DELETE);
+        EntryFetchProfile.FULL.apply(workflow);
         return workflow;
 
     }
@@ -405,30 +418,46 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
     @Path("/{workflowId}/refresh")
     @Timed
     @UnitOfWork
-    @Operation(operationId = "refresh", description = "Refresh one particular workflow.", security = @SecurityRequirement(name = ResourceConstants.OPENAPI_JWT_SECURITY_DEFINITION_NAME))
-    @ApiOperation(nickname = "refresh", value = "Refresh one particular workflow.", notes = "Full refresh", authorizations = {
-        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = Workflow.class)
+    @Operation(operationId = "refresh", description = "Refresh one particular workflow. Versions still at the commit they were stored at are kept as is, the X-versions-skipped and X-versions-refetched headers count them.",
+        security = @SecurityRequirement(name = ResourceConstants.OPENAPI_JWT_SECURITY_DEFINITION_NAME), responses = @ApiResponse(responseCode = "default", description = "default response",
+        content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = Workflow.class)), headers = {
+            @Header(name = ResourceUtilities.VERSIONS_SKIPPED_HEADER, description = ResourceUtilities.VERSIONS_SKIPPED_DESCRIPTION, schema = @Schema(type = "integer", format = "int64")),
+            @Header(name = ResourceUtilities.VERSIONS_REFETCHED_HEADER, description = ResourceUtilities.VERSIONS_REFETCHED_DESCRIPTION, schema = @Schema(type = "integer", format = "int64")) }))
+    @ApiOperation(nickname = "refresh", value = "Refresh one particular workflow.", notes = "Full refresh. Versions still at the commit they were stored at are kept as is, the X-versions-skipped and X-versions-refetched headers count them.", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = Workflow.class, responseHeaders = {
+            @ResponseHeader(name = ResourceUtilities.VERSIONS_SKIPPED_HEADER, description = ResourceUtilities.VERSIONS_SKIPPED_DESCRIPTION, response = Long.class),
+            @ResponseHeader(name = ResourceUtilities.VERSIONS_REFETCHED_HEADER, description = ResourceUtilities.VERSIONS_REFETCHED_DESCRIPTION, response = Long.class) })
     public Workflow refresh(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
-        @ApiParam(value = "workflow ID", required = true) @PathParam("workflowId") Long workflowId) {
-        return refreshWorkflow(user, workflowId, Optional.empty());
+        @ApiParam(value = "workflow ID", required = true) @PathParam("workflowId") Long workflowId, @Context HttpServletResponse response) {
+        Workflow workflow = refreshWorkflow(user, workflowId, Optional.empty(), (skipped, refetched) -> ResourceUtilities.addRefreshCountHeaders(response, skipped, refetched));
+        EntryFetchProfile.FULL.apply(workflow);
+        return workflow;
     }
 
     @GET
     @Path("/{workflowId}/refresh/{version}")
     @Timed
     @UnitOfWork
-    @Operation(operationId = "refreshVersion", description = "Refresh one particular workflow version.", security = @SecurityRequirement(name = ResourceConstants.OPENAPI_JWT_SECURITY_DEFINITION_NAME))
-    @ApiOperation(nickname = "refreshVersion", value = "Refresh one particular workflow version.", notes = "Refresh existing or new version of a workflow.", authorizations = {
-            @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = Workflow.class)
+    @Operation(operationId = "refreshVersion", description = "Refresh one particular workflow version. The version is always fetched again, the X-versions-skipped and X-versions-refetched headers count it.",
+        security = @SecurityRequirement(name = ResourceConstants.OPENAPI_JWT_SECURITY_DEFINITION_NAME), responses = @ApiResponse(responseCode = "default", description = "default response",
+        content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = Workflow.class)), headers = {
+            @Header(name = ResourceUtilities.VERSIONS_SKIPPED_HEADER, description = ResourceUtilities.VERSIONS_SKIPPED_DESCRIPTION, schema = @Schema(type = "integer", format = "int64")),
+            @Header(name = ResourceUtilities.VERSIONS_REFETCHED_HEADER, description = ResourceUtilities.VERSIONS_REFETCHED_DESCRIPTION, schema = @Schema(type = "integer", format = "int64")) }))
+    @ApiOperation(nickname = "refreshVersion", value = "Refresh one particular workflow version.", notes = "Refresh existing or new version of a workflow. The version is always fetched again, the X-versions-skipped and X-versions-refetched headers count it.", authorizations = {
+            @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = Workflow.class, responseHeaders = {
+            @ResponseHeader(name = ResourceUtilities.VERSIONS_SKIPPED_HEADER, description = ResourceUtilities.VERSIONS_SKIPPED_DESCRIPTION, response = Long.class),
+            @ResponseHeader(name = ResourceUtilities.VERSIONS_REFETCHED_HEADER, description = ResourceUtilities.VERSIONS_REFETCHED_DESCRIPTION, response = Long.class) })
     public Workflow refreshVersion(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
             @ApiParam(value = "workflow ID", required = true) @PathParam("workflowId") Long workflowId,
-            @ApiParam(value = "version", required = true) @PathParam("version") String version) {
+            @ApiParam(value = "version", required = true) @PathParam("version") String version, @Context HttpServletResponse response) {
         if (version == null || version.isBlank()) {
             String msg = "Version is a required field for this endpoint.";
             LOG.error(msg);
             throw new CustomWebApplicationException(msg, HttpStatus.SC_BAD_REQUEST);
         }
-        return refreshWorkflow(user, workflowId, Optional.of(version));
+        Workflow workflow = refreshWorkflow(user, workflowId, Optional.of(version), (skipped, refetched) -> ResourceUtilities.addRefreshCountHeaders(response, skipped, refetched));
+        EntryFetchProfile.FULL.apply(workflow);
+        return workflow;
     }
 
     /**
@@ -437,9 +466,10 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
      * @param user User who made call
      * @param workflowId ID of workflow
      * @param version Name of the workflow version
+     * @param refreshCounts given how many versions were kept as stored and how many were fetched again
      * @return Updated workflow
      */
-    private Workflow refreshWorkflow(User user, Long workflowId, Optional<String> version) {
+    Workflow refreshWorkflow(User user, Long workflowId, Optional<String> version, BiConsumer<Long, Long> refreshCounts) {
         Workflow existingWorkflow = workflowDAO.findById(workflowId);
         checkEntry(existingWorkflow);
         checkUser(user, existingWorkflow);
@@ -478,6 +508,8 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         final Workflow newWorkflow = sourceCodeRepo
                 .createWorkflowFromGitRepository(existingWorkflow.getOrganization() + '/' + existingWorkflow.getRepository(), Optional.of(existingWorkflow), version);
         existingWorkflow.getUsers().add(user);
+        long skipped = newWorkflow.getWorkflowVersions().stream().filter(Version::isUnchanged).count();
+        refreshCounts.accept(skipped, newWorkflow.getWorkflowVersions().size() - skipped);
 
         // Use new workflow to update existing workflow
         updateDBWorkflowWithSourceControlWorkflow(existingWorkflow, newWorkflow, user, version);
@@ -486,9 +518,9 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         // Refresh checker workflow
         if (!existingWorkflow.isIsChecker() && existingWorkflow.getCheckerWorkflow() != null) {
             if (version.isEmpty()) {
-                refresh(user, existingWorkflow.getCheckerWorkflow().getId());
+                refresh(user, existingWorkflow.getCheckerWorkflow().getId(), null);
             } else {
-                refreshVersion(user, existingWorkflow.getCheckerWorkflow().getId(), version.get());
+                refreshVersion(user, existingWorkflow.getCheckerWorkflow().getId(), version.get(), null);
             }
         }
         existingWorkflow.getWorkflowVersions().forEach(Version::updateVerified);
@@ -517,6 +549,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         Hibernate.initialize(workflow.getUsers());
         initializeAdditionalFields(include, workflow);
         Hibernate.initialize(workflow.getAliases());
+        EntryFetchProfile.FULL.apply(workflow);
         return workflow;
     }
 
@@ -562,6 +595,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         Workflow result = workflowDAO.findById(workflowId);
         checkEntry(result);
         PublicStateManager.getInstance().handleIndexUpdate(result, StateManagerMode.UPDATE);
+        EntryFetchProfile.FULL.apply(result);
         return result;
 
     }
@@ -684,6 +718,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         Workflow result = workflowDAO.findById(workflowId);
         checkEntry(result);
         PublicStateManager.getInstance().handleIndexUpdate(result, StateManagerMode.UPDATE);
+        EntryFetchProfile.FULL.apply(result);
         return result.getWorkflowVersions();
 
     }
@@ -746,6 +781,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
             }
         }
         PublicStateManager.getInstance().handleIndexUpdate(wf, StateManagerMode.UPDATE);
+        EntryFetchProfile.FULL.apply(wf);
         return wf;
     }
 
@@ -803,6 +839,36 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
     public Workflow publish(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
         @ApiParam(value = "Workflow id to publish/unpublish", required = true) @PathParam("workflowId") Long workflowId,
         @ApiParam(value = "PublishRequest to refresh the list of repos for a user", required = true) PublishRequest request) {
+        Workflow workflow = setPublished(user, workflowId, request.getPublish());
+        handlePublished(Collections.singletonList(workflow), request.getPublish());
+        EntryFetchProfile.FULL.apply(workflow);
+        return workflow;
+    }
+
+    @POST
+    @Timed
+    @UnitOfWork
+    @Path("/publish")
+    @Operation(operationId = "bulkPublish", description = "Publish or unpublish many workflows at once.", security = @SecurityRequirement(name = OPENAPI_JWT_SECURITY_DEFINITION_NAME))
+    @ApiOperation(nickname = "bulkPublish", value = "Publish or unpublish many workflows at once.", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, notes = "Either every workflow is published/unpublished or none are. At most "
+        + PAGINATION_LIMIT + " workflows at a time.", response = Workflow.class, responseContainer = "List")
+    public List<Workflow> bulkPublish(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user,
+        @ApiParam(value = "IDs of the workflows to publish/unpublish", required = true) BulkPublishRequest request) {
+        List<Long> workflowIds = request.getIds().stream().distinct().collect(Collectors.toList());
+        if (workflowIds.size() > Integer.parseInt(PAGINATION_LIMIT)) {
+            throw new CustomWebApplicationException("Cannot publish/unpublish more than " + PAGINATION_LIMIT + " workflows at a time.", HttpStatus.SC_BAD_REQUEST);
+        }
+        List<Workflow> workflows = workflowIds.stream().map(workflowId -> setPublished(user, workflowId, request.getPublish())).collect(Collectors.toList());
+        handlePublished(workflows, request.getPublish());
+        EntryFetchProfile.FULL.apply(workflows);
+        return workflows;
+    }
+
+    /**
+     * Publish or unpublish a workflow along with its checker workflow, without telling anyone yet
+     */
+    private Workflow setPublished(User user, Long workflowId, boolean publish) {
         Workflow workflow = workflowDAO.findById(workflowId);
         checkEntry(workflow);
 
@@ -816,7 +882,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
             throw new CustomWebApplicationException(msg, HttpStatus.SC_BAD_REQUEST);
         }
 
-        if (request.getPublish()) {
+        if (publish) {
             boolean validTag = false;
             Set<WorkflowVersion> versions = workflow.getWorkflowVersions();
             for (WorkflowVersion workflowVersion : versions) {
@@ -842,20 +908,25 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         }
 
         long id = workflowDAO.create(workflow);
-        workflow = workflowDAO.findById(id);
-        if (request.getPublish()) {
-            PublicStateManager.getInstance().handleIndexUpdate(workflow, StateManagerMode.PUBLISH);
-            if (workflow.getTopicId() == null) {
-                try {
-                    entryResource.createAndSetDiscourseTopic(id);
-                } catch (CustomWebApplicationException ex) {
-                    LOG.error("Error adding discourse topic.", ex);
+        return workflowDAO.findById(id);
+    }
+
+    /**
+     * Tell the state listeners about the workflows in one batch, then create the discourse topics of newly published ones
+     */
+    private void handlePublished(List<Workflow> workflows, boolean publish) {
+        PublicStateManager.getInstance().handleIndexUpdate(workflows, publish ? StateManagerMode.PUBLISH : StateManagerMode.DELETE);
+        if (publish) {
+            for (Workflow workflow : workflows) {
+                if (workflow.getTopicId() == null) {
+                    try {
+                        entryResource.createAndSetDiscourseTopic(workflow.getId());
+                    } catch (CustomWebApplicationException ex) {
+                        LOG.error("Error adding discourse topic.", ex);
+                    }
                 }
             }
-        } else {
-            PublicStateManager.getInstance().handleIndexUpdate(workflow, StateManagerMode.DELETE);
         }
-        return workflow;
     }
 
     @GET
@@ -864,7 +935,8 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
     @Path("published")
     @Operation(operationId = "allPublishedWorkflows", description = "List all published workflows.")
     @ApiOperation(value = "List all published workflows.", tags = {
-        "workflows" }, notes = "NO authentication", response = Workflow.class, responseContainer = "List")
+        "workflows" }, notes = "NO authentication. The source files of the versions are not listed.", response = Workflow.class, responseContainer = "List")
+    @SuppressWarnings("checkstyle:ParameterNumber")
     public List<Workflow> allPublishedWorkflows(
         @ApiParam(value = "Start index of paging. Pagination results can be based on numbers or other values chosen by the registry implementor (for example, SHA values). If this exceeds the current result set return an empty set.  If not specified in the request, this will start at the beginning of the results.") @QueryParam("offset") String offset,
         @ApiParam(value = "Amount of records to return in a given page, limited to "
@@ -873,12 +945,23 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         @ApiParam(value = "Sort column") @DefaultValue("stars") @QueryParam("sortCol") String sortCol,
         @ApiParam(value = "Sort order", allowableValues = "asc,desc") @DefaultValue("desc") @QueryParam("sortOrder") String sortOrder,
         @ApiParam(value = "services", defaultValue = "false") @DefaultValue("false") @QueryParam("services") boolean services,
+        @ApiParam(value = "Cursor for keyset pagination, taken from the X-next-cursor header of the previous page. An empty cursor starts at the beginning. When present, offset is ignored and X-total-count is not returned.") @QueryParam("cursor") String cursor,
         @Context HttpServletResponse response) {
         // delete the next line if GUI pagination is not working by 1.5.0 release
         int maxLimit = Math.min(Integer.parseInt(PAGINATION_LIMIT), limit);
-        List<Workflow> workflows = workflowDAO.findAllPublished(offset, maxLimit, filter, sortCol, sortOrder, (Class<Workflow>)(services
-            ? Service.class : BioWorkflow.class));
-        filterContainersForHiddenTags(workflows);
+        Class<Workflow> workflowClass = (Class<Workflow>)(services ? Service.class : BioWorkflow.class);
+        if (cursor != null) {
+            // the total count is skipped so that walking the whole listing costs the same for every page
+            Pair<List<Workflow>, Optional<String>> page = workflowDAO.findAllPublishedAfter(cursor, maxLimit, filter, sortCol, sortOrder, workflowClass);
+            List<Workflow> workflows = page.getLeft();
+            filterContainersForHiddenTags(workflows, EntryFetchProfile.VERSIONS_WITHOUT_CONTENT);
+            stripContent(workflows);
+            page.getRight().ifPresent(nextCursor -> response.addHeader("X-next-cursor", nextCursor));
+            response.addHeader("Access-Control-Expose-Headers", "X-next-cursor");
+            return workflows;
+        }
+        List<Workflow> workflows = workflowDAO.findAllPublished(offset, maxLimit, filter, sortCol, sortOrder, workflowClass);
+        filterContainersForHiddenTags(workflows, EntryFetchProfile.VERSIONS_WITHOUT_CONTENT);
         stripContent(workflows);
         EntryDAO entryDAO = services ? serviceEntryDAO : bioWorkflowDAO;
         response.addHeader("X-total-count", String.valueOf(entryDAO.countAllPublished(Optional.of(filter))));
@@ -934,6 +1017,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
 
         initializeAdditionalFields(include, workflow);
         Hibernate.initialize(workflow.getAliases());
+        EntryFetchProfile.FULL.apply(workflow);
         return workflow;
     }
 
@@ -1079,6 +1163,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         // Ensure the user has access
         checkUser(user, entryPair.getValue());
 
+        EntryFetchProfile.FULL.apply(entryPair.getValue());
         return entryPair.getValue();
     }
 
@@ -1096,6 +1181,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
             throw new CustomWebApplicationException("Entry not found", HttpStatus.SC_BAD_REQUEST);
         }
 
+        EntryFetchProfile.FULL.apply(entryPair.getValue());
         return entryPair.getValue();
     }
 
@@ -1111,6 +1197,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         List<Workflow> workflows = workflowDAO.findAllByPath(path, false);
         checkEntry(workflows);
         AuthenticatedResourceInterface.checkUser(user, workflows);
+        EntryFetchProfile.FULL.apply(workflows);
         return workflows;
     }
 
@@ -1153,6 +1240,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
     public List<WorkflowVersion> tags(@ApiParam(hidden = true) @Parameter(hidden = true, name = "user")@Auth User user, @QueryParam("workflowId") long workflowId) {
         Workflow repository = workflowDAO.findPublishedById(workflowId);
         checkEntry(repository);
+        EntryFetchProfile.FULL.apply(repository);
         return new ArrayList<>(repository.getWorkflowVersions());
     }
 
@@ -1360,7 +1448,9 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         // Save into database and then pull versions
         Workflow workflowFromDB = saveNewWorkflow(newWorkflow, user);
         updateDBWorkflowWithSourceControlWorkflow(workflowFromDB, newWorkflow, user, Optional.empty());
-        return workflowDAO.findById(workflowFromDB.getId());
+        Workflow result = workflowDAO.findById(workflowFromDB.getId());
+        EntryFetchProfile.FULL.apply(result);
+        return result;
     }
 
     @PUT
@@ -1442,12 +1532,13 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         Workflow result = workflowDAO.findById(workflowId);
         checkEntry(result);
         PublicStateManager.getInstance().handleIndexUpdate(result, StateManagerMode.UPDATE);
+        EntryFetchProfile.FULL.apply(result);
         return result.getWorkflowVersions();
     }
 
     @GET
     @Timed
-    @UnitOfWork()
+    @UnitOfWork(readOnly = true)
     @Path("/{workflowId}/dag/{workflowVersionId}")
     @Operation(operationId = "getWorkflowDag", description = "Get the DAG for a given workflow version.", security = @SecurityRequirement(name = OPENAPI_JWT_SECURITY_DEFINITION_NAME))
     @ApiOperation(value = "Get the DAG for a given workflow version.", response = String.class, notes = OPTIONAL_AUTH_MESSAGE, authorizations = {
@@ -1462,20 +1553,13 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         WorkflowVersion workflowVersion = getWorkflowVersion(workflow, workflowVersionId);
         SourceFile mainDescriptor = getMainDescriptorFile(workflowVersion);
 
-        // json in db cleared after a refresh
+        // json in db cleared after a refresh, and stored again by the DAG pipeline
         if (workflowVersion.getDagJson() != null) {
             return workflowVersion.getDagJson();
         }
 
         if (mainDescriptor != null) {
-            Set<SourceFile> secondaryDescContent = extractDescriptorAndSecondaryFiles(workflowVersion);
-
-            LanguageHandlerInterface lInterface = LanguageHandlerFactory.getInterface(workflow.getFileType());
-            final String dagJson = lInterface.getCleanDAG(workflowVersion.getWorkflowPath(), mainDescriptor.getContent(), secondaryDescContent,
-                    LanguageHandlerInterface.Type.DAG, toolDAO);
-
-            workflowVersion.setDagJson(dagJson);
-            return dagJson;
+            return getDAGs(workflow, workflowVersion).getDagJson();
         }
         return null;
     }
@@ -1489,7 +1573,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
      */
     @GET
     @Timed
-    @UnitOfWork()
+    @UnitOfWork(readOnly = true)
     @Path("/{workflowId}/tools/{workflowVersionId}")
     @Operation(operationId = "getTableToolContent", description = "Get the Tools for a given workflow version.", security = @SecurityRequirement(name = OPENAPI_JWT_SECURITY_DEFINITION_NAME))
     @ApiOperation(value = "Get the Tools for a given workflow version.", notes = OPTIONAL_AUTH_MESSAGE, response = String.class, authorizations = {
@@ -1507,24 +1591,102 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
             throw new CustomWebApplicationException("workflow version " + workflowVersionId + " does not exist", HttpStatus.SC_BAD_REQUEST);
         }
 
-        // json in db cleared after a refresh
+        // json in db cleared after a refresh, and stored again by the DAG pipeline
         if (workflowVersion.getToolTableJson() != null) {
             return workflowVersion.getToolTableJson();
         }
 
         SourceFile mainDescriptor = getMainDescriptorFile(workflowVersion);
         if (mainDescriptor != null) {
-            Set<SourceFile> secondaryDescContent = extractDescriptorAndSecondaryFiles(workflowVersion);
-            LanguageHandlerInterface lInterface = LanguageHandlerFactory.getInterface(workflow.getFileType());
-            final String toolTableJson = lInterface.getContent(workflowVersion.getWorkflowPath(), mainDescriptor.getContent(), secondaryDescContent,
-                LanguageHandlerInterface.Type.TOOLS, toolDAO);
-            workflowVersion.setToolTableJson(toolTableJson);
-            return toolTableJson;
+            return getDAGs(workflow, workflowVersion).getToolTableJson();
         }
 
         return null;
     }
 
+    /**
+     * Wait for the DAG pipeline to compute and store the DAG and tool table of a version, sharing the computation
+     * already in flight if there is one. The transaction is committed first, so that waiting does not hold a database
+     * connection, and the request computes them itself if the pipeline does not finish in time.
+     */
+    private DAGPipeline.Content getDAGs(Workflow workflow, WorkflowVersion workflowVersion) {
+        if (dagPipeline == null) {
+            return computeDAGs(workflow, workflowVersion);
+        }
+        Session session = sessionFactory.getCurrentSession();
+        session.getTransaction().commit();
+        Optional<DAGPipeline.Content> content = dagPipeline.await(workflow.getId(), workflowVersion.getId());
+        session.beginTransaction();
+        return content.orElseGet(() -> computeDAGs(workflow, workflowVersion));
+    }
+
+    /**
+     * Compute the DAG and tool table of a version and store the ones that are missing, unless the version changed in the
+     * meantime. Not an endpoint, the DAG pipeline calls it in its own transaction.
+     * @param workflowId        workflow of the version
+     * @param workflowVersionId the version
+     * @return the DAG and tool table of the version
+     */
+    public DAGPipeline.Content computeDAGs(long workflowId, long workflowVersionId) {
+        Workflow workflow = workflowDAO.findById(workflowId);
+        checkEntry(workflow);
+        WorkflowVersion workflowVersion = getWorkflowVersion(workflow, workflowVersionId);
+        if (workflowVersion == null) {
+            throw new CustomWebApplicationException("workflow version " + workflowVersionId + " does not exist", HttpStatus.SC_BAD_REQUEST);
+        }
+        // read before computing, so that a refresh committing in the meantime is not overwritten with the old files' JSON
+        Timestamp dbUpdateDate = workflowVersion.getDbUpdateDate();
+        DAGPipeline.Content content = computeDAGs(workflow, workflowVersion);
+        String dagJson = workflowVersion.getDagJson() == null ? getQuietly(content::getDagJson) : null;
+        String toolTableJson = workflowVersion.getToolTableJson() == null ? getQuietly(content::getToolTableJson) : null;
+        if (dagJson != null || toolTableJson != null) {
+            workflowVersionDAO.storeDAGs(workflowVersionId, dbUpdateDate, dagJson, toolTableJson);
+        }
+        return content;
+    }
+
+    /**
+     * Compute the DAG and tool table of a version without storing them, each of which may fail on its own
+     */
+    private DAGPipeline.Content computeDAGs(Workflow workflow, WorkflowVersion workflowVersion) {
+        SourceFile mainDescriptor = getMainDescriptorFile(workflowVersion);
+        if (mainDescriptor == null) {
+            return new DAGPipeline.Content(null, null, null, null);
+        }
+        Set<SourceFile> secondaryDescContent = extractDescriptorAndSecondaryFiles(workflowVersion);
+        LanguageHandlerInterface lInterface = LanguageHandlerFactory.getInterface(workflow.getFileType());
+        String dagJson = workflowVersion.getDagJson();
+        RuntimeException dagError = null;
+        if (dagJson == null) {
+            try {
+                dagJson = lInterface.getCleanDAG(workflowVersion.getWorkflowPath(), mainDescriptor.getContent(), secondaryDescContent,
+                    LanguageHandlerInterface.Type.DAG, toolDAO);
+            } catch (RuntimeException e) {
+                dagError = e;
+            }
+        }
+        String toolTableJson = workflowVersion.getToolTableJson();
+        RuntimeException toolTableError = null;
+        if (toolTableJson == null) {
+            try {
+                toolTableJson = lInterface.getContent(workflowVersion.getWorkflowPath(), mainDescriptor.getContent(), secondaryDescContent,
+                    LanguageHandlerInterface.Type.TOOLS, toolDAO);
+            } catch (RuntimeException e) {
+                toolTableError = e;
+            }
+        }
+        return new DAGPipeline.Content(dagJson, dagError, toolTableJson, toolTableError);
+    }
+
+    private static String getQuietly(Supplier<String> json) {
+        try {
+            return json.get();
+        } catch (RuntimeException e) {
+            // not stored, the error is returned to whoever asked for it and the version is computed again next time
+            return null;
+        }
+    }
+
     @GET
     @Timed
     @UnitOfWork(readOnly = true)
@@ -1790,7 +1952,9 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         entry.setCheckerWorkflow(checkerWorkflow);
 
         // Return the original entry
-        return toolDAO.getGenericEntryById(entryId);
+        Entry result = toolDAO.getGenericEntryById(entryId);
+        EntryFetchProfile.FULL.apply(result);
+        return result;
     }
 
     /**
@@ -1877,6 +2041,7 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         final Workflow workflow = this.workflowDAO.findByAlias(alias);
         checkEntry(workflow);
         optionalUserCheckEntry(user, workflow);
+        EntryFetchProfile.FULL.apply(workflow);
         return workflow;
     }
 
@@ -1917,7 +2082,9 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
 
         // Create a workflow
         final Workflow createdWorkflow = sourceCodeRepo.createStubBioworkflow(repository);
-        return saveNewWorkflow(createdWorkflow, foundUser);
+        BioWorkflow result = saveNewWorkflow(createdWorkflow, foundUser);
+        EntryFetchProfile.FULL.apply(result);
+        return result;
     }
 
     /**
@@ -2003,7 +2170,9 @@ public class WorkflowResource extends AbstractWorkflowResource<Workflow>
         @Parameter(name = "gitReference", description = "Full git reference for a GitHub branch/tag. Ex. refs/heads/master or refs/tags/v1.0", required = true) @FormParam("gitReference") String gitReference,
         @Parameter(name = "installationId", description = "GitHub installation ID", required = true) @FormParam("installationId") String installationId) {
         LOG.info("Branch/tag " + gitReference + " pushed to " + repository + "(" + username + ")");
-        return githubWebhookRelease(repository, username, gitReference, installationId);
+        List<Workflow> workflows = githubWebhookRelease(repository, username, gitReference, installationId);
+        EntryFetchProfile.FULL.apply(workflows);
+        return workflows;
     }
 
     @POST
@@ -17,23 +17,22 @@
 package io.dockstore.webservice.resources.proposedGA4GH;
 
 import java.io.IOException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 
-import com.google.common.io.Resources;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceConfiguration;
 import io.dockstore.webservice.core.Entry;
@@ -43,14 +42,14 @@ import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowVersion;
-import io.dockstore.webservice.helpers.PublicStateManager;
+import io.dockstore.webservice.helpers.ElasticSearchClient;
 import io.dockstore.webservice.jdbi.ToolDAO;
 import io.dockstore.webservice.jdbi.WorkflowDAO;
+import io.dockstore.webservice.resources.ElasticReindexRunner;
 import io.openapi.api.impl.ToolsApiServiceImpl;
 import io.swagger.api.impl.ToolsImplCommon;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
 import org.apache.http.entity.ContentType;
 import org.apache.http.nio.entity.NStringEntity;
@@ -71,11 +70,10 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
     private static ToolDAO toolDAO = null;
     private static WorkflowDAO workflowDAO = null;
     private static DockstoreWebserviceConfiguration config = null;
-    private static PublicStateManager publicStateManager = null;
-
-    public static void setStateManager(PublicStateManager manager) {
-        ToolsApiExtendedServiceImpl.publicStateManager = manager;
-    }
+    private static ElasticSearchClient elasticSearchClient = null;
+    private static ExecutorService reindexExecutor = null;
+    private static ElasticReindexRunner reindexRunner = null;
+    private static final AtomicBoolean REINDEXING = new AtomicBoolean();
 
     public static void setToolDAO(ToolDAO toolDAO) {
         ToolsApiExtendedServiceImpl.toolDAO = toolDAO;
@@ -89,6 +87,19 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
         ToolsApiExtendedServiceImpl.config = config;
     }
 
+    public static void setElasticSearchClient(ElasticSearchClient client) {
+        ToolsApiExtendedServiceImpl.elasticSearchClient = client;
+    }
+
+    /**
+     * @param executor runs one reindex at a time
+     * @param runner   rebuilds the index, in its own session
+     */
+    public static void setReindexing(ExecutorService executor, ElasticReindexRunner runner) {
+        ToolsApiExtendedServiceImpl.reindexExecutor = executor;
+        ToolsApiExtendedServiceImpl.reindexRunner = runner;
+    }
+
     /**
      * Avoid using this one, this is quite slow
      *
@@ -161,35 +172,26 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
     @Override
     public Response toolsIndexGet(SecurityContext securityContext) {
         if (!config.getEsConfiguration().getHostname().isEmpty()) {
-            List<Entry> published = getPublished();
-            try (RestClient restClient = RestClient
-                    .builder(new HttpHost(config.getEsConfiguration().getHostname(), config.getEsConfiguration().getPort(), "http"))
-                    .build()) {
-
-                // Delete index
-                try {
-                    restClient.performRequest("DELETE", "/entry");
-                } catch (Exception e) {
-                    LOG.warn("Could not delete previous elastic search index, not an issue if this is cold start", e);
-                }
-
-                // Get index mapping
-                URL url = Resources.getResource("queries/mapping.json");
-                String text = Resources.toString(url, StandardCharsets.UTF_8);
-                HttpEntity mappingEntity = new NStringEntity(text, ContentType.APPLICATION_JSON);
-
-                // Create index
-                restClient.performRequest("PUT", "/entry", Collections.emptyMap(), mappingEntity);
-
-                // Populate index
-                if (!published.isEmpty()) {
-                    publicStateManager.bulkUpsert(published);
-                }
-            } catch (IOException e) {
-                LOG.error("Could not create elastic search index", e);
-                throw new CustomWebApplicationException(e.getMessage(), HttpStatus.SC_INTERNAL_SERVER_ERROR);
+            if (!REINDEXING.compareAndSet(false, true)) {
+                throw new CustomWebApplicationException("The index is already being rebuilt", HttpStatus.SC_CONFLICT);
+            }
+            // the reindex takes as long as the catalog is big, the response only says how many entries it will read
+            final long published = toolDAO.countAllPublished(Optional.empty()) + workflowDAO.countAllPublished(Optional.empty());
+            try {
+                reindexExecutor.execute(() -> {
+                    try {
+                        LOG.info("Reindexed " + reindexRunner.reindex() + " published entries");
+                    } catch (IOException | RuntimeException e) {
+                        LOG.error("Could not create elastic search index", e);
+                    } finally {
+                        REINDEXING.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                REINDEXING.set(false);
+                throw new CustomWebApplicationException("The webservice is shutting down, try again later", HttpStatus.SC_SERVICE_UNAVAILABLE);
             }
-            return Response.ok().entity(published.size()).build();
+            return Response.ok().entity(published).build();
         }
         return Response.ok().entity(0).build();
     }
@@ -197,9 +199,8 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
     @Override
     public Response toolsIndexSearch(String query, MultivaluedMap<String, String> queryParameters, SecurityContext securityContext) {
         if (!config.getEsConfiguration().getHostname().isEmpty()) {
-            try (RestClient restClient = RestClient
-                    .builder(new HttpHost(config.getEsConfiguration().getHostname(), config.getEsConfiguration().getPort(), "http"))
-                    .build()) {
+            try {
+                RestClient restClient = elasticSearchClient.getRestClient();
                 HttpEntity entity = query == null ? null : new NStringEntity(query, ContentType.APPLICATION_JSON);
                 Map<String, String> parameters = new HashMap<>();
                 // TODO: note that this is lossy if there are repeated parameters
@@ -25,7 +25,9 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -43,7 +45,6 @@ import javax.ws.rs.core.SecurityContext;
 import com.google.common.base.Joiner;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Splitter;
-import com.google.common.collect.Lists;
 import io.dockstore.common.DescriptorLanguage;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceApplication;
@@ -58,8 +59,11 @@ import io.dockstore.webservice.core.User;
 import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowVersion;
+import io.dockstore.webservice.core.database.TRSEntryKey;
+import io.dockstore.webservice.helpers.EntryFetchProfile;
 import io.dockstore.webservice.helpers.EntryVersionHelper;
 import io.dockstore.webservice.helpers.statelisteners.TRSListener;
+import io.dockstore.webservice.jdbi.TRSFilter;
 import io.dockstore.webservice.jdbi.ToolDAO;
 import io.dockstore.webservice.jdbi.WorkflowDAO;
 import io.dockstore.webservice.resources.AuthenticatedResourceInterface;
@@ -73,7 +77,6 @@ import io.openapi.model.ToolVersion;
 import io.swagger.api.impl.ToolsImplCommon;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -140,6 +143,7 @@ public class ToolsApiServiceImpl extends ToolsApiService implements Authenticate
         } else if (!container.getIsPublished()) {
             response = Response.status(Status.UNAUTHORIZED).build();
         } else {
+            EntryFetchProfile.FULL.apply(container);
             io.openapi.model.Tool tool = ToolsImplCommon.convertEntryToTool(container, config);
             assert (tool != null);
             // filter out other versions if we're narrowing to a specific version
@@ -177,11 +181,7 @@ public class ToolsApiServiceImpl extends ToolsApiService implements Authenticate
 
     public Entry<?, ?> getEntry(ParsedRegistryID parsedID, Optional<User> user) {
         Entry<?, ?> entry;
-        String entryPath = parsedID.getPath();
-        String entryName = parsedID.getToolName().isEmpty() ? null : parsedID.getToolName();
-        if (entryName != null) {
-            entryPath += "/" + parsedID.getToolName();
-        }
+        String entryPath = parsedID.getEntryPath();
         if (parsedID.toolType() == ParsedRegistryID.ToolType.TOOL) {
             entry = toolDAO.findByPath(entryPath, user.isEmpty());
         } else if (parsedID.toolType() == ParsedRegistryID.ToolType.WORKFLOW) {
@@ -263,102 +263,45 @@ public class ToolsApiServiceImpl extends ToolsApiService implements Authenticate
         String description, String author, Boolean checker, String offset, Integer limit, SecurityContext securityContext,
         ContainerRequestContext value, Optional<User> user) {
 
-        final Integer hashcode = new HashCodeBuilder().append(id).append(alias).append(toolClass).append(registry).append(organization).append(name)
-            .append(toolname).append(description).append(author).append(checker).append(offset).append(limit)
-            .append(user.orElseGet(User::new).getId()).build();
-        final Optional<Response.ResponseBuilder> trsResponses = trsListener.getTrsResponse(hashcode);
-        if (trsResponses.isPresent()) {
-            return trsResponses.get().build();
-        }
-
-        final List<Entry<?, ?>> all = new ArrayList<>();
-
-        // short circuit id and alias filters, these are a bit weird because they have a max of one result
-        if (id != null) {
-            ParsedRegistryID parsedID = new ParsedRegistryID(id);
-            Entry<?, ?> entry = getEntry(parsedID, user);
-            all.add(entry);
-        } else if (alias != null) {
-            all.add(toolDAO.getGenericEntryByAlias(alias));
-        } else {
-            if (toolClass == null || COMMAND_LINE_TOOL.equalsIgnoreCase(toolClass)) {
-                all.addAll(toolDAO.findAllPublished());
-            }
-            if (toolClass == null || WORKFLOW.equalsIgnoreCase(toolClass)) {
-                all.addAll(workflowDAO.findAllPublished());
-            }
-            all.sort(Comparator.comparing(Entry::getGitUrl));
-        }
-
-        List<io.openapi.model.Tool> results = new ArrayList<>();
-        for (Entry<?, ?> c : all) {
-            // filters just for tools
-            if (c instanceof Tool) {
-                Tool tool = (Tool)c;
-                // check each criteria. This sucks. Can we do this better with reflection? Or should we pre-convert?
-                if (registry != null && tool.getRegistry() != null && !tool.getRegistry().contains(registry)) {
-                    continue;
-                }
-                if (organization != null && tool.getNamespace() != null && !tool.getNamespace().contains(organization)) {
-                    continue;
-                }
-                if (name != null && tool.getName() != null && !tool.getName().contains(name)) {
-                    continue;
-                }
-                if (toolname != null && tool.getToolname() != null && !tool.getToolname().contains(toolname)) {
-                    continue;
-                }
-                if (checker != null && checker) {
-                    // tools are never checker workflows
-                    continue;
-                }
-            }
-            // filters just for tools
-            if (c instanceof Workflow) {
-                Workflow workflow = (Workflow)c;
-                // check each criteria. This sucks. Can we do this better with reflection? Or should we pre-convert?
-                if (registry != null && workflow.getSourceControl() != null && !workflow.getSourceControl().toString().contains(registry)) {
-                    continue;
-                }
-                if (organization != null && workflow.getOrganization() != null && !workflow.getOrganization().contains(organization)) {
-                    continue;
-                }
-                if (name != null && workflow.getRepository() != null && !workflow.getRepository().contains(name)) {
-                    continue;
-                }
-                if (toolname != null && workflow.getWorkflowName() != null && !workflow.getWorkflowName().contains(toolname)) {
-                    continue;
-                }
-                if (checker != null && workflow.isIsChecker() != checker) {
-                    continue;
-                }
-            }
-            // common filters between tools and workflows
-            if (description != null && c.getDescription() != null && !c.getDescription().contains(description)) {
-                continue;
-            }
-            if (author != null && c.getAuthor() != null && !c.getAuthor().contains(author)) {
-                continue;
-            }
-            // if passing, for each container that matches the criteria, convert to standardised format and return
-            io.openapi.model.Tool tool = ToolsImplCommon.convertEntryToTool(c, config);
-            if (tool != null) {
-                results.add(tool);
-            }
-        }
-
         final int actualLimit = MoreObjects.firstNonNull(limit, DEFAULT_PAGE_SIZE);
-
-        List<List<io.openapi.model.Tool>> pagedResults = Lists.partition(results, actualLimit);
+        if (actualLimit <= 0) {
+            throw new CustomWebApplicationException("limit must be a positive number", HttpStatus.SC_BAD_REQUEST);
+        }
         int offsetInteger = 0;
         if (offset != null) {
             offsetInteger = Integer.parseInt(offset);
         }
-        if (offsetInteger >= pagedResults.size()) {
-            results = new ArrayList<>();
-        } else {
-            results = pagedResults.get(offsetInteger);
+        final TRSFilter filter = new TRSFilter(registry, organization, name, toolname, description, author, checker);
+
+        final List<Object> query = Arrays.asList(id, alias, toolClass, registry, organization, name, toolname, description, author, checker, offset, limit,
+            user.map(User::getId).orElse(null));
+        final long cacheGeneration = trsListener.getGeneration();
+        TRSListener.TRSPage page = trsListener.getTRSPage(query).orElse(null);
+        if (page == null) {
+            // short circuit id and alias filters, these are a bit weird because they have a max of one result
+            if (id != null || alias != null) {
+                final ParsedRegistryID parsedID = id != null ? new ParsedRegistryID(id) : null;
+                Entry<?, ?> entry = parsedID != null ? getEntry(parsedID, user) : toolDAO.getGenericEntryByAlias(alias);
+                List<TRSEntryKey> matches = entry != null && filter.matches(entry) ? List.of(TRSEntryKey.of(entry)) : List.of();
+                page = TRSListener.TRSPage.lookup(offsetInteger == 0 ? matches : List.of(), matches.size(), parsedID != null ? parsedID.getEntryPath() : null,
+                    alias);
+            } else {
+                // filtering and paging is done by the database so only the entries on this page are loaded and converted
+                final boolean includeTools = toolClass == null || COMMAND_LINE_TOOL.equalsIgnoreCase(toolClass);
+                final boolean includeWorkflows = toolClass == null || WORKFLOW.equalsIgnoreCase(toolClass);
+                final long numberOfResults = toolDAO.countPublishedTRS(filter, includeTools, includeWorkflows);
+                final long firstResult = (long)offsetInteger * actualLimit;
+                List<TRSEntryKey> keys = List.of();
+                if (offsetInteger >= 0 && firstResult < numberOfResults) {
+                    keys = toolDAO.findPublishedTRSKeys(filter, includeTools, includeWorkflows, (int)firstResult, actualLimit);
+                }
+                page = new TRSListener.TRSPage(keys, numberOfResults, filter, includeTools, includeWorkflows);
+            }
+            trsListener.loadTRSPage(query, page, cacheGeneration);
         }
+        final long numberOfPages = (page.getNumberOfResults() + actualLimit - 1) / actualLimit;
+        List<io.openapi.model.Tool> results = getTRSTools(page.getKeys(), cacheGeneration);
+
         final Response.ResponseBuilder responseBuilder = Response.ok(results);
         responseBuilder.header("current_offset", offset);
         responseBuilder.header("current_limit", actualLimit);
@@ -379,7 +322,7 @@ public class ToolsApiServiceImpl extends ToolsApiService implements Authenticate
             handleParameter(registry, "registry", filters);
             handleParameter(String.valueOf(actualLimit), "limit", filters);
 
-            if (offsetInteger + 1 < pagedResults.size()) {
+            if (offsetInteger + 1 < numberOfPages) {
                 URI nextPageURI = new URI(config.getExternalConfig().getScheme(), null, config.getExternalConfig().getHostname(), port,
                     ObjectUtils.firstNonNull(config.getExternalConfig().getBasePath(), "") + DockstoreWebserviceApplication.GA4GH_API_PATH_V2_BETA
                         + "/tools", Joiner.on('&').join(filters) + "&offset=" + (offsetInteger + 1), null).normalize();
@@ -387,16 +330,44 @@ public class ToolsApiServiceImpl extends ToolsApiService implements Authenticate
             }
             URI lastPageURI = new URI(config.getExternalConfig().getScheme(), null, config.getExternalConfig().getHostname(), port,
                 ObjectUtils.firstNonNull(config.getExternalConfig().getBasePath(), "") + DockstoreWebserviceApplication.GA4GH_API_PATH_V2_BETA
-                    + "/tools", Joiner.on('&').join(filters) + "&offset=" + (pagedResults.size() - 1), null).normalize();
+                    + "/tools", Joiner.on('&').join(filters) + "&offset=" + (numberOfPages - 1), null).normalize();
             responseBuilder.header("last_page", lastPageURI.toURL().toString());
 
         } catch (URISyntaxException | MalformedURLException e) {
             throw new CustomWebApplicationException("Could not construct page links", HttpStatus.SC_BAD_REQUEST);
         }
-        trsListener.loadTRSResponse(hashcode, responseBuilder);
         return responseBuilder.build();
     }
 
+    /**
+     * Converts the entries to TRS tools, only loading and converting the ones that are not cached
+     */
+    private List<io.openapi.model.Tool> getTRSTools(List<TRSEntryKey> keys, long cacheGeneration) {
+        Map<TRSEntryKey, io.openapi.model.Tool> tools = new HashMap<>();
+        List<TRSEntryKey> missingKeys = new ArrayList<>();
+        for (TRSEntryKey key : keys) {
+            Optional<io.openapi.model.Tool> cachedTool = trsListener.getTool(key);
+            if (cachedTool.isPresent()) {
+                tools.put(key, cachedTool.get());
+            } else {
+                missingKeys.add(key);
+            }
+        }
+        if (!missingKeys.isEmpty()) {
+            List<Entry<?, ?>> entries = toolDAO.findByTRSKeys(missingKeys);
+            // tool versions are built from the descriptors, so the converted entries need their source files
+            EntryFetchProfile.FULL.apply(entries);
+            for (Entry<?, ?> entry : entries) {
+                io.openapi.model.Tool tool = ToolsImplCommon.convertEntryToTool(entry, config);
+                if (tool != null) {
+                    tools.put(TRSEntryKey.of(entry), tool);
+                    trsListener.loadTool(entry, tool, cacheGeneration);
+                }
+            }
+        }
+        return keys.stream().map(tools::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
     private void handleParameter(String parameter, String queryName, List<String> filters) {
         if (parameter != null) {
             filters.add(queryName + "=" + parameter);
@@ -806,6 +777,13 @@ public class ToolsApiServiceImpl extends ToolsApiService implements Authenticate
             return registry + "/" + organization + "/" + name;
         }
 
+        /**
+         * @return the internal path including the tool or workflow name, if there is one
+         */
+        public String getEntryPath() {
+            return toolName.isEmpty() ? getPath() : getPath() + "/" + toolName;
+        }
+
         public ToolType toolType() {
             return type;
         }
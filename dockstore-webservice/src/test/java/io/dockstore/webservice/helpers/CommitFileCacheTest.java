@@ -0,0 +1,42 @@
+package io.dockstore.webservice.helpers;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.dockstore.common.DescriptorLanguage;
+import io.dockstore.webservice.core.SourceFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CommitFileCacheTest {
+
+    private static Supplier<List<SourceFile>> read(AtomicInteger reads) {
+        return () -> {
+            reads.incrementAndGet();
+            SourceFile file = new SourceFile();
+            file.setType(DescriptorLanguage.FileType.DOCKSTORE_CWL);
+            file.setPath("/Dockstore.cwl");
+            file.setAbsolutePath("/Dockstore.cwl");
+            file.setContent("cwlVersion: v1.0");
+            return Collections.singletonList(file);
+        };
+    }
+
+    @Test
+    public void tagsAtTheSameCommitShareWhatWasRead() {
+        CommitFileCache commitFiles = new CommitFileCache();
+        AtomicInteger reads = new AtomicInteger();
+        List<SourceFile> first = commitFiles.get("dockstore/dockstore-tool-md5sum", "abc123", "/Dockstore.cwl", read(reads));
+        List<SourceFile> second = commitFiles.get("dockstore/dockstore-tool-md5sum", "abc123", "/Dockstore.cwl", read(reads));
+        Assert.assertEquals(1, reads.get());
+        Assert.assertEquals("cwlVersion: v1.0", second.get(0).getContent());
+        Assert.assertNotSame("each tag stores its own files", first.get(0), second.get(0));
+
+        commitFiles.get("dockstore/dockstore-tool-md5sum", "def456", "/Dockstore.cwl", read(reads));
+        commitFiles.get("dockstore/dockstore-tool-md5sum", null, "/Dockstore.cwl", read(reads));
+        commitFiles.get("dockstore/dockstore-tool-md5sum", null, "/Dockstore.cwl", read(reads));
+        Assert.assertEquals("other commits and unknown commits are read again", 4, reads.get());
+    }
+}
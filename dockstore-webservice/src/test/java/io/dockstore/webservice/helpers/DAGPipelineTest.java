@@ -0,0 +1,91 @@
+package io.dockstore.webservice.helpers;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.dockstore.webservice.CustomWebApplicationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DAGPipelineTest {
+    private static final long WAIT_MILLIS = 10000;
+
+    @Test
+    public void concurrentRequestsShareOneComputation() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger computations = new AtomicInteger();
+        DAGPipeline pipeline = new DAGPipeline(2, WAIT_MILLIS);
+        pipeline.setRunner((workflowId, workflowVersionId) -> {
+            computations.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new DAGPipeline.Content("dag" + workflowVersionId, null, "tools" + workflowVersionId, null);
+        });
+        pipeline.start();
+        try {
+            CompletableFuture<DAGPipeline.Content> first = pipeline.compute(1, 2);
+            CompletableFuture<DAGPipeline.Content> second = pipeline.compute(1, 2);
+            Assert.assertSame(first, second);
+            release.countDown();
+            Assert.assertEquals("dag2", pipeline.await(1, 2).orElseThrow().getDagJson());
+            Assert.assertEquals("tools2", second.get(10, TimeUnit.SECONDS).getToolTableJson());
+            Assert.assertEquals(1, computations.get());
+
+            // done computations are not kept, a refresh computes the version again
+            pipeline.recompute(1, Collections.singleton(2L));
+            pipeline.await(1, 2).orElseThrow();
+            Assert.assertTrue(computations.get() > 1);
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    public void errorsAreThrownByTheirPart() throws Exception {
+        DAGPipeline pipeline = new DAGPipeline(1, WAIT_MILLIS);
+        pipeline.setRunner((workflowId, workflowVersionId) -> new DAGPipeline.Content(null,
+            new CustomWebApplicationException("bad descriptor", 400), "[]", null));
+        pipeline.start();
+        try {
+            DAGPipeline.Content content = pipeline.await(1, 2).orElseThrow();
+            Assert.assertEquals("[]", content.getToolTableJson());
+            try {
+                content.getDagJson();
+                Assert.fail("the DAG failed to compute");
+            } catch (CustomWebApplicationException e) {
+                Assert.assertEquals(400, e.getResponse().getStatus());
+            }
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    public void aRequestStopsWaitingForABackedUpPipeline() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        DAGPipeline pipeline = new DAGPipeline(1, 100);
+        pipeline.setRunner((workflowId, workflowVersionId) -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new DAGPipeline.Content("dag", null, "[]", null);
+        });
+        pipeline.start();
+        try {
+            Assert.assertTrue(pipeline.await(1, 2).isEmpty());
+            // the computation goes on, and the next request can use it
+            release.countDown();
+            Assert.assertEquals("dag", pipeline.compute(1, 2).get(10, TimeUnit.SECONDS).getDagJson());
+        } finally {
+            pipeline.stop();
+        }
+    }
+}
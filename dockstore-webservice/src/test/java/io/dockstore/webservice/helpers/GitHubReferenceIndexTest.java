@@ -0,0 +1,84 @@
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kohsuke.github.GHContent;
+import org.kohsuke.github.GHRef;
+import org.kohsuke.github.GHRepository;
+import org.mockito.Mockito;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GitHubReferenceIndexTest {
+
+    private static final String SHA = "0123456789abcdef0123456789abcdef01234567";
+
+    private static GHRepository mockRepository(String repositoryId) throws IOException {
+        GHRef branch = Mockito.mock(GHRef.class);
+        when(branch.getRef()).thenReturn("refs/heads/master");
+        GHRef tag = Mockito.mock(GHRef.class);
+        when(tag.getRef()).thenReturn("refs/tags/1.0");
+        GHRepository repository = Mockito.mock(GHRepository.class);
+        when(repository.getFullName()).thenReturn(repositoryId);
+        when(repository.getRefs()).thenReturn(new GHRef[] {branch, tag});
+        return repository;
+    }
+
+    @Test
+    public void referencesAreListedOncePerRequest() throws IOException {
+        GHRepository repository = mockRepository("dockstore/references-once");
+        GitHubReferenceIndex index = new GitHubReferenceIndex();
+        Assert.assertEquals(2, index.getRefs(repository, true).size());
+        Assert.assertTrue(index.findRef(repository, "1.0").isPresent());
+        Assert.assertFalse(index.findRef(repository, "missing").isPresent());
+        Assert.assertEquals(2, index.getRefs(repository, true).size());
+        verify(repository, times(1)).getRefs();
+    }
+
+    @Test
+    public void otherRequestsShareReferencesUnlessTheyNeedTheLatest() throws IOException {
+        GHRepository repository = mockRepository("dockstore/references-shared");
+        new GitHubReferenceIndex().getRefs(repository, false);
+        new GitHubReferenceIndex().getRefs(repository, false);
+        verify(repository, times(1)).getRefs();
+        new GitHubReferenceIndex().getRefs(repository, true);
+        verify(repository, times(2)).getRefs();
+    }
+
+    @Test
+    public void sharedReferencesAreNotTakenAsTheLatest() throws IOException {
+        GHRepository repository = mockRepository("dockstore/references-latest");
+        new GitHubReferenceIndex().getRefs(repository, false);
+        GitHubReferenceIndex index = new GitHubReferenceIndex();
+        index.getRefs(repository, false);
+        verify(repository, times(1)).getRefs();
+        index.getRefs(repository, true);
+        index.getRefs(repository, true);
+        verify(repository, times(2)).getRefs();
+    }
+
+    @Test
+    public void commitsAndListingsAreShared() throws IOException {
+        GHRepository repository = mockRepository("dockstore/listings-shared");
+        GHContent content = Mockito.mock(GHContent.class);
+        when(content.getName()).thenReturn("Dockstore.cwl");
+        when(content.getPath()).thenReturn("tools/Dockstore.cwl");
+        when(repository.getDirectoryContent("tools", SHA)).thenReturn(Collections.singletonList(content));
+
+        new GitHubReferenceIndex().putSha("dockstore/listings-shared", "master", SHA);
+        Assert.assertEquals(SHA, new GitHubReferenceIndex().getSha("dockstore/listings-shared", "master"));
+        Assert.assertNull(new GitHubReferenceIndex().getSha("dockstore/listings-shared", "develop"));
+
+        List<GitHubReferenceIndex.DirectoryEntry> listing = new GitHubReferenceIndex().getDirectory(repository, SHA, "tools");
+        Assert.assertEquals("tools/Dockstore.cwl", listing.get(0).getPath());
+        Assert.assertFalse(listing.get(0).isDirectory());
+        new GitHubReferenceIndex().getDirectory(repository, SHA, "tools");
+        verify(repository, times(1)).getDirectoryContent("tools", SHA);
+    }
+}
@@ -0,0 +1,86 @@
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GitHubRepositoryDiscoveryTest {
+
+    private static final String FIRST_PAGE = "{\"data\": {\"viewer\": {\"repositories\": {"
+        + "\"pageInfo\": {\"hasNextPage\": true, \"endCursor\": \"Y3Vyc29yOjE=\"},"
+        + "\"nodes\": [{\"nameWithOwner\": \"dockstore/hello\", \"sshUrl\": \"git@github.com:dockstore/hello.git\","
+        + " \"defaultBranchRef\": {\"name\": \"master\"},"
+        + " \"branches\": {\"nodes\": [{\"name\": \"master\", \"target\": {\"oid\": \"1111111111111111111111111111111111111111\"}}]},"
+        + " \"tags\": {\"nodes\": [{\"name\": \"1.0\", \"target\": {\"oid\": \"2222222222222222222222222222222222222222\","
+        + " \"target\": {\"oid\": \"3333333333333333333333333333333333333333\"}}}]}}]}}}}";
+    private static final String SECOND_PAGE = "{\"data\": {\"viewer\": {\"repositories\": {"
+        + "\"pageInfo\": {\"hasNextPage\": false, \"endCursor\": null},"
+        + "\"nodes\": [{\"nameWithOwner\": \"dockstore/empty\", \"sshUrl\": \"git@github.com:dockstore/empty.git\","
+        + " \"defaultBranchRef\": null, \"branches\": {\"nodes\": []}, \"tags\": {\"nodes\": []}}]}}}}";
+
+    private final List<JsonObject> queries = new ArrayList<>();
+    private HttpServer server;
+
+    /**
+     * Stands in for the GitHub GraphQL endpoint, answering with the given bodies in turn
+     */
+    private String startServer(String... bodies) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/graphql", exchange -> {
+            queries.add(new JsonParser().parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)).getAsJsonObject());
+            Assert.assertEquals("bearer token", exchange.getRequestHeaders().getFirst("Authorization"));
+            byte[] body = bodies[Math.min(queries.size(), bodies.length) - 1].getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        });
+        server.start();
+        return "http://localhost:" + server.getAddress().getPort() + "/graphql";
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void repositoriesArePagedThrough() throws IOException {
+        String url = startServer(FIRST_PAGE, SECOND_PAGE);
+        List<GitHubRepositoryDiscovery.DiscoveredRepository> repositories = new GitHubRepositoryDiscovery(new OkHttpClient(), url, "token").discover();
+
+        Assert.assertEquals(2, queries.size());
+        Assert.assertTrue(queries.get(0).getAsJsonObject("variables").get("cursor").isJsonNull());
+        Assert.assertEquals("Y3Vyc29yOjE=", queries.get(1).getAsJsonObject("variables").get("cursor").getAsString());
+
+        Assert.assertEquals(2, repositories.size());
+        GitHubRepositoryDiscovery.DiscoveredRepository hello = repositories.get(0);
+        Assert.assertEquals("dockstore/hello", hello.getRepositoryId());
+        Assert.assertEquals("git@github.com:dockstore/hello.git", hello.getSshUrl());
+        Assert.assertEquals("master", hello.getDefaultBranch());
+        Assert.assertEquals("1111111111111111111111111111111111111111", hello.getHeadShas().get("master"));
+        Assert.assertEquals("annotated tags resolve to their commit", "3333333333333333333333333333333333333333", hello.getHeadShas().get("1.0"));
+
+        Assert.assertNull(repositories.get(1).getDefaultBranch());
+        Assert.assertTrue(repositories.get(1).getHeadShas().isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void errorsReachTheCaller() throws IOException {
+        String url = startServer("{\"data\": null, \"errors\": [{\"message\": \"Bad credentials\"}]}");
+        new GitHubRepositoryDiscovery(new OkHttpClient(), url, "token").discover();
+    }
+}
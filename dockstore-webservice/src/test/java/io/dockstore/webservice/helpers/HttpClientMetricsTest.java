@@ -0,0 +1,91 @@
+package io.dockstore.webservice.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpClientMetricsTest {
+
+    private static final String ETAG = "\"abc\"";
+
+    private HttpServer server;
+    private String serverUrl;
+    private File cacheDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        // stands in for GitHub, which answers 304 to a matching If-None-Match
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/fresh", exchange -> respond(exchange, "max-age=60"));
+        server.createContext("/stale", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                respond(exchange, "max-age=0");
+            }
+        });
+        server.start();
+        serverUrl = "http://localhost:" + server.getAddress().getPort();
+        cacheDirectory = Files.createTempDirectory("http-client-metrics").toFile();
+    }
+
+    private static void respond(HttpExchange exchange, String cacheControl) throws IOException {
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+        exchange.getResponseHeaders().add("ETag", ETAG);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        FileUtils.deleteDirectory(cacheDirectory);
+    }
+
+    private static void get(OkHttpClient client, String url) throws IOException {
+        try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            Assert.assertEquals("{}", response.body().string());
+        }
+    }
+
+    @Test
+    public void requestsAreCountedByHowTheyWereAnswered() throws IOException {
+        HttpClientMetrics metrics = new HttpClientMetrics();
+        OkHttpClient client = new OkHttpClient.Builder().cache(new Cache(cacheDirectory, 1024 * 1024))
+            .addInterceptor(metrics).eventListener(metrics).build();
+        get(client, serverUrl + "/fresh");
+        get(client, serverUrl + "/fresh");
+        get(client, serverUrl + "/stale");
+        get(client, serverUrl + "/stale");
+
+        Map<String, Long> counts = metrics.getCounts();
+        Assert.assertEquals(4L, (long)counts.get("localhost.requestCount"));
+        Assert.assertEquals(2L, (long)counts.get("localhost.networkCount"));
+        Assert.assertEquals(1L, (long)counts.get("localhost.hitCount"));
+        Assert.assertEquals(1L, (long)counts.get("localhost.conditionalHitCount"));
+        Assert.assertEquals("the pooled connection is reused", 1L, (long)counts.get("localhost.connectionsOpened"));
+        Assert.assertEquals(3L, (long)counts.get("localhost.connectionsAcquired"));
+        Assert.assertEquals(0L, (long)counts.get("localhost.connectionsInUse"));
+    }
+}
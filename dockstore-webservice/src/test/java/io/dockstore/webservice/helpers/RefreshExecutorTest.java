@@ -0,0 +1,101 @@
+package io.dockstore.webservice.helpers;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import io.dockstore.webservice.CustomWebApplicationException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RefreshExecutorTest {
+
+    private static final int THREADS = 4;
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        RefreshExecutor.configure(executor, THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        RefreshExecutor.configure(null, 1);
+        RefreshExecutor.configureHostParallelism(Integer.MAX_VALUE);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void resultsKeepTheOrderOfTheReferences() {
+        List<Integer> references = IntStream.range(0, 50).boxed().collect(Collectors.toList());
+        List<String> results = RefreshExecutor.map(references, THREADS, reference -> {
+            try {
+                // later references finish first
+                Thread.sleep(50 - reference);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return reference % 10 == 0 ? null : "v" + reference;
+        });
+        Assert.assertEquals(45, results.size());
+        Assert.assertEquals("v1", results.get(0));
+        Assert.assertEquals("v49", results.get(44));
+    }
+
+    @Test
+    public void atMostTheLimitIsInFlight() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger mostInFlight = new AtomicInteger();
+        List<Integer> references = IntStream.range(0, 20).boxed().collect(Collectors.toList());
+        RefreshExecutor.map(references, 2, reference -> {
+            mostInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return reference;
+        });
+        Assert.assertTrue(mostInFlight.get() <= 2);
+    }
+
+    @Test
+    public void eachHostHasItsOwnLimit() {
+        RefreshExecutor.configureHostParallelism(1);
+        Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> mostInFlight = new ConcurrentHashMap<>();
+        List<String> references = IntStream.range(0, 20).mapToObj(i -> (i % 2 == 0 ? "quay.io/" : "github.com/") + i).collect(Collectors.toList());
+        List<String> results = RefreshExecutor.mapPerHost(references, reference -> reference.split("/")[0], reference -> {
+            String host = reference.split("/")[0];
+            int count = inFlight.computeIfAbsent(host, key -> new AtomicInteger()).incrementAndGet();
+            mostInFlight.computeIfAbsent(host, key -> new AtomicInteger()).accumulateAndGet(count, Math::max);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.get(host).decrementAndGet();
+            return reference;
+        });
+        Assert.assertEquals(references, results);
+        Assert.assertEquals(1, mostInFlight.get("quay.io").get());
+        Assert.assertEquals(1, mostInFlight.get("github.com").get());
+    }
+
+    @Test(expected = CustomWebApplicationException.class)
+    public void failuresReachTheCaller() {
+        RefreshExecutor.map(Arrays.asList("1.0", "2.0"), THREADS, reference -> {
+            throw new CustomWebApplicationException("Cannot refresh version " + reference, 400);
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package io.dockstore.webservice.helpers;
+
+import io.dockstore.webservice.core.RefreshJob;
+import io.dockstore.webservice.core.RefreshJob.RefreshJobType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RefreshJobQueueTest {
+
+    private static RefreshJob job(long id, long entryId, String organization, long userId) {
+        RefreshJob refreshJob = new RefreshJob(RefreshJobType.WORKFLOW, entryId, organization, null, userId);
+        refreshJob.setId(id);
+        return refreshJob;
+    }
+
+    @Test
+    public void usersAndOrganizationsTakeTurns() {
+        RefreshJobQueue queue = new RefreshJobQueue(1);
+        queue.add(job(1, 11, "dockstore", 1));
+        queue.add(job(2, 12, "dockstore", 1));
+        queue.add(job(3, 13, "dockstore", 1));
+        queue.add(job(4, 14, "ga4gh", 1));
+        queue.add(job(5, 15, "dockstore", 2));
+
+        StringBuilder order = new StringBuilder();
+        for (RefreshJob refreshJob = queue.poll(); refreshJob != null; refreshJob = queue.poll()) {
+            order.append(refreshJob.getId());
+            queue.finished(refreshJob);
+        }
+        Assert.assertEquals("15423", order.toString());
+        Assert.assertEquals(0, queue.getQueuedCount());
+    }
+
+    @Test
+    public void anEntryIsNotRefreshedTwiceAtOnce() {
+        RefreshJobQueue queue = new RefreshJobQueue(2);
+        queue.add(job(1, 11, "dockstore", 1));
+        // the same job, claimed again because its lease expired while it was queued
+        queue.add(job(1, 11, "dockstore", 1));
+        queue.add(job(2, 12, "dockstore", 1));
+
+        RefreshJob first = queue.poll();
+        Assert.assertEquals(1, first.getId());
+        Assert.assertEquals("the job claimed again waits for the first to finish", 2, queue.poll().getId());
+        Assert.assertNull(queue.poll());
+        queue.finished(first);
+        Assert.assertEquals(1, queue.poll().getId());
+    }
+}
@@ -0,0 +1,86 @@
+package io.dockstore.webservice.helpers;
+
+import java.util.Map;
+import java.util.Optional;
+
+import io.dockstore.common.DescriptorLanguage;
+import io.dockstore.webservice.core.BioWorkflow;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.core.WorkflowVersion;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class SourceCodeRepoInterfaceTest {
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+    private static final String OTHER_COMMIT = "76543210fedcba9876543210fedcba9876543210";
+
+    private final SourceCodeRepoInterface sourceCodeRepo = Mockito.mock(SourceCodeRepoInterface.class, Mockito.CALLS_REAL_METHODS);
+
+    private static Workflow workflow() {
+        Workflow workflow = new BioWorkflow();
+        workflow.setDefaultWorkflowPath("/Dockstore.cwl");
+        return workflow;
+    }
+
+    private static WorkflowVersion storedVersion(String commitID) {
+        WorkflowVersion version = new WorkflowVersion();
+        version.setName("master");
+        version.setReference("master");
+        version.setCommitID(commitID);
+        version.setWorkflowPath("/Dockstore.cwl");
+        SourceFile file = new SourceFile();
+        file.setType(DescriptorLanguage.FileType.DOCKSTORE_CWL);
+        file.setPath("/Dockstore.cwl");
+        file.setAbsolutePath("/Dockstore.cwl");
+        file.setContent("cwlVersion: v1.0");
+        version.getSourceFiles().add(file);
+        return version;
+    }
+
+    private Optional<WorkflowVersion> getUnchangedVersion(WorkflowVersion stored, String commitID, Optional<String> versionName) {
+        return sourceCodeRepo.getUnchangedVersion("master", commitID, Optional.of(workflow()), Map.of("master", stored), versionName);
+    }
+
+    @Test
+    public void unchangedCommitIsSkipped() {
+        Optional<WorkflowVersion> unchanged = getUnchangedVersion(storedVersion(COMMIT), COMMIT, Optional.empty());
+        Assert.assertTrue(unchanged.isPresent());
+        Assert.assertTrue(unchanged.get().isUnchanged());
+        Assert.assertEquals(COMMIT, unchanged.get().getCommitID());
+        Assert.assertEquals("/Dockstore.cwl", unchanged.get().getWorkflowPath());
+    }
+
+    @Test
+    public void changedCommitIsRefetched() {
+        Assert.assertTrue(getUnchangedVersion(storedVersion(COMMIT), OTHER_COMMIT, Optional.empty()).isEmpty());
+        Assert.assertTrue("a commit that could not be resolved is fetched", getUnchangedVersion(storedVersion(COMMIT), null, Optional.empty()).isEmpty());
+    }
+
+    @Test
+    public void forcedVersionIsRefreshed() {
+        Assert.assertTrue(getUnchangedVersion(storedVersion(COMMIT), COMMIT, Optional.of("master")).isEmpty());
+    }
+
+    @Test
+    public void legacyVersionIsRefreshed() {
+        // stored before commits were recorded
+        Assert.assertTrue(getUnchangedVersion(storedVersion(null), COMMIT, Optional.empty()).isEmpty());
+        WorkflowVersion withoutFiles = storedVersion(COMMIT);
+        withoutFiles.getSourceFiles().clear();
+        Assert.assertTrue(getUnchangedVersion(withoutFiles, COMMIT, Optional.empty()).isEmpty());
+        WorkflowVersion edited = storedVersion(COMMIT);
+        edited.setDirtyBit(true);
+        Assert.assertTrue(getUnchangedVersion(edited, COMMIT, Optional.empty()).isEmpty());
+        WorkflowVersion otherPath = storedVersion(COMMIT);
+        otherPath.setWorkflowPath("/other.cwl");
+        Assert.assertTrue(getUnchangedVersion(otherPath, COMMIT, Optional.empty()).isEmpty());
+    }
+
+    @Test
+    public void newVersionIsFetched() {
+        Assert.assertTrue(sourceCodeRepo.getUnchangedVersion("master", COMMIT, Optional.empty(), Map.of(), Optional.empty()).isEmpty());
+    }
+}
@@ -0,0 +1,116 @@
+package io.dockstore.webservice.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SourceSnapshotStoreTest {
+
+    private static final String SHA = "0123456789abcdef0123456789abcdef01234567";
+    private static final String DESCRIPTOR = "cwlVersion: v1.0\nclass: CommandLineTool\n";
+
+    private final AtomicInteger downloads = new AtomicInteger();
+    private HttpServer server;
+    private String serverUrl;
+
+    @Before
+    public void setup() throws IOException {
+        byte[] tarball = createTarball();
+        // stands in for the GitHub tarball endpoint
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/repos/dockstore/snapshot/tarball/" + SHA, exchange -> {
+            downloads.incrementAndGet();
+            exchange.sendResponseHeaders(200, tarball.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(tarball);
+            }
+        });
+        server.start();
+        serverUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static byte[] createTarball() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(archive))) {
+            addFile(tar, "dockstore-snapshot-0123456/Dockstore.cwl", DESCRIPTOR);
+            addFile(tar, "dockstore-snapshot-0123456/tools/real/tool.cwl", "class: CommandLineTool\n");
+            addSymlink(tar, "dockstore-snapshot-0123456/tools/linked", "real");
+            addSymlink(tar, "dockstore-snapshot-0123456/shortcut.cwl", "tools/linked/tool.cwl");
+            addSymlink(tar, "dockstore-snapshot-0123456/outside.cwl", "../../etc/passwd");
+            addSymlink(tar, "dockstore-snapshot-0123456/loop", "loop");
+        }
+        return archive.toByteArray();
+    }
+
+    private static void addFile(TarArchiveOutputStream tar, String name, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(bytes.length);
+        tar.putArchiveEntry(entry);
+        tar.write(bytes);
+        tar.closeArchiveEntry();
+    }
+
+    private static void addSymlink(TarArchiveOutputStream tar, String name, String target) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name, TarArchiveEntry.LF_SYMLINK);
+        entry.setLinkName(target);
+        tar.putArchiveEntry(entry);
+        tar.closeArchiveEntry();
+    }
+
+    @Test
+    public void filesAreReadFromOneDownload() {
+        SourceSnapshotStore store = new SourceSnapshotStore(new OkHttpClient(), serverUrl, 1024 * 1024);
+        SourceSnapshotStore.Snapshot snapshot = store.getSnapshot("dockstore/snapshot", SHA, "token").orElseThrow();
+        Assert.assertEquals(DESCRIPTOR, snapshot.readFile("/Dockstore.cwl"));
+        Assert.assertEquals(Arrays.asList("Dockstore.cwl", "loop", "outside.cwl", "shortcut.cwl", "tools"), snapshot.listFiles("/"));
+        Assert.assertNull(snapshot.readFile("missing.cwl"));
+        Assert.assertNull("directories have no content", snapshot.readFile("tools"));
+
+        Assert.assertSame(snapshot, store.getSnapshot("dockstore/snapshot", SHA, "token").orElseThrow());
+        Assert.assertEquals(1, downloads.get());
+    }
+
+    @Test
+    public void symbolicLinksAreResolvedLocally() {
+        SourceSnapshotStore store = new SourceSnapshotStore(new OkHttpClient(), serverUrl, 1024 * 1024);
+        SourceSnapshotStore.Snapshot snapshot = store.getSnapshot("dockstore/snapshot", SHA, null).orElseThrow();
+        Assert.assertEquals("class: CommandLineTool\n", snapshot.readFile("tools/linked/tool.cwl"));
+        Assert.assertEquals("class: CommandLineTool\n", snapshot.readFile("shortcut.cwl"));
+        Assert.assertEquals(Arrays.asList("tool.cwl"), snapshot.listFiles("tools/linked"));
+        Assert.assertNull("links may not leave the repository", snapshot.readFile("outside.cwl"));
+        Assert.assertNull(snapshot.readFile("loop"));
+    }
+
+    @Test
+    public void tooLargeOrMissingCommitsAreNotSnapshots() {
+        SourceSnapshotStore small = new SourceSnapshotStore(new OkHttpClient(), serverUrl, 1024);
+        Assert.assertEquals(Optional.empty(), small.getSnapshot("dockstore/snapshot", SHA, null));
+        Assert.assertEquals(Optional.empty(), small.getSnapshot("dockstore/snapshot", SHA, null));
+        Assert.assertEquals("a commit that is too large should only be downloaded once", 1, downloads.get());
+
+        SourceSnapshotStore store = new SourceSnapshotStore(new OkHttpClient(), serverUrl, 1024 * 1024);
+        Assert.assertEquals(Optional.empty(), store.getSnapshot("dockstore/missing", SHA, null));
+        Assert.assertEquals(0, store.size());
+    }
+}
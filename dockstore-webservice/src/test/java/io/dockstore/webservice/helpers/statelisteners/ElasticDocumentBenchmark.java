@@ -0,0 +1,157 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers.statelisteners;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.gson.Gson;
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Tag;
+import io.dockstore.webservice.core.Tool;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static io.dockstore.common.DescriptorLanguage.FileType.DOCKSTORE_CWL;
+
+/**
+ * Compares the bulk index body of the old String and Gson based serialization with the streaming one.
+ *
+ * Not a test, run it with main() from the test classpath. The gc.alloc.rate.norm column is the bytes allocated per
+ * bulk request, divide by entries for the bytes per indexed entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ElasticDocumentBenchmark {
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+    private static final int FILE_SIZE = 16 * 1024;
+
+    @Param({ "1", "100" })
+    public int entries;
+
+    @Param({ "10" })
+    public int versions;
+
+    private List<Entry> tools;
+
+    @Setup
+    public void setup() {
+        StringBuilder content = new StringBuilder();
+        while (content.length() < FILE_SIZE) {
+            content.append("  - id: input_file\n    type: File\n    doc: an input\n");
+        }
+        tools = new ArrayList<>();
+        for (int i = 0; i < entries; i++) {
+            Tool tool = new Tool();
+            tool.setId(i + 1);
+            tool.setRegistry("quay.io");
+            tool.setNamespace("namespace");
+            tool.setName("tool" + i);
+            tool.setIsPublished(true);
+            for (int j = 0; j < versions; j++) {
+                Tag tag = new Tag();
+                tag.setName("1." + j);
+                tag.setReference("1." + j);
+                SourceFile file = new SourceFile();
+                file.setPath("/Dockstore.cwl");
+                file.setAbsolutePath("/Dockstore.cwl");
+                file.setType(DOCKSTORE_CWL);
+                file.setContent(content.toString());
+                Map<String, SourceFile.VerificationInformation> verifiedBySource = new HashMap<>();
+                SourceFile.VerificationInformation verificationInformation = new SourceFile.VerificationInformation();
+                verificationInformation.verified = true;
+                verificationInformation.metadata = "Dockstore team";
+                verifiedBySource.put("Dockstore CLI", verificationInformation);
+                file.setVerifiedBySource(verifiedBySource);
+                tag.addSourceFile(file);
+                tool.addWorkflowVersion(tag);
+                if (j == 0) {
+                    tool.setActualDefaultVersion(tag);
+                }
+            }
+            tools.add(tool);
+        }
+    }
+
+    @Benchmark
+    public byte[] streaming() {
+        return ElasticListener.getBulkIndexBody(new ArrayList<>(tools));
+    }
+
+    /**
+     * What the bulk index body used to cost: every source file cloned through a Gson string, every document written to
+     * a String, read back into a tree, and written again into a StringBuilder.
+     */
+    @Benchmark
+    public String legacy() throws Exception {
+        Gson gson = new Gson();
+        StringBuilder builder = new StringBuilder();
+        for (Entry entry : tools) {
+            Tool tool = (Tool)entry;
+            Tool detachedTool = new Tool();
+            detachedTool.setRegistry(tool.getRegistry());
+            detachedTool.setNamespace(tool.getNamespace());
+            detachedTool.setName(tool.getName());
+            for (Tag tag : tool.getWorkflowVersions()) {
+                Tag detachedTag = new Tag();
+                detachedTag.setName(tag.getName());
+                detachedTag.setReference(tag.getReference());
+                for (SourceFile sourceFile : tag.getSourceFiles()) {
+                    detachedTag.addSourceFile(gson.fromJson(gson.toJson(sourceFile), SourceFile.class));
+                }
+                detachedTool.addWorkflowVersion(detachedTag);
+            }
+            JsonNode jsonNode = MAPPER.readTree(MAPPER.writeValueAsString(detachedTool));
+            ((ObjectNode)jsonNode).put("verified", true);
+            ((ObjectNode)jsonNode).set("verified_platforms", MAPPER.valueToTree(Collections.singleton("Dockstore CLI")));
+            builder.append("{\"index\":{\"_id\":\"").append(tool.getId()).append("\",\"_type\":\"tool\"}}\n");
+            builder.append(MAPPER.writeValueAsString(jsonNode)).append('\n');
+        }
+        return builder.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(ElasticDocumentBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
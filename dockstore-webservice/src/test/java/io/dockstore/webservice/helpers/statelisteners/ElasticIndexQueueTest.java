@@ -0,0 +1,61 @@
+package io.dockstore.webservice.helpers.statelisteners;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.helpers.ElasticSearchClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ElasticIndexQueueTest {
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ElasticIndexQueue createQueue(int capacity) {
+        DockstoreWebserviceConfiguration.ElasticSearchConfig config = new DockstoreWebserviceConfiguration().getEsConfiguration();
+        config.setHostname("");
+        config.setQueueCapacity(capacity);
+        return new ElasticIndexQueue(new ElasticSearchClient(config), config);
+    }
+
+    @Test
+    public void updatesToTheSameEntryCoalesce() {
+        ElasticIndexQueue queue = createQueue(10);
+        queue.offer(ElasticIndexQueue.IndexAction.update("tool", 1, bytes("{\"doc\":{\"name\":\"first\"}}")));
+        queue.offer(ElasticIndexQueue.IndexAction.update("workflow", 1, bytes("{\"doc\":{\"name\":\"other\"}}")));
+        queue.offer(ElasticIndexQueue.IndexAction.update("tool", 1, bytes("{\"doc\":{\"name\":\"second\"}}")));
+        queue.offer(ElasticIndexQueue.IndexAction.delete("workflow", 1));
+
+        List<ElasticIndexQueue.IndexAction> batch = queue.drain();
+        Assert.assertEquals(2, batch.size());
+        Assert.assertEquals("{\"update\":{\"_type\":\"tool\",\"_id\":\"1\"}}\n{\"doc\":{\"name\":\"second\"}}\n"
+            + "{\"delete\":{\"_type\":\"workflow\",\"_id\":\"1\"}}\n", new String(ElasticIndexQueue.toNDJSON(batch), StandardCharsets.UTF_8));
+        Assert.assertTrue(queue.drain().isEmpty());
+    }
+
+    @Test
+    public void fullQueueOnlyAcceptsQueuedEntries() {
+        ElasticIndexQueue queue = createQueue(1);
+        Assert.assertTrue(queue.offer(ElasticIndexQueue.IndexAction.update("tool", 1, bytes("{}"))));
+        Assert.assertFalse(queue.offer(ElasticIndexQueue.IndexAction.update("tool", 2, bytes("{}"))));
+        Assert.assertTrue(queue.offer(ElasticIndexQueue.IndexAction.delete("tool", 1)));
+        Assert.assertEquals(1, queue.drain().size());
+    }
+
+    @Test
+    public void updatesDuringAReindexAreRecorded() {
+        ElasticIndexQueue queue = createQueue(1);
+        queue.offer(ElasticIndexQueue.IndexAction.update("tool", 1, bytes("{}")));
+        queue.startRecording();
+        queue.offer(ElasticIndexQueue.IndexAction.update("tool", 2, bytes("{}")));
+        Assert.assertFalse("the queue is full", queue.offer(ElasticIndexQueue.IndexAction.update("tool", 3, bytes("{}"))));
+        Assert.assertEquals("a full queue does not stop the reindex from catching up", 2, queue.takeRecorded().size());
+        queue.offer(ElasticIndexQueue.IndexAction.delete("tool", 1));
+        Assert.assertEquals(1, queue.stopRecording().size());
+        queue.offer(ElasticIndexQueue.IndexAction.delete("tool", 1));
+        Assert.assertTrue(queue.stopRecording().isEmpty());
+    }
+}
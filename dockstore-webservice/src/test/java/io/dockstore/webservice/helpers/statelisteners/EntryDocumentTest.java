@@ -0,0 +1,241 @@
+package io.dockstore.webservice.helpers.statelisteners;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.gson.Gson;
+import io.dockstore.common.DescriptorLanguage;
+import io.dockstore.common.SourceControl;
+import io.dockstore.webservice.core.Alias;
+import io.dockstore.webservice.core.BioWorkflow;
+import io.dockstore.webservice.core.DescriptionSource;
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.FileFormat;
+import io.dockstore.webservice.core.Label;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Tag;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.User;
+import io.dockstore.webservice.core.Version;
+import io.dockstore.webservice.core.WorkflowVersion;
+import io.dropwizard.jackson.Jackson;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EntryDocumentTest {
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    private static void addVersionContent(Version<?> version, String name, String path, DescriptorLanguage.FileType type, boolean verified) {
+        version.setName(name);
+        version.setReference(name);
+        version.setDescriptionAndDescriptionSource("description of " + name, DescriptionSource.DESCRIPTOR);
+        FileFormat fileFormat = new FileFormat();
+        fileFormat.setValue("http://edamontology.org/format_1929");
+        version.setInputFileFormats(new TreeSet<>(Set.of(fileFormat)));
+        SourceFile file = new SourceFile();
+        file.setPath(path);
+        file.setAbsolutePath(path);
+        file.setType(type);
+        file.setContent("content of " + name);
+        if (verified) {
+            SourceFile.VerificationInformation verificationInformation = new SourceFile.VerificationInformation();
+            verificationInformation.verified = true;
+            verificationInformation.metadata = "Dockstore team";
+            Map<String, SourceFile.VerificationInformation> verifiedBySource = new HashMap<>();
+            verifiedBySource.put("Dockstore CLI", verificationInformation);
+            file.setVerifiedBySource(verifiedBySource);
+        }
+        version.addSourceFile(file);
+        version.updateVerified();
+    }
+
+    private static void addEntryContent(Entry<?, ?> entry) {
+        entry.setDescription("an entry");
+        entry.setAuthor("an author");
+        entry.setEmail("author@example.org");
+        entry.setIsPublished(true);
+        entry.setLastUpdated(new Date(0));
+        Map<String, Alias> aliases = new HashMap<>();
+        aliases.put("an alias", new Alias());
+        entry.setAliases(aliases);
+        Label label = new Label();
+        label.setValue("a label");
+        entry.setLabels(new TreeSet<>(Set.of(label)));
+        User user = new User();
+        user.setId(1);
+        user.setUsername("a user");
+        entry.addStarredUser(user);
+    }
+
+    private static Tool tool() {
+        Tool tool = new Tool();
+        tool.setId(1);
+        tool.setRegistry("quay.io");
+        tool.setNamespace("namespace");
+        tool.setName("name");
+        tool.setToolname("toolname");
+        tool.setGitUrl("git@github.com:namespace/name.git");
+        tool.setDefaultCwlPath("/Dockstore.cwl");
+        tool.setDefaultWdlPath("/Dockstore.wdl");
+        addEntryContent(tool);
+        for (String name : List.of("1.0", "2.0")) {
+            Tag tag = new Tag();
+            addVersionContent(tag, name, "/Dockstore.cwl", DescriptorLanguage.FileType.DOCKSTORE_CWL, "1.0".equals(name));
+            tool.addWorkflowVersion(tag);
+            if ("2.0".equals(name)) {
+                tool.setActualDefaultVersion(tag);
+            }
+        }
+        return tool;
+    }
+
+    private static BioWorkflow workflow() {
+        BioWorkflow workflow = new BioWorkflow();
+        workflow.setId(2);
+        workflow.setSourceControl(SourceControl.GITHUB);
+        workflow.setOrganization("organization");
+        workflow.setRepository("repository");
+        workflow.setWorkflowName("name");
+        workflow.setDescriptorType(DescriptorLanguage.WDL);
+        workflow.setDefaultWorkflowPath("/Dockstore.wdl");
+        workflow.setGitUrl("git@github.com:organization/repository.git");
+        addEntryContent(workflow);
+        for (String name : List.of("main", "develop")) {
+            WorkflowVersion version = new WorkflowVersion();
+            addVersionContent(version, name, "/Dockstore.wdl", DescriptorLanguage.FileType.DOCKSTORE_WDL, false);
+            workflow.addWorkflowVersion(version);
+            if ("main".equals(name)) {
+                workflow.setActualDefaultVersion(version);
+            }
+        }
+        return workflow;
+    }
+
+    /**
+     * The old document was a serialized copy of the entry, these properties only ever had the copy's defaults
+     */
+    private static void removeCopyDefaults(ObjectNode legacy) {
+        legacy.remove(List.of("conceptDoi", "dbCreateDate", "dbUpdateDate", "last_modified", "last_modified_date", "topicId", "users",
+            // tools
+            "defaultCWLTestParameterFile", "defaultWDLTestParameterFile", "tags", "tool_maintainer_email",
+            // workflows
+            "defaultTestParameterFilePath", "descriptorTypeSubclass", "is_checker", "parent_id"));
+        legacy.withArray("workflowVersions").forEach(version -> {
+            ((ObjectNode)version).remove(List.of("aliases", "author", "automated", "commitID", "cwl_path", "dbUpdateDate", "dirtyBit",
+                "dockerfile_path", "doiStatus", "doiURL", "email", "frozen", "hidden", "id", "image_id", "images", "last_built",
+                "last_modified", "legacyVersion", "referenceType", "size", "subClass", "valid", "validations", "versionEditor", "wdl_path",
+                "workflow_path", "workingDirectory"));
+            version.withArray("sourceFiles").forEach(sourceFile -> ((ObjectNode)sourceFile).remove(List.of("checksums", "frozen", "id")));
+        });
+    }
+
+    private static void assertSameDocument(Entry<?, ?> entry) throws Exception {
+        ObjectNode legacy = (ObjectNode)legacyDocument(entry);
+        ObjectNode document = (ObjectNode)MAPPER.readTree(MAPPER.writeValueAsString(EntryDocument.of(entry)));
+        // these were the copy's defaults too, now they are the entry's own
+        Assert.assertEquals(entry.getId(), document.get("id").asLong());
+        Assert.assertTrue(document.get("is_published").asBoolean());
+        Assert.assertEquals(entry.getDefaultVersion(), document.get("defaultVersion").asText());
+        Assert.assertEquals(entry.getEmail(), document.get("email").asText());
+        List<String> ownNow = List.of("id", "is_published", "defaultVersion", "email", "workflow_path");
+        legacy.remove(ownNow);
+        document.remove(ownNow);
+        removeCopyDefaults(legacy);
+        Assert.assertEquals(normalized(legacy), normalized(document));
+    }
+
+    /**
+     * Versions are a set, so their order is not part of the document
+     */
+    private static JsonNode normalized(ObjectNode document) {
+        List<JsonNode> versions = new ArrayList<>();
+        document.withArray("workflowVersions").forEach(versions::add);
+        versions.sort((a, b) -> a.path("name").asText().compareTo(b.path("name").asText()));
+        document.putArray("workflowVersions").addAll(versions);
+        return document;
+    }
+
+    @Test
+    public void toolDocumentMatchesTheOldOne() throws Exception {
+        assertSameDocument(tool());
+    }
+
+    @Test
+    public void workflowDocumentMatchesTheOldOne() throws Exception {
+        assertSameDocument(workflow());
+    }
+
+    /**
+     * How ElasticListener built the document before it was an EntryDocument, a serialized copy of the entry
+     */
+    private static JsonNode legacyDocument(Entry<?, ?> entry) throws Exception {
+        Set<? extends Version> workflowVersions = entry.getWorkflowVersions();
+        boolean verified = workflowVersions.stream().anyMatch(Version::isVerified);
+        Set<String> verifiedPlatforms = new TreeSet<>();
+        workflowVersions.forEach(version -> ((Version<?>)version).getSourceFiles()
+            .forEach(sourceFile -> verifiedPlatforms.addAll(sourceFile.getVerifiedBySource().keySet())));
+        Entry detachedEntry;
+        if (entry instanceof Tool) {
+            Tool tool = (Tool)entry;
+            Tool detachedTool = new Tool();
+            detachedTool.setDefaultWdlPath(tool.getDefaultWdlPath());
+            detachedTool.setDefaultCwlPath(tool.getDefaultCwlPath());
+            detachedTool.setNamespace(tool.getNamespace());
+            detachedTool.setRegistry(tool.getRegistry());
+            detachedTool.setPrivateAccess(tool.isPrivateAccess());
+            detachedTool.setGitUrl(tool.getGitUrl());
+            detachedTool.setName(tool.getName());
+            detachedTool.setToolname(tool.getToolname());
+            detachedEntry = detachedTool;
+        } else {
+            BioWorkflow bioWorkflow = (BioWorkflow)entry;
+            BioWorkflow detachedBioWorkflow = new BioWorkflow();
+            detachedBioWorkflow.setDescriptorType(bioWorkflow.getDescriptorType());
+            detachedBioWorkflow.setSourceControl(bioWorkflow.getSourceControl());
+            detachedBioWorkflow.setOrganization(bioWorkflow.getOrganization());
+            detachedBioWorkflow.setWorkflowName(bioWorkflow.getWorkflowName());
+            detachedBioWorkflow.setRepository(bioWorkflow.getRepository());
+            detachedBioWorkflow.setGitUrl(bioWorkflow.getGitUrl());
+            detachedEntry = detachedBioWorkflow;
+        }
+        detachedEntry.setDescription(entry.getDescription());
+        detachedEntry.setAuthor(entry.getAuthor());
+        detachedEntry.setAliases(entry.getAliases());
+        detachedEntry.setLabels((SortedSet<Label>)entry.getLabels());
+        detachedEntry.setCheckerWorkflow(entry.getCheckerWorkflow());
+        Set<Version> detachedVersions = new HashSet<>();
+        for (Version<?> version : entry.getWorkflowVersions()) {
+            Version detachedVersion = version.createEmptyVersion();
+            detachedVersion.setDescriptionAndDescriptionSource(version.getDescription(), version.getDescriptionSource());
+            detachedVersion.setInputFileFormats(new TreeSet<>(version.getInputFileFormats()));
+            detachedVersion.setOutputFileFormats(new TreeSet<>(version.getOutputFileFormats()));
+            detachedVersion.setName(version.getName());
+            detachedVersion.setReference(version.getReference());
+            Gson gson = new Gson();
+            version.getSourceFiles().forEach(sourceFile -> detachedVersion.addSourceFile(gson.fromJson(gson.toJson(sourceFile), SourceFile.class)));
+            detachedVersion.updateVerified();
+            detachedVersions.add(detachedVersion);
+        }
+        detachedEntry.setWorkflowVersions(detachedVersions);
+        entry.getStarredUsers().forEach(user -> detachedEntry.addStarredUser((User)user));
+        String defaultVersion = entry.getDefaultVersion();
+        detachedVersions.stream().filter(version -> !defaultVersion.equals(version.getName())).forEach(version -> {
+            version.setDescriptionAndDescriptionSource(null, null);
+            version.getSourceFiles().forEach(sourceFile -> ((SourceFile)sourceFile).setContent(""));
+        });
+        JsonNode jsonNode = MAPPER.readTree(MAPPER.writeValueAsString(detachedEntry));
+        ((ObjectNode)jsonNode).put("verified", verified);
+        ((ObjectNode)jsonNode).set("verified_platforms", MAPPER.valueToTree(verifiedPlatforms));
+        return jsonNode;
+    }
+}
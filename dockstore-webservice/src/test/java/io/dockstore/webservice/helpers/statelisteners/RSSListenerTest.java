@@ -0,0 +1,67 @@
+package io.dockstore.webservice.helpers.statelisteners;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.helpers.StateManagerMode;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RSSListenerTest {
+
+    private static Tool createTool(String name) {
+        Tool tool = new Tool();
+        tool.setRegistry("quay.io");
+        tool.setNamespace("test_org");
+        tool.setName(name);
+        tool.setLastUpdated(new Date());
+        tool.setIsPublished(true);
+        return tool;
+    }
+
+    private static String render(RSSListener listener) {
+        return new String(listener.getRendered().getContent(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void updatedEntriesMoveToTheFront() {
+        RSSListener listener = new RSSListener(2);
+        listener.load(Arrays.asList(createTool("second"), createTool("first")));
+        RenderedPage before = listener.getRendered();
+        Assert.assertSame("an unchanged feed should not be rendered again", before, listener.getRendered());
+
+        listener.handleIndexUpdate(createTool("third"), StateManagerMode.PUBLISH);
+        String feed = render(listener);
+        Assert.assertTrue(feed.indexOf("test_org/third") < feed.indexOf("test_org/second"));
+        Assert.assertFalse("the oldest entry should be pushed out", feed.contains("test_org/first"));
+        Assert.assertNotEquals(before.getEntityTag(), listener.getRendered().getEntityTag());
+    }
+
+    @Test
+    public void unpublishingAnEntryInTheFeedReloadsIt() {
+        RSSListener listener = new RSSListener(2);
+        listener.load(Arrays.asList(createTool("second"), createTool("first")));
+        Tool unpublished = createTool("second");
+        unpublished.setIsPublished(false);
+        listener.handleIndexUpdate(unpublished, StateManagerMode.DELETE);
+        Assert.assertFalse(listener.isLoaded());
+    }
+
+    @Test
+    public void aBatchIsRenderedOnce() {
+        RSSListener listener = new RSSListener(3);
+        listener.load(Arrays.asList(createTool("second"), createTool("first")));
+        listener.handleIndexUpdate(Arrays.asList(createTool("third"), createTool("fourth")), StateManagerMode.PUBLISH);
+        RenderedPage after = listener.getRendered();
+        String feed = render(listener);
+        Assert.assertTrue(feed.indexOf("test_org/fourth") < feed.indexOf("test_org/third"));
+        Assert.assertFalse(feed.contains("test_org/first"));
+        Assert.assertSame(after, listener.getRendered());
+
+        listener.handleIndexUpdate(Collections.emptyList(), StateManagerMode.PUBLISH);
+        Assert.assertSame("an empty batch changes nothing", after, listener.getRendered());
+    }
+}
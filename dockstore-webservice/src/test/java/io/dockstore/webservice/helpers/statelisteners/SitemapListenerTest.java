@@ -0,0 +1,113 @@
+package io.dockstore.webservice.helpers.statelisteners;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.helpers.MetadataResourceHelper;
+import io.dockstore.webservice.helpers.StateManagerMode;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SitemapListenerTest {
+
+    private static String content(RenderedPage page) {
+        return new String(page.getContent(), StandardCharsets.UTF_8);
+    }
+
+    private static Tool tool(long id, String name) {
+        Tool tool = new Tool();
+        tool.setId(id);
+        tool.setRegistry("quay.io");
+        tool.setNamespace("namespace");
+        tool.setName(name);
+        tool.setIsPublished(true);
+        return tool;
+    }
+
+    private static void load(SitemapListener listener, List<? extends Entry> entries) {
+        listener.load(() -> entries, Collections::emptyList, Collections::emptyList);
+    }
+
+    @Test
+    public void smallSitemapIsOnePage() {
+        SitemapListener listener = new SitemapListener(2);
+        Tool a = tool(1, "a");
+        Tool b = tool(2, "b");
+        load(listener, List.of(b, a));
+        SitemapListener.Rendered rendered = listener.getRendered();
+        Assert.assertNull(rendered.getIndex());
+        Assert.assertEquals(1, rendered.getPages().size());
+        Assert.assertEquals(MetadataResourceHelper.createToolURL(a) + System.lineSeparator() + MetadataResourceHelper.createToolURL(b),
+            content(rendered.getPages().get(0)));
+        Assert.assertSame("an unchanged sitemap should not be rendered again", rendered, listener.getRendered());
+    }
+
+    @Test
+    public void largeSitemapIsSplitIntoAnIndex() {
+        SitemapListener listener = new SitemapListener(2);
+        Tool c = tool(3, "c");
+        load(listener, List.of(tool(1, "a"), tool(2, "b"), c));
+        SitemapListener.Rendered rendered = listener.getRendered();
+        Assert.assertEquals(2, rendered.getPages().size());
+        Assert.assertEquals(MetadataResourceHelper.createToolURL(c), content(rendered.getPages().get(1)));
+        Assert.assertNotNull(rendered.getIndex());
+        Assert.assertTrue(content(rendered.getIndex()).contains("<sitemapindex"));
+        Assert.assertNotEquals(rendered.getPages().get(0).getEntityTag(), rendered.getPages().get(1).getEntityTag());
+    }
+
+    @Test
+    public void emptySitemapHasOneEmptyPage() {
+        SitemapListener listener = new SitemapListener(2);
+        load(listener, Collections.emptyList());
+        SitemapListener.Rendered rendered = listener.getRendered();
+        Assert.assertNull(rendered.getIndex());
+        Assert.assertEquals("", content(rendered.getPages().get(0)));
+    }
+
+    @Test
+    public void renamedEntryLeavesItsOldURL() {
+        SitemapListener listener = new SitemapListener(2);
+        Tool tool = tool(1, "a");
+        load(listener, List.of(tool));
+        tool.setName("b");
+        listener.handleIndexUpdate(tool, StateManagerMode.UPDATE);
+        Assert.assertEquals(MetadataResourceHelper.createToolURL(tool), content(listener.getRendered().getPages().get(0)));
+    }
+
+    @Test
+    public void changeDuringALoadIsAppliedAfterIt() {
+        SitemapListener listener = new SitemapListener(2);
+        Tool tool = tool(1, "a");
+        listener.load(() -> {
+            // the entry is unpublished after the load read it
+            tool.setIsPublished(false);
+            listener.handleIndexUpdate(tool, StateManagerMode.PUBLISH);
+            return List.of(tool(1, "a"));
+        }, Collections::emptyList, Collections::emptyList);
+        Assert.assertTrue(listener.isLoaded());
+        Assert.assertEquals("", content(listener.getRendered().getPages().get(0)));
+    }
+
+    @Test
+    public void failedLoadStopsKeepingChanges() {
+        SitemapListener listener = new SitemapListener(2);
+        try {
+            listener.load(() -> {
+                throw new IllegalStateException("database unavailable");
+            }, Collections::emptyList, Collections::emptyList);
+            Assert.fail("the load should have failed");
+        } catch (IllegalStateException e) {
+            Assert.assertFalse(listener.isLoaded());
+        }
+        // dropped while nothing is loading, the next load reads the entry as it is then
+        Tool unpublished = tool(1, "a");
+        unpublished.setIsPublished(false);
+        listener.handleIndexUpdate(unpublished, StateManagerMode.PUBLISH);
+        Tool tool = tool(1, "a");
+        load(listener, List.of(tool));
+        Assert.assertEquals(MetadataResourceHelper.createToolURL(tool), content(listener.getRendered().getPages().get(0)));
+    }
+}
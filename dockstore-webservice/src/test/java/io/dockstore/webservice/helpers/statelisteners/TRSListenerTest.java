@@ -0,0 +1,102 @@
+package io.dockstore.webservice.helpers.statelisteners;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.database.TRSEntryKey;
+import io.dockstore.webservice.helpers.StateManagerMode;
+import io.dockstore.webservice.jdbi.TRSFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TRSListenerTest {
+
+    private static final long MAXIMUM_BYTES = 1024 * 1024;
+
+    private static Tool tool(long id, String namespace, boolean published) {
+        Tool tool = new Tool();
+        tool.setId(id);
+        tool.setRegistry("quay.io");
+        tool.setNamespace(namespace);
+        tool.setName("tool" + id);
+        tool.setGitUrl("git@github.com:" + namespace + "/tool" + id + ".git");
+        tool.setIsPublished(published);
+        return tool;
+    }
+
+    private static TRSListener.TRSPage listing(String organization, Tool... tools) {
+        List<TRSEntryKey> keys = List.of(tools).stream().map(TRSEntryKey::of).collect(Collectors.toList());
+        return new TRSListener.TRSPage(keys, keys.size(), new TRSFilter(null, organization, null, null, null, null, null), true, true);
+    }
+
+    private static boolean isCached(TRSListener listener, String query) {
+        return listener.getTRSPage(List.of(query)).isPresent();
+    }
+
+    @Test
+    public void anEntryEditedOutOfAListingDropsItsOtherPages() {
+        TRSListener listener = new TRSListener(MAXIMUM_BYTES);
+        Tool tool = tool(1, "a", true);
+        listener.loadTool(tool, new io.openapi.model.Tool(), listener.getGeneration());
+        // the second page of the listing, which shifts when the tool on the first page leaves it
+        listener.loadTRSPage(List.of("a, offset 1"), listing("a"), listener.getGeneration());
+        listener.loadTRSPage(List.of("b"), listing("b"), listener.getGeneration());
+
+        tool.setNamespace("c");
+        listener.handleIndexUpdate(tool, StateManagerMode.UPDATE);
+        Assert.assertFalse("the tool left this listing", isCached(listener, "a, offset 1"));
+        Assert.assertTrue("the tool was never in this listing", isCached(listener, "b"));
+        Assert.assertFalse(listener.getTool(TRSEntryKey.of(tool)).isPresent());
+    }
+
+    @Test
+    public void anUnpublishedEntryDropsTheListingsItWasIn() {
+        TRSListener listener = new TRSListener(MAXIMUM_BYTES);
+        Tool tool = tool(1, "a", true);
+        listener.loadTool(tool, new io.openapi.model.Tool(), listener.getGeneration());
+        listener.loadTRSPage(List.of("a, offset 1"), listing("a"), listener.getGeneration());
+
+        tool.setIsPublished(false);
+        listener.handleIndexUpdate(tool, StateManagerMode.PUBLISH);
+        Assert.assertFalse(isCached(listener, "a, offset 1"));
+    }
+
+    @Test
+    public void anUnchangedListingStateKeepsTheListings() {
+        TRSListener listener = new TRSListener(MAXIMUM_BYTES);
+        Tool tool = tool(1, "a", true);
+        listener.loadTool(tool, new io.openapi.model.Tool(), listener.getGeneration());
+        listener.loadTRSPage(List.of("a, offset 1"), listing("a"), listener.getGeneration());
+        listener.loadTRSPage(List.of("a, offset 0"), listing("a", tool), listener.getGeneration());
+
+        // a refresh that only changed the versions
+        listener.handleIndexUpdate(tool, StateManagerMode.UPDATE);
+        Assert.assertTrue(isCached(listener, "a, offset 1"));
+        Assert.assertFalse("the page with the tool is dropped", isCached(listener, "a, offset 0"));
+    }
+
+    @Test
+    public void aPublishedEntryTheListingsHaveNotSeenDropsEveryListing() {
+        TRSListener listener = new TRSListener(MAXIMUM_BYTES);
+        listener.loadTRSPage(List.of("b"), listing("b"), listener.getGeneration());
+
+        listener.handleIndexUpdate(tool(1, "a", true), StateManagerMode.UPDATE);
+        Assert.assertFalse("it may have been in the listing before the update", isCached(listener, "b"));
+    }
+
+    @Test
+    public void anEmptyLookupIsDroppedWhenItsEntryChanges() {
+        TRSListener listener = new TRSListener(MAXIMUM_BYTES);
+        Tool tool = tool(1, "a", false);
+        listener.loadTRSPage(List.of("id"), TRSListener.TRSPage.lookup(List.of(), 0, tool.getToolPath(), null), listener.getGeneration());
+        listener.loadTRSPage(List.of("other id"), TRSListener.TRSPage.lookup(List.of(), 0, "quay.io/b/tool2", null), listener.getGeneration());
+        listener.loadTRSPage(List.of("alias"), TRSListener.TRSPage.lookup(List.of(), 0, null, "an alias"), listener.getGeneration());
+
+        tool.setIsPublished(true);
+        listener.handleIndexUpdate(tool, StateManagerMode.PUBLISH);
+        Assert.assertFalse(isCached(listener, "id"));
+        Assert.assertTrue(isCached(listener, "other id"));
+        Assert.assertFalse("the entry's aliases are not loaded to tell", isCached(listener, "alias"));
+    }
+}
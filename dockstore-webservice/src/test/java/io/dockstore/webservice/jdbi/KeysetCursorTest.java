@@ -0,0 +1,47 @@
+package io.dockstore.webservice.jdbi;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Date;
+
+import io.dockstore.webservice.CustomWebApplicationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeysetCursorTest {
+
+    @Test
+    public void roundTrip() {
+        KeysetCursor cursor = KeysetCursor.decode(new KeysetCursor("stars", "desc", 42, 1234L).encode());
+        Assert.assertEquals(1234L, cursor.getId());
+        Assert.assertEquals(42, cursor.getSortValue(Integer.class));
+        cursor.checkSort("stars", "desc");
+
+        cursor = KeysetCursor.decode(new KeysetCursor("workflowName", "asc", "a/b|c", 7L).encode());
+        Assert.assertEquals("a/b|c", cursor.getSortValue(String.class));
+
+        cursor = KeysetCursor.decode(new KeysetCursor(null, null, null, 3L).encode());
+        Assert.assertEquals(3L, cursor.getId());
+        cursor.checkSort("", "");
+    }
+
+    /**
+     * Postgres timestamps have microseconds, the cursor must not truncate them to milliseconds or rows get skipped or repeated
+     */
+    @Test
+    public void timestampsKeepSubMillisecondPrecision() {
+        Timestamp timestamp = Timestamp.from(Instant.parse("2020-03-04T05:06:07.123456Z"));
+        KeysetCursor cursor = KeysetCursor.decode(new KeysetCursor("lastUpdated", "desc", timestamp, 1L).encode());
+        Assert.assertEquals(timestamp, cursor.getSortValue(Date.class));
+    }
+
+    @Test(expected = CustomWebApplicationException.class)
+    public void garbageCursor() {
+        KeysetCursor.decode("not a cursor!");
+    }
+
+    @Test(expected = CustomWebApplicationException.class)
+    public void differentSort() {
+        KeysetCursor.decode(new KeysetCursor("stars", "desc", 42, 1234L).encode()).checkSort("stars", "asc");
+    }
+}
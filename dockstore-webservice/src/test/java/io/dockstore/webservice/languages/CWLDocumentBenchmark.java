@@ -0,0 +1,105 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.languages;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.dockstore.common.DescriptorLanguage;
+import io.dockstore.webservice.core.SourceFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Builds the DAG and the tool table of a 100-step CWL workflow, half of whose steps run the same tool file and half an
+ * inline tool. The cold benchmark parses every document once, the warm one is what a later request about the same
+ * version costs.
+ *
+ * Not a test, run it with main() from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CWLDocumentBenchmark {
+    private static final int STEPS = 100;
+
+    private final CWLHandler cwlHandler = new CWLHandler();
+    private String workflow;
+    private Set<SourceFile> secondaryFiles;
+
+    @Setup
+    public void setup() {
+        StringBuilder content = new StringBuilder("cwlVersion: v1.0\nclass: Workflow\ninputs:\n  reads: File\noutputs:\n  last:\n    type: File\n"
+                + "    outputSource: step" + (STEPS - 1) + "/out\nsteps:\n");
+        for (int i = 0; i < STEPS; i++) {
+            content.append("  step").append(i).append(":\n    in:\n      reads: ").append(i == 0 ? "reads" : "step" + (i - 1) + "/out").append('\n')
+                    .append("    out: [out]\n");
+            if (i % 2 == 0) {
+                content.append("    run: tool.cwl\n");
+            } else {
+                content.append("    run:\n      class: CommandLineTool\n      baseCommand: cat\n")
+                        .append("      requirements:\n        DockerRequirement:\n          dockerPull: debian:10\n")
+                        .append("      inputs:\n        reads: File\n      outputs:\n        out: stdout\n");
+            }
+        }
+        workflow = content.toString();
+
+        SourceFile tool = new SourceFile();
+        tool.setType(DescriptorLanguage.FileType.DOCKSTORE_CWL);
+        tool.setPath("tool.cwl");
+        tool.setAbsolutePath("/tool.cwl");
+        tool.setContent("cwlVersion: v1.0\nclass: CommandLineTool\nbaseCommand: md5sum\nrequirements:\n  DockerRequirement:\n"
+                + "    dockerPull: debian:10\ninputs:\n  reads: File\noutputs:\n  out: stdout\n");
+        secondaryFiles = Collections.singleton(tool);
+    }
+
+    private Object dagAndToolTable() {
+        return new String[] { cwlHandler.getContent("/Dockstore.cwl", workflow, secondaryFiles, LanguageHandlerInterface.Type.DAG, null),
+            cwlHandler.getContent("/Dockstore.cwl", workflow, secondaryFiles, LanguageHandlerInterface.Type.TOOLS, null) };
+    }
+
+    @Benchmark
+    public Object coldDocuments() {
+        CWLDocument.invalidateAll();
+        return dagAndToolTable();
+    }
+
+    @Benchmark
+    public Object warmDocuments() {
+        return dagAndToolTable();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(CWLDocumentBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,31 @@
+package io.dockstore.webservice.languages;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.yaml.snakeyaml.error.YAMLException;
+
+public class CWLDocumentTest {
+
+    @Test
+    public void aDescriptorIsParsedOnce() {
+        String content = "cwlVersion: v1.0\nclass: CommandLineTool\nbaseCommand: md5sum\n";
+        CWLDocument document = CWLDocument.of(content);
+        Assert.assertSame(document, CWLDocument.of(new String(content)));
+        Assert.assertSame(document.getMapping(), CWLDocument.of(content).getMapping());
+        Assert.assertEquals("CommandLineTool", document.getCwlClass());
+        Assert.assertNull(CWLDocument.of("# nothing but a comment\n").getCwlClass());
+    }
+
+    @Test
+    public void malformedDescriptorsKeepFailing() {
+        CWLDocument document = CWLDocument.of("class: [CommandLineTool\n");
+        for (int i = 0; i < 2; i++) {
+            try {
+                document.getMapping();
+                Assert.fail("malformed YAML should not parse");
+            } catch (YAMLException e) {
+                Assert.assertNotNull("the same error every time it is asked for", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package io.dockstore.webservice.languages;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import io.dockstore.webservice.core.database.ToolPath;
+import io.dockstore.webservice.jdbi.ToolDAO;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class DockerImageUrlsTest {
+
+    @After
+    public void tearDown() {
+        DockerImageUrls.invalidateAll();
+    }
+
+    @Test
+    public void allImagesAreLookedUpAtOnce() {
+        ToolDAO toolDAO = Mockito.mock(ToolDAO.class);
+        when(toolDAO.findPublishedPathsByRepositories(Mockito.anySet(), Mockito.anySet(), Mockito.anySet()))
+                .thenReturn(Collections.singletonList(new ToolPath("quay.io", "pancancer", "pcawg-bwa-mem-workflow", null)));
+
+        Map<String, String> urls = DockerImageUrls.getUrls(Arrays.asList("quay.io/pancancer/pcawg-bwa-mem-workflow:2.7.0", "quay.io/briandoconnor/dockstore-tool-md5sum:1.0.4",
+                "pancancer/pcawg-oxog-tools:1.0.0", "debian:8", "pancancer/pcawg-oxog-tools:1.0.0"), toolDAO);
+        Assert.assertEquals("https://www.dockstore.org/containers/quay.io/pancancer/pcawg-bwa-mem-workflow", urls.get("quay.io/pancancer/pcawg-bwa-mem-workflow:2.7.0"));
+        Assert.assertEquals("https://quay.io/repository/briandoconnor/dockstore-tool-md5sum", urls.get("quay.io/briandoconnor/dockstore-tool-md5sum:1.0.4"));
+        Assert.assertEquals("https://hub.docker.com/r/pancancer/pcawg-oxog-tools", urls.get("pancancer/pcawg-oxog-tools:1.0.0"));
+        Assert.assertEquals("https://hub.docker.com/_/debian", urls.get("debian:8"));
+        verify(toolDAO, times(1)).findPublishedPathsByRepositories(Mockito.anySet(), Mockito.anySet(), Mockito.anySet());
+
+        // the same images again are not looked up, and images that cannot be Dockstore tools never are
+        DockerImageUrls.getUrls(Arrays.asList("quay.io/pancancer/pcawg-bwa-mem-workflow:2.7.1", "ubuntu"), toolDAO);
+        verifyNoMoreInteractions(toolDAO);
+    }
+}
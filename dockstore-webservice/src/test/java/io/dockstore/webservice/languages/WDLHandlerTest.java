@@ -132,10 +132,10 @@ public class WDLHandlerTest {
         final Map<String, SourceFile> sourceFileMap = wdlHandler
                 .processImports("whatever", content, null, new GatkSvClinicalSourceCodeRepoInterface(), MAIN_WDL);
 
-        // wdlHandler.getContent ultimately invokes toolDAO.findAllByPath from LanguageHandlerEntry.getURLFromEntry for look
-        // up; just have it return null
+        // wdlHandler.getContent ultimately invokes toolDAO.findPublishedPathsByRepositories from LanguageHandlerEntry.getURLsFromEntries for look
+        // up; just have it find nothing
         final ToolDAO toolDAO = Mockito.mock(ToolDAO.class);
-        when(toolDAO.findAllByPath(Mockito.anyString(), Mockito.anyBoolean())).thenReturn(null);
+        when(toolDAO.findPublishedPathsByRepositories(Mockito.anySet(), Mockito.anySet(), Mockito.anySet())).thenReturn(Collections.emptyList());
 
         final String toolsStr = wdlHandler
                 .getContent(MAIN_WDL, content, new HashSet<SourceFile>(sourceFileMap.values()), LanguageHandlerInterface.Type.TOOLS, toolDAO);
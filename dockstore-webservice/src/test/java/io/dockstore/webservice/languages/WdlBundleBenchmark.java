@@ -0,0 +1,106 @@
+/*
+ *    Copyright 2020 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.languages;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.dockstore.common.WdlBridge;
+import io.dockstore.common.WdlBundle;
+import io.dropwizard.testing.ResourceHelpers;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import wdl.draft3.parser.WdlParser;
+
+/**
+ * Compares parsing the gatk-sv-clinical workflow, which imports about 90 files, once for each question a refresh asks
+ * of it with parsing it once into a WdlBundle.
+ *
+ * Not a test, run it with main() from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WdlBundleBenchmark {
+    private static final String MAIN_WDL = "/GATKSVPipelineClinical.wdl";
+
+    private String content;
+    private WdlBridge wdlBridge;
+
+    @Setup
+    public void setup() throws IOException {
+        Path root = Paths.get(ResourceHelpers.resourceFilePath("gatk-sv-clinical"));
+        Map<String, String> secondaryFiles = new HashMap<>();
+        try (Stream<Path> paths = java.nio.file.Files.walk(root)) {
+            List<Path> wdlFiles = paths.filter(path -> path.toString().endsWith(".wdl")).collect(Collectors.toList());
+            for (Path wdlFile : wdlFiles) {
+                secondaryFiles.put("/" + root.relativize(wdlFile).toString(), FileUtils.readFileToString(wdlFile.toFile(), StandardCharsets.UTF_8));
+            }
+        }
+        content = secondaryFiles.get(MAIN_WDL);
+        wdlBridge = new WdlBridge();
+        wdlBridge.setSecondaryFiles(new HashMap<>(secondaryFiles));
+    }
+
+    private WdlBundle parse() {
+        return new WdlBundle(wdlBridge.getBundleFromContent(content, MAIN_WDL));
+    }
+
+    /**
+     * What a refresh used to cost: metadata, validation, and each part of the DAG parsed the workflow again
+     */
+    @Benchmark
+    public Object parseForEachQuestion() throws WdlParser.SyntaxError {
+        parse().validateWorkflow();
+        return new Object[] { parse().getMetadata(), parse().getCallsToDockerMap(), parse().getCallsToDependencies(), parse().getImportMap() };
+    }
+
+    @Benchmark
+    public Object parseOnce() throws WdlParser.SyntaxError {
+        WdlBundle wdlBundle = parse();
+        wdlBundle.validateWorkflow();
+        return new Object[] { wdlBundle.getMetadata(), wdlBundle.getCallsToDockerMap(), wdlBundle.getCallsToDependencies(), wdlBundle.getImportMap() };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(WdlBundleBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
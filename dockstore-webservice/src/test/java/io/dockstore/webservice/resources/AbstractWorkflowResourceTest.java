@@ -0,0 +1,71 @@
+package io.dockstore.webservice.resources;
+
+import java.util.Optional;
+
+import io.dockstore.common.DescriptorLanguage;
+import io.dockstore.webservice.core.BioWorkflow;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.core.WorkflowVersion;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class AbstractWorkflowResourceTest {
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+    private static final String OTHER_COMMIT = "76543210fedcba9876543210fedcba9876543210";
+
+    @SuppressWarnings("unchecked")
+    private final AbstractWorkflowResource<Workflow> resource = Mockito.mock(AbstractWorkflowResource.class, Mockito.CALLS_REAL_METHODS);
+
+    private static WorkflowVersion version(String commitID, String content) {
+        WorkflowVersion version = new WorkflowVersion();
+        version.setName("master");
+        version.setReference("master");
+        version.setCommitID(commitID);
+        version.setWorkflowPath("/Dockstore.cwl");
+        SourceFile file = new SourceFile();
+        file.setType(DescriptorLanguage.FileType.DOCKSTORE_CWL);
+        file.setPath("/Dockstore.cwl");
+        file.setAbsolutePath("/Dockstore.cwl");
+        file.setContent(content);
+        version.getSourceFiles().add(file);
+        return version;
+    }
+
+    private static Workflow workflow(WorkflowVersion version) {
+        Workflow workflow = new BioWorkflow();
+        workflow.setGitUrl("git@github.com:dockstore/refresh.git");
+        workflow.addWorkflowVersion(version);
+        return workflow;
+    }
+
+    @Test
+    public void unchangedVersionKeepsWhatWasStored() {
+        WorkflowVersion stored = version(COMMIT, "cwlVersion: v1.0");
+        stored.setDagJson("{}");
+        WorkflowVersion unchanged = new WorkflowVersion();
+        unchanged.setName("master");
+        unchanged.setReference("master");
+        unchanged.setCommitID(COMMIT);
+        unchanged.setUnchanged(true);
+
+        resource.updateDBWorkflowWithSourceControlWorkflow(workflow(stored), workflow(unchanged), null, Optional.empty());
+        Assert.assertEquals("{}", stored.getDagJson());
+        Assert.assertEquals(1, stored.getSourceFiles().size());
+        Assert.assertEquals("cwlVersion: v1.0", stored.getSourceFiles().iterator().next().getContent());
+    }
+
+    @Test
+    public void changedVersionIsUpdated() {
+        WorkflowVersion stored = version(COMMIT, "cwlVersion: v1.0");
+        stored.setDagJson("{}");
+
+        resource.updateDBWorkflowWithSourceControlWorkflow(workflow(stored), workflow(version(OTHER_COMMIT, "cwlVersion: v1.1")), null,
+            Optional.empty());
+        Assert.assertEquals(OTHER_COMMIT, stored.getCommitID());
+        Assert.assertNull("the DAG is computed again", stored.getDagJson());
+        Assert.assertEquals("cwlVersion: v1.1", stored.getSourceFiles().iterator().next().getContent());
+    }
+}
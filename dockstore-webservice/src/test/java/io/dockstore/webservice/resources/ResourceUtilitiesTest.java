@@ -0,0 +1,26 @@
+package io.dockstore.webservice.resources;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.Mockito.verify;
+
+public class ResourceUtilitiesTest {
+
+    @Test
+    public void refreshCountsAreExposedAsHeaders() {
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        ResourceUtilities.addRefreshCountHeaders(response, 3, 2);
+        verify(response).addHeader("X-versions-skipped", "3");
+        verify(response).addHeader("X-versions-refetched", "2");
+        verify(response).addHeader("Access-Control-Expose-Headers", "X-versions-skipped, X-versions-refetched");
+    }
+
+    @Test
+    public void refreshWithinAnotherRequestHasNoHeaders() {
+        // nothing to write to, and nothing thrown
+        ResourceUtilities.addRefreshCountHeaders(null, 3, 2);
+    }
+}